@@ -1,55 +1,94 @@
 package com.environmentdirect.config;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.environmentdirect.service.cache.ByteSizeWeigher;
+import com.environmentdirect.service.cache.CacheSpec;
+import com.environmentdirect.service.cache.UpstreamCaches;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
-import java.util.concurrent.TimeUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration for caching using Caffeine.
- * Enables caching and configures cache settings.
+ * Enables caching and creates every cache explicitly, each with its own {@link CacheSpec}
+ * from the {@code cache.spec.<name>} property over a default spec. Caches are bounded by the
+ * estimated bytes of their values, so large JSON payloads cannot exhaust the heap.
  */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    // Caches for @Cacheable methods
+    static final List<String> CACHE_NAMES = List.of(
+            "articles",
+            "categories",
+            "reports"
+    );
+
+    // Caches of external API responses, refreshed in the background by the services
+    static final List<String> UPSTREAM_CACHE_NAMES = List.of(
+            "climateData",
+            "airQualityData",
+            "environmentalData",
+            "ncdcDatasets",
+            "ncdcStations",
+            "ncdcClimateData",
+            "ncdcHistoricalData",
+            "ncdcExtremes",
+            "ncdcCaribbeanSummary"
+    );
+
+    private static final String DEFAULT_SPEC = "maximumWeight=16MB,expireAfterWrite=10m,recordStats";
+    private static final String DEFAULT_UPSTREAM_SPEC = "maximumWeight=32MB,refreshAfterWrite=10m,expireAfterWrite=1h,retainFor=24h";
+
     /**
-     * Configure the cache manager with Caffeine.
+     * Configure the cache manager with Caffeine. Only the configured caches exist; an unknown
+     * cache name is an error rather than a new unbounded cache.
      *
+     * @param environment the environment holding the cache specs
      * @return the cache manager
      */
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(Environment environment) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCaffeine(caffeineCacheBuilder());
-        
-        // Register known cache names
-        cacheManager.setCacheNames(java.util.Arrays.asList(
-            "climateData",
-            "airQualityData",
-            "environmentalData",
-            "articles",
-            "categories",
-            "reports"
-        ));
-        
+        cacheManager.setCacheNames(List.of());
+
+        CacheSpec defaults = CacheSpec.parse(environment.getProperty("cache.default-spec", DEFAULT_SPEC));
+        for (String name : CACHE_NAMES) {
+            CacheSpec spec = spec(environment, name, defaults);
+            if (spec.refreshAfterWrite() != null || spec.retainFor() != null) {
+                throw new IllegalArgumentException("Cache " + name + " has no loader to refresh or retain values with");
+            }
+            cacheManager.registerCustomCache(name, spec.toCaffeine(spec.expireAfterWrite(),
+                    (key, value) -> ByteSizeWeigher.weigh(value)).build());
+        }
+
         return cacheManager;
     }
 
     /**
-     * Configure Caffeine cache settings.
+     * Create the caches of external API responses.
      *
-     * @return the Caffeine builder
+     * @param environment the environment holding the cache specs
+     * @return the upstream caches
      */
-    private Caffeine<Object, Object> caffeineCacheBuilder() {
-        return Caffeine.newBuilder()
-                .expireAfterWrite(10, TimeUnit.MINUTES)  // Cache entries expire after 10 minutes
-                .initialCapacity(100)                    // Initial capacity of 100 entries
-                .maximumSize(1000)                       // Maximum size of 1000 entries
-                .recordStats();                          // Record statistics for monitoring
+    @Bean
+    public UpstreamCaches upstreamCaches(Environment environment) {
+        CacheSpec defaults = CacheSpec.parse(environment.getProperty("cache.upstream-default-spec", DEFAULT_UPSTREAM_SPEC));
+        Map<String, CacheSpec> specs = new LinkedHashMap<>();
+        for (String name : UPSTREAM_CACHE_NAMES) {
+            specs.put(name, spec(environment, name, defaults));
+        }
+        return new UpstreamCaches(specs);
+    }
+
+    private static CacheSpec spec(Environment environment, String name, CacheSpec defaults) {
+        return CacheSpec.parse(environment.getProperty("cache.spec." + name, ""), defaults);
     }
-}
\ No newline at end of file
+}
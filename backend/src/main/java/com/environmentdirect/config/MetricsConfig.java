@@ -1,7 +1,10 @@
 package com.environmentdirect.config;
 
 import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -23,4 +26,26 @@ public class MetricsConfig {
     public TimedAspect timedAspect(MeterRegistry registry) {
         return new TimedAspect(registry);
     }
+
+    /**
+     * Publish histogram buckets for the shared HTTP client's latency and bulkhead queue time,
+     * so upstream latency percentiles can be aggregated across instances.
+     *
+     * @return the meter filter
+     */
+    @Bean
+    public MeterFilter upstreamHttpHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getName().equals("http.upstream.requests") || id.getName().equals("http.upstream.queue")) {
+                    return DistributionStatisticConfig.builder()
+                            .percentilesHistogram(true)
+                            .build()
+                            .merge(config);
+                }
+                return config;
+            }
+        };
+    }
 }
\ No newline at end of file
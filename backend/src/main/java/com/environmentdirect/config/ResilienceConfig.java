@@ -1,14 +1,18 @@
 package com.environmentdirect.config;
 
+import com.environmentdirect.service.http.HedgingPolicy;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
 
 /**
- * Configuration for Resilience4J circuit breakers and time limiters.
+ * Configuration for Resilience4J circuit breakers, time limiters and bulkheads, and for
+ * hedging slow requests.
  * Provides fault tolerance for external API calls.
  */
 @Configuration
@@ -75,4 +79,45 @@ public class ResilienceConfig {
                 .cancelRunningFuture(true)
                 .build();
     }
+
+    /**
+     * Configure the bulkhead every upstream host gets in the shared HTTP client.
+     * Requests beyond the limit wait up to the maximum wait for a permit and are then rejected,
+     * so a slow host cannot take over the connections and threads the other hosts need.
+     *
+     * @param maxConcurrentCalls the maximum number of concurrent requests to one host
+     * @param maxWait how long a request may wait for a permit
+     * @return the bulkhead configuration for each upstream host
+     */
+    @Bean
+    public BulkheadConfig upstreamHostBulkheadConfig(
+            @Value("${http.upstream.bulkhead.max-concurrent-calls:10}") int maxConcurrentCalls,
+            @Value("${http.upstream.bulkhead.max-wait:5s}") Duration maxWait) {
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build();
+    }
+
+    /**
+     * Configure hedging of slow external API requests. Off unless enabled.
+     *
+     * @param enabled whether slow requests are hedged
+     * @param percentile the latency percentile of a host after which a duplicate request is sent
+     * @param minSamples the responses from a host needed before it is hedged
+     * @param minDelay the shortest delay before a duplicate request
+     * @param budgetRatio the duplicate requests earned per request, capping the extra load
+     * @param maxBudget the most duplicate requests a host can save up
+     * @return the hedging policy
+     */
+    @Bean
+    public HedgingPolicy hedgingPolicy(
+            @Value("${http.upstream.hedging.enabled:false}") boolean enabled,
+            @Value("${http.upstream.hedging.percentile:0.95}") double percentile,
+            @Value("${http.upstream.hedging.min-samples:20}") int minSamples,
+            @Value("${http.upstream.hedging.min-delay:50ms}") Duration minDelay,
+            @Value("${http.upstream.hedging.budget-ratio:0.1}") double budgetRatio,
+            @Value("${http.upstream.hedging.max-budget:5}") double maxBudget) {
+        return new HedgingPolicy(enabled, percentile, minSamples, minDelay, budgetRatio, maxBudget);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.environmentdirect.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration for scheduled background jobs.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
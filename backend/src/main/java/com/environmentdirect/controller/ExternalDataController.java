@@ -9,6 +9,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -53,11 +54,11 @@ public class ExternalDataController {
     )
     @GetMapping("/climate")
     @Timed(value = "api.climate.request", description = "Time taken to fetch climate data")
-    public CompletableFuture<ResponseEntity<String>> getClimateData(
+    public CompletableFuture<ResponseEntity<byte[]>> getClimateData(
             @Parameter(description = "Location to fetch climate data for", required = true)
             @RequestParam String location) {
         return externalDataService.fetchClimateDataAsync(location)
-                .thenApply(ResponseEntity::ok);
+                .thenApply(ExternalDataController::json);
     }
 
     /**
@@ -83,11 +84,11 @@ public class ExternalDataController {
     )
     @GetMapping("/air-quality")
     @Timed(value = "api.air-quality.request", description = "Time taken to fetch air quality data")
-    public CompletableFuture<ResponseEntity<String>> getAirQualityData(
+    public CompletableFuture<ResponseEntity<byte[]>> getAirQualityData(
             @Parameter(description = "Location to fetch air quality data for", required = true)
             @RequestParam String location) {
         return externalDataService.fetchAirQualityDataAsync(location)
-                .thenApply(ResponseEntity::ok);
+                .thenApply(ExternalDataController::json);
     }
 
     /**
@@ -114,10 +115,19 @@ public class ExternalDataController {
     )
     @GetMapping("/environmental")
     @Timed(value = "api.environmental.request", description = "Time taken to fetch combined environmental data")
-    public CompletableFuture<ResponseEntity<String>> getEnvironmentalData(
+    public CompletableFuture<ResponseEntity<byte[]>> getEnvironmentalData(
             @Parameter(description = "Location to fetch combined environmental data for", required = true)
             @RequestParam String location) {
         return externalDataService.fetchEnvironmentalDataAsync(location)
-                .thenApply(ResponseEntity::ok);
+                .thenApply(ExternalDataController::json);
+    }
+
+    /**
+     * Respond with UTF-8 JSON bytes as they are, without re-encoding them.
+     */
+    private static ResponseEntity<byte[]> json(byte[] body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 }
@@ -1,12 +1,16 @@
 package com.environmentdirect.controller;
 
 import com.environmentdirect.service.NCDCClimateService;
+import com.environmentdirect.service.json.JsonBytes;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -51,41 +55,61 @@ public class LiveDataController {
      * @return Combined environmental data from NCDC and local sources.
      */
     @GetMapping("/enhanced")
-    public CompletableFuture<ResponseEntity<String>> getEnhancedLiveData() {
-        // Get real NCDC data and combine with local metrics
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getEnhancedLiveData() {
+        // Get real NCDC data and combine with local metrics, streaming the NCDC data in as it is
         return ncdcClimateService.getCurrentYearClimateData("GHCND", null)
                 .thenApply(ncdcData -> {
-                    // Create enhanced response combining NCDC and local data
-                    String enhancedData = "{\"enhanced_live_data\": {" +
-                            "\"ncdc_climate_data\": " + ncdcData + ", " +
-                            "\"local_metrics\": {" +
-                                "\"aqi\": {\"value\": \"42\", \"status\": \"Good\", \"location\": \"Roseau Capital\"}," +
-                                "\"water_quality\": {\"value\": \"87\", \"status\": \"Excellent\", \"location\": \"Layou River\"}," +
-                                "\"temperature\": {\"value\": \"27.5\", \"unit\": \"°C\", \"location\": \"Canefield Airport\"}" +
-                            "}," +
-                            "\"data_sources\": [\"NOAA NCDC\", \"Local Sensors\"]," +
-                            "\"last_updated\": \"" + java.time.LocalDateTime.now() + "\"" +
-                            "}}";
+                    String lastUpdated = java.time.LocalDateTime.now().toString();
+                    StreamingResponseBody body = out -> JsonBytes.write(out, generator -> {
+                        generator.writeStartObject();
+                        generator.writeObjectFieldStart("enhanced_live_data");
+                        JsonBytes.writeRawField(generator, "ncdc_climate_data", ncdcData);
+                        writeLocalMetrics(generator);
+                        generator.writeArrayFieldStart("data_sources");
+                        generator.writeString("NOAA NCDC");
+                        generator.writeString("Local Sensors");
+                        generator.writeEndArray();
+                        generator.writeStringField("last_updated", lastUpdated);
+                        generator.writeEndObject();
+                        generator.writeEndObject();
+                    });
                     
                     return ResponseEntity.ok()
                             .header("Content-Type", "application/json")
-                            .body(enhancedData);
+                            .body(body);
                 })
                 .exceptionally(ex -> {
                     // Fallback to local data if NCDC fails
-                    String fallbackData = "{\"enhanced_live_data\": {" +
-                            "\"error\": \"NCDC data temporarily unavailable\"," +
-                            "\"local_metrics\": {" +
-                                "\"aqi\": {\"value\": \"42\", \"status\": \"Good\", \"location\": \"Roseau Capital\"}," +
-                                "\"water_quality\": {\"value\": \"87\", \"status\": \"Excellent\", \"location\": \"Layou River\"}," +
-                                "\"temperature\": {\"value\": \"27.5\", \"unit\": \"°C\", \"location\": \"Canefield Airport\"}" +
-                            "}," +
-                            "\"fallback\": true" +
-                            "}}";
+                    StreamingResponseBody body = out -> JsonBytes.write(out, generator -> {
+                        generator.writeStartObject();
+                        generator.writeObjectFieldStart("enhanced_live_data");
+                        generator.writeStringField("error", "NCDC data temporarily unavailable");
+                        writeLocalMetrics(generator);
+                        generator.writeBooleanField("fallback", true);
+                        generator.writeEndObject();
+                        generator.writeEndObject();
+                    });
                     
                     return ResponseEntity.ok()
                             .header("Content-Type", "application/json")
-                            .body(fallbackData);
+                            .body(body);
                 });
     }
+
+    private static void writeLocalMetrics(JsonGenerator generator) throws IOException {
+        generator.writeObjectFieldStart("local_metrics");
+        writeMetric(generator, "aqi", "value", "42", "status", "Good", "Roseau Capital");
+        writeMetric(generator, "water_quality", "value", "87", "status", "Excellent", "Layou River");
+        writeMetric(generator, "temperature", "value", "27.5", "unit", "°C", "Canefield Airport");
+        generator.writeEndObject();
+    }
+
+    private static void writeMetric(JsonGenerator generator, String name, String valueField, String value,
+                                    String detailField, String detail, String location) throws IOException {
+        generator.writeObjectFieldStart(name);
+        generator.writeStringField(valueField, value);
+        generator.writeStringField(detailField, detail);
+        generator.writeStringField("location", location);
+        generator.writeEndObject();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.environmentdirect.controller;
+
+import com.environmentdirect.service.ml.ModelArtifact;
+import com.environmentdirect.service.ml.ModelService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller for admin operations on the versioned prediction models.
+ * Provides endpoints to train candidate versions, run them in shadow mode and promote them.
+ */
+@RestController
+@RequestMapping("/api/admin/models")
+@PreAuthorize("hasRole('ADMIN')")
+public class ModelAdminController {
+
+    private final ModelService modelService;
+
+    @Autowired
+    public ModelAdminController(ModelService modelService) {
+        this.modelService = modelService;
+    }
+
+    /**
+     * List the registered versions of every model with their shadow statistics.
+     *
+     * @return ResponseEntity with one entry per model
+     */
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getModels() {
+        return ResponseEntity.ok(List.of(
+                modelService.getFloodRiskModels().describe(),
+                modelService.getVisitorLoadModels().describe()));
+    }
+
+    /**
+     * Retrain every model as a new version.
+     *
+     * @param activate Whether the new versions should serve predictions immediately
+     * @return ResponseEntity with the training metadata and the updated registries
+     */
+    @PostMapping("/retrain")
+    public ResponseEntity<Map<String, Object>> retrain(@RequestParam(defaultValue = "false") boolean activate) {
+        ModelArtifact artifact = modelService.retrainModels(activate);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("trainedAt", artifact.trainedAt().toString());
+        result.put("floodRSquared", artifact.floodRSquared());
+        result.put("activated", activate);
+        result.put("models", List.of(
+                modelService.getFloodRiskModels().describe(),
+                modelService.getVisitorLoadModels().describe()));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Serve predictions from another version of a model.
+     *
+     * @param modelName The model name ("floodRisk" or "ecoTourism")
+     * @param version The version to promote
+     * @return ResponseEntity with the updated registry
+     */
+    @PostMapping("/{modelName}/versions/{version}/activate")
+    public ResponseEntity<Map<String, Object>> activate(@PathVariable String modelName, @PathVariable String version) {
+        try {
+            var registry = modelService.getModelRegistry(modelName);
+            registry.activate(version);
+            return ResponseEntity.ok(registry.describe());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Score a version of a model in shadow mode alongside the active version.
+     *
+     * @param modelName The model name ("floodRisk" or "ecoTourism")
+     * @param version The candidate version
+     * @return ResponseEntity with the updated registry
+     */
+    @PostMapping("/{modelName}/versions/{version}/shadow")
+    public ResponseEntity<Map<String, Object>> startShadow(@PathVariable String modelName, @PathVariable String version) {
+        try {
+            var registry = modelService.getModelRegistry(modelName);
+            registry.startShadow(version);
+            return ResponseEntity.ok(registry.describe());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Stop shadow scoring for a model.
+     *
+     * @param modelName The model name ("floodRisk" or "ecoTourism")
+     * @return ResponseEntity with the updated registry
+     */
+    @DeleteMapping("/{modelName}/shadow")
+    public ResponseEntity<Map<String, Object>> stopShadow(@PathVariable String modelName) {
+        try {
+            var registry = modelService.getModelRegistry(modelName);
+            registry.stopShadow();
+            return ResponseEntity.ok(registry.describe());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+}
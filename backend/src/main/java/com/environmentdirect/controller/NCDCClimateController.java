@@ -1,15 +1,24 @@
 package com.environmentdirect.controller;
 
 import com.environmentdirect.service.NCDCClimateService;
+import com.environmentdirect.service.json.JsonBytes;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for NCDC Climate Intelligence API endpoints.
  * Provides real climate data from NOAA NCDC for Intelligence pages.
+ * NCDC responses are UTF-8 JSON bytes and are written to the response without re-encoding;
+ * combined responses are streamed with the parts spliced in.
  */
 @RestController
 @RequestMapping("/api/ncdc")
@@ -23,7 +32,7 @@ public class NCDCClimateController {
      * Get available NCDC datasets
      */
     @GetMapping("/datasets")
-    public CompletableFuture<ResponseEntity<String>> getAvailableDatasets() {
+    public CompletableFuture<ResponseEntity<byte[]>> getAvailableDatasets() {
         return ncdcClimateService.getAvailableDatasets()
                 .thenApply(data -> ResponseEntity.ok()
                         .header("Content-Type", "application/json")
@@ -34,7 +43,7 @@ public class NCDCClimateController {
      * Get weather stations in Caribbean/Dominica region
      */
     @GetMapping("/stations")
-    public CompletableFuture<ResponseEntity<String>> getWeatherStations(
+    public CompletableFuture<ResponseEntity<byte[]>> getWeatherStations(
             @RequestParam(required = false) String locationId) {
         return ncdcClimateService.getWeatherStations(locationId)
                 .thenApply(data -> ResponseEntity.ok()
@@ -46,7 +55,7 @@ public class NCDCClimateController {
      * Get current year climate data
      */
     @GetMapping("/climate-data/current")
-    public CompletableFuture<ResponseEntity<String>> getCurrentYearClimateData(
+    public CompletableFuture<ResponseEntity<byte[]>> getCurrentYearClimateData(
             @RequestParam(required = false) String datasetId,
             @RequestParam(required = false) String locationId) {
         return ncdcClimateService.getCurrentYearClimateData(datasetId, locationId)
@@ -59,7 +68,7 @@ public class NCDCClimateController {
      * Get historical climate data for date range
      */
     @GetMapping("/climate-data/historical")
-    public CompletableFuture<ResponseEntity<String>> getHistoricalClimateData(
+    public CompletableFuture<ResponseEntity<byte[]>> getHistoricalClimateData(
             @RequestParam String startDate,
             @RequestParam String endDate,
             @RequestParam(required = false) String locationId) {
@@ -69,11 +78,43 @@ public class NCDCClimateController {
                         .body(data));
     }
 
+    /**
+     * Get per-station, per-datatype aggregates of daily observations for a date range
+     */
+    @GetMapping("/climate-data/summary")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getClimateDataSummary(
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            @RequestParam(required = false) String locationId) {
+        LocalDate start;
+        LocalDate end;
+        try {
+            start = LocalDate.parse(startDate);
+            end = LocalDate.parse(endDate);
+        } catch (DateTimeParseException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", "Dates must be in the format YYYY-MM-DD")));
+        }
+        if (end.isBefore(start)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", "endDate must not be before startDate")));
+        }
+        return ncdcClimateService.getHistoricalObservations(start, end, locationId)
+                .thenApply(observations -> {
+                    Map<String, Object> summary = new LinkedHashMap<>();
+                    summary.put("startDate", startDate);
+                    summary.put("endDate", endDate);
+                    summary.put("observationCount", observations.getObservationCount());
+                    summary.put("series", observations.summaries());
+                    return ResponseEntity.ok(summary);
+                });
+    }
+
     /**
      * Get climate extremes and records
      */
     @GetMapping("/climate-extremes")
-    public CompletableFuture<ResponseEntity<String>> getClimateExtremes(
+    public CompletableFuture<ResponseEntity<byte[]>> getClimateExtremes(
             @RequestParam(required = false) String locationId) {
         return ncdcClimateService.getClimateExtremes(locationId)
                 .thenApply(data -> ResponseEntity.ok()
@@ -85,7 +126,7 @@ public class NCDCClimateController {
      * Get comprehensive Caribbean climate summary
      */
     @GetMapping("/caribbean-summary")
-    public CompletableFuture<ResponseEntity<String>> getCaribbeanClimateSummary() {
+    public CompletableFuture<ResponseEntity<byte[]>> getCaribbeanClimateSummary() {
         return ncdcClimateService.getCaribbeanClimateSummary()
                 .thenApply(data -> ResponseEntity.ok()
                         .header("Content-Type", "application/json")
@@ -96,20 +137,25 @@ public class NCDCClimateController {
      * Get intelligence dashboard data (combines multiple sources)
      */
     @GetMapping("/intelligence-dashboard")
-    public CompletableFuture<ResponseEntity<String>> getIntelligenceDashboardData() {
-        // Combine current data with extremes for dashboard
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getIntelligenceDashboardData() {
+        // Combine current data with extremes for dashboard, streaming both in as they are
         return ncdcClimateService.getCurrentYearClimateData("GHCND", null)
                 .thenCombine(ncdcClimateService.getClimateExtremes(null), (currentData, extremes) -> {
-                    String combinedData = "{\"intelligence_dashboard\": {" +
-                            "\"current_climate\": " + currentData + ", " +
-                            "\"climate_extremes\": " + extremes + ", " +
-                            "\"data_source\": \"NOAA NCDC\", " +
-                            "\"region\": \"Caribbean/Dominica\", " +
-                            "\"last_updated\": \"" + java.time.LocalDateTime.now() + "\"" +
-                            "}}";
+                    String lastUpdated = java.time.LocalDateTime.now().toString();
+                    StreamingResponseBody body = out -> JsonBytes.write(out, generator -> {
+                        generator.writeStartObject();
+                        generator.writeObjectFieldStart("intelligence_dashboard");
+                        JsonBytes.writeRawField(generator, "current_climate", currentData);
+                        JsonBytes.writeRawField(generator, "climate_extremes", extremes);
+                        generator.writeStringField("data_source", "NOAA NCDC");
+                        generator.writeStringField("region", "Caribbean/Dominica");
+                        generator.writeStringField("last_updated", lastUpdated);
+                        generator.writeEndObject();
+                        generator.writeEndObject();
+                    });
                     return ResponseEntity.ok()
                             .header("Content-Type", "application/json")
-                            .body(combinedData);
+                            .body(body);
                 });
     }
 
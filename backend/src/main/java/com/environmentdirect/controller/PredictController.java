@@ -2,6 +2,7 @@ package com.environmentdirect.controller;
 
 import com.environmentdirect.service.PredictService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,7 +11,8 @@ import java.util.*;
 /**
  * Controller for providing predictive environmental insights.
  * This controller handles endpoints for eco-tourism hotspot pressure and flood risk forecasting.
- * Uses Virtual Threads via the PredictService for efficient handling of prediction requests.
+ * Predictions are fanned out by the PredictService under a per-request deadline. List endpoints
+ * always answer 200 with a status per item; single-item endpoints answer 504 if the item timed out.
  */
 @RestController
 @RequestMapping("/api/predict")
@@ -25,12 +27,12 @@ public class PredictController {
 
     @GetMapping("/eco-tourism/{siteId}")
     public ResponseEntity<Map<String, Object>> getEcoTourismPrediction(@PathVariable String siteId) {
-        return ResponseEntity.ok(predictService.getEcoTourismPrediction(siteId));
+        return toResponse(predictService.getEcoTourismPrediction(siteId));
     }
 
     @GetMapping("/flood-risk/{region}")
     public ResponseEntity<Map<String, Object>> getFloodRiskPrediction(@PathVariable String region) {
-        return ResponseEntity.ok(predictService.getFloodRiskPrediction(region));
+        return toResponse(predictService.getFloodRiskPrediction(region));
     }
 
     @GetMapping("/eco-tourism")
@@ -58,11 +60,23 @@ public class PredictController {
     public ResponseEntity<Map<String, Object>> getHistoricalComparisonWithParams(
             @RequestParam String id,
             @RequestParam String type) {
-        return ResponseEntity.ok(predictService.getHistoricalComparison(id, type));
+        return getHistoricalComparison(type, id);
     }
 
     @GetMapping("/historical-comparison/{type}/{id}")
     public ResponseEntity<Map<String, Object>> getHistoricalComparison(@PathVariable String type, @PathVariable String id) {
-        return ResponseEntity.ok(predictService.getHistoricalComparison(id, type));
+        try {
+            return toResponse(predictService.getHistoricalComparison(id, type));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> toResponse(Map<String, Object> result) {
+        return switch ((String) result.get("status")) {
+            case PredictService.STATUS_OK -> ResponseEntity.ok(result);
+            case PredictService.STATUS_TIMEOUT -> ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(result);
+            default -> ResponseEntity.internalServerError().body(result);
+        };
     }
 }
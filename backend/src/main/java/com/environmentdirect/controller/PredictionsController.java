@@ -1,10 +1,27 @@
 package com.environmentdirect.controller;
 
+import com.environmentdirect.dto.FloodRiskSweepRequestDto;
+import com.environmentdirect.dto.SensorReadingDto;
+import com.environmentdirect.dto.VisitorObservationDto;
+import com.environmentdirect.service.PredictionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.*;
 
 /**
@@ -15,6 +32,15 @@ import java.util.*;
 @RequestMapping("/api/predictions")
 public class PredictionsController {
 
+    private final PredictionService predictionService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public PredictionsController(PredictionService predictionService, ObjectMapper objectMapper) {
+        this.predictionService = predictionService;
+        this.objectMapper = objectMapper;
+    }
+
     @GetMapping
     public ResponseEntity<List<Map<String, Object>>> getAllPredictions() {
         List<Map<String, Object>> predictions = new ArrayList<>();
@@ -84,4 +110,178 @@ public class PredictionsController {
     public ResponseEntity<List<Map<String, Object>>> getAllFloodRiskPredictions() {
         return ResponseEntity.ok(Collections.emptyList());
     }
+
+    /**
+     * Score every known region and eco-tourism site for each day in a date range in one round-trip.
+     *
+     * @param startDate The first date to predict (ISO date, inclusive)
+     * @param endDate The last date to predict (ISO date, inclusive, defaults to startDate)
+     * @return Flood risk and visitor load levels per region/site, one per date
+     */
+    @GetMapping("/bulk")
+    public ResponseEntity<Map<String, Object>> getBulkPredictions(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            return ResponseEntity.ok(predictionService.getBulkPredictions(
+                    startDate, endDate != null ? endDate : startDate));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Compare today's prediction for a region or site with its materialized prediction history.
+     *
+     * @param type The type of data ("eco-tourism" or "flood-risk")
+     * @param id The site or region identifier
+     * @param days Number of days of history to include (1-365)
+     * @return Historical data points, today's prediction and trend information
+     */
+    @GetMapping("/historical-comparison/{type}/{id}")
+    public ResponseEntity<Map<String, Object>> getHistoricalComparison(
+            @PathVariable String type,
+            @PathVariable String id,
+            @RequestParam(defaultValue = "30") int days) {
+        try {
+            return ResponseEntity.ok(predictionService.getHistoricalComparison(id, type, days));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get a Monte Carlo ensemble of flood risk outcomes for a region.
+     *
+     * @param region The region identifier
+     * @param date The date to predict (ISO date, defaults to today)
+     * @param draws Number of ensemble members
+     * @param seed Seed for the random perturbations; repeat a seed to reproduce a result
+     * @return Risk level distribution, score quantiles and exceedance probabilities
+     */
+    @GetMapping("/flood-risk/{region}/ensemble")
+    public ResponseEntity<Map<String, Object>> getFloodRiskEnsemble(
+            @PathVariable String region,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "10000") int draws,
+            @RequestParam(defaultValue = "42") long seed) {
+        try {
+            return ResponseEntity.ok(predictionService.getFloodRiskEnsemble(
+                    region, date != null ? date : LocalDate.now(), draws, seed));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Evaluate a grid of flood risk what-if scenarios and stream the cells as NDJSON.
+     * Cells are written in grid order (rainfall, then temperature, then soil saturation),
+     * one JSON object per line, and flushed block by block while the rest of the grid is evaluated.
+     *
+     * @param region The region identifier
+     * @param request Ranges and step counts for each adjustment
+     * @return One line per grid cell
+     */
+    @PostMapping(value = "/flood-risk/{region}/sweep", produces = "application/x-ndjson")
+    public ResponseEntity<?> sweepFloodRiskScenarios(@PathVariable String region,
+                                                     @RequestBody FloodRiskSweepRequestDto request) {
+        try {
+            predictionService.validateFloodRiskSweep(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(Collections.singletonMap("error", e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                predictionService.sweepFloodRiskScenarios(region, request, cells -> {
+                    try {
+                        for (Map<String, Object> cell : cells) {
+                            out.write(objectMapper.writeValueAsBytes(cell));
+                            out.write('\n');
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    /**
+     * Feed observed visitor counts into the online eco-tourism models in bulk.
+     * This changes the live models, so it is restricted to administrators.
+     *
+     * @param observations Observed visitor counts per site and date
+     * @return The number of accepted observations and the updated sample count per site
+     */
+    @PostMapping("/eco-tourism/observations")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> recordVisitorObservations(
+            @RequestBody List<VisitorObservationDto> observations) {
+        try {
+            return ResponseEntity.ok(predictionService.recordVisitorObservations(observations));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Score live readings with the online anomaly detector of each region and metric.
+     *
+     * @param readings Readings per region and metric, in arrival order
+     * @return The z-score, EWMA z-score and anomaly flag of every reading
+     */
+    @PostMapping("/anomalies/readings")
+    public ResponseEntity<Map<String, Object>> scoreSensorReadings(@RequestBody List<SensorReadingDto> readings) {
+        try {
+            return ResponseEntity.ok(predictionService.scoreSensorReadings(readings));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Scan the prediction history of every region and site for anomalies in one parallel batch.
+     *
+     * @param days Number of days up to and including today to scan
+     * @param limit Maximum number of anomalies to report
+     * @return Scan totals and the most severe anomalies, most severe first
+     */
+    @GetMapping("/anomalies/scan")
+    public ResponseEntity<Map<String, Object>> scanPredictionAnomalies(
+            @RequestParam(defaultValue = "90") int days,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(predictionService.scanPredictionAnomalies(days, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Check the prediction history of a region or site against its seasonal baseline.
+     *
+     * @param type The type of data ("eco-tourism" or "flood-risk")
+     * @param id The site or region identifier
+     * @param days Number of days up to and including today to check
+     * @param sensitivity Threshold for anomaly detection (0-1); higher flags smaller deviations
+     * @return The anomalous days with their expected levels and z-scores
+     */
+    @GetMapping("/anomalies/seasonal/{type}/{id}")
+    public ResponseEntity<Map<String, Object>> detectSeasonalAnomalies(
+            @PathVariable String type,
+            @PathVariable String id,
+            @RequestParam(defaultValue = "90") int days,
+            @RequestParam(defaultValue = "0.5") double sensitivity) {
+        try {
+            return ResponseEntity.ok(predictionService.detectSeasonalAnomalies(id, type, days, sensitivity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
 }
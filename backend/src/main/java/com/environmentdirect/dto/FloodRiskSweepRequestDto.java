@@ -0,0 +1,13 @@
+package com.environmentdirect.dto;
+
+import com.environmentdirect.service.ml.ParameterRange;
+
+/**
+ * Parameter ranges for a flood risk scenario sweep.
+ * A missing range leaves that parameter unadjusted.
+ */
+public record FloodRiskSweepRequestDto(
+    ParameterRange rainfallAdjustment,
+    ParameterRange temperatureAdjustment,
+    ParameterRange soilSaturationAdjustment
+) {}
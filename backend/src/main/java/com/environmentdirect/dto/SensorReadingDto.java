@@ -0,0 +1,10 @@
+package com.environmentdirect.dto;
+
+/**
+ * One reading of an environmental metric in a region, scored by the online anomaly detectors.
+ */
+public record SensorReadingDto(
+    String region,
+    String metric,
+    double value
+) {}
@@ -0,0 +1,12 @@
+package com.environmentdirect.dto;
+
+import java.time.LocalDate;
+
+/**
+ * An observed visitor count at an eco-tourism site on a given day.
+ */
+public record VisitorObservationDto(
+    String siteId,
+    LocalDate date,
+    int visitorCount
+) {}
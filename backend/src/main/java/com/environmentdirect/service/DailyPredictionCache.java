@@ -0,0 +1,200 @@
+package com.environmentdirect.service;
+
+import com.environmentdirect.service.ml.ModelService;
+import com.environmentdirect.service.ml.ModelVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory cache of the full daily predictions for every known region and site.
+ * Entries are keyed by entity, date and model revision, so a new or updated model is never
+ * served stale predictions. The cache is rebuilt at day rollover for today plus a horizon of
+ * days, scoring all entities in parallel; anything missing is computed on first use.
+ * <p>
+ * When a lookup finds that a model's revision has changed, e.g. after an online update, the
+ * entries of the old revision are dropped at once and a rebuild for the new revision is
+ * scheduled in the background. Rebuilds run one at a time, and a burst of updates queues at
+ * most one more.
+ */
+@Component
+public class DailyPredictionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyPredictionCache.class);
+
+    static final String FLOOD_RISK = "flood-risk";
+    static final String ECO_TOURISM = "eco-tourism";
+
+    private final MachineLearningService mlService;
+    private final ModelService modelService;
+    private final int horizonDays;
+
+    private final Executor precomputeExecutor;
+
+    private final ConcurrentMap<Key, Map<String, Object>> predictions = new ConcurrentHashMap<>();
+    // The model revision each type's entries were last cached under
+    private final ConcurrentMap<String, String> revisions = new ConcurrentHashMap<>();
+    private final AtomicBoolean precomputeQueued = new AtomicBoolean();
+    private volatile LocalDate precomputedFrom;
+
+    private record Key(String type, String id, LocalDate date, String modelRevision) {}
+
+    @Autowired
+    public DailyPredictionCache(MachineLearningService mlService, ModelService modelService,
+                                @Value("${predictions.cache.horizon-days:7}") int horizonDays) {
+        this(mlService, modelService, horizonDays,
+                Executors.newSingleThreadExecutor(Thread.ofVirtual().name("prediction-precompute").factory()));
+    }
+
+    DailyPredictionCache(MachineLearningService mlService, ModelService modelService, int horizonDays,
+                         Executor precomputeExecutor) {
+        this.mlService = mlService;
+        this.modelService = modelService;
+        this.horizonDays = horizonDays;
+        this.precomputeExecutor = precomputeExecutor;
+    }
+
+    /**
+     * Get the flood risk prediction for a known region, computing and caching it on a miss.
+     *
+     * @param region The region identifier
+     * @param date The date to predict
+     * @return The prediction, which must not be modified
+     */
+    public Map<String, Object> getFloodRisk(String region, LocalDate date) {
+        return predictions.computeIfAbsent(new Key(FLOOD_RISK, region, date, currentRevision(FLOOD_RISK)), this::compute);
+    }
+
+    /**
+     * Get the eco-tourism pressure prediction for a known site, computing and caching it on a miss.
+     *
+     * @param siteId The site identifier
+     * @param date The date to predict
+     * @return The prediction, which must not be modified
+     */
+    public Map<String, Object> getEcoTourismPressure(String siteId, LocalDate date) {
+        return predictions.computeIfAbsent(new Key(ECO_TOURISM, siteId, date, currentRevision(ECO_TOURISM)), this::compute);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void precomputeOnStartup() {
+        precompute(LocalDate.now());
+    }
+
+    @Scheduled(cron = "${predictions.cache.cron:0 0 0 * * *}")
+    public void precomputeAtRollover() {
+        precompute(LocalDate.now());
+    }
+
+    /**
+     * Compute every known region and site for a day and the following horizon days in parallel,
+     * then drop entries for earlier days or superseded model revisions. Both use the revisions
+     * current when the precompute starts; a model that changes meanwhile is caught by the next
+     * lookup, which schedules another precompute.
+     *
+     * @param today The first day to precompute
+     * @return Number of predictions computed
+     */
+    public int precompute(LocalDate today) {
+        precomputedFrom = today;
+        String floodRevision = modelRevision(FLOOD_RISK);
+        String ecoRevision = modelRevision(ECO_TOURISM);
+        revisions.put(FLOOD_RISK, floodRevision);
+        revisions.put(ECO_TOURISM, ecoRevision);
+
+        List<Key> keys = new ArrayList<>();
+        for (int day = 0; day <= horizonDays; day++) {
+            LocalDate date = today.plusDays(day);
+            for (String region : PredictionService.REGIONS) {
+                keys.add(new Key(FLOOD_RISK, region, date, floodRevision));
+            }
+            for (String siteId : PredictionService.SITE_IDS) {
+                keys.add(new Key(ECO_TOURISM, siteId, date, ecoRevision));
+            }
+        }
+
+        long start = System.nanoTime();
+        keys.parallelStream().forEach(key -> predictions.computeIfAbsent(key, this::compute));
+
+        predictions.keySet().removeIf(key -> key.date().isBefore(today)
+                || !key.modelRevision().equals(FLOOD_RISK.equals(key.type()) ? floodRevision : ecoRevision));
+
+        logger.info("Precomputed {} daily predictions from {} in {} ms", keys.size(), today,
+                (System.nanoTime() - start) / 1_000_000);
+        return keys.size();
+    }
+
+    /**
+     * @return Number of cached predictions
+     */
+    public int size() {
+        return predictions.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (precomputeExecutor instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, Object> compute(Key key) {
+        return Collections.unmodifiableMap(FLOOD_RISK.equals(key.type())
+                ? mlService.predictFloodRisk(key.id(), key.date())
+                : mlService.predictEcoTourismPressure(key.id(), key.date()));
+    }
+
+    /**
+     * Get the active revision of a type's model, dropping the entries of any other revision and
+     * scheduling a precompute if it changed since the type was last cached.
+     */
+    private String currentRevision(String type) {
+        String revision = modelRevision(type);
+        String previous = revisions.put(type, revision);
+        if (previous != null && !previous.equals(revision)) {
+            predictions.keySet().removeIf(key -> key.type().equals(type) && !key.modelRevision().equals(revision));
+            schedulePrecompute();
+        }
+        return revision;
+    }
+
+    private void schedulePrecompute() {
+        if (!precomputeQueued.compareAndSet(false, true)) {
+            return;
+        }
+        precomputeExecutor.execute(() -> {
+            precomputeQueued.set(false);
+            LocalDate today = precomputedFrom;
+            try {
+                precompute(today != null ? today : LocalDate.now());
+            } catch (RuntimeException e) {
+                logger.warn("Precomputing daily predictions after a model change failed", e);
+            }
+        });
+    }
+
+    private String modelRevision(String type) {
+        String modelName = FLOOD_RISK.equals(type) ? ModelService.FLOOD_RISK_MODEL : ModelService.ECO_TOURISM_MODEL;
+        return modelService.getModelRegistry(modelName).getActiveVersion()
+                .map(ModelVersion::getRevisionTag)
+                .orElse("none");
+    }
+}
@@ -0,0 +1,32 @@
+package com.environmentdirect.service;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Fails the load of a combined response when one of its parts had to use its fallback, so the
+ * degraded response is never cached in place of the last good one. The request that triggered
+ * the load still gets the degraded response, through {@link #bodyOrRethrow}.
+ */
+final class DegradedResponseException extends RuntimeException {
+
+    private final byte[] body;
+
+    DegradedResponseException(byte[] body) {
+        super("Response combined from fallbacks", null, false, false);
+        this.body = body;
+    }
+
+    /**
+     * Recover the degraded response from a failed load, for use in {@code exceptionally}.
+     *
+     * @return The degraded response
+     * @throws CompletionException if the load failed for any other reason
+     */
+    static byte[] bodyOrRethrow(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof DegradedResponseException degraded) {
+            return degraded.body;
+        }
+        throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+    }
+}
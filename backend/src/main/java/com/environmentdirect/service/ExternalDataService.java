@@ -1,168 +1,201 @@
 package com.environmentdirect.service;
 
+import com.environmentdirect.service.cache.AsyncRefreshingCache;
+import com.environmentdirect.service.cache.UpstreamCaches;
+import com.environmentdirect.service.http.HedgingHttpClient;
+import com.environmentdirect.service.http.UpstreamHttpClient;
+import com.environmentdirect.service.json.JsonBytes;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for fetching environmental data from external APIs.
- * Uses Java 11+ HttpClient with reactive streams for non-blocking API calls.
+ * Calls go through the shared {@link UpstreamHttpClient}, on virtual threads and within each
+ * host's bulkhead, and slow ones are hedged if the {@link HedgingHttpClient} is enabled.
+ * Responses are kept in {@link AsyncRefreshingCache}s inside the circuit breakers: concurrent
+ * requests for a location share one upstream call, stale responses are refreshed in the
+ * background, and the fallbacks serve the last good response while an API is failing.
+ * Responses are kept as the UTF-8 bytes they arrived in.
  */
 @Service
 public class ExternalDataService {
 
-    private final HttpClient httpClient;
-
-    public ExternalDataService() {
-        // Create a reusable HttpClient with configuration
-        this.httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)  // Use HTTP/2
-                .connectTimeout(Duration.ofSeconds(10))  // Set connection timeout
-                .followRedirects(HttpClient.Redirect.NORMAL)  // Follow redirects
-                .build();
+    private final HedgingHttpClient httpClient;
+    private final AsyncRefreshingCache<String, byte[]> climateCache;
+    private final AsyncRefreshingCache<String, byte[]> airQualityCache;
+    private final AsyncRefreshingCache<String, byte[]> environmentalCache;
+
+    @Autowired
+    public ExternalDataService(HedgingHttpClient httpClient, UpstreamCaches upstreamCaches) {
+        this.httpClient = httpClient;
+        this.climateCache = upstreamCaches.get("climateData");
+        this.airQualityCache = upstreamCaches.get("airQualityData");
+        this.environmentalCache = upstreamCaches.get("environmentalData");
     }
 
     /**
      * Fetch climate data asynchronously from an external API.
      * Uses reactive programming model with CompletableFuture.
-     * Results are cached to improve performance.
+     * Results are cached and refreshed in the background.
      *
      * @param location the location to fetch climate data for
-     * @return a CompletableFuture containing the response body as a String
+     * @return a CompletableFuture containing the response body as UTF-8 JSON
      */
-    @Cacheable(value = "climateData", key = "#location")
     @CircuitBreaker(name = "climateApi", fallbackMethod = "getClimateDataFallback")
     @TimeLimiter(name = "climateApi")
-    public CompletableFuture<String> fetchClimateDataAsync(String location) {
+    public CompletableFuture<byte[]> fetchClimateDataAsync(String location) {
         // In a real application, this would be a real API endpoint
-        String apiUrl = "https://api.example.com/climate?location=" + location;
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Accept", "application/json")
-                .GET()
-                .timeout(Duration.ofSeconds(30))  // Request timeout
-                .build();
-
-        // Send the request asynchronously and handle the response
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .exceptionally(ex -> {
-                    // Log the exception
-                    System.err.println("Error fetching climate data: " + ex.getMessage());
-                    // Return a fallback response
-                    return "{\"error\": \"Failed to fetch climate data\", \"location\": \"" + location + "\"}";
-                });
+        return climateCache.get(location, () -> fetch("https://api.example.com/climate?location=" + location));
     }
 
     /**
      * Fetch air quality data asynchronously from an external API.
      * Uses reactive programming model with CompletableFuture.
-     * Results are cached to improve performance.
+     * Results are cached and refreshed in the background.
      *
      * @param location the location to fetch air quality data for
-     * @return a CompletableFuture containing the response body as a String
+     * @return a CompletableFuture containing the response body as UTF-8 JSON
      */
-    @Cacheable(value = "airQualityData", key = "#location")
     @CircuitBreaker(name = "airQualityApi", fallbackMethod = "getAirQualityDataFallback")
     @TimeLimiter(name = "airQualityApi")
-    public CompletableFuture<String> fetchAirQualityDataAsync(String location) {
+    public CompletableFuture<byte[]> fetchAirQualityDataAsync(String location) {
         // In a real application, this would be a real API endpoint
-        String apiUrl = "https://api.example.com/air-quality?location=" + location;
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Accept", "application/json")
-                .GET()
-                .timeout(Duration.ofSeconds(30))  // Request timeout
-                .build();
-
-        // Send the request asynchronously and handle the response
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .exceptionally(ex -> {
-                    // Log the exception
-                    System.err.println("Error fetching air quality data: " + ex.getMessage());
-                    // Return a fallback response
-                    return "{\"error\": \"Failed to fetch air quality data\", \"location\": \"" + location + "\"}";
-                });
+        return airQualityCache.get(location, () -> fetch("https://api.example.com/air-quality?location=" + location));
     }
 
     /**
      * Fetch both climate and air quality data asynchronously and combine the results.
      * Demonstrates parallel API calls with CompletableFuture.
-     * Results are cached to improve performance.
+     * Results are cached and refreshed in the background.
      *
      * @param location the location to fetch data for
-     * @return a CompletableFuture containing the combined response as a String
+     * @return a CompletableFuture containing the combined response as UTF-8 JSON
      */
-    @Cacheable(value = "environmentalData", key = "#location")
     @CircuitBreaker(name = "environmentalApi", fallbackMethod = "getEnvironmentalDataFallback")
     @TimeLimiter(name = "environmentalApi")
-    public CompletableFuture<String> fetchEnvironmentalDataAsync(String location) {
-        CompletableFuture<String> climateFuture = fetchClimateDataAsync(location);
-        CompletableFuture<String> airQualityFuture = fetchAirQualityDataAsync(location);
+    public CompletableFuture<byte[]> fetchEnvironmentalDataAsync(String location) {
+        return environmentalCache.get(location, () -> combineEnvironmentalData(location))
+                .exceptionally(DegradedResponseException::bodyOrRethrow);
+    }
+
+    private CompletableFuture<byte[]> combineEnvironmentalData(String location) {
+        // Internal calls bypass the circuit breakers, so each part falls back on its own;
+        // a response combined from a fallback is served but not cached
+        AtomicBoolean degraded = new AtomicBoolean();
+        CompletableFuture<byte[]> climateFuture = fetchClimateDataAsync(location)
+                .exceptionally(ex -> {
+                    degraded.set(true);
+                    return climateDataFallback(location);
+                });
+        CompletableFuture<byte[]> airQualityFuture = fetchAirQualityDataAsync(location)
+                .exceptionally(ex -> {
+                    degraded.set(true);
+                    return airQualityDataFallback(location);
+                });
 
         // Combine the results of both futures when they complete
         return CompletableFuture.allOf(climateFuture, airQualityFuture)
                 .thenApply(v -> {
-                    String climateData = climateFuture.join();
-                    String airQualityData = airQualityFuture.join();
+                    byte[] climateData = climateFuture.join();
+                    byte[] airQualityData = airQualityFuture.join();
+
+                    // Splice both responses in as they are, without decoding them
+                    byte[] combined = JsonBytes.toBytes(climateData.length + airQualityData.length + 64, generator -> {
+                        generator.writeStartObject();
+                        generator.writeStringField("location", location);
+                        JsonBytes.writeRawField(generator, "climate", climateData);
+                        JsonBytes.writeRawField(generator, "airQuality", airQualityData);
+                        generator.writeEndObject();
+                    });
+                    if (degraded.get()) {
+                        throw new DegradedResponseException(combined);
+                    }
+                    return combined;
+                });
+    }
 
-                    // In a real application, you would parse the JSON and combine the data properly
-                    return "{\"location\": \"" + location + "\", " +
-                           "\"climate\": " + climateData + ", " +
-                           "\"airQuality\": " + airQualityData + "}";
+    /**
+     * Send a GET request, failing on a non-2xx response so errors are never cached.
+     */
+    private CompletableFuture<byte[]> fetch(String apiUrl) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl))
+                .header("Accept", "application/json")
+                .GET()
+                .timeout(Duration.ofSeconds(30))  // Request timeout
+                .build();
+
+        // Send the request asynchronously and handle the response
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new CompletionException(new IOException("HTTP " + response.statusCode() + " from " + apiUrl));
+                    }
+                    return response.body();
                 });
     }
 
     /**
      * Fallback method for climate data API when circuit breaker is triggered.
+     * Serves the last good response for the location, if there is one.
      * 
      * @param location the location for which data was requested
      * @param ex the exception that triggered the fallback
      * @return a CompletableFuture containing a fallback response
      */
-    public CompletableFuture<String> getClimateDataFallback(String location, Exception ex) {
+    public CompletableFuture<byte[]> getClimateDataFallback(String location, Exception ex) {
         System.err.println("Circuit breaker triggered for climate data API: " + ex.getMessage());
-        return CompletableFuture.completedFuture(
+        return CompletableFuture.completedFuture(climateDataFallback(location));
+    }
+
+    private byte[] climateDataFallback(String location) {
+        return climateCache.getLastGood(location).orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"Climate data temporarily unavailable\", \"location\": \"" + location + "\"}"
-        );
+        ));
     }
 
     /**
      * Fallback method for air quality data API when circuit breaker is triggered.
+     * Serves the last good response for the location, if there is one.
      * 
      * @param location the location for which data was requested
      * @param ex the exception that triggered the fallback
      * @return a CompletableFuture containing a fallback response
      */
-    public CompletableFuture<String> getAirQualityDataFallback(String location, Exception ex) {
+    public CompletableFuture<byte[]> getAirQualityDataFallback(String location, Exception ex) {
         System.err.println("Circuit breaker triggered for air quality data API: " + ex.getMessage());
-        return CompletableFuture.completedFuture(
+        return CompletableFuture.completedFuture(airQualityDataFallback(location));
+    }
+
+    private byte[] airQualityDataFallback(String location) {
+        return airQualityCache.getLastGood(location).orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"Air quality data temporarily unavailable\", \"location\": \"" + location + "\"}"
-        );
+        ));
     }
 
     /**
      * Fallback method for environmental data API when circuit breaker is triggered.
+     * Serves the last good response for the location, if there is one.
      * 
      * @param location the location for which data was requested
      * @param ex the exception that triggered the fallback
      * @return a CompletableFuture containing a fallback response
      */
-    public CompletableFuture<String> getEnvironmentalDataFallback(String location, Exception ex) {
+    public CompletableFuture<byte[]> getEnvironmentalDataFallback(String location, Exception ex) {
         System.err.println("Circuit breaker triggered for environmental data API: " + ex.getMessage());
-        return CompletableFuture.completedFuture(
+        return CompletableFuture.completedFuture(environmentalCache.getLastGood(location).orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"Environmental data temporarily unavailable\", \"location\": \"" + location + "\"}"
-        );
+        )));
     }
 }
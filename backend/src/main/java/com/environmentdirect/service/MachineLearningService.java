@@ -1,13 +1,21 @@
 package com.environmentdirect.service;
 
+import com.environmentdirect.dto.VisitorObservationDto;
 import com.environmentdirect.service.ml.AnomalyDetectionService;
+import com.environmentdirect.service.ml.AnomalyScan;
+import com.environmentdirect.service.ml.FloodRiskEnsemble;
 import com.environmentdirect.service.ml.ModelService;
+import com.environmentdirect.service.ml.ParameterRange;
+import com.environmentdirect.service.ml.PredictionHistory;
+import com.environmentdirect.service.ml.PredictionHistoryStore;
 import com.environmentdirect.service.ml.ScenarioModelingService;
+import com.environmentdirect.service.ml.SeasonalBaseline;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
 
 /**
  * Service for machine learning-based predictions.
@@ -19,14 +27,23 @@ public class MachineLearningService {
     private final ModelService modelService;
     private final AnomalyDetectionService anomalyDetectionService;
     private final ScenarioModelingService scenarioModelingService;
+    private final PredictionHistoryStore predictionHistoryStore;
 
-    @Autowired
     public MachineLearningService(ModelService modelService, 
                                  AnomalyDetectionService anomalyDetectionService,
                                  ScenarioModelingService scenarioModelingService) {
+        this(modelService, anomalyDetectionService, scenarioModelingService, new PredictionHistoryStore());
+    }
+
+    @Autowired
+    public MachineLearningService(ModelService modelService, 
+                                 AnomalyDetectionService anomalyDetectionService,
+                                 ScenarioModelingService scenarioModelingService,
+                                 PredictionHistoryStore predictionHistoryStore) {
         this.modelService = modelService;
         this.anomalyDetectionService = anomalyDetectionService;
         this.scenarioModelingService = scenarioModelingService;
+        this.predictionHistoryStore = predictionHistoryStore;
     }
 
     /**
@@ -38,13 +55,10 @@ public class MachineLearningService {
      */
     public Map<String, Object> predictEcoTourismPressure(String siteId, LocalDate currentDate) {
         // Determine if it's a weekend
-        DayOfWeek dayOfWeek = currentDate.getDayOfWeek();
-        boolean isWeekend = (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY);
+        boolean isWeekend = isWeekend(currentDate);
 
         // Determine seasonal adjustment based on month
-        int month = currentDate.getMonthValue();
-        boolean isHighSeason = (month >= 12 || month <= 4);
-        double seasonalAdjustment = isHighSeason ? 1.2 : 0.9;
+        double seasonalAdjustment = getSeasonalAdjustment(currentDate);
 
         // Use the ScenarioModelingService to generate a more accurate prediction
         Map<String, Object> prediction = scenarioModelingService.generateEcoTourismScenario(
@@ -100,20 +114,9 @@ public class MachineLearningService {
      * @return A map containing the prediction data
      */
     public Map<String, Object> predictFloodRisk(String region, LocalDate currentDate) {
-        // Determine rainfall adjustment based on month (rainy season)
-        int month = currentDate.getMonthValue();
-        boolean isRainySeason = (month >= 5 && month <= 11);
-        double rainfallAdjustment = isRainySeason ? 1.3 : 0.8;
-
-        // Determine temperature adjustment based on season
-        double temperatureAdjustment = isRainySeason ? 1.5 : 0.0;
-
-        // Determine soil saturation based on recent weather patterns
-        // In a real app, this would come from actual weather data
-        Random random = new Random(currentDate.toEpochDay()); // Seed with date for consistency
-        double soilSaturationAdjustment = isRainySeason ? 
-            1.0 + (random.nextDouble() * 0.5) : // 1.0-1.5 in rainy season
-            0.7 + (random.nextDouble() * 0.3);  // 0.7-1.0 in dry season
+        double rainfallAdjustment = getRainfallAdjustment(currentDate);
+        double temperatureAdjustment = getTemperatureAdjustment(currentDate);
+        double soilSaturationAdjustment = getSoilSaturationAdjustment(currentDate);
 
         // Use the ScenarioModelingService to generate a more accurate prediction
         Map<String, Object> prediction = scenarioModelingService.generateFloodRiskScenario(
@@ -132,41 +135,510 @@ public class MachineLearningService {
     }
 
     /**
-     * Get historical data comparison for a specific site or region.
+     * Predict the distribution of flood risk for a region with a Monte Carlo ensemble
+     * around the same seasonal adjustments as {@link #predictFloodRisk}.
+     * 
+     * @param region The identifier for the region
+     * @param currentDate The date to predict (for seasonal factors)
+     * @param draws Number of ensemble members
+     * @param seed Seed for the random perturbations
+     * @return A map containing the risk level distribution, quantiles and exceedance probabilities
+     */
+    public Map<String, Object> predictFloodRiskEnsemble(String region, LocalDate currentDate, int draws, long seed) {
+        Map<String, Object> prediction = scenarioModelingService.generateFloodRiskEnsemble(
+            region,
+            getRainfallAdjustment(currentDate),
+            getTemperatureAdjustment(currentDate),
+            getSoilSaturationAdjustment(currentDate),
+            FloodRiskEnsemble.Perturbation.DEFAULT,
+            draws,
+            seed
+        );
+
+        prediction.put("predictionDate", Instant.now().toString());
+        prediction.put("forecastDate", currentDate.toString());
+        return prediction;
+    }
+
+    /**
+     * Evaluate a grid of flood risk scenarios for a region, passing result cells to the sink in blocks.
+     * 
+     * @param region The identifier for the region
+     * @param rainfallAdjustment Rainfall adjustment factors
+     * @param temperatureAdjustment Temperature adjustments in degrees Celsius
+     * @param soilSaturationAdjustment Soil saturation adjustment factors
+     * @param sink Receives each block of result cells, in grid order
+     * @return Number of cells evaluated
+     */
+    public int sweepFloodRiskScenarios(String region, ParameterRange rainfallAdjustment,
+                                       ParameterRange temperatureAdjustment, ParameterRange soilSaturationAdjustment,
+                                       Consumer<List<Map<String, Object>>> sink) {
+        return scenarioModelingService.sweepFloodRiskScenarios(
+            region, rainfallAdjustment, temperatureAdjustment, soilSaturationAdjustment, sink);
+    }
+
+    /**
+     * Get historical data comparison for a specific site or region over the last 30 days.
      * 
      * @param id The identifier for the site or region
      * @param type The type of data ("eco-tourism" or "flood-risk")
      * @return A map containing historical data and current predictions
      */
     public Map<String, Object> getHistoricalComparison(String id, String type) {
-        Map<String, Object> comparison = new HashMap<>();
-
-        // Generate historical data points (in a real app, this would come from a database)
-        List<Map<String, Object>> historicalData = generateHistoricalData(id, type);
+        return getHistoricalComparison(id, type, 30);
+    }
 
-        // Get current prediction
-        Map<String, Object> currentPrediction;
-        if ("eco-tourism".equals(type)) {
-            currentPrediction = predictEcoTourismPressure(id, LocalDate.now());
+    /**
+     * Get historical data comparison for a specific site or region.
+     * The history is read from the materialized prediction history, so only the window's data
+     * points are built per request and the trend is computed from the history's prefix sums.
+     * Entities or days that have not been materialized are scored in one batch instead. The
+     * current prediction is always today's full scenario prediction from the active models.
+     * 
+     * @param id The identifier for the site or region
+     * @param type The type of data ("eco-tourism" or "flood-risk")
+     * @param days Number of days before today to include
+     * @return A map containing historical data and current predictions
+     */
+    public Map<String, Object> getHistoricalComparison(String id, String type, int days) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days);
+        LocalDate yesterday = today.minusDays(1);
+
+        PredictionHistory.Window window = predictionHistoryStore.find(type, id)
+            .map(history -> history.window(from, yesterday))
+            .filter(w -> w.covers(from, yesterday))
+            .orElseGet(() -> {
+                // Not materialized (yet): score the whole window in one batch without storing it
+                PredictionHistory transientHistory = new PredictionHistory();
+                appendPredictions(transientHistory, type, id, from, days);
+                return transientHistory.window(from, yesterday);
+            });
+
+        boolean ecoTourism = "eco-tourism".equals(type);
+        String levelField = ecoTourism ? "expectedVisitorLoad" : "floodRiskLevel";
+
+        List<Map<String, Object>> historicalData = new ArrayList<>(days);
+        if (window.size() > 0) {
+            for (int i = 0; i < window.size(); i++) {
+                Map<String, Object> dataPoint = new HashMap<>();
+                dataPoint.put("date", window.date(i).format(DateTimeFormatter.ISO_DATE));
+                dataPoint.put(levelField, getLevelName(window.level(i)));
+                dataPoint.put("confidenceScore", window.confidence(i));
+                historicalData.add(dataPoint);
+            }
         } else {
-            currentPrediction = predictFloodRisk(id, LocalDate.now());
+            // No model to score the entity with: every day is unknown, as for a single prediction
+            double confidence = modelService.getPredictionConfidence(
+                ecoTourism ? ModelService.ECO_TOURISM_MODEL : ModelService.FLOOD_RISK_MODEL, id);
+            for (int i = 0; i < days; i++) {
+                Map<String, Object> dataPoint = new HashMap<>();
+                dataPoint.put("date", from.plusDays(i).format(DateTimeFormatter.ISO_DATE));
+                dataPoint.put(levelField, getLevelName(-1));
+                dataPoint.put("confidenceScore", confidence);
+                historicalData.add(dataPoint);
+            }
         }
 
-        // Calculate trend information
-        Map<String, Object> trendInfo = calculateTrends(historicalData, currentPrediction, type);
+        // Today's prediction comes from the active models, so it reflects model updates made since materialization
+        Map<String, Object> currentPrediction = ecoTourism
+            ? predictEcoTourismPressure(id, today)
+            : predictFloodRisk(id, today);
 
-        // Populate the comparison map
+        Map<String, Object> comparison = new HashMap<>();
         comparison.put("id", id);
         comparison.put("type", type);
+        comparison.put("days", days);
         comparison.put("historicalData", historicalData);
         comparison.put("currentPrediction", currentPrediction);
-        comparison.put("trendInfo", trendInfo);
+        comparison.put("trendInfo", calculateTrends(window, currentLevel(currentPrediction, ecoTourism), type));
 
         return comparison;
     }
 
+    // The numeric level of a scenario prediction, or -1 if the scenario has none
+    private static int currentLevel(Map<String, Object> scenario, boolean ecoTourism) {
+        if (scenario.get("prediction") instanceof Map<?, ?> prediction
+                && prediction.get(ecoTourism ? "numericLoadLevel" : "numericRiskLevel") instanceof Number level) {
+            return level.intValue();
+        }
+        return -1;
+    }
+
+    /**
+     * Scan the materialized prediction history of every tracked region and site for anomalies
+     * in one parallel batch.
+     * 
+     * @param days Number of days up to and including today to scan
+     * @param limit Maximum number of anomalies to report
+     * @return A map containing scan totals and the most severe anomalies, most severe first
+     */
+    public Map<String, Object> scanPredictionAnomalies(int days, int limit) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days - 1L);
+
+        List<AnomalyScan.Series> series = new ArrayList<>();
+        for (String key : new TreeSet<>(predictionHistoryStore.getTrackedKeys())) {
+            int separator = key.indexOf(':');
+            String type = key.substring(0, separator);
+            predictionHistoryStore.find(type, key.substring(separator + 1)).ifPresent(history -> {
+                PredictionHistory.Window window = history.window(from, today);
+                if (window.size() > 0) {
+                    series.add(new AnomalyScan.Series(key, historyMetric(type), window.date(0), levels(window)));
+                }
+            });
+        }
+
+        AnomalyScan.Report report = anomalyDetectionService.scanAnomalies(series, limit);
+        List<Map<String, Object>> anomalies = new ArrayList<>(report.findings().size());
+        for (AnomalyScan.Finding finding : report.findings()) {
+            Map<String, Object> anomaly = new HashMap<>();
+            anomaly.put("entity", finding.entity());
+            anomaly.put("metric", finding.metric());
+            anomaly.put("date", finding.date().format(DateTimeFormatter.ISO_DATE));
+            anomaly.put("level", getLevelName((int) finding.value()));
+            anomaly.put("zScore", finding.zScore());
+            anomaly.put("iqrOutlier", finding.iqrOutlier());
+            anomaly.put("changePoint", finding.changePoint());
+            anomalies.add(anomaly);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("from", from.format(DateTimeFormatter.ISO_DATE));
+        result.put("to", today.format(DateTimeFormatter.ISO_DATE));
+        result.put("seriesScanned", report.seriesScanned());
+        result.put("pointsScanned", report.pointsScanned());
+        result.put("anomalyCount", report.anomalyCount());
+        result.put("anomalies", anomalies);
+        return result;
+    }
+
+    /**
+     * Rebuild the seasonal baseline of every tracked region and site from its whole materialized
+     * history. Entities with less than a year of history are skipped until they have enough.
+     * 
+     * @return Number of baselines built
+     */
+    public int rebuildSeasonalBaselines() {
+        return (int) predictionHistoryStore.getTrackedKeys().parallelStream()
+                .filter(key -> {
+                    int separator = key.indexOf(':');
+                    String type = key.substring(0, separator);
+                    PredictionHistory.Window window = predictionHistoryStore.find(type, key.substring(separator + 1))
+                            .map(history -> history.window(LocalDate.MIN, LocalDate.MAX))
+                            .orElse(null);
+                    if (window == null || window.size() < SeasonalBaseline.MIN_HISTORY_DAYS) {
+                        return false;
+                    }
+                    anomalyDetectionService.updateSeasonalBaseline(key, historyMetric(type), window.date(0), levels(window));
+                    return true;
+                })
+                .count();
+    }
+
+    /**
+     * Detect seasonal anomalies in the materialized history of a region or site, against the
+     * seasonal baseline built by {@link #rebuildSeasonalBaselines()}. Each day is checked
+     * against the expected level and spread of its day of year.
+     * 
+     * @param type The type of prediction ("eco-tourism" or "flood-risk")
+     * @param id The identifier for the site or region
+     * @param days Number of days up to and including today to check
+     * @param sensitivityThreshold Threshold for anomaly detection (0-1)
+     * @return A map containing whether a baseline exists and the anomalous days
+     */
+    public Map<String, Object> detectSeasonalAnomalies(String type, String id, int days, double sensitivityThreshold) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days - 1L);
+        String entity = type + ":" + id;
+        String metric = historyMetric(type);
+        boolean eco = "eco-tourism".equals(type);
+
+        List<Map<String, Object>> anomalies = new ArrayList<>();
+        int pointsChecked = 0;
+        Optional<SeasonalBaseline> baseline = anomalyDetectionService.getSeasonalBaseline(entity, metric);
+        PredictionHistory.Window window = predictionHistoryStore.find(type, id)
+                .map(history -> history.window(from, today))
+                .orElse(null);
+        if (baseline.isPresent() && window != null && window.size() > 0) {
+            pointsChecked = window.size();
+            for (int i : anomalyDetectionService.detectSeasonalAnomalies(baseline.get(), window.date(0),
+                    levels(window), sensitivityThreshold)) {
+                Map<String, Object> anomaly = new HashMap<>();
+                anomaly.put("date", window.date(i).format(DateTimeFormatter.ISO_DATE));
+                anomaly.put("level", getLevelName(window.level(i)));
+                anomaly.put("expectedLevel", baseline.get().expected(window.date(i)));
+                anomaly.put("zScore", baseline.get().zScore(window.date(i), window.level(i)));
+                anomalies.add(anomaly);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", type);
+        result.put(eco ? "siteId" : "region", id);
+        result.put("metric", metric);
+        result.put("from", from.format(DateTimeFormatter.ISO_DATE));
+        result.put("to", today.format(DateTimeFormatter.ISO_DATE));
+        result.put("baselineAvailable", baseline.isPresent());
+        result.put("pointsChecked", pointsChecked);
+        result.put("anomalyCount", anomalies.size());
+        result.put("anomalies", anomalies);
+        return result;
+    }
+
+    private static String historyMetric(String type) {
+        return "eco-tourism".equals(type) ? "expectedVisitorLoad" : "floodRiskLevel";
+    }
+
+    private static double[] levels(PredictionHistory.Window window) {
+        double[] levels = new double[window.size()];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = window.level(i);
+        }
+        return levels;
+    }
+
+    /**
+     * Append the predictions for the days after the last materialized day of an entity, up to a given day.
+     * An entity without history is backfilled for the given number of days.
+     * 
+     * @param type The type of prediction ("eco-tourism" or "flood-risk")
+     * @param id The identifier for the site or region
+     * @param through The last day to materialize (inclusive)
+     * @param backfillDays Number of days to materialize for an entity without history
+     * @return Number of days appended
+     */
+    public int materializePredictionHistory(String type, String id, LocalDate through, int backfillDays) {
+        PredictionHistory history = predictionHistoryStore.getOrCreate(type, id);
+        synchronized (history) {
+            LocalDate last = history.getLastDate();
+            LocalDate start = last != null ? last.plusDays(1) : through.minusDays(backfillDays - 1L);
+            int days = (int) (through.toEpochDay() - start.toEpochDay()) + 1;
+            if (days <= 0) {
+                return 0;
+            }
+            return appendPredictions(history, type, id, start, days);
+        }
+    }
+
+    private int appendPredictions(PredictionHistory history, String type, String id, LocalDate start, int days) {
+        int[] levels;
+        double confidence;
+        if ("eco-tourism".equals(type)) {
+            levels = predictVisitorLoadLevels(id, start, days);
+            confidence = modelService.getPredictionConfidence(ModelService.ECO_TOURISM_MODEL, id);
+        } else {
+            levels = predictFloodRiskLevels(id, start, days);
+            confidence = modelService.getPredictionConfidence(ModelService.FLOOD_RISK_MODEL, id);
+        }
+        if (levels == null) {
+            return 0;
+        }
+
+        for (int i = 0; i < days; i++) {
+            history.append(start.plusDays(i), levels[i], confidence);
+        }
+        return days;
+    }
+
+    /**
+     * Predict flood risk levels for one region on consecutive days in one batch.
+     * 
+     * @param region The identifier for the region
+     * @param start The first date to predict
+     * @param days Number of days to predict
+     * @return One risk level (0-4) per day, or null if the model is not available
+     */
+    public int[] predictFloodRiskLevels(String region, LocalDate start, int days) {
+        DailyFactors factors = dailyFactors(start, days);
+        double[] features = new double[days * 5];
+        scenarioModelingService.fillFloodRiskFeatures(region, factors.rainfall(), factors.temperature(),
+            factors.soilSaturation(), features, 0);
+        return modelService.predictFloodRiskBatch(features);
+    }
+
+    /**
+     * Predict visitor load levels for one eco-tourism site on consecutive days in one batch.
+     * 
+     * @param siteId The identifier for the tourism site
+     * @param start The first date to predict
+     * @param days Number of days to predict
+     * @return One load level (0-4) per day, or null if the site has no model
+     */
+    public int[] predictVisitorLoadLevels(String siteId, LocalDate start, int days) {
+        DailyFactors factors = dailyFactors(start, days);
+        double[] seasonFactors = new double[days];
+        for (int i = 0; i < days; i++) {
+            // Default marketing factor, as in predictEcoTourismPressure
+            seasonFactors[i] = scenarioModelingService.getAdjustedSeasonFactor(siteId, factors.seasonal()[i], 1.0);
+        }
+        return modelService.predictVisitorLoadBatch(siteId, seasonFactors, factors.weekends());
+    }
+
+    // Date-dependent model inputs for consecutive days, shared by every region and site
+    private record DailyFactors(double[] rainfall, double[] temperature, double[] soilSaturation,
+                                double[] seasonal, boolean[] weekends) {}
+
+    private DailyFactors dailyFactors(LocalDate start, int days) {
+        DailyFactors factors = new DailyFactors(new double[days], new double[days], new double[days],
+            new double[days], new boolean[days]);
+        for (int i = 0; i < days; i++) {
+            LocalDate date = start.plusDays(i);
+            factors.rainfall()[i] = getRainfallAdjustment(date);
+            factors.temperature()[i] = getTemperatureAdjustment(date);
+            factors.soilSaturation()[i] = getSoilSaturationAdjustment(date);
+            factors.seasonal()[i] = getSeasonalAdjustment(date);
+            factors.weekends()[i] = isWeekend(date);
+        }
+        return factors;
+    }
+
+    /**
+     * Predict flood risk for several regions and visitor load for several sites over a date range.
+     * All predictions are scored in one batch per model instead of one scenario per call.
+     * 
+     * @param regions The regions to predict flood risk for
+     * @param siteIds The eco-tourism sites to predict visitor load for
+     * @param startDate The first date to predict (inclusive)
+     * @param endDate The last date to predict (inclusive)
+     * @return A map containing the dates and, per region and site, one level per date
+     */
+    public Map<String, Object> predictBulk(List<String> regions, List<String> siteIds,
+                                           LocalDate startDate, LocalDate endDate) {
+        int days = (int) (endDate.toEpochDay() - startDate.toEpochDay()) + 1;
+
+        // Date-dependent adjustments, shared by every region and site
+        DailyFactors factors = dailyFactors(startDate, days);
+        List<String> dates = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            dates.add(startDate.plusDays(i).format(DateTimeFormatter.ISO_DATE));
+        }
+
+        // One row-major feature matrix for every (region, date) pair
+        double[] floodFeatures = new double[regions.size() * days * 5];
+        for (int r = 0; r < regions.size(); r++) {
+            scenarioModelingService.fillFloodRiskFeatures(regions.get(r), factors.rainfall(),
+                    factors.temperature(), factors.soilSaturation(), floodFeatures, r * days * 5);
+        }
+        int[] floodLevels = modelService.predictFloodRiskBatch(floodFeatures);
+
+        Map<String, Object> floodRisk = new LinkedHashMap<>();
+        for (int r = 0; r < regions.size(); r++) {
+            floodRisk.put(regions.get(r), toLevelNames(floodLevels, r * days, days));
+        }
+
+        Map<String, Object> ecoTourism = new LinkedHashMap<>();
+        for (String siteId : siteIds) {
+            double[] seasonFactors = new double[days];
+            for (int i = 0; i < days; i++) {
+                // Default marketing factor, as in predictEcoTourismPressure
+                seasonFactors[i] = scenarioModelingService.getAdjustedSeasonFactor(siteId, factors.seasonal()[i], 1.0);
+            }
+            int[] loadLevels = modelService.predictVisitorLoadBatch(siteId, seasonFactors, factors.weekends());
+            ecoTourism.put(siteId, toLevelNames(loadLevels, 0, days));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("startDate", startDate.format(DateTimeFormatter.ISO_DATE));
+        result.put("endDate", endDate.format(DateTimeFormatter.ISO_DATE));
+        result.put("dates", dates);
+        result.put("floodRisk", floodRisk);
+        result.put("ecoTourism", ecoTourism);
+        result.put("predictionDate", Instant.now().toString());
+        return result;
+    }
+
+    /**
+     * Feed observed visitor counts into the online eco-tourism models.
+     * Counts are converted to load levels against each site's capacity and folded into
+     * the per-site regression statistics. The updated models are persisted by the model
+     * service's periodic save.
+     * 
+     * @param observations Observed visitor counts per site and date
+     * @return A map containing the number of accepted observations and the updated sample count per site
+     */
+    public Map<String, Object> recordVisitorObservations(List<VisitorObservationDto> observations) {
+        int size = observations.size();
+        String[] siteIds = new String[size];
+        double[] seasonFactors = new double[size];
+        boolean[] weekends = new boolean[size];
+        double[] visitorLoads = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            VisitorObservationDto observation = observations.get(i);
+            siteIds[i] = observation.siteId();
+            // Default marketing factor, as in predictEcoTourismPressure
+            seasonFactors[i] = scenarioModelingService.getAdjustedSeasonFactor(
+                observation.siteId(), getSeasonalAdjustment(observation.date()), 1.0);
+            weekends[i] = isWeekend(observation.date());
+            visitorLoads[i] = scenarioModelingService.estimateVisitorLoadLevel(
+                observation.siteId(), observation.visitorCount());
+        }
+
+        Map<String, Long> sampleCounts = modelService.recordVisitorObservations(
+            siteIds, seasonFactors, weekends, visitorLoads);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("accepted", size);
+        result.put("sampleCounts", sampleCounts);
+        return result;
+    }
+
     // Helper methods
 
+    private boolean isWeekend(LocalDate date) {
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        return dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+    }
+
+    private double getSeasonalAdjustment(LocalDate date) {
+        // High season runs from December to April
+        int month = date.getMonthValue();
+        boolean isHighSeason = (month >= 12 || month <= 4);
+        return isHighSeason ? 1.2 : 0.9;
+    }
+
+    private boolean isRainySeason(LocalDate date) {
+        int month = date.getMonthValue();
+        return month >= 5 && month <= 11;
+    }
+
+    private double getRainfallAdjustment(LocalDate date) {
+        return isRainySeason(date) ? 1.3 : 0.8;
+    }
+
+    private double getTemperatureAdjustment(LocalDate date) {
+        return isRainySeason(date) ? 1.5 : 0.0;
+    }
+
+    private double getSoilSaturationAdjustment(LocalDate date) {
+        // Determine soil saturation based on recent weather patterns
+        // In a real app, this would come from actual weather data
+        Random random = new Random(date.toEpochDay()); // Seed with date for consistency
+        return isRainySeason(date) ? 
+            1.0 + (random.nextDouble() * 0.5) : // 1.0-1.5 in rainy season
+            0.7 + (random.nextDouble() * 0.3);  // 0.7-1.0 in dry season
+    }
+
+    private List<String> toLevelNames(int[] levels, int offset, int length) {
+        List<String> names = new ArrayList<>(length);
+        for (int i = offset; i < offset + length; i++) {
+            names.add(levels == null ? "Unknown" : getLevelName(levels[i]));
+        }
+        return names;
+    }
+
+    private String getLevelName(int level) {
+        switch (level) {
+            case 4: return "Very High";
+            case 3: return "High";
+            case 2: return "Moderate";
+            case 1: return "Low";
+            case 0: return "Very Low";
+            default: return "Unknown";
+        }
+    }
+
     private Map<String, Object> getBaseSiteData(String siteId) {
         Map<String, Object> baseData = new HashMap<>();
 
@@ -497,173 +969,33 @@ public class MachineLearningService {
         return "Very Low";
     }
 
-    private List<Map<String, Object>> generateHistoricalData(String id, String type) {
-        List<Map<String, Object>> historicalData = new ArrayList<>();
-
-        // Generate data for the past 30 days
-        LocalDate today = LocalDate.now();
-        for (int i = 30; i > 0; i--) {
-            LocalDate date = today.minusDays(i);
-
-            Map<String, Object> dataPoint = new HashMap<>();
-            dataPoint.put("date", date.format(DateTimeFormatter.ISO_DATE));
-
-            if ("eco-tourism".equals(type)) {
-                Map<String, Object> prediction = predictEcoTourismPressure(id, date);
-                // Extract from nested prediction map if it exists
-                Map<String, Object> predictionMap = (Map<String, Object>) prediction.get("prediction");
-                if (predictionMap != null) {
-                    dataPoint.put("expectedVisitorLoad", predictionMap.get("expectedVisitorLoad"));
-                    dataPoint.put("confidenceScore", predictionMap.get("confidenceScore"));
-                } else {
-                    dataPoint.put("expectedVisitorLoad", prediction.get("expectedVisitorLoad"));
-                    dataPoint.put("confidenceScore", prediction.get("confidenceScore"));
-                }
-            } else {
-                Map<String, Object> prediction = predictFloodRisk(id, date);
-                // Extract from nested prediction map if it exists
-                Map<String, Object> predictionMap = (Map<String, Object>) prediction.get("prediction");
-                if (predictionMap != null) {
-                    dataPoint.put("floodRiskLevel", predictionMap.get("floodRiskLevel"));
-                    dataPoint.put("confidenceScore", predictionMap.get("confidenceScore"));
-                } else {
-                    dataPoint.put("floodRiskLevel", prediction.get("floodRiskLevel"));
-                    dataPoint.put("confidenceScore", prediction.get("confidenceScore"));
-                }
+    private Map<String, Object> calculateTrends(PredictionHistory.Window history, int currentLevel, String type) {
+        Map<String, Object> trendInfo = new HashMap<>();
+        boolean ecoTourism = "eco-tourism".equals(type);
+
+        // Direction compares today's prediction with the most recent day of history
+        String trendDirection = "stable";
+        int size = history.size();
+        if (size >= 1 && currentLevel >= 0) {
+            int recentValue = history.level(size - 1);
+            if (currentLevel > recentValue) {
+                trendDirection = ecoTourism ? "increasing" : "worsening";
+            } else if (currentLevel < recentValue) {
+                trendDirection = ecoTourism ? "decreasing" : "improving";
             }
-
-            historicalData.add(dataPoint);
         }
 
-        return historicalData;
-    }
-
-    private Map<String, Object> calculateTrends(List<Map<String, Object>> historicalData, 
-                                               Map<String, Object> currentPrediction, 
-                                               String type) {
-        Map<String, Object> trendInfo = new HashMap<>();
-
-        // Calculate trend direction and magnitude
-        String trendDirection;
-        double trendMagnitude;
-
-        if ("eco-tourism".equals(type)) {
-            trendDirection = calculateVisitorLoadTrend(historicalData, currentPrediction);
-            trendMagnitude = calculateTrendMagnitude(historicalData, "expectedVisitorLoad");
-        } else {
-            trendDirection = calculateFloodRiskTrend(historicalData, currentPrediction);
-            trendMagnitude = calculateTrendMagnitude(historicalData, "floodRiskLevel");
-        }
+        // Average day-to-day change and mean level over the history, from prefix sums
+        double trendMagnitude = history.meanAbsoluteChange();
 
         trendInfo.put("direction", trendDirection);
         trendInfo.put("magnitude", trendMagnitude);
+        trendInfo.put("averageLevel", history.averageLevel());
         trendInfo.put("description", generateTrendDescription(trendDirection, trendMagnitude, type));
 
         return trendInfo;
     }
 
-    private String calculateVisitorLoadTrend(List<Map<String, Object>> historicalData, 
-                                           Map<String, Object> currentPrediction) {
-        if (historicalData.isEmpty()) {
-            return "stable";
-        }
-
-        // Get the most recent historical data point
-        Map<String, Object> recentData = historicalData.get(historicalData.size() - 1);
-
-        // Compare load levels
-        String recentLoad = (String) recentData.get("expectedVisitorLoad");
-
-        // Get the current load level from the nested prediction map
-        Map<String, Object> predictionMap = (Map<String, Object>) currentPrediction.get("prediction");
-        String currentLoad = predictionMap != null ? 
-            (String) predictionMap.get("expectedVisitorLoad") : 
-            (String) currentPrediction.get("expectedVisitorLoad");
-
-        int recentValue = getLoadValue(recentLoad);
-        int currentValue = getLoadValue(currentLoad);
-
-        if (currentValue > recentValue) return "increasing";
-        if (currentValue < recentValue) return "decreasing";
-        return "stable";
-    }
-
-    private String calculateFloodRiskTrend(List<Map<String, Object>> historicalData, 
-                                         Map<String, Object> currentPrediction) {
-        if (historicalData.isEmpty()) {
-            return "stable";
-        }
-
-        // Get the most recent historical data point
-        Map<String, Object> recentData = historicalData.get(historicalData.size() - 1);
-
-        // Compare risk levels
-        String recentRisk = (String) recentData.get("floodRiskLevel");
-
-        // Get the current risk level from the nested prediction map
-        Map<String, Object> predictionMap = (Map<String, Object>) currentPrediction.get("prediction");
-        String currentRisk = predictionMap != null ? 
-            (String) predictionMap.get("floodRiskLevel") : 
-            (String) currentPrediction.get("floodRiskLevel");
-
-        int recentValue = getRiskValue(recentRisk);
-        int currentValue = getRiskValue(currentRisk);
-
-        if (currentValue > recentValue) return "worsening";
-        if (currentValue < recentValue) return "improving";
-        return "stable";
-    }
-
-    private double calculateTrendMagnitude(List<Map<String, Object>> historicalData, String field) {
-        if (historicalData.size() < 2) {
-            return 0.0;
-        }
-
-        // Calculate average change over time
-        double totalChange = 0.0;
-        int changeCount = 0;
-
-        for (int i = 1; i < historicalData.size(); i++) {
-            Map<String, Object> previous = historicalData.get(i - 1);
-            Map<String, Object> current = historicalData.get(i);
-
-            int previousValue, currentValue;
-
-            if ("expectedVisitorLoad".equals(field)) {
-                previousValue = getLoadValue((String) previous.get(field));
-                currentValue = getLoadValue((String) current.get(field));
-            } else {
-                previousValue = getRiskValue((String) previous.get(field));
-                currentValue = getRiskValue((String) current.get(field));
-            }
-
-            totalChange += Math.abs(currentValue - previousValue);
-            changeCount++;
-        }
-
-        return changeCount > 0 ? totalChange / changeCount : 0.0;
-    }
-
-    private int getLoadValue(String load) {
-        switch (load) {
-            case "Very High": return 4;
-            case "High": return 3;
-            case "Moderate": return 2;
-            case "Low": return 1;
-            default: return 0;
-        }
-    }
-
-    private int getRiskValue(String risk) {
-        switch (risk) {
-            case "Very High": return 4;
-            case "High": return 3;
-            case "Moderate": return 2;
-            case "Low": return 1;
-            default: return 0;
-        }
-    }
-
     private String generateTrendDescription(String direction, double magnitude, String type) {
         StringBuilder description = new StringBuilder();
 
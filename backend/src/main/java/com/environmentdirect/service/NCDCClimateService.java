@@ -1,262 +1,460 @@
 package com.environmentdirect.service;
 
+import com.environmentdirect.service.cache.AsyncRefreshingCache;
+import com.environmentdirect.service.cache.UpstreamCaches;
+import com.environmentdirect.service.json.JsonBytes;
+import com.environmentdirect.service.ncdc.NcdcObservationStore;
+import com.environmentdirect.service.ncdc.NcdcObservations;
+import com.environmentdirect.service.ncdc.NcdcPageFetcher;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for fetching real climate data from NOAA NCDC API.
- * Uses official NCDC web services with authenticated token.
+ * Uses official NCDC web services with authenticated token. Every list is fetched in full
+ * through {@link NcdcPageFetcher}, which pages past NCDC's 1000-result limit under its rate limits.
+ * Daily GHCND observations of synced locations, limited to the synced datatypes, are served from
+ * the local {@link NcdcObservationStore}, which {@link #syncObservations} keeps current with small
+ * daily deltas; requests outside the synced range or for other datatypes go to NCDC. Responses
+ * are kept in {@link AsyncRefreshingCache}s inside the circuit breaker, so concurrent requests
+ * share one load, stale responses are refreshed in the background, and the fallbacks serve the
+ * last good response while NCDC is failing.
  */
 @Service
 public class NCDCClimateService {
 
-    private static final String NCDC_TOKEN = "FjyPFiDCxGCZHRpweDqhaeQWCSkmQAad";
-    private static final String BASE_URL = "https://www.ncdc.noaa.gov/cdo-web/api/v2/";
-    
     // Dominica location identifiers
     private static final String DOMINICA_FIPS = "FIPS:DM";
-    private static final String CARIBBEAN_REGION = "FIPS:VI"; // Virgin Islands as Caribbean proxy
+    static final String CARIBBEAN_REGION = "FIPS:VI"; // Virgin Islands as Caribbean proxy
+    
+    // Daily datatypes kept in the local observation store
+    static final List<String> SYNCED_DATATYPES = List.of("TMAX", "TMIN", "PRCP", "AWND");
+    private static final List<String> EXTREMES_DATATYPES = List.of("TMAX", "TMIN", "PRCP");
+    
+    /**
+     * Responses of the Caribbean region that {@link NcdcRefreshScheduler} keeps warm.
+     */
+    public enum HotKey { STATIONS, CURRENT_YEAR_GHCND, EXTREMES, CARIBBEAN_SUMMARY }
     
-    private final HttpClient httpClient;
-
-    public NCDCClimateService() {
-        this.httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(Duration.ofSeconds(15))
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build();
+    private final NcdcPageFetcher pageFetcher;
+    private final NcdcObservationStore observationStore;
+    private final int backfillYears;
+    private final int syncOverlapDays;
+    private final int maxStalenessDays;
+    private final AsyncRefreshingCache<String, byte[]> datasetsCache;
+    private final AsyncRefreshingCache<String, byte[]> stationsCache;
+    private final AsyncRefreshingCache<String, byte[]> climateDataCache;
+    private final AsyncRefreshingCache<String, byte[]> historicalDataCache;
+    private final AsyncRefreshingCache<String, byte[]> extremesCache;
+    private final AsyncRefreshingCache<String, byte[]> summaryCache;
+
+    /**
+     * @param backfillYears Years of observations fetched when a location is synced for the first time
+     * @param syncOverlapDays Days up to the watermark that each sync fetches again, for late reports
+     * @param maxStalenessDays Days a synced location may lag behind a request before it goes to NCDC
+     */
+    @Autowired
+    public NCDCClimateService(NcdcPageFetcher pageFetcher,
+                              NcdcObservationStore observationStore,
+                              UpstreamCaches upstreamCaches,
+                              @Value("${ncdc.store.backfill-years:5}") int backfillYears,
+                              @Value("${ncdc.store.sync-overlap-days:7}") int syncOverlapDays,
+                              @Value("${ncdc.store.max-staleness-days:3}") int maxStalenessDays) {
+        this.pageFetcher = pageFetcher;
+        this.observationStore = observationStore;
+        this.backfillYears = backfillYears;
+        this.syncOverlapDays = syncOverlapDays;
+        this.maxStalenessDays = maxStalenessDays;
+        this.datasetsCache = upstreamCaches.get("ncdcDatasets");
+        this.stationsCache = upstreamCaches.get("ncdcStations");
+        this.climateDataCache = upstreamCaches.get("ncdcClimateData");
+        this.historicalDataCache = upstreamCaches.get("ncdcHistoricalData");
+        this.extremesCache = upstreamCaches.get("ncdcExtremes");
+        this.summaryCache = upstreamCaches.get("ncdcCaribbeanSummary");
     }
 
     /**
      * Get available datasets from NCDC API
      */
-    @Cacheable(value = "ncdcDatasets")
     @CircuitBreaker(name = "ncdcApi", fallbackMethod = "getDatasetsFallback")
     @TimeLimiter(name = "ncdcApi")
-    public CompletableFuture<String> getAvailableDatasets() {
-        String url = BASE_URL + "datasets?limit=50";
-        
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("token", NCDC_TOKEN)
-                .header("Accept", "application/json")
-                .GET()
-                .timeout(Duration.ofSeconds(30))
-                .build();
-
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .exceptionally(ex -> {
-                    System.err.println("Error fetching NCDC datasets: " + ex.getMessage());
-                    return "{\"error\": \"Failed to fetch NCDC datasets\", \"message\": \"" + ex.getMessage() + "\"}";
-                });
+    public CompletableFuture<byte[]> getAvailableDatasets() {
+        return datasetsCache.get("datasets", () -> pageFetcher.fetchAll("datasets"));
     }
 
     /**
      * Get weather stations in Caribbean/Dominica region
      */
-    @Cacheable(value = "ncdcStations", key = "#locationId")
     @CircuitBreaker(name = "ncdcApi", fallbackMethod = "getStationsFallback")
     @TimeLimiter(name = "ncdcApi")
-    public CompletableFuture<String> getWeatherStations(String locationId) {
+    public CompletableFuture<byte[]> getWeatherStations(String locationId) {
         String location = locationId != null ? locationId : CARIBBEAN_REGION;
-        String url = BASE_URL + "stations?locationid=" + location + "&limit=100";
-        
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("token", NCDC_TOKEN)
-                .header("Accept", "application/json")
-                .GET()
-                .timeout(Duration.ofSeconds(30))
-                .build();
-
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .exceptionally(ex -> {
-                    System.err.println("Error fetching NCDC stations: " + ex.getMessage());
-                    return "{\"error\": \"Failed to fetch weather stations\", \"location\": \"" + location + "\"}";
-                });
+        return stationsCache.get(location, () -> loadWeatherStations(location));
+    }
+
+    private CompletableFuture<byte[]> loadWeatherStations(String location) {
+        return pageFetcher.fetchAll("stations?locationid=" + location);
     }
 
     /**
      * Get current year climate data for Dominica/Caribbean
      */
-    @Cacheable(value = "ncdcClimateData", key = "#datasetId + '_' + #locationId")
     @CircuitBreaker(name = "ncdcApi", fallbackMethod = "getClimateDataFallback")
     @TimeLimiter(name = "ncdcApi")
-    public CompletableFuture<String> getCurrentYearClimateData(String datasetId, String locationId) {
+    public CompletableFuture<byte[]> getCurrentYearClimateData(String datasetId, String locationId) {
         String dataset = datasetId != null ? datasetId : "GHCND"; // Global Historical Climatology Network Daily
         String location = locationId != null ? locationId : CARIBBEAN_REGION;
-        
-        // Get current year data
+        return climateDataCache.get(dataset + "_" + location, () -> loadCurrentYearClimateData(dataset, location));
+    }
+
+    private CompletableFuture<byte[]> loadCurrentYearClimateData(String dataset, String location) {
+        // Get current year data. It has every datatype, while the local store only holds the
+        // synced ones, so it always comes from NCDC.
         LocalDate now = LocalDate.now();
         String startDate = now.withDayOfYear(1).format(DateTimeFormatter.ISO_LOCAL_DATE);
         String endDate = now.format(DateTimeFormatter.ISO_LOCAL_DATE);
         
-        String url = BASE_URL + "data?datasetid=" + dataset + 
+        String path = "data?datasetid=" + dataset + 
                     "&locationid=" + location + 
                     "&startdate=" + startDate + 
                     "&enddate=" + endDate + 
-                    "&limit=1000&units=metric";
+                    "&units=metric";
         
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("token", NCDC_TOKEN)
-                .header("Accept", "application/json")
-                .GET()
-                .timeout(Duration.ofSeconds(30))
-                .build();
-
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .exceptionally(ex -> {
-                    System.err.println("Error fetching NCDC climate data: " + ex.getMessage());
-                    return "{\"error\": \"Failed to fetch climate data\", \"dataset\": \"" + dataset + "\", \"location\": \"" + location + "\"}";
-                });
+        return pageFetcher.fetchAll(path);
     }
 
     /**
      * Get historical climate data for specific date range
      */
-    @Cacheable(value = "ncdcHistoricalData", key = "#startDate + '_' + #endDate + '_' + #locationId")
     @CircuitBreaker(name = "ncdcApi", fallbackMethod = "getHistoricalDataFallback")
     @TimeLimiter(name = "ncdcApi")
-    public CompletableFuture<String> getHistoricalClimateData(String startDate, String endDate, String locationId) {
+    public CompletableFuture<byte[]> getHistoricalClimateData(String startDate, String endDate, String locationId) {
         String location = locationId != null ? locationId : CARIBBEAN_REGION;
-        
-        String url = BASE_URL + "data?datasetid=GHCND" + 
+        return historicalDataCache.get(historicalKey(startDate, endDate, location),
+                () -> loadHistoricalClimateData(startDate, endDate, location));
+    }
+
+    private CompletableFuture<byte[]> loadHistoricalClimateData(String startDate, String endDate, String location) {
+        String query = "data?datasetid=GHCND" + 
                     "&locationid=" + location + 
-                    "&startdate=" + startDate + 
-                    "&enddate=" + endDate + 
                     "&datatypeid=TMAX,TMIN,PRCP,AWND" + // Max temp, min temp, precipitation, wind
-                    "&limit=1000&units=metric";
+                    "&units=metric";
         
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("token", NCDC_TOKEN)
-                .header("Accept", "application/json")
-                .GET()
-                .timeout(Duration.ofSeconds(30))
-                .build();
-
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .exceptionally(ex -> {
-                    System.err.println("Error fetching NCDC historical data: " + ex.getMessage());
-                    return "{\"error\": \"Failed to fetch historical climate data\", \"period\": \"" + startDate + " to " + endDate + "\"}";
-                });
+        List<String> paths;
+        try {
+            LocalDate start = LocalDate.parse(startDate);
+            LocalDate end = LocalDate.parse(endDate);
+            Optional<NcdcObservations> local = localObservations(location, start, end, SYNCED_DATATYPES);
+            if (local.isPresent()) {
+                return CompletableFuture.completedFuture(toNcdcJson(local.get()));
+            }
+            paths = yearlyDataPaths(query, start, end);
+        } catch (DateTimeParseException e) {
+            // Let NCDC interpret dates in other formats
+            paths = List.of(query + "&startdate=" + startDate + "&enddate=" + endDate);
+        }
+        
+        return pageFetcher.fetchAll(paths);
+    }
+
+    private static String historicalKey(String startDate, String endDate, String location) {
+        return startDate + "_" + endDate + "_" + location;
+    }
+
+    /**
+     * Get daily GHCND observations for a date range, parsed into columnar series per station and datatype
+     */
+    @CircuitBreaker(name = "ncdcApi", fallbackMethod = "getObservationsFallback")
+    @TimeLimiter(name = "ncdcApi")
+    public CompletableFuture<NcdcObservations> getHistoricalObservations(LocalDate startDate, LocalDate endDate, String locationId) {
+        String location = locationId != null ? locationId : CARIBBEAN_REGION;
+        
+        Optional<NcdcObservations> local = localObservations(location, startDate, endDate, SYNCED_DATATYPES);
+        if (local.isPresent()) {
+            return CompletableFuture.completedFuture(local.get());
+        }
+        return pageFetcher.fetchObservations(yearlyDataPaths(observationQuery(location), startDate, endDate));
     }
 
     /**
      * Get climate extremes and records
      */
-    @Cacheable(value = "ncdcExtremes", key = "#locationId")
     @CircuitBreaker(name = "ncdcApi", fallbackMethod = "getExtremesFallback")
     @TimeLimiter(name = "ncdcApi")
-    public CompletableFuture<String> getClimateExtremes(String locationId) {
+    public CompletableFuture<byte[]> getClimateExtremes(String locationId) {
         String location = locationId != null ? locationId : CARIBBEAN_REGION;
-        
+        return extremesCache.get(location, () -> loadClimateExtremes(location));
+    }
+
+    private CompletableFuture<byte[]> loadClimateExtremes(String location) {
         // Get last 5 years of data to find recent extremes
         LocalDate now = LocalDate.now();
-        String startDate = now.minusYears(5).format(DateTimeFormatter.ISO_LOCAL_DATE);
-        String endDate = now.format(DateTimeFormatter.ISO_LOCAL_DATE);
+        Optional<NcdcObservations> local = localObservations(location, now.minusYears(5), now, EXTREMES_DATATYPES);
+        if (local.isPresent()) {
+            return CompletableFuture.completedFuture(toNcdcJson(local.get()));
+        }
         
-        String url = BASE_URL + "data?datasetid=GHCND" + 
+        String query = "data?datasetid=GHCND" + 
                     "&locationid=" + location + 
-                    "&startdate=" + startDate + 
-                    "&enddate=" + endDate + 
                     "&datatypeid=TMAX,TMIN,PRCP" + 
-                    "&limit=1000&units=metric";
+                    "&units=metric";
         
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("token", NCDC_TOKEN)
-                .header("Accept", "application/json")
-                .GET()
-                .timeout(Duration.ofSeconds(30))
-                .build();
-
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .exceptionally(ex -> {
-                    System.err.println("Error fetching NCDC extremes: " + ex.getMessage());
-                    return "{\"error\": \"Failed to fetch climate extremes\", \"location\": \"" + location + "\"}";
-                });
+        return pageFetcher.fetchAll(yearlyDataPaths(query, now.minusYears(5), now));
     }
 
     /**
      * Get comprehensive Caribbean climate summary
      */
-    @Cacheable(value = "ncdcCaribbeanSummary")
     @CircuitBreaker(name = "ncdcApi", fallbackMethod = "getCaribbeanSummaryFallback")
     @TimeLimiter(name = "ncdcApi")
-    public CompletableFuture<String> getCaribbeanClimateSummary() {
-        // Combine multiple data sources for comprehensive view
-        CompletableFuture<String> stationsFuture = getWeatherStations(CARIBBEAN_REGION);
-        CompletableFuture<String> currentDataFuture = getCurrentYearClimateData("GHCND", CARIBBEAN_REGION);
-        CompletableFuture<String> extremesFuture = getClimateExtremes(CARIBBEAN_REGION);
+    public CompletableFuture<byte[]> getCaribbeanClimateSummary() {
+        return summaryCache.get(CARIBBEAN_REGION, this::loadCaribbeanClimateSummary)
+                .exceptionally(DegradedResponseException::bodyOrRethrow);
+    }
+
+    private CompletableFuture<byte[]> loadCaribbeanClimateSummary() {
+        // Combine multiple data sources for comprehensive view. Internal calls bypass the
+        // circuit breaker, so each part falls back on its own; a summary built from a fallback
+        // is served but not cached.
+        AtomicBoolean degraded = new AtomicBoolean();
+        CompletableFuture<byte[]> stationsFuture = getWeatherStations(CARIBBEAN_REGION)
+                .exceptionally(ex -> {
+                    degraded.set(true);
+                    return stationsFallback(CARIBBEAN_REGION);
+                });
+        CompletableFuture<byte[]> currentDataFuture = getCurrentYearClimateData("GHCND", CARIBBEAN_REGION)
+                .exceptionally(ex -> {
+                    degraded.set(true);
+                    return climateDataFallback("GHCND", CARIBBEAN_REGION);
+                });
+        CompletableFuture<byte[]> extremesFuture = getClimateExtremes(CARIBBEAN_REGION)
+                .exceptionally(ex -> {
+                    degraded.set(true);
+                    return extremesFallback(CARIBBEAN_REGION);
+                });
 
         return CompletableFuture.allOf(stationsFuture, currentDataFuture, extremesFuture)
                 .thenApply(v -> {
-                    String stations = stationsFuture.join();
-                    String currentData = currentDataFuture.join();
-                    String extremes = extremesFuture.join();
-
-                    return "{\"caribbean_climate_summary\": {" +
-                           "\"stations\": " + stations + ", " +
-                           "\"current_year_data\": " + currentData + ", " +
-                           "\"recent_extremes\": " + extremes + ", " +
-                           "\"data_source\": \"NOAA NCDC\", " +
-                           "\"region\": \"Caribbean\"" +
-                           "}}";
+                    byte[] stations = stationsFuture.join();
+                    byte[] currentData = currentDataFuture.join();
+                    byte[] extremes = extremesFuture.join();
+
+                    // Splice the parts in as they are, without decoding them
+                    byte[] summary = JsonBytes.toBytes(stations.length + currentData.length + extremes.length + 128, generator -> {
+                        generator.writeStartObject();
+                        generator.writeObjectFieldStart("caribbean_climate_summary");
+                        JsonBytes.writeRawField(generator, "stations", stations);
+                        JsonBytes.writeRawField(generator, "current_year_data", currentData);
+                        JsonBytes.writeRawField(generator, "recent_extremes", extremes);
+                        generator.writeStringField("data_source", "NOAA NCDC");
+                        generator.writeStringField("region", "Caribbean");
+                        generator.writeEndObject();
+                        generator.writeEndObject();
+                    });
+                    if (degraded.get()) {
+                        throw new DegradedResponseException(summary);
+                    }
+                    return summary;
                 });
     }
 
+    /**
+     * Reload a hot response into its cache now, whatever its age. The summary is rebuilt from
+     * the cached responses it combines.
+     * 
+     * @param key The response to reload
+     * @return A future of the reloaded response
+     */
+    public CompletableFuture<byte[]> refresh(HotKey key) {
+        return switch (key) {
+            case STATIONS -> stationsCache.refresh(CARIBBEAN_REGION, () -> loadWeatherStations(CARIBBEAN_REGION));
+            case CURRENT_YEAR_GHCND -> climateDataCache.refresh("GHCND_" + CARIBBEAN_REGION,
+                    () -> loadCurrentYearClimateData("GHCND", CARIBBEAN_REGION));
+            case EXTREMES -> extremesCache.refresh(CARIBBEAN_REGION, () -> loadClimateExtremes(CARIBBEAN_REGION));
+            case CARIBBEAN_SUMMARY -> summaryCache.refresh(CARIBBEAN_REGION, this::loadCaribbeanClimateSummary);
+        };
+    }
+
+    /**
+     * Fetch the daily observations of a location since its watermark and append them to the
+     * local store. A location that has never been synced is backfilled; otherwise only the days
+     * after the watermark, plus a short overlap for late reports, are requested from NCDC.
+     * 
+     * @param location The NCDC location, e.g. "FIPS:VI"
+     * @param through The last day to sync
+     * @return Number of observations fetched
+     * @throws IOException if the observations cannot be stored
+     */
+    public long syncObservations(String location, LocalDate through) throws IOException {
+        LocalDate from = observationStore.getWatermark(location)
+                .map(watermark -> watermark.minusDays(syncOverlapDays - 1L))
+                .orElse(through.minusYears(backfillYears));
+        if (from.isAfter(through)) {
+            return 0;
+        }
+        NcdcObservations delta = pageFetcher.fetchObservations(yearlyDataPaths(observationQuery(location), from, through)).join();
+        observationStore.append(location, from, through, delta);
+        return delta.getObservationCount();
+    }
+
+    /**
+     * Read observations from the local store, if the location has been synced over the range.
+     */
+    private Optional<NcdcObservations> localObservations(String location, LocalDate from, LocalDate to,
+                                                         Collection<String> datatypes) {
+        return observationStore.getCoverage(location)
+                .filter(coverage -> !from.isBefore(coverage.firstDate())
+                        && !to.minusDays(maxStalenessDays).isAfter(coverage.lastDate()))
+                .map(coverage -> observationStore.query(location, from, to, datatypes));
+    }
+
+    private static String observationQuery(String location) {
+        return "data?datasetid=GHCND" + 
+               "&locationid=" + location + 
+               "&datatypeid=" + String.join(",", SYNCED_DATATYPES) + 
+               "&units=metric";
+    }
+
+    /**
+     * Write observations in the layout of an NCDC data response, ordered by date, then by
+     * datatype and station. Attributes are not stored, so results carry none.
+     * 
+     * @return The response, UTF-8 JSON
+     */
+    static byte[] toNcdcJson(NcdcObservations observations) {
+        List<NcdcObservations.Key> keys = new ArrayList<>(observations.keys());
+        keys.sort(Comparator.comparing(NcdcObservations.Key::datatype).thenComparing(NcdcObservations.Key::station));
+        NcdcObservations.Series[] series = new NcdcObservations.Series[keys.size()];
+        for (int k = 0; k < series.length; k++) {
+            series[k] = observations.get(keys.get(k).station(), keys.get(k).datatype());
+        }
+        int[] cursors = new int[series.length];
+
+        // About 96 bytes per result
+        return JsonBytes.toBytes((int) Math.min(Integer.MAX_VALUE - 8, observations.getObservationCount() * 96), generator -> {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("metadata");
+            generator.writeObjectFieldStart("resultset");
+            generator.writeNumberField("offset", 1);
+            generator.writeNumberField("count", observations.getObservationCount());
+            generator.writeNumberField("limit", observations.getObservationCount());
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeArrayFieldStart("results");
+            while (true) {
+                int day = Integer.MAX_VALUE;
+                for (int k = 0; k < series.length; k++) {
+                    if (cursors[k] < series[k].size()) {
+                        day = Math.min(day, series[k].epochDay(cursors[k]));
+                    }
+                }
+                if (day == Integer.MAX_VALUE) {
+                    break;
+                }
+                String date = LocalDate.ofEpochDay(day) + "T00:00:00";
+                for (int k = 0; k < series.length; k++) {
+                    while (cursors[k] < series[k].size() && series[k].epochDay(cursors[k]) == day) {
+                        generator.writeStartObject();
+                        generator.writeStringField("date", date);
+                        generator.writeStringField("datatype", keys.get(k).datatype());
+                        generator.writeStringField("station", keys.get(k).station());
+                        generator.writeNumberField("value", series[k].value(cursors[k]));
+                        generator.writeEndObject();
+                        cursors[k]++;
+                    }
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Split a data query into consecutive date ranges of at most one year, the longest range
+     * NCDC accepts for daily data.
+     */
+    static List<String> yearlyDataPaths(String query, LocalDate startDate, LocalDate endDate) {
+        List<String> paths = new ArrayList<>();
+        for (LocalDate from = startDate; !from.isAfter(endDate); from = from.plusYears(1)) {
+            LocalDate to = from.plusYears(1).minusDays(1);
+            if (to.isAfter(endDate)) {
+                to = endDate;
+            }
+            paths.add(query + "&startdate=" + from.format(DateTimeFormatter.ISO_LOCAL_DATE) +
+                    "&enddate=" + to.format(DateTimeFormatter.ISO_LOCAL_DATE));
+        }
+        return paths;
+    }
+
     // Fallback methods
-    public CompletableFuture<String> getDatasetsFallback(Exception ex) {
-        return CompletableFuture.completedFuture(
+    // Fallbacks serve the last good response of a request, if there is one
+
+    public CompletableFuture<byte[]> getDatasetsFallback(Exception ex) {
+        return CompletableFuture.completedFuture(datasetsCache.getLastGood("datasets").orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"NCDC datasets temporarily unavailable\", \"fallback\": true}"
-        );
+        )));
+    }
+
+    public CompletableFuture<byte[]> getStationsFallback(String locationId, Exception ex) {
+        return CompletableFuture.completedFuture(stationsFallback(locationId != null ? locationId : CARIBBEAN_REGION));
+    }
+
+    private byte[] stationsFallback(String location) {
+        return stationsCache.getLastGood(location).orElseGet(() -> JsonBytes.utf8(
+            "{\"error\": \"NCDC stations data temporarily unavailable\", \"location\": \"" + location + "\", \"fallback\": true}"
+        ));
     }
 
-    public CompletableFuture<String> getStationsFallback(String locationId, Exception ex) {
-        return CompletableFuture.completedFuture(
-            "{\"error\": \"NCDC stations data temporarily unavailable\", \"location\": \"" + locationId + "\", \"fallback\": true}"
-        );
+    public CompletableFuture<byte[]> getClimateDataFallback(String datasetId, String locationId, Exception ex) {
+        return CompletableFuture.completedFuture(climateDataFallback(datasetId != null ? datasetId : "GHCND",
+                locationId != null ? locationId : CARIBBEAN_REGION));
     }
 
-    public CompletableFuture<String> getClimateDataFallback(String datasetId, String locationId, Exception ex) {
-        return CompletableFuture.completedFuture(
+    private byte[] climateDataFallback(String dataset, String location) {
+        return climateDataCache.getLastGood(dataset + "_" + location).orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"NCDC climate data temporarily unavailable\", \"fallback\": true}"
-        );
+        ));
     }
 
-    public CompletableFuture<String> getHistoricalDataFallback(String startDate, String endDate, String locationId, Exception ex) {
-        return CompletableFuture.completedFuture(
+    public CompletableFuture<byte[]> getHistoricalDataFallback(String startDate, String endDate, String locationId, Exception ex) {
+        String location = locationId != null ? locationId : CARIBBEAN_REGION;
+        return CompletableFuture.completedFuture(historicalDataCache.getLastGood(historicalKey(startDate, endDate, location)).orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"NCDC historical data temporarily unavailable\", \"period\": \"" + startDate + " to " + endDate + "\", \"fallback\": true}"
-        );
+        )));
+    }
+
+    public CompletableFuture<NcdcObservations> getObservationsFallback(LocalDate startDate, LocalDate endDate, String locationId, Exception ex) {
+        return CompletableFuture.completedFuture(NcdcObservations.empty());
+    }
+
+    public CompletableFuture<byte[]> getExtremesFallback(String locationId, Exception ex) {
+        return CompletableFuture.completedFuture(extremesFallback(locationId != null ? locationId : CARIBBEAN_REGION));
     }
 
-    public CompletableFuture<String> getExtremesFallback(String locationId, Exception ex) {
-        return CompletableFuture.completedFuture(
+    private byte[] extremesFallback(String location) {
+        return extremesCache.getLastGood(location).orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"NCDC extremes data temporarily unavailable\", \"fallback\": true}"
-        );
+        ));
     }
 
-    public CompletableFuture<String> getCaribbeanSummaryFallback(Exception ex) {
-        return CompletableFuture.completedFuture(
+    public CompletableFuture<byte[]> getCaribbeanSummaryFallback(Exception ex) {
+        return CompletableFuture.completedFuture(summaryCache.getLastGood(CARIBBEAN_REGION).orElseGet(() -> JsonBytes.utf8(
             "{\"error\": \"Caribbean climate summary temporarily unavailable\", \"fallback\": true}"
-        );
+        )));
     }
 }
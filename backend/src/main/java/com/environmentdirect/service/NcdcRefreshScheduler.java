@@ -0,0 +1,150 @@
+package com.environmentdirect.service;
+
+import com.environmentdirect.service.NCDCClimateService.HotKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the hot NCDC responses warm, so that requests for them are served from cache and never
+ * wait on NOAA. Every {@link HotKey} is loaded at startup and then reloaded on its own jittered
+ * schedule, somewhat before the interval elapses, so reloads of different keys do not line up.
+ * Reloads run on virtual threads, at most a few at a time; a failed reload is retried sooner.
+ *
+ * The lateness of each reload, from when it was due until the new response was cached, is
+ * recorded as the {@code ncdc.refresh.lag} timer.
+ */
+@Component
+public class NcdcRefreshScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(NcdcRefreshScheduler.class);
+
+    private final NCDCClimateService ncdcClimateService;
+    private final boolean enabled;
+    private final long intervalNanos;
+    private final double jitter;
+    private final Semaphore permits;
+    private final Map<HotKey, Timer> lagTimers = new EnumMap<>(HotKey.class);
+    private final Map<HotKey, Counter> failureCounters = new EnumMap<>(HotKey.class);
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ncdc-refresh-", 0).factory());
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ncdc-refresh-timer").daemon().factory());
+
+    /**
+     * @param interval Time between reloads of a key, which should be shorter than the caches' refreshAfterWrite
+     * @param jitter Fraction of the interval by which reloads are brought forward at random
+     * @param maxConcurrent Maximum number of reloads running at a time
+     */
+    @Autowired
+    public NcdcRefreshScheduler(NCDCClimateService ncdcClimateService, MeterRegistry meterRegistry,
+                                @Value("${ncdc.refresh.enabled:true}") boolean enabled,
+                                @Value("${ncdc.refresh.interval:8m}") Duration interval,
+                                @Value("${ncdc.refresh.jitter:0.25}") double jitter,
+                                @Value("${ncdc.refresh.max-concurrent:2}") int maxConcurrent) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("ncdc.refresh.jitter must be at least 0 and below 1");
+        }
+        this.ncdcClimateService = ncdcClimateService;
+        this.enabled = enabled;
+        this.intervalNanos = interval.toNanos();
+        this.jitter = jitter;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        for (HotKey key : HotKey.values()) {
+            String tag = key.name().toLowerCase();
+            lagTimers.put(key, Timer.builder("ncdc.refresh.lag")
+                    .description("Time from when a hot NCDC response was due for reload until it was reloaded")
+                    .tag("key", tag)
+                    .register(meterRegistry));
+            failureCounters.put(key, Counter.builder("ncdc.refresh.failures")
+                    .description("Failed reloads of a hot NCDC response")
+                    .tag("key", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (HotKey key : HotKey.values()) {
+            executor.execute(() -> reload(key, now));
+        }
+    }
+
+    /**
+     * Reload a key, then schedule its next reload.
+     *
+     * @param dueNanos When the reload was due, on the {@link System#nanoTime} clock
+     */
+    private void reload(HotKey key, long dueNanos) {
+        boolean reloaded = false;
+        try {
+            permits.acquire();
+            try {
+                ncdcClimateService.refresh(key).get();
+                reloaded = true;
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            failureCounters.get(key).increment();
+            logger.warn("Could not reload hot NCDC response {}: {}", key, e.getCause().getMessage());
+        }
+
+        long now = System.nanoTime();
+        long delay;
+        long nextDue;
+        if (reloaded) {
+            lagTimers.get(key).record(Math.max(0, now - dueNanos), TimeUnit.NANOSECONDS);
+            delay = jitteredDelay(intervalNanos, jitter, ThreadLocalRandom.current().nextDouble());
+            nextDue = now + delay;
+        } else {
+            // Retry sooner, still due since the failed reload, so the lag shows how stale the key is
+            delay = jitteredDelay(intervalNanos / 4, jitter, ThreadLocalRandom.current().nextDouble());
+            nextDue = dueNanos;
+        }
+        if (!timer.isShutdown()) {
+            timer.schedule(() -> executor.execute(() -> reload(key, nextDue)), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Bring an interval forward by up to the jitter fraction.
+     *
+     * @param random A uniform random number in [0, 1)
+     */
+    static long jitteredDelay(long intervalNanos, double jitter, double random) {
+        return (long) (intervalNanos * (1 - jitter * random));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,64 @@
+package com.environmentdirect.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Background job that keeps the local NCDC observation store current. At startup each
+ * configured location is synced in the background, which backfills a location seen for the
+ * first time; afterwards the job runs daily and fetches only the days after each watermark.
+ */
+@Component
+public class NcdcSyncJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(NcdcSyncJob.class);
+
+    private final NCDCClimateService ncdcClimateService;
+    private final List<String> locations;
+
+    @Autowired
+    public NcdcSyncJob(NCDCClimateService ncdcClimateService,
+                       @Value("${ncdc.store.locations:" + NCDCClimateService.CARIBBEAN_REGION + "}") List<String> locations) {
+        this.ncdcClimateService = ncdcClimateService;
+        this.locations = locations;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void syncOnStartup() {
+        // A first backfill takes many NCDC requests, so it must not hold up startup
+        Thread.ofVirtual().name("ncdc-sync").start(() -> syncThrough(LocalDate.now()));
+    }
+
+    @Scheduled(cron = "${ncdc.store.sync-cron:0 15 1 * * *}")
+    public void syncDaily() {
+        syncThrough(LocalDate.now());
+    }
+
+    /**
+     * Sync every configured location through the given day.
+     *
+     * @param through The last day to sync
+     * @return Number of observations fetched across all locations
+     */
+    public synchronized long syncThrough(LocalDate through) {
+        long fetched = 0;
+        for (String location : locations) {
+            try {
+                fetched += ncdcClimateService.syncObservations(location, through);
+            } catch (Exception e) {
+                logger.error("Error syncing NCDC observations of {} through {}", location, through, e);
+            }
+        }
+        logger.info("Synced {} NCDC observations through {}", fetched, through);
+        return fetched;
+    }
+}
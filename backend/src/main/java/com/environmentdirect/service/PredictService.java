@@ -1,192 +1,161 @@
 package com.environmentdirect.service;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Service for providing predictive environmental insights.
- * This service uses Virtual Threads to handle prediction requests efficiently.
+ * Every request fans out one virtual thread per site or region and waits for all of them
+ * under a single deadline, so a list costs as much as its slowest item rather than the sum
+ * of all items. Items still running at the deadline are cancelled and reported with a
+ * "timeout" status, and the items that finished are returned as partial results.
  */
 @Service
 public class PredictService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PredictService.class);
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_TIMEOUT = "timeout";
+    public static final String STATUS_ERROR = "error";
+
+    private final PredictionService predictionService;
+    private final Duration deadline;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("predict-", 0).factory());
+
+    @Autowired
+    public PredictService(PredictionService predictionService,
+                          @Value("${predict.deadline-ms:2000}") long deadlineMillis) {
+        this.predictionService = predictionService;
+        this.deadline = Duration.ofMillis(deadlineMillis);
+    }
+
     /**
      * Get eco-tourism pressure prediction for a specific site.
-     * Uses Virtual Threads for efficient handling of potentially heavy AI model inference.
      *
      * @param siteId the ID of the eco-tourism site
-     * @return a map containing the prediction data
+     * @return the prediction data, with a "status" of "ok", "timeout" or "error"
      */
     public Map<String, Object> getEcoTourismPrediction(String siteId) {
-        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            Future<Map<String, Object>> future = executor.submit(() -> {
-                // Simulate heavy AI model inference or data processing
-                Thread.sleep(500); // Simulating work
-
-                Map<String, Object> prediction = new HashMap<>();
-                prediction.put("id", siteId);
-                prediction.put("site", "Site " + siteId);
-                prediction.put("pressureLevel", "Medium");
-                prediction.put("visitorCapacity", 65);
-                prediction.put("coordinates", Arrays.asList(-61.3362, 15.3181));
-
-                return prediction;
-            });
-
-            return future.get();
-        } catch (Exception e) {
-            // Log the exception
-            System.err.println("Error in eco-tourism prediction: " + e.getMessage());
-            return Collections.emptyMap();
-        }
+        return fanOut(List.of(siteId), "siteId", predictionService::getEcoTourismPressure).get(0);
     }
 
     /**
      * Get flood risk prediction for a specific region.
-     * Uses Virtual Threads for efficient handling of potentially heavy AI model inference.
      *
      * @param region the region to predict flood risk for
-     * @return a map containing the prediction data
+     * @return the prediction data, with a "status" of "ok", "timeout" or "error"
      */
     public Map<String, Object> getFloodRiskPrediction(String region) {
-        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            Future<Map<String, Object>> future = executor.submit(() -> {
-                // Simulate heavy AI model inference or data processing
-                Thread.sleep(500); // Simulating work
-
-                Map<String, Object> prediction = new HashMap<>();
-                prediction.put("region", region);
-                prediction.put("riskLevel", "Medium");
-                prediction.put("probability", 65);
-                prediction.put("coordinates", Arrays.asList(-61.3870, 15.2976));
-
-                return prediction;
-            });
-
-            return future.get();
-        } catch (Exception e) {
-            // Log the exception
-            System.err.println("Error in flood risk prediction: " + e.getMessage());
-            return Collections.emptyMap();
-        }
+        return fanOut(List.of(region), "region", predictionService::getFloodRisk).get(0);
     }
 
     /**
-     * Get all eco-tourism pressure predictions.
-     * Uses Virtual Threads for efficient handling of potentially heavy data processing.
+     * Get eco-tourism pressure predictions for all known sites.
      *
-     * @return a list of maps containing the prediction data
+     * @return one prediction per site, each with its own status
      */
     public List<Map<String, Object>> getAllEcoTourismPressureData() {
-        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            Future<List<Map<String, Object>>> future = executor.submit(() -> {
-                // Simulate heavy data processing
-                Thread.sleep(800); // Simulating work
-
-                List<Map<String, Object>> pressureData = new ArrayList<>();
-
-                Map<String, Object> sample1 = new HashMap<>();
-                sample1.put("id", 1);
-                sample1.put("site", "Morne Trois Pitons");
-                sample1.put("pressureLevel", "High");
-                sample1.put("visitorCapacity", 80);
-                sample1.put("coordinates", Arrays.asList(-61.3362, 15.3181));
-
-                Map<String, Object> sample2 = new HashMap<>();
-                sample2.put("id", 2);
-                sample2.put("site", "Trafalgar Falls");
-                sample2.put("pressureLevel", "Medium");
-                sample2.put("visitorCapacity", 60);
-                sample2.put("coordinates", Arrays.asList(-61.3500, 15.3167));
-
-                pressureData.add(sample1);
-                pressureData.add(sample2);
-
-                return pressureData;
-            });
-
-            return future.get();
-        } catch (Exception e) {
-            // Log the exception
-            System.err.println("Error in getting all eco-tourism pressure data: " + e.getMessage());
-            return Collections.emptyList();
-        }
+        return fanOut(PredictionService.SITE_IDS, "siteId", predictionService::getEcoTourismPressure);
     }
 
     /**
-     * Get all flood risk predictions.
-     * Uses Virtual Threads for efficient handling of potentially heavy data processing.
+     * Get flood risk predictions for all known regions.
      *
-     * @return a list of maps containing the prediction data
+     * @return one prediction per region, each with its own status
      */
     public List<Map<String, Object>> getAllFloodRiskData() {
-        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            Future<List<Map<String, Object>>> future = executor.submit(() -> {
-                // Simulate heavy data processing
-                Thread.sleep(800); // Simulating work
-
-                List<Map<String, Object>> floodData = new ArrayList<>();
-
-                Map<String, Object> sample1 = new HashMap<>();
-                sample1.put("id", 1);
-                sample1.put("region", "Roseau Valley");
-                sample1.put("riskLevel", "Medium");
-                sample1.put("probability", 65);
-                sample1.put("coordinates", Arrays.asList(-61.3870, 15.2976));
-
-                Map<String, Object> sample2 = new HashMap<>();
-                sample2.put("id", 2);
-                sample2.put("region", "Portsmouth Bay");
-                sample2.put("riskLevel", "Low");
-                sample2.put("probability", 25);
-                sample2.put("coordinates", Arrays.asList(-61.4540, 15.5850));
-
-                floodData.add(sample1);
-                floodData.add(sample2);
-
-                return floodData;
-            });
-
-            return future.get();
-        } catch (Exception e) {
-            // Log the exception
-            System.err.println("Error in getting all flood risk data: " + e.getMessage());
-            return Collections.emptyList();
-        }
+        return fanOut(PredictionService.REGIONS, "region", predictionService::getFloodRisk);
     }
 
     /**
      * Get historical comparison data.
-     * Uses Virtual Threads for efficient handling of potentially heavy data processing.
      *
      * @param id the ID of the entity to compare
-     * @param type the type of entity to compare
-     * @return a map containing the comparison data
+     * @param type the type of entity to compare ("eco-tourism" or "flood-risk")
+     * @return the comparison data, with a "status" of "ok", "timeout" or "error"
+     * @throws IllegalArgumentException if the type is not supported
      */
     public Map<String, Object> getHistoricalComparison(String id, String type) {
-        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            Future<Map<String, Object>> future = executor.submit(() -> {
-                // Simulate heavy data processing
-                Thread.sleep(600); // Simulating work
-
-                Map<String, Object> comparison = new HashMap<>();
-                comparison.put("id", id);
-                comparison.put("type", type);
-                comparison.put("currentValue", 45);
-                comparison.put("historicalAverage", 38);
-                comparison.put("trend", "increasing");
-
-                return comparison;
-            });
-
-            return future.get();
-        } catch (Exception e) {
-            // Log the exception
-            System.err.println("Error in getting historical comparison: " + e.getMessage());
-            return Collections.emptyMap();
+        if (!type.equals("eco-tourism") && !type.equals("flood-risk")) {
+            throw new IllegalArgumentException("Type must be either 'eco-tourism' or 'flood-risk'");
+        }
+        return fanOut(List.of(id), "id", itemId -> predictionService.getHistoricalComparison(itemId, type)).get(0);
+    }
+
+    /**
+     * Run one prediction per id concurrently and wait for all of them until the deadline.
+     * No prediction outlives the call: the ones still running at the deadline are cancelled.
+     *
+     * @param ids The sites or regions to predict
+     * @param idField Name of the field that identifies an item that has no result
+     * @param predictor Prediction for one id
+     * @return One result per id, in the order of the ids
+     */
+    List<Map<String, Object>> fanOut(List<String> ids, String idField,
+                                     Function<String, Map<String, Object>> predictor) {
+        List<Callable<Map<String, Object>>> tasks = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            tasks.add(() -> predictor.apply(id));
+        }
+
+        List<Future<Map<String, Object>>> futures;
+        try {
+            futures = executor.invokeAll(tasks, deadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for predictions", e);
         }
+
+        List<Map<String, Object>> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            results.add(toResult(ids.get(i), idField, futures.get(i)));
+        }
+        return results;
+    }
+
+    private Map<String, Object> toResult(String id, String idField, Future<Map<String, Object>> future) {
+        Map<String, Object> result = new HashMap<>();
+        switch (future.state()) {
+            case SUCCESS -> {
+                result.putAll(future.resultNow());
+                result.put("status", STATUS_OK);
+            }
+            case FAILED -> {
+                Throwable error = future.exceptionNow();
+                logger.warn("Prediction failed for {} {}", idField, id, error);
+                result.put(idField, id);
+                result.put("status", STATUS_ERROR);
+                result.put("error", error.getMessage());
+            }
+            default -> {
+                logger.warn("Prediction for {} {} did not finish within {} ms", idField, id, deadline.toMillis());
+                result.put(idField, id);
+                result.put("status", STATUS_TIMEOUT);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cancel predictions that are still running.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
     }
 }
@@ -0,0 +1,70 @@
+package com.environmentdirect.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Background job that materializes the daily prediction history of every known region and site.
+ * At startup each entity is backfilled for the maximum comparison window; afterwards the job
+ * runs shortly after midnight and appends only the days that are not stored yet.
+ */
+@Component
+public class PredictionHistoryJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(PredictionHistoryJob.class);
+
+    // Startup backfill runs before listeners that read the history
+    static final int STARTUP_ORDER = 0;
+
+    private final MachineLearningService mlService;
+    private final int backfillDays;
+
+    @Autowired
+    public PredictionHistoryJob(MachineLearningService mlService,
+                                @Value("${predictions.history.backfill-days:366}") int backfillDays) {
+        this.mlService = mlService;
+        this.backfillDays = backfillDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(STARTUP_ORDER)
+    public void backfillOnStartup() {
+        materializeThrough(LocalDate.now());
+    }
+
+    @Scheduled(cron = "${predictions.history.cron:0 5 0 * * *}")
+    public void appendDailyPredictions() {
+        materializeThrough(LocalDate.now());
+    }
+
+    /**
+     * Append any missing days, up to and including the given day, for every known region and site.
+     *
+     * @param through The last day to materialize
+     * @return Number of days appended across all entities
+     */
+    public int materializeThrough(LocalDate through) {
+        int appended = 0;
+        try {
+            for (String region : PredictionService.REGIONS) {
+                appended += mlService.materializePredictionHistory("flood-risk", region, through, backfillDays);
+            }
+            for (String siteId : PredictionService.SITE_IDS) {
+                appended += mlService.materializePredictionHistory("eco-tourism", siteId, through, backfillDays);
+            }
+            logger.info("Materialized {} daily predictions through {}", appended, through);
+        } catch (Exception e) {
+            logger.error("Error materializing prediction history through {}", through, e);
+        }
+        return appended;
+    }
+}
@@ -1,5 +1,13 @@
 package com.environmentdirect.service;
 
+import com.environmentdirect.dto.VisitorObservationDto;
+import com.environmentdirect.dto.FloodRiskSweepRequestDto;
+import com.environmentdirect.dto.SensorReadingDto;
+import com.environmentdirect.service.ml.FloodRiskEnsemble;
+import com.environmentdirect.service.ml.FloodRiskSweep;
+import com.environmentdirect.service.ml.OnlineAnomalyDetector;
+import com.environmentdirect.service.ml.OnlineAnomalyDetectors;
+import com.environmentdirect.service.ml.ParameterRange;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.HashMap;
@@ -9,6 +17,7 @@ import java.util.List;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * Service for generating prediction data for various environmental forecasts.
@@ -17,11 +26,37 @@ import java.util.Arrays;
 @Service
 public class PredictionService {
 
+    // Maximum number of days a single bulk prediction request may cover
+    private static final int MAX_BULK_DAYS = 366;
+
+    // Maximum number of visitor observations accepted in one request
+    private static final int MAX_OBSERVATION_BATCH = 10_000;
+
+    // Maximum number of findings an anomaly scan may report
+    static final int MAX_ANOMALY_SCAN_LIMIT = 1_000;
+
+    // Maximum length of the region and metric names of a sensor reading
+    private static final int MAX_SERIES_NAME_LENGTH = 100;
+
+    // Maximum number of days of history a historical comparison may cover
+    static final int MAX_HISTORY_DAYS = 365;
+
+    static final List<String> SITE_IDS = List.of(
+            "boiling-lake", "trafalgar-falls", "middleham-falls", "emerald-pool");
+
+    static final List<String> REGIONS = List.of(
+            "Portsmouth", "RoseauSouth", "LayouValley", "MarigotArea");
+
     private final MachineLearningService mlService;
+    private final DailyPredictionCache dailyPredictions;
+    private final OnlineAnomalyDetectors anomalyDetectors;
 
     @Autowired
-    public PredictionService(MachineLearningService mlService) {
+    public PredictionService(MachineLearningService mlService, DailyPredictionCache dailyPredictions,
+                             OnlineAnomalyDetectors anomalyDetectors) {
         this.mlService = mlService;
+        this.dailyPredictions = dailyPredictions;
+        this.anomalyDetectors = anomalyDetectors;
     }
 
     /**
@@ -31,7 +66,10 @@ public class PredictionService {
      * @return A map containing the forecast data.
      */
     public Map<String, Object> getEcoTourismPressure(String siteId) {
-        // Use the machine learning service for more accurate predictions
+        // Known sites are precomputed daily; others are predicted on demand
+        if (SITE_IDS.contains(siteId)) {
+            return dailyPredictions.getEcoTourismPressure(siteId, LocalDate.now());
+        }
         return mlService.predictEcoTourismPressure(siteId, LocalDate.now());
     }
 
@@ -42,12 +80,15 @@ public class PredictionService {
      * @return A map containing the forecast data.
      */
     public Map<String, Object> getFloodRisk(String region) {
-        // Use the machine learning service for more accurate predictions
+        // Known regions are precomputed daily; others are predicted on demand
+        if (REGIONS.contains(region)) {
+            return dailyPredictions.getFloodRisk(region, LocalDate.now());
+        }
         return mlService.predictFloodRisk(region, LocalDate.now());
     }
 
     /**
-     * Get all eco-tourism hotspot pressure forecasts.
+     * Get all eco-tourism hotspot pressure forecasts, served from the daily prediction cache.
      * 
      * @return A list of forecasts for all known sites.
      */
@@ -55,16 +96,15 @@ public class PredictionService {
         List<Map<String, Object>> forecasts = new ArrayList<>();
 
         // Add forecasts for all known sites
-        forecasts.add(getEcoTourismPressure("boiling-lake"));
-        forecasts.add(getEcoTourismPressure("trafalgar-falls"));
-        forecasts.add(getEcoTourismPressure("middleham-falls"));
-        forecasts.add(getEcoTourismPressure("emerald-pool"));
+        for (String siteId : SITE_IDS) {
+            forecasts.add(getEcoTourismPressure(siteId));
+        }
 
         return forecasts;
     }
 
     /**
-     * Get all flood risk forecasts.
+     * Get all flood risk forecasts, served from the daily prediction cache.
      * 
      * @return A list of forecasts for all known regions.
      */
@@ -72,14 +112,209 @@ public class PredictionService {
         List<Map<String, Object>> forecasts = new ArrayList<>();
 
         // Add forecasts for all known regions
-        forecasts.add(getFloodRisk("Portsmouth"));
-        forecasts.add(getFloodRisk("RoseauSouth"));
-        forecasts.add(getFloodRisk("LayouValley"));
-        forecasts.add(getFloodRisk("MarigotArea"));
+        for (String region : REGIONS) {
+            forecasts.add(getFloodRisk(region));
+        }
 
         return forecasts;
     }
 
+    /**
+     * Get flood risk and visitor load levels for every known region and site over a date range.
+     * All predictions are scored in a single batch per model.
+     * 
+     * @param startDate The first date to predict (inclusive)
+     * @param endDate The last date to predict (inclusive)
+     * @return A map containing one level per date for each region and site
+     */
+    public Map<String, Object> getBulkPredictions(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate must not be before startDate");
+        }
+        if (endDate.toEpochDay() - startDate.toEpochDay() + 1 > MAX_BULK_DAYS) {
+            throw new IllegalArgumentException("Date range must not exceed " + MAX_BULK_DAYS + " days");
+        }
+
+        return mlService.predictBulk(REGIONS, SITE_IDS, startDate, endDate);
+    }
+
+    /**
+     * Get the Monte Carlo flood risk distribution for a region on a given date.
+     * 
+     * @param region The region identifier
+     * @param date The date to predict
+     * @param draws Number of ensemble members
+     * @param seed Seed for the random perturbations
+     * @return A map containing the risk level distribution, quantiles and exceedance probabilities
+     */
+    public Map<String, Object> getFloodRiskEnsemble(String region, LocalDate date, int draws, long seed) {
+        if (draws < 1 || draws > FloodRiskEnsemble.MAX_DRAWS) {
+            throw new IllegalArgumentException("draws must be between 1 and " + FloodRiskEnsemble.MAX_DRAWS);
+        }
+
+        return mlService.predictFloodRiskEnsemble(region, date, draws, seed);
+    }
+
+    /**
+     * Check that a flood risk sweep request describes a grid that can be evaluated.
+     * Call before starting to stream, so invalid requests can still be rejected with an error status.
+     * 
+     * @param request The sweep parameter ranges
+     * @return The number of cells in the grid
+     */
+    public long validateFloodRiskSweep(FloodRiskSweepRequestDto request) {
+        if (request == null) {
+            throw new IllegalArgumentException("A sweep request body is required");
+        }
+        long cells = (long) sweepRange(request.rainfallAdjustment(), 1.0).steps()
+            * sweepRange(request.temperatureAdjustment(), 0.0).steps()
+            * sweepRange(request.soilSaturationAdjustment(), 1.0).steps();
+        if (cells > FloodRiskSweep.MAX_CELLS) {
+            throw new IllegalArgumentException("Sweep grid must not exceed " + FloodRiskSweep.MAX_CELLS + " cells");
+        }
+        return cells;
+    }
+
+    /**
+     * Evaluate a rainfall x temperature x soil saturation grid of flood risk scenarios.
+     * 
+     * @param region The region identifier
+     * @param request The sweep parameter ranges; missing ranges leave the parameter unadjusted
+     * @param sink Receives each block of result cells, in grid order
+     * @return Number of cells evaluated
+     */
+    public int sweepFloodRiskScenarios(String region, FloodRiskSweepRequestDto request,
+                                       Consumer<List<Map<String, Object>>> sink) {
+        validateFloodRiskSweep(request);
+        return mlService.sweepFloodRiskScenarios(region,
+            sweepRange(request.rainfallAdjustment(), 1.0),
+            sweepRange(request.temperatureAdjustment(), 0.0),
+            sweepRange(request.soilSaturationAdjustment(), 1.0),
+            sink);
+    }
+
+    private static ParameterRange sweepRange(ParameterRange range, double unadjusted) {
+        return range != null ? range : ParameterRange.of(unadjusted);
+    }
+
+    /**
+     * Feed a batch of observed visitor counts into the eco-tourism models.
+     * 
+     * @param observations Observed visitor counts per site and date
+     * @return A map containing the number of accepted observations and updated sample counts
+     */
+    public Map<String, Object> recordVisitorObservations(List<VisitorObservationDto> observations) {
+        if (observations == null || observations.isEmpty()) {
+            throw new IllegalArgumentException("At least one observation is required");
+        }
+        if (observations.size() > MAX_OBSERVATION_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_OBSERVATION_BATCH + " observations may be sent at once");
+        }
+        for (VisitorObservationDto observation : observations) {
+            if (observation.siteId() == null || observation.siteId().isBlank() || observation.date() == null) {
+                throw new IllegalArgumentException("Each observation requires a siteId and a date");
+            }
+            if (observation.visitorCount() < 0) {
+                throw new IllegalArgumentException("visitorCount must not be negative");
+            }
+        }
+
+        return mlService.recordVisitorObservations(observations);
+    }
+
+    /**
+     * Score a batch of live readings with the online anomaly detector of each (region, metric) series.
+     * Readings are scored in order, each against the readings of its series before it.
+     * 
+     * @param readings Readings per region and metric
+     * @return A map containing the score of every reading and the number of anomalies
+     */
+    public Map<String, Object> scoreSensorReadings(List<SensorReadingDto> readings) {
+        if (readings == null || readings.isEmpty()) {
+            throw new IllegalArgumentException("At least one reading is required");
+        }
+        if (readings.size() > MAX_OBSERVATION_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_OBSERVATION_BATCH + " readings may be sent at once");
+        }
+        for (SensorReadingDto reading : readings) {
+            if (!isValidSeriesName(reading.region()) || !isValidSeriesName(reading.metric())) {
+                throw new IllegalArgumentException("Each reading requires a region and a metric of at most "
+                        + MAX_SERIES_NAME_LENGTH + " characters");
+            }
+            if (!Double.isFinite(reading.value())) {
+                throw new IllegalArgumentException("value must be a finite number");
+            }
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(readings.size());
+        int anomalies = 0;
+        for (SensorReadingDto reading : readings) {
+            OnlineAnomalyDetector.Score score = anomalyDetectors.score(reading.region(), reading.metric(), reading.value());
+            Map<String, Object> result = new HashMap<>();
+            result.put("region", reading.region());
+            result.put("metric", reading.metric());
+            result.put("value", reading.value());
+            result.put("zScore", score.zScore());
+            result.put("ewmaZScore", score.ewmaZScore());
+            result.put("anomaly", score.anomaly());
+            results.add(result);
+            if (score.anomaly()) {
+                anomalies++;
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("scored", results.size());
+        response.put("anomalies", anomalies);
+        response.put("results", results);
+        return response;
+    }
+
+    private static boolean isValidSeriesName(String name) {
+        return name != null && !name.isBlank() && name.length() <= MAX_SERIES_NAME_LENGTH;
+    }
+
+    /**
+     * Scan the prediction history of all regions and sites for anomalies in one batch.
+     * 
+     * @param days Number of days up to and including today to scan (1-365)
+     * @param limit Maximum number of anomalies to report (1-1000)
+     * @return A map containing scan totals and the most severe anomalies, most severe first
+     */
+    public Map<String, Object> scanPredictionAnomalies(int days, int limit) {
+        if (days < 1 || days > MAX_HISTORY_DAYS) {
+            throw new IllegalArgumentException("days must be between 1 and " + MAX_HISTORY_DAYS);
+        }
+        if (limit < 1 || limit > MAX_ANOMALY_SCAN_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_ANOMALY_SCAN_LIMIT);
+        }
+
+        return mlService.scanPredictionAnomalies(days, limit);
+    }
+
+    /**
+     * Check the prediction history of a region or site against its precomputed seasonal baseline.
+     * 
+     * @param id The identifier for the site or region
+     * @param type The type of data ("eco-tourism" or "flood-risk")
+     * @param days Number of days up to and including today to check (1-365)
+     * @param sensitivity Threshold for anomaly detection (0-1)
+     * @return A map containing whether a baseline exists and the anomalous days
+     */
+    public Map<String, Object> detectSeasonalAnomalies(String id, String type, int days, double sensitivity) {
+        if (!type.equals("eco-tourism") && !type.equals("flood-risk")) {
+            throw new IllegalArgumentException("Type must be either 'eco-tourism' or 'flood-risk'");
+        }
+        if (days < 1 || days > MAX_HISTORY_DAYS) {
+            throw new IllegalArgumentException("days must be between 1 and " + MAX_HISTORY_DAYS);
+        }
+        if (!(sensitivity >= 0.0 && sensitivity <= 1.0)) {
+            throw new IllegalArgumentException("sensitivity must be between 0 and 1");
+        }
+
+        return mlService.detectSeasonalAnomalies(type, id, days, sensitivity);
+    }
+
     /**
      * Get historical data comparison for a specific site or region.
      * 
@@ -88,12 +323,27 @@ public class PredictionService {
      * @return A map containing historical data and current predictions
      */
     public Map<String, Object> getHistoricalComparison(String id, String type) {
+        return getHistoricalComparison(id, type, 30);
+    }
+
+    /**
+     * Get historical data comparison for a specific site or region over a window of days.
+     * 
+     * @param id The identifier for the site or region
+     * @param type The type of data ("eco-tourism" or "flood-risk")
+     * @param days Number of days before today to compare with (1-365)
+     * @return A map containing historical data and current predictions
+     */
+    public Map<String, Object> getHistoricalComparison(String id, String type, int days) {
         // Validate type parameter
         if (!type.equals("eco-tourism") && !type.equals("flood-risk")) {
             throw new IllegalArgumentException("Type must be either 'eco-tourism' or 'flood-risk'");
         }
+        if (days < 1 || days > MAX_HISTORY_DAYS) {
+            throw new IllegalArgumentException("days must be between 1 and " + MAX_HISTORY_DAYS);
+        }
 
         // Use the machine learning service for historical data comparison
-        return mlService.getHistoricalComparison(id, type);
+        return mlService.getHistoricalComparison(id, type, days);
     }
 }
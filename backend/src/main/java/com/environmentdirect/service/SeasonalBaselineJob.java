@@ -0,0 +1,54 @@
+package com.environmentdirect.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background job that rebuilds the seasonal baseline of every region and site from its
+ * materialized prediction history. It runs at startup, after the history has been backfilled,
+ * and daily after the history job has appended the new day.
+ */
+@Component
+public class SeasonalBaselineJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeasonalBaselineJob.class);
+
+    private final MachineLearningService mlService;
+
+    @Autowired
+    public SeasonalBaselineJob(MachineLearningService mlService) {
+        this.mlService = mlService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(PredictionHistoryJob.STARTUP_ORDER + 1)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "${predictions.baseline.cron:0 30 0 * * *}")
+    public void rebuildDaily() {
+        rebuild();
+    }
+
+    /**
+     * @return Number of baselines built
+     */
+    public int rebuild() {
+        try {
+            long start = System.nanoTime();
+            int built = mlService.rebuildSeasonalBaselines();
+            logger.info("Rebuilt {} seasonal baselines in {} ms", built, (System.nanoTime() - start) / 1_000_000);
+            return built;
+        } catch (Exception e) {
+            logger.error("Error rebuilding seasonal baselines", e);
+            return 0;
+        }
+    }
+}
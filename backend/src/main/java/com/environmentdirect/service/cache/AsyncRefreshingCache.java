@@ -0,0 +1,153 @@
+package com.environmentdirect.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous cache for upstream responses with stale-while-revalidate semantics.
+ *
+ * Concurrent loads of the same key are coalesced into one upstream call. A value older than
+ * {@code refreshAfterWrite} is still returned at once while a single background load replaces it;
+ * only a value older than {@code expireAfterWrite} makes callers wait for upstream. Failed loads never
+ * replace a value, and the last good value of a key is retained for {@code retainFor}, so a
+ * circuit breaker fallback can serve it through {@link #getLastGood} while upstream is down.
+ *
+ * @param <K> Key type
+ * @param <V> Value type; null values are returned but not cached
+ */
+public final class AsyncRefreshingCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRefreshingCache.class);
+
+    private final String name;
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<K, Entry<V>> entries;
+    private final ConcurrentMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+    private record Entry<V>(V value, long loadedAt) {}
+
+    /**
+     * @param name Name of the cache, for logging
+     * @param spec The expiry, refresh and retention of values, and the size limit of the cache.
+     *             Values are refreshed after {@code refreshAfterWrite}, by default the expiry, and
+     *             retained for {@code retainFor}, by default also the expiry.
+     * @throws IllegalArgumentException if the spec has no expireAfterWrite, or refreshAfterWrite
+     *                                  is after expireAfterWrite or retainFor before it
+     */
+    public AsyncRefreshingCache(String name, CacheSpec spec) {
+        this(name, spec, System::nanoTime);
+    }
+
+    AsyncRefreshingCache(String name, CacheSpec spec, LongSupplier nanoClock) {
+        Duration expireAfter = spec.expireAfterWrite();
+        if (expireAfter == null) {
+            throw new IllegalArgumentException("Cache " + name + " needs expireAfterWrite");
+        }
+        Duration refreshAfter = spec.refreshAfterWrite() != null ? spec.refreshAfterWrite() : expireAfter;
+        Duration retainFor = spec.retainFor() != null ? spec.retainFor() : expireAfter;
+        if (refreshAfter.compareTo(expireAfter) > 0 || expireAfter.compareTo(retainFor) > 0) {
+            throw new IllegalArgumentException("Cache " + name + " needs refreshAfterWrite <= expireAfterWrite <= retainFor");
+        }
+        this.name = name;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.expireAfterNanos = expireAfter.toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = spec.<K, Entry<V>>toCaffeine(retainFor, (key, entry) -> ByteSizeWeigher.weigh(entry.value()))
+                .ticker(nanoClock::getAsLong)
+                .build();
+    }
+
+    /**
+     * Get the value of a key, loading it on a miss and reloading it once it is stale.
+     *
+     * @param key The key
+     * @param loader Starts an upstream load of the key; called at most once at a time per key
+     * @return The cached value, or a future of the load; cancelling it does not cancel the load
+     */
+    public CompletableFuture<V> get(K key, Supplier<CompletableFuture<V>> loader) {
+        Entry<V> entry = entries.getIfPresent(key);
+        if (entry != null) {
+            long age = nanoClock.getAsLong() - entry.loadedAt();
+            if (age < expireAfterNanos) {
+                if (age >= refreshAfterNanos) {
+                    load(key, loader);
+                }
+                return CompletableFuture.completedFuture(entry.value());
+            }
+        }
+        return load(key, loader).copy();
+    }
+
+    /**
+     * Reload a key now, whatever the age of its value, e.g. to keep it warm. Joins the load in
+     * flight for the key, if there is one.
+     *
+     * @param key The key
+     * @param loader Starts an upstream load of the key
+     * @return A future of the load; cancelling it does not cancel the load
+     */
+    public CompletableFuture<V> refresh(K key, Supplier<CompletableFuture<V>> loader) {
+        return load(key, loader).copy();
+    }
+
+    /**
+     * @return The last value loaded for a key, however old, if it is still retained
+     */
+    public Optional<V> getLastGood(K key) {
+        Entry<V> entry = entries.getIfPresent(key);
+        return entry != null ? Optional.of(entry.value()) : Optional.empty();
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    public long estimatedSize() {
+        return entries.estimatedSize();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private CompletableFuture<V> load(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loads.putIfAbsent(key, pending);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        CompletableFuture<V> upstream;
+        try {
+            upstream = loader.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        upstream.whenComplete((value, error) -> {
+            // Store the value before completing, so a caller woken by the load finds it
+            if (error == null && value != null) {
+                entries.put(key, new Entry<>(value, nanoClock.getAsLong()));
+            } else if (error != null) {
+                logger.debug("Loading {} of cache {} failed: {}", key, name, error.getMessage());
+            }
+            loads.remove(key, pending);
+            if (error != null) {
+                pending.completeExceptionally(error);
+            } else {
+                pending.complete(value);
+            }
+        });
+        return pending;
+    }
+}
@@ -0,0 +1,56 @@
+package com.environmentdirect.service.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Estimates the heap size of cached values in bytes, so caches of large JSON payloads can be
+ * bounded by memory rather than by entry count. Strings, byte arrays, collections and maps are
+ * measured; other objects count as a fixed size.
+ */
+public final class ByteSizeWeigher {
+
+    // Object header plus fields of a String and its array
+    private static final int STRING_OVERHEAD = 40;
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int ENTRY_OVERHEAD = 32;
+    static final int DEFAULT_OBJECT_SIZE = 256;
+
+    private ByteSizeWeigher() {
+    }
+
+    /**
+     * @return The estimated size of a value in bytes, at least 1
+     */
+    public static int weigh(Object value) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, estimate(value, 0)));
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String string) {
+            // Compact strings keep Latin-1 text, such as NCDC JSON, in one byte per character
+            return STRING_OVERHEAD + string.length();
+        }
+        if (value instanceof byte[] bytes) {
+            return ARRAY_OVERHEAD + bytes.length;
+        }
+        if (depth < 3 && value instanceof Collection<?> collection) {
+            long size = ARRAY_OVERHEAD;
+            for (Object element : collection) {
+                size += 8 + estimate(element, depth + 1);
+            }
+            return size;
+        }
+        if (depth < 3 && value instanceof Map<?, ?> map) {
+            long size = ARRAY_OVERHEAD;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += ENTRY_OVERHEAD + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        return DEFAULT_OBJECT_SIZE;
+    }
+}
@@ -0,0 +1,129 @@
+package com.environmentdirect.service.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Sizing and expiry of one cache, parsed from a comma-separated spec in the style of Caffeine's,
+ * e.g. {@code maximumWeight=32MB,refreshAfterWrite=10m,expireAfterWrite=1h,retainFor=24h}.
+ *
+ * <ul>
+ *   <li>{@code maximumSize}: maximum number of entries</li>
+ *   <li>{@code maximumWeight}: maximum estimated size of the values, e.g. 64MB, see {@link ByteSizeWeigher}</li>
+ *   <li>{@code expireAfterWrite}: age after which an entry is no longer served</li>
+ *   <li>{@code refreshAfterWrite}: age after which an entry is reloaded in the background</li>
+ *   <li>{@code retainFor}: age after which the last good value of an entry is dropped</li>
+ *   <li>{@code softValues}: let the garbage collector evict values under memory pressure</li>
+ *   <li>{@code recordStats}: record hit and miss statistics</li>
+ * </ul>
+ *
+ * Durations are in the simple format of Spring Boot, e.g. 30s, 10m, 1h or 7d. Refreshing and
+ * retention need a loader, so only {@link AsyncRefreshingCache}s use them.
+ *
+ * @param maximumSize Maximum number of entries, or -1
+ * @param maximumWeight Maximum estimated bytes of the values, or -1
+ * @param expireAfterWrite Expiry after write, or null for none
+ * @param refreshAfterWrite Background refresh after write, or null for none
+ * @param retainFor Retention of the last good value, or null for the expiry
+ */
+public record CacheSpec(long maximumSize, long maximumWeight, Duration expireAfterWrite, Duration refreshAfterWrite,
+                        Duration retainFor, boolean softValues, boolean recordStats) {
+
+    private static final CacheSpec EMPTY = new CacheSpec(-1, -1, null, null, null, false, false);
+
+    /**
+     * Parse a spec.
+     *
+     * @throws IllegalArgumentException if the spec has an unknown key or an invalid value
+     */
+    public static CacheSpec parse(String spec) {
+        return parse(spec, EMPTY);
+    }
+
+    /**
+     * Parse a spec over defaults: keys in the spec replace those of the defaults, and a size
+     * limit replaces the other kind of size limit.
+     *
+     * @throws IllegalArgumentException if the spec has an unknown key or an invalid value
+     */
+    public static CacheSpec parse(String spec, CacheSpec defaults) {
+        long maximumSize = defaults.maximumSize();
+        long maximumWeight = defaults.maximumWeight();
+        Duration expireAfterWrite = defaults.expireAfterWrite();
+        Duration refreshAfterWrite = defaults.refreshAfterWrite();
+        Duration retainFor = defaults.retainFor();
+        boolean softValues = defaults.softValues();
+        boolean recordStats = defaults.recordStats();
+
+        for (String option : spec.split(",")) {
+            String trimmed = option.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] parts = trimmed.split("=", 2);
+            String key = parts[0].trim();
+            String value = parts.length == 2 ? parts[1].trim() : null;
+            try {
+                switch (key) {
+                    case "maximumSize" -> {
+                        maximumSize = Long.parseLong(required(key, value));
+                        maximumWeight = -1;
+                    }
+                    case "maximumWeight" -> {
+                        maximumWeight = DataSize.parse(required(key, value)).toBytes();
+                        maximumSize = -1;
+                    }
+                    case "expireAfterWrite" -> expireAfterWrite = DurationStyle.SIMPLE.parse(required(key, value));
+                    case "refreshAfterWrite" -> refreshAfterWrite = DurationStyle.SIMPLE.parse(required(key, value));
+                    case "retainFor" -> retainFor = DurationStyle.SIMPLE.parse(required(key, value));
+                    case "softValues" -> softValues = value == null || Boolean.parseBoolean(value);
+                    case "recordStats" -> recordStats = value == null || Boolean.parseBoolean(value);
+                    default -> throw new IllegalArgumentException("Unknown cache spec key " + key);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + key + " in cache spec: " + value, e);
+            }
+        }
+        return new CacheSpec(maximumSize, maximumWeight, expireAfterWrite, refreshAfterWrite, retainFor,
+                softValues, recordStats);
+    }
+
+    private static String required(String key, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Cache spec key " + key + " needs a value");
+        }
+        return value;
+    }
+
+    /**
+     * Create a Caffeine builder with the size limits of this spec.
+     *
+     * @param expireAfter Expiry of the entries, or null for none
+     * @param weigher Weigher of the entries, used if the spec has a maximum weight
+     */
+    public <K, V> Caffeine<K, V> toCaffeine(Duration expireAfter, Weigher<? super K, ? super V> weigher) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (maximumSize >= 0) {
+            builder.maximumSize(maximumSize);
+        }
+        if (expireAfter != null) {
+            builder.expireAfterWrite(expireAfter);
+        }
+        if (softValues) {
+            builder.softValues();
+        }
+        if (recordStats) {
+            builder.recordStats();
+        }
+        if (maximumWeight >= 0) {
+            return builder.maximumWeight(maximumWeight).weigher(weigher);
+        }
+        @SuppressWarnings("unchecked")
+        Caffeine<K, V> typed = (Caffeine<K, V>) (Caffeine<?, ?>) builder;
+        return typed;
+    }
+}
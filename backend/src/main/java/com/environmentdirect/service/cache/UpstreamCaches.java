@@ -0,0 +1,40 @@
+package com.environmentdirect.service.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link AsyncRefreshingCache}s that services put in front of external APIs, each created
+ * up front from its own {@link CacheSpec}. See {@code CacheConfig}.
+ */
+public class UpstreamCaches {
+
+    private final Map<String, AsyncRefreshingCache<?, ?>> caches = new LinkedHashMap<>();
+
+    /**
+     * @param specs Spec of every cache, by name
+     */
+    public UpstreamCaches(Map<String, CacheSpec> specs) {
+        specs.forEach((name, spec) -> caches.put(name, new AsyncRefreshingCache<>(name, spec)));
+    }
+
+    /**
+     * @param name Name of a configured cache
+     * @return The cache
+     * @throws IllegalArgumentException if no cache of that name is configured
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> AsyncRefreshingCache<K, V> get(String name) {
+        AsyncRefreshingCache<?, ?> cache = caches.get(name);
+        if (cache == null) {
+            throw new IllegalArgumentException("No upstream cache named " + name + " is configured");
+        }
+        return (AsyncRefreshingCache<K, V>) cache;
+    }
+
+    public Collection<AsyncRefreshingCache<?, ?>> getCaches() {
+        return Collections.unmodifiableCollection(caches.values());
+    }
+}
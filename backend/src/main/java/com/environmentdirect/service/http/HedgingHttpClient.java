@@ -0,0 +1,289 @@
+package com.environmentdirect.service.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends requests through the {@link UpstreamHttpClient}, hedging slow GETs when the
+ * {@link HedgingPolicy} is enabled: once a request has been outstanding for longer than the
+ * host's configured latency percentile, a duplicate is sent, the first response wins and the
+ * other request is cancelled. Only a successful (2xx) response wins; an error status such as
+ * 429 or 503 from one copy leaves the other running, and is returned only if no copy succeeds.
+ * A request that fails is not hedged; that is a retry's job.
+ * <p>
+ * Latency percentiles come from a time-decaying histogram of each host's recent responses,
+ * and a host is only hedged once it has enough of them. Every request earns a fraction of a
+ * hedge into its host's budget and every hedge spends a whole one, so hedges never add more
+ * than that fraction of extra requests, plus a small saved-up burst. Hedges also go through the
+ * host's bulkhead, and callers can make them take a permit of their own, e.g. from a rate limiter.
+ * <p>
+ * Meters, all tagged with the host: {@code http.upstream.hedging.latency},
+ * {@code http.upstream.hedges.sent}, {@code http.upstream.hedges.won} and
+ * {@code http.upstream.hedges.over.budget}.
+ */
+@Component
+public class HedgingHttpClient {
+
+    // How long responses count towards a host's latency percentile
+    private static final Duration LATENCY_WINDOW = Duration.ofMinutes(1);
+
+    private final UpstreamHttpClient httpClient;
+    private final HedgingPolicy policy;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("upstream-hedge-timer").daemon().factory());
+
+    @Autowired
+    public HedgingHttpClient(UpstreamHttpClient httpClient, HedgingPolicy hedgingPolicy, MeterRegistry meterRegistry) {
+        this.httpClient = httpClient;
+        this.policy = hedgingPolicy;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Send a request, hedging it if the policy allows.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return sendAsync(request, bodyHandler, () -> true);
+    }
+
+    /**
+     * Send a request, hedging it if the policy allows. Cancelling the returned future cancels
+     * every outstanding copy of the request.
+     *
+     * @param hedgePermit Asked right before a hedge is sent; the hedge is skipped if it returns false
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                            BooleanSupplier hedgePermit) {
+        Host host = hosts.computeIfAbsent(hostName(request.uri()), Host::new);
+        CompletableFuture<HttpResponse<T>> primary = attempt(host, request, bodyHandler);
+        if (!policy.enabled() || !"GET".equals(request.method())) {
+            return primary;
+        }
+        host.earnHedge();
+        long delayNanos = host.hedgeDelayNanos();
+        if (delayNanos < 0) {
+            return primary;
+        }
+
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        Queue<CompletableFuture<HttpResponse<T>>> attempts = new ConcurrentLinkedQueue<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicBoolean answered = new AtomicBoolean();
+        AtomicReference<HttpResponse<T>> unsuccessful = new AtomicReference<>();
+        attempts.add(primary);
+        race(result, primary, pending, answered, unsuccessful, host, false);
+
+        ScheduledFuture<?> hedgeTimer = timer.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!host.spendHedge()) {
+                host.overBudget.increment();
+                return;
+            }
+            // Only hedge while a request is still outstanding, not after they have all failed
+            if (!hedgePermit.getAsBoolean() || pending.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+                host.refundHedge();
+                return;
+            }
+            host.sent.increment();
+            CompletableFuture<HttpResponse<T>> hedge = attempt(host, request, bodyHandler);
+            attempts.add(hedge);
+            race(result, hedge, pending, answered, unsuccessful, host, true);
+            if (result.isDone()) {
+                hedge.cancel(true);
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+
+        result.whenComplete((response, error) -> {
+            hedgeTimer.cancel(false);
+            attempts.forEach(attempt -> attempt.cancel(true));
+        });
+        return result;
+    }
+
+    /**
+     * Send a request, hedging it if the policy allows, and wait for the response. Meant for
+     * virtual threads.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        return send(request, bodyHandler, () -> true);
+    }
+
+    /**
+     * Send a request, hedging it if the policy allows, and wait for the response. Meant for
+     * virtual threads; interrupting the caller cancels every copy of the request.
+     *
+     * @param hedgePermit Asked right before a hedge is sent; the hedge is skipped if it returns false
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                    BooleanSupplier hedgePermit) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> response = sendAsync(request, bodyHandler, hedgePermit);
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> attempt(Host host, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> attempt = httpClient.sendAsync(request, bodyHandler);
+        // Cancelled requests are the slow ones, but there is no latency to record for them; nor
+        // for error statuses, which are often fast rejections
+        attempt.whenComplete((response, error) -> {
+            if (error == null && successful(response)) {
+                host.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        return attempt;
+    }
+
+    private static <T> void race(CompletableFuture<HttpResponse<T>> result, CompletableFuture<HttpResponse<T>> attempt,
+                                 AtomicInteger pending, AtomicBoolean answered,
+                                 AtomicReference<HttpResponse<T>> unsuccessful, Host host, boolean hedge) {
+        attempt.whenComplete((response, error) -> {
+            if (error == null && successful(response)) {
+                // Count a winning hedge before the caller can see its response
+                if (answered.compareAndSet(false, true)) {
+                    if (hedge) {
+                        host.won.increment();
+                    }
+                    result.complete(response);
+                }
+                return;
+            }
+            if (error == null) {
+                unsuccessful.set(response);
+            }
+            // Once no copy is left, the caller gets an error status over an exception, so it can retry as usual
+            if (pending.decrementAndGet() == 0) {
+                HttpResponse<T> last = unsuccessful.get();
+                if (last != null) {
+                    result.complete(last);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            }
+        });
+    }
+
+    private static boolean successful(HttpResponse<?> response) {
+        return response.statusCode() / 100 == 2;
+    }
+
+    private static String hostName(URI uri) {
+        return UpstreamHttpClient.hostName(uri.getScheme(), uri.getHost(), uri.getPort());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * The latencies, hedge budget and meters of one upstream host.
+     */
+    private final class Host {
+
+        final Timer latency;
+        final Counter sent;
+        final Counter won;
+        final Counter overBudget;
+        private double budget;
+
+        Host(String name) {
+            this.latency = Timer.builder("http.upstream.hedging.latency")
+                    .description("Latency of the host's responses, from which hedge delays are taken")
+                    .tag("host", name)
+                    .publishPercentiles(policy.percentile())
+                    .percentilePrecision(2)
+                    .distributionStatisticExpiry(LATENCY_WINDOW)
+                    .register(meterRegistry);
+            this.sent = Counter.builder("http.upstream.hedges.sent")
+                    .description("Duplicate requests sent to the host")
+                    .tag("host", name)
+                    .register(meterRegistry);
+            this.won = Counter.builder("http.upstream.hedges.won")
+                    .description("Duplicate requests that answered before the original")
+                    .tag("host", name)
+                    .register(meterRegistry);
+            this.overBudget = Counter.builder("http.upstream.hedges.over.budget")
+                    .description("Duplicate requests not sent because the hedge budget was spent")
+                    .tag("host", name)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * @return How long to wait before hedging, or -1 if the host's latencies are not known yet
+         */
+        long hedgeDelayNanos() {
+            if (latency.count() < policy.minSamples()) {
+                return -1;
+            }
+            ValueAtPercentile[] percentiles = latency.takeSnapshot().percentileValues();
+            if (percentiles.length == 0) {
+                return -1;
+            }
+            double nanos = percentiles[0].value(TimeUnit.NANOSECONDS);
+            // No responses within the window: nothing to go by
+            if (!(nanos > 0)) {
+                return -1;
+            }
+            return Math.max((long) nanos, policy.minDelay().toNanos());
+        }
+
+        synchronized void earnHedge() {
+            budget = Math.min(policy.maxBudget(), budget + policy.budgetRatio());
+        }
+
+        synchronized boolean spendHedge() {
+            if (budget < 1) {
+                return false;
+            }
+            budget -= 1;
+            return true;
+        }
+
+        synchronized void refundHedge() {
+            budget = Math.min(policy.maxBudget(), budget + 1);
+        }
+    }
+}
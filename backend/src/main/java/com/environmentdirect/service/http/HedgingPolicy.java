@@ -0,0 +1,39 @@
+package com.environmentdirect.service.http;
+
+import java.time.Duration;
+
+/**
+ * When {@link HedgingHttpClient} sends a duplicate of a slow request.
+ *
+ * @param enabled Whether requests are hedged at all
+ * @param percentile Latency percentile of the host after which a hedge is sent, e.g. 0.95
+ * @param minSamples Responses from a host needed before its latencies are trusted
+ * @param minDelay Shortest delay before a hedge, however fast the host usually is
+ * @param budgetRatio Hedges earned per request sent, e.g. 0.1 for at most 10% extra requests
+ * @param maxBudget Most hedges a host can save up for a burst of slow responses
+ */
+public record HedgingPolicy(boolean enabled, double percentile, int minSamples, Duration minDelay,
+                            double budgetRatio, double maxBudget) {
+
+    public HedgingPolicy {
+        if (!(percentile > 0 && percentile < 1)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, was " + percentile);
+        }
+        if (minSamples < 1) {
+            throw new IllegalArgumentException("minSamples must be positive");
+        }
+        if (minDelay == null || minDelay.isNegative()) {
+            throw new IllegalArgumentException("minDelay must not be negative");
+        }
+        if (budgetRatio < 0 || maxBudget < 1) {
+            throw new IllegalArgumentException("budgetRatio must not be negative and maxBudget must be at least 1");
+        }
+    }
+
+    /**
+     * @return A policy that never hedges
+     */
+    public static HedgingPolicy disabled() {
+        return new HedgingPolicy(false, 0.95, 20, Duration.ZERO, 0, 1);
+    }
+}
@@ -0,0 +1,345 @@
+package com.environmentdirect.service.http;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one {@link HttpClient} every external API is called through. Requests run on virtual
+ * threads, and each upstream host has its own semaphore {@link Bulkhead}: a burst against one
+ * slow host queues for that host's permits, up to the bulkhead's maximum wait, and then fails
+ * fast, without holding threads or connections the other hosts need.
+ * <p>
+ * Meters, all tagged with the host:
+ * <ul>
+ *   <li>{@code http.upstream.requests}: request latency, also tagged with the outcome</li>
+ *   <li>{@code http.upstream.queue}: time spent waiting for the host's bulkhead</li>
+ *   <li>{@code http.upstream.in.flight}: requests holding a bulkhead permit</li>
+ *   <li>{@code http.upstream.rejected}: requests the bulkhead turned away</li>
+ *   <li>{@code http.upstream.response.size}: response body bytes</li>
+ *   <li>{@code http.upstream.connections.opened}: TLS connections opened; every other HTTPS
+ *   request reused a pooled connection</li>
+ *   <li>{@code http.upstream.connections.reuse}: share of HTTPS requests that reused a connection</li>
+ * </ul>
+ */
+@Component
+public class UpstreamHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamHttpClient.class);
+
+    private final HttpClient httpClient;
+    private final BulkheadConfig bulkheadConfig;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("upstream-http-", 0).factory());
+
+    /**
+     * @param bulkheadConfig Concurrency limit and maximum wait of each host's bulkhead
+     * @param connectTimeout Timeout for opening a connection
+     */
+    @Autowired
+    public UpstreamHttpClient(@Qualifier("upstreamHostBulkheadConfig") BulkheadConfig bulkheadConfig,
+                              MeterRegistry meterRegistry,
+                              @Value("${http.upstream.connect-timeout:10s}") Duration connectTimeout) {
+        this.bulkheadConfig = bulkheadConfig;
+        this.meterRegistry = meterRegistry;
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor);
+        try {
+            builder.sslContext(new CountingSSLContext(SSLContext.getDefault(), this::connectionOpened));
+        } catch (NoSuchAlgorithmException e) {
+            logger.warn("No default SSLContext, TLS connections will not be counted", e);
+        }
+        this.httpClient = builder.build();
+    }
+
+    /**
+     * Send a request, blocking the calling thread until the response has arrived. Meant for
+     * virtual threads; waiting for the host's bulkhead is part of the call.
+     *
+     * @throws BulkheadFullException if the host's bulkhead had no permit within its maximum wait
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        Host host = host(request.uri());
+
+        long queuedAt = System.nanoTime();
+        try {
+            host.bulkhead.acquirePermission();
+        } catch (BulkheadFullException e) {
+            host.rejected.increment();
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted waiting for " + host.name);
+            }
+            throw e;
+        }
+        long startedAt = System.nanoTime();
+        host.queue.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+
+        host.inFlight.incrementAndGet();
+        String outcome = "IO_ERROR";
+        try {
+            HttpResponse<T> response = httpClient.send(request, bodyHandler);
+            outcome = outcome(response.statusCode());
+            host.requests.incrementAndGet();
+            host.responseSize.record(responseSize(response));
+            return response;
+        } catch (InterruptedException e) {
+            outcome = "CANCELLED";
+            throw e;
+        } finally {
+            host.inFlight.decrementAndGet();
+            host.bulkhead.onComplete();
+            host.requestTimer(outcome).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Send a request on a virtual thread. Cancelling the returned future interrupts the request,
+     * or its wait for the host's bulkhead.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(send(request, bodyHandler));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.cancel(false);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private Host host(URI uri) {
+        return hosts.computeIfAbsent(hostName(uri.getScheme(), uri.getHost(), uri.getPort()), Host::new);
+    }
+
+    private void connectionOpened(String peerHost, int peerPort) {
+        hosts.computeIfAbsent(hostName("https", peerHost, peerPort), Host::new).connectionsOpened.increment();
+    }
+
+    static String hostName(String scheme, String host, int port) {
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(scheme) ? 443 : 80;
+        }
+        return host.toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    private static String outcome(int status) {
+        return switch (status / 100) {
+            case 1 -> "INFORMATIONAL";
+            case 2 -> "SUCCESS";
+            case 3 -> "REDIRECTION";
+            case 4 -> "CLIENT_ERROR";
+            case 5 -> "SERVER_ERROR";
+            default -> "UNKNOWN";
+        };
+    }
+
+    private static long responseSize(HttpResponse<?> response) {
+        if (response.body() instanceof byte[] body) {
+            return body.length;
+        }
+        if (response.body() instanceof String body) {
+            return body.length();
+        }
+        return Math.max(0, response.headers().firstValueAsLong("Content-Length").orElse(0));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        httpClient.shutdownNow();
+    }
+
+    /**
+     * The bulkhead and meters of one upstream host.
+     */
+    private final class Host {
+
+        final String name;
+        final Bulkhead bulkhead;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong requests = new AtomicLong();
+        final Timer queue;
+        final Counter rejected;
+        final Counter connectionsOpened;
+        final DistributionSummary responseSize;
+        private final ConcurrentMap<String, Timer> requestTimers = new ConcurrentHashMap<>();
+
+        Host(String name) {
+            this.name = name;
+            this.bulkhead = Bulkhead.of("upstream-" + name, bulkheadConfig);
+            this.queue = Timer.builder("http.upstream.queue")
+                    .description("Time spent waiting for the host's bulkhead")
+                    .tag("host", name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("http.upstream.rejected")
+                    .description("Requests rejected by the host's bulkhead")
+                    .tag("host", name)
+                    .register(meterRegistry);
+            this.connectionsOpened = Counter.builder("http.upstream.connections.opened")
+                    .description("TLS connections opened to the host")
+                    .tag("host", name)
+                    .register(meterRegistry);
+            this.responseSize = DistributionSummary.builder("http.upstream.response.size")
+                    .baseUnit("bytes")
+                    .tag("host", name)
+                    .register(meterRegistry);
+            Gauge.builder("http.upstream.in.flight", inFlight, AtomicInteger::get)
+                    .description("Requests to the host holding a bulkhead permit")
+                    .tag("host", name)
+                    .register(meterRegistry);
+            Gauge.builder("http.upstream.connections.reuse", this, Host::connectionReuse)
+                    .description("Share of requests to the host sent over an already open TLS connection")
+                    .tag("host", name)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * @return The host's latency timer for one outcome, registered on first use
+         */
+        Timer requestTimer(String outcome) {
+            return requestTimers.computeIfAbsent(outcome, key -> Timer.builder("http.upstream.requests")
+                    .description("Latency of requests to the host, by outcome")
+                    .tag("host", name)
+                    .tag("outcome", key)
+                    .register(meterRegistry));
+        }
+
+        private double connectionReuse() {
+            long total = requests.get();
+            double opened = connectionsOpened.count();
+            return total == 0 || opened == 0 ? Double.NaN : Math.max(0, 1 - opened / total);
+        }
+    }
+
+    /**
+     * Receives the peer of every TLS connection the client opens.
+     */
+    @FunctionalInterface
+    interface ConnectionListener {
+
+        void opened(String peerHost, int peerPort);
+    }
+
+    /**
+     * An SSLContext delegating to another one, reporting every engine created for a peer. The
+     * HttpClient creates one engine per connection, so this counts the connections it opens.
+     */
+    static final class CountingSSLContext extends SSLContext {
+
+        CountingSSLContext(SSLContext delegate, ConnectionListener listener) {
+            super(new CountingSpi(delegate, listener), delegate.getProvider(), delegate.getProtocol());
+        }
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+        private final ConnectionListener listener;
+
+        CountingSpi(SSLContext delegate, ConnectionListener listener) {
+            this.delegate = delegate;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom random) {
+            throw new UnsupportedOperationException("The delegate SSLContext is already initialized");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            listener.opened(host, port);
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.environmentdirect.service.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Helpers for passing JSON through as UTF-8 bytes. Upstream responses are kept as the bytes
+ * they arrived in, and combined responses are written by a streaming generator that splices
+ * those bytes in verbatim with {@link #writeRawField}, so a payload is never decoded to a
+ * UTF-16 string, concatenated and encoded again.
+ */
+public final class JsonBytes {
+
+    // Generators must not close the servlet output stream they write to
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    /**
+     * Writes a JSON document to a generator.
+     */
+    @FunctionalInterface
+    public interface Writer {
+
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private JsonBytes() {
+    }
+
+    /**
+     * Create a UTF-8 generator that writes to a stream and leaves it open when closed.
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+    }
+
+    /**
+     * Write a document to a stream, e.g. a servlet response.
+     */
+    public static void write(OutputStream out, Writer writer) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            writer.write(generator);
+        }
+    }
+
+    /**
+     * Write a document to a byte array.
+     *
+     * @param sizeHint Expected size in bytes, e.g. the sum of the spliced parts
+     */
+    public static byte[] toBytes(int sizeHint, Writer writer) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, sizeHint));
+        try {
+            write(out, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a field whose value is a JSON document given as UTF-8 bytes, copied verbatim.
+     */
+    public static void writeRawField(JsonGenerator generator, String name, byte[] json) throws IOException {
+        generator.writeFieldName(name);
+        generator.writeRawValue(raw(json, 0, json.length));
+    }
+
+    /**
+     * Wrap UTF-8 JSON for {@link JsonGenerator#writeRaw(SerializableString)} or
+     * {@link JsonGenerator#writeRawValue(SerializableString)}, which copy the bytes verbatim.
+     */
+    public static SerializableString raw(byte[] json, int offset, int length) {
+        return new RawUtf8(json, offset, length);
+    }
+
+    public static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * UTF-8 text that a UTF-8 generator copies straight into its output buffer. Only the
+     * unquoted UTF-8 accessors are meant to be used; the others decode the text.
+     */
+    private static final class RawUtf8 implements SerializableString {
+
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        RawUtf8(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String getValue() {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return getValue().toCharArray();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return offset == 0 && length == bytes.length ? bytes : Arrays.copyOfRange(bytes, offset, offset + length);
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return asUnquotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int position) {
+            return appendUnquotedUTF8(buffer, position);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int position) {
+            return appendUnquoted(buffer, position);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int position) {
+            if (position + length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(bytes, offset, buffer, position, length);
+            return length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int position) {
+            String value = getValue();
+            if (position + value.length() > buffer.length) {
+                return -1;
+            }
+            value.getChars(0, value.length(), buffer, position);
+            return value.length();
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return writeUnquotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            return putUnquotedUTF8(buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            if (buffer.remaining() < length) {
+                return -1;
+            }
+            buffer.put(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return getValue();
+        }
+    }
+}
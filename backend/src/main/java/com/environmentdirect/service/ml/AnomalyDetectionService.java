@@ -2,7 +2,6 @@ package com.environmentdirect.service.ml;
 
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-import org.apache.commons.math3.ml.distance.EuclideanDistance;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,8 +10,11 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Optional;
 import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 /**
  * Service for detecting anomalies in environmental data.
@@ -24,10 +26,20 @@ public class AnomalyDetectionService {
     private static final Logger logger = LoggerFactory.getLogger(AnomalyDetectionService.class);
     
     // Threshold for Z-score based anomaly detection
-    private static final double Z_SCORE_THRESHOLD = 2.5;
+    static final double Z_SCORE_THRESHOLD = 2.5;
     
     // Threshold for IQR-based anomaly detection
-    private static final double IQR_MULTIPLIER = 1.5;
+    static final double IQR_MULTIPLIER = 1.5;
+    
+    // Mahalanobis models per dataset, reused until the dataset version changes
+    private final ConcurrentMap<String, VersionedModel> mahalanobisModels = new ConcurrentHashMap<>();
+    
+    // Seasonal baselines per (entity, metric) series, rebuilt by the baseline job
+    private final ConcurrentMap<SeriesKey, SeasonalBaseline> seasonalBaselines = new ConcurrentHashMap<>();
+    
+    private record SeriesKey(String entity, String metric) {}
+    
+    private final AnomalyScan anomalyScan = new AnomalyScan();
     
     /**
      * Detect anomalies in a time series using Z-score method.
@@ -63,6 +75,8 @@ public class AnomalyDetectionService {
     /**
      * Detect anomalies in a time series using IQR (Interquartile Range) method.
      * Points outside Q1 - IQR_MULTIPLIER*IQR and Q3 + IQR_MULTIPLIER*IQR are considered anomalies.
+     * Quartiles come from a {@link QuantileSketch} of the series instead of a sorted copy; they
+     * are exact for series of up to {@link QuantileSketch#DEFAULT_K} points.
      * 
      * @param timeSeries Array of data points
      * @return List of indices where anomalies were detected
@@ -71,25 +85,17 @@ public class AnomalyDetectionService {
         List<Integer> anomalies = new ArrayList<>();
         
         try {
-            // Sort the data for quartile calculation
-            double[] sortedData = Arrays.copyOf(timeSeries, timeSeries.length);
-            Arrays.sort(sortedData);
-            
-            // Calculate quartiles
-            double q1 = sortedData[(int) (sortedData.length * 0.25)];
-            double q3 = sortedData[(int) (sortedData.length * 0.75)];
-            double iqr = q3 - q1;
-            
-            // Calculate bounds
-            double lowerBound = q1 - (IQR_MULTIPLIER * iqr);
-            double upperBound = q3 + (IQR_MULTIPLIER * iqr);
+            if (timeSeries.length == 0) {
+                return anomalies;
+            }
+            IqrBounds bounds = getIqrBounds(QuantileSketch.of(timeSeries));
             
             // Check for anomalies
             for (int i = 0; i < timeSeries.length; i++) {
-                if (timeSeries[i] < lowerBound || timeSeries[i] > upperBound) {
+                if (bounds.isOutlier(timeSeries[i])) {
                     anomalies.add(i);
                     logger.debug("Anomaly detected at index {} with value {} outside bounds [{}, {}]", 
-                                i, timeSeries[i], lowerBound, upperBound);
+                                i, timeSeries[i], bounds.lowerBound(), bounds.upperBound());
                 }
             }
         } catch (Exception e) {
@@ -99,47 +105,134 @@ public class AnomalyDetectionService {
         return anomalies;
     }
     
+    /**
+     * Quartiles of a series and the bounds outside which its points are IQR anomalies.
+     */
+    public record IqrBounds(double q1, double q3, double lowerBound, double upperBound) {
+
+        public boolean isOutlier(double value) {
+            return value < lowerBound || value > upperBound;
+        }
+    }
+    
+    /**
+     * Compute IQR anomaly bounds from a quantile sketch.
+     * Sketches of time buckets or of other nodes can be merged first, so bounds for long
+     * series are computed without materializing or sorting the raw data.
+     * 
+     * @param sketch Sketch of the series
+     * @return The quartiles and anomaly bounds
+     * @throws IllegalArgumentException if the sketch is empty
+     */
+    public IqrBounds getIqrBounds(QuantileSketch sketch) {
+        if (sketch.getCount() == 0) {
+            throw new IllegalArgumentException("Cannot compute IQR bounds of an empty series");
+        }
+        double q1 = sketch.quantile(0.25);
+        double q3 = sketch.quantile(0.75);
+        double iqr = q3 - q1;
+        return new IqrBounds(q1, q3, q1 - (IQR_MULTIPLIER * iqr), q3 + (IQR_MULTIPLIER * iqr));
+    }
+    
     /**
      * Detect anomalies in a multivariate time series using Mahalanobis distance.
-     * This is a simplified implementation that uses Euclidean distance instead.
+     * Unlike the distance from the mean, this accounts for the scale of and correlation between
+     * the variables, e.g. rainfall and soil saturation rising together. The model is fitted on
+     * the series and cached, so later calls for the same dataset version only score the rows.
      * 
+     * @param dataset Name of the dataset, e.g. "flood-features:Portsmouth"
+     * @param dataVersion Version of the dataset; any change refits the model
      * @param multiTimeSeries Array of multivariate data points
-     * @param distanceThreshold Threshold for anomaly detection
+     * @param distanceThreshold Mahalanobis distance above which a point is an anomaly
      * @return List of indices where anomalies were detected
      */
-    public List<Integer> detectMultivariateAnomalies(double[][] multiTimeSeries, double distanceThreshold) {
-        List<Integer> anomalies = new ArrayList<>();
-        
+    public List<Integer> detectMultivariateAnomalies(String dataset, long dataVersion, double[][] multiTimeSeries,
+                                                     double distanceThreshold) {
         try {
-            // Calculate mean vector
-            int dimensions = multiTimeSeries[0].length;
-            double[] meanVector = new double[dimensions];
-            
-            for (double[] point : multiTimeSeries) {
-                for (int i = 0; i < dimensions; i++) {
-                    meanVector[i] += point[i];
-                }
-            }
-            
-            for (int i = 0; i < dimensions; i++) {
-                meanVector[i] /= multiTimeSeries.length;
+            MahalanobisModel model = getMahalanobisModel(dataset, dataVersion, () -> multiTimeSeries);
+            return detectMultivariateAnomalies(model, multiTimeSeries, distanceThreshold);
+        } catch (Exception e) {
+            logger.error("Error detecting multivariate anomalies in dataset: {}", dataset, e);
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Detect multivariate anomalies against a previously fitted model.
+     * 
+     * @param model Model fitted on the reference data, see {@link #getMahalanobisModel}
+     * @param multiTimeSeries Array of multivariate data points to score
+     * @param distanceThreshold Mahalanobis distance above which a point is an anomaly
+     * @return List of indices where anomalies were detected
+     */
+    public List<Integer> detectMultivariateAnomalies(MahalanobisModel model, double[][] multiTimeSeries,
+                                                     double distanceThreshold) {
+        List<Integer> anomalies = new ArrayList<>();
+        double[] distances = model.distances(multiTimeSeries);
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] > distanceThreshold) {
+                anomalies.add(i);
+                logger.debug("Multivariate anomaly detected at index {} with distance {}", i, distances[i]);
             }
-            
-            // Calculate distances from mean
-            EuclideanDistance distance = new EuclideanDistance();
-            
-            for (int i = 0; i < multiTimeSeries.length; i++) {
-                double dist = distance.compute(multiTimeSeries[i], meanVector);
-                if (dist > distanceThreshold) {
-                    anomalies.add(i);
-                    logger.debug("Multivariate anomaly detected at index {} with distance {}", i, dist);
+        }
+        return anomalies;
+    }
+    
+    /**
+     * Get the Mahalanobis model of a named dataset, fitting it only when the dataset has
+     * changed since the model was cached. The map only swaps in an unfitted holder for a new
+     * version; the fit itself runs once per holder, outside the map's lock.
+     * 
+     * @param dataset Name of the dataset, e.g. "flood-features:Portsmouth"
+     * @param dataVersion Version of the dataset; any change refits the model
+     * @param rows Supplies the rows of the dataset if the model has to be fitted
+     * @return The fitted model
+     */
+    public MahalanobisModel getMahalanobisModel(String dataset, long dataVersion, Supplier<double[][]> rows) {
+        VersionedModel cached = mahalanobisModels.computeIfAbsent(dataset, key -> new VersionedModel(dataVersion, rows));
+        if (cached.dataVersion != dataVersion) {
+            cached = mahalanobisModels.compute(dataset, (key, current) ->
+                    current != null && current.dataVersion == dataVersion ? current : new VersionedModel(dataVersion, rows));
+        }
+        return cached.model();
+    }
+    
+    /**
+     * A dataset version and its model, fitted on first use by whichever caller gets there first.
+     */
+    private static final class VersionedModel {
+        
+        private final long dataVersion;
+        private Supplier<double[][]> rows;
+        private volatile MahalanobisModel model;
+        
+        private VersionedModel(long dataVersion, Supplier<double[][]> rows) {
+            this.dataVersion = dataVersion;
+            this.rows = rows;
+        }
+        
+        private MahalanobisModel model() {
+            MahalanobisModel fitted = model;
+            if (fitted == null) {
+                synchronized (this) {
+                    fitted = model;
+                    if (fitted == null) {
+                        fitted = MahalanobisModel.fit(rows.get());
+                        model = fitted;
+                        // The rows are not needed once fitted
+                        rows = null;
+                    }
                 }
             }
-        } catch (Exception e) {
-            logger.error("Error detecting multivariate anomalies", e);
+            return fitted;
         }
-        
-        return anomalies;
+    }
+    
+    /**
+     * Drop the cached Mahalanobis model of a dataset.
+     */
+    public void evictMahalanobisModel(String dataset) {
+        mahalanobisModels.remove(dataset);
     }
     
     /**
@@ -179,9 +272,78 @@ public class AnomalyDetectionService {
         return anomalies;
     }
     
+    /**
+     * Detect seasonal anomalies against a precomputed seasonal baseline.
+     * Each value is compared with the expected value and spread of its day of year, so the
+     * cost per point is constant however long the history behind the baseline is.
+     * 
+     * @param baseline Baseline of the series, see {@link #getSeasonalBaseline}
+     * @param firstDate Date of the first value in currentData
+     * @param currentData One value per consecutive day
+     * @param sensitivityThreshold Threshold for anomaly detection (0-1)
+     * @return List of indices in currentData where anomalies were detected
+     */
+    public List<Integer> detectSeasonalAnomalies(SeasonalBaseline baseline, LocalDate firstDate,
+                                                 double[] currentData, double sensitivityThreshold) {
+        List<Integer> anomalies = new ArrayList<>();
+        double threshold = Z_SCORE_THRESHOLD * (2.0 - sensitivityThreshold);
+        for (int i = 0; i < currentData.length; i++) {
+            double zScore = Math.abs(baseline.zScore(firstDate.plusDays(i), currentData[i]));
+            if (zScore > threshold) {
+                anomalies.add(i);
+                logger.debug("Seasonal anomaly detected at index {} with Z-score {}", i, zScore);
+            }
+        }
+        return anomalies;
+    }
+    
+    /**
+     * Detect seasonal anomalies in a series against its stored seasonal baseline.
+     * 
+     * @param entity The region or site, e.g. "flood-risk:Portsmouth"
+     * @param metric The metric, e.g. "floodRiskLevel"
+     * @param firstDate Date of the first value in currentData
+     * @param currentData One value per consecutive day
+     * @param sensitivityThreshold Threshold for anomaly detection (0-1)
+     * @return List of indices in currentData where anomalies were detected; empty if the series has no baseline yet
+     */
+    public List<Integer> detectSeasonalAnomalies(String entity, String metric, LocalDate firstDate,
+                                                 double[] currentData, double sensitivityThreshold) {
+        SeasonalBaseline baseline = seasonalBaselines.get(new SeriesKey(entity, metric));
+        if (baseline == null) {
+            logger.warn("No seasonal baseline for {} {}", entity, metric);
+            return new ArrayList<>();
+        }
+        return detectSeasonalAnomalies(baseline, firstDate, currentData, sensitivityThreshold);
+    }
+    
+    /**
+     * Decompose the history of a series and store it as the series' seasonal baseline,
+     * replacing the previous one.
+     * 
+     * @param entity The region or site
+     * @param metric The metric
+     * @param firstDate Date of the first value
+     * @param history One value per consecutive day, at least {@link SeasonalBaseline#MIN_HISTORY_DAYS}
+     * @return The new baseline
+     */
+    public SeasonalBaseline updateSeasonalBaseline(String entity, String metric, LocalDate firstDate, double[] history) {
+        SeasonalBaseline baseline = SeasonalBaseline.decompose(firstDate, history);
+        seasonalBaselines.put(new SeriesKey(entity, metric), baseline);
+        return baseline;
+    }
+    
+    /**
+     * @return The seasonal baseline of a series, if one has been built
+     */
+    public Optional<SeasonalBaseline> getSeasonalBaseline(String entity, String metric) {
+        return Optional.ofNullable(seasonalBaselines.get(new SeriesKey(entity, metric)));
+    }
+    
     /**
      * Detect change points in a time series.
      * Change points are where the statistical properties of the time series change.
+     * The series is scanned once with a {@link ChangePointDetector}, in O(n) regardless of the window size.
      * 
      * @param timeSeries Array of data points
      * @param windowSize Size of the sliding window
@@ -196,29 +358,13 @@ public class AnomalyDetectionService {
                 return changePoints;
             }
             
-            // Sliding window approach
-            for (int i = windowSize; i < timeSeries.length - windowSize; i++) {
-                // Get windows before and after current point
-                double[] windowBefore = Arrays.copyOfRange(timeSeries, i - windowSize, i);
-                double[] windowAfter = Arrays.copyOfRange(timeSeries, i, i + windowSize);
-                
-                // Calculate statistics for both windows
-                DescriptiveStatistics statsBefore = new DescriptiveStatistics(windowBefore);
-                DescriptiveStatistics statsAfter = new DescriptiveStatistics(windowAfter);
-                
-                double meanBefore = statsBefore.getMean();
-                double meanAfter = statsAfter.getMean();
-                
-                // Calculate relative change in mean
-                double relativeChange = Math.abs((meanAfter - meanBefore) / meanBefore);
-                
-                // If relative change is significant, mark as change point
-                if (relativeChange > 0.2) { // 20% change threshold
-                    changePoints.add(i);
-                    logger.debug("Change point detected at index {} with relative change {}", i, relativeChange);
-                    
-                    // Skip ahead to avoid detecting multiple change points in the same area
-                    i += windowSize / 2;
+            // A point is only tested when a value follows its later window, so the last value is not fed
+            ChangePointDetector detector = new ChangePointDetector(windowSize);
+            for (int i = 0; i < timeSeries.length - 1; i++) {
+                long changePoint = detector.add(timeSeries[i]);
+                if (changePoint >= 0) {
+                    changePoints.add((int) changePoint);
+                    logger.debug("Change point detected at index {}", changePoint);
                 }
             }
         } catch (Exception e) {
@@ -228,6 +374,17 @@ public class AnomalyDetectionService {
         return changePoints;
     }
     
+    /**
+     * Scan many (entity, metric) series for anomalies in parallel and rank what is found.
+     * 
+     * @param series Daily series as primitive columns
+     * @param limit Maximum number of findings to report
+     * @return The ranked anomaly report
+     */
+    public AnomalyScan.Report scanAnomalies(List<AnomalyScan.Series> series, int limit) {
+        return anomalyScan.scan(series, limit);
+    }
+    
     /**
      * Analyze flood risk data for anomalies.
      * 
@@ -0,0 +1,185 @@
+package com.environmentdirect.service.ml;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Batch anomaly scan over many (entity, metric) series at once.
+ * Each series is a primitive column of daily values and is scanned in a single pass for
+ * z-score outliers, plus a quantile sketch for IQR outliers and a streaming change-point
+ * detector. Series are scanned in parallel on a fork-join pool; each task keeps only its
+ * most severe findings, so the report stays compact however many points are scanned.
+ */
+public final class AnomalyScan {
+
+    // Window of the change-point detection, as used by the per-entity analyses
+    static final int CHANGE_POINT_WINDOW = 3;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * One daily series of a metric of a region or site.
+     *
+     * @param entity The region or site, e.g. "flood-risk:Portsmouth"
+     * @param metric The metric, e.g. "floodRiskLevel"
+     * @param firstDate Date of the first value
+     * @param values One value per day
+     */
+    public record Series(String entity, String metric, LocalDate firstDate, double[] values) {}
+
+    /**
+     * One anomalous point.
+     *
+     * @param zScore Deviation from the series mean in standard deviations
+     * @param iqrOutlier Whether the value is outside the series' IQR bounds
+     * @param changePoint Whether the series' mean shifts at this point
+     */
+    public record Finding(String entity, String metric, LocalDate date, double value,
+                          double zScore, boolean iqrOutlier, boolean changePoint) {
+
+        public double severity() {
+            return Math.abs(zScore);
+        }
+    }
+
+    /**
+     * @param seriesScanned Number of series scanned
+     * @param pointsScanned Number of values scanned across all series
+     * @param anomalyCount Number of anomalous points found
+     * @param findings The most severe findings, most severe first
+     */
+    public record Report(int seriesScanned, long pointsScanned, int anomalyCount, List<Finding> findings) {}
+
+    // Most severe first; ties in a stable order so reports are reproducible
+    private static final Comparator<Finding> BY_SEVERITY = Comparator.comparingDouble(Finding::severity).reversed()
+            .thenComparing(Finding::entity)
+            .thenComparing(Finding::metric)
+            .thenComparing(Finding::date);
+
+    /**
+     * Create a scan that runs on the common fork-join pool.
+     */
+    public AnomalyScan() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public AnomalyScan(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Scan all series and rank the anomalies found.
+     *
+     * @param series The series to scan
+     * @param limit Maximum number of findings to report
+     * @return The report
+     */
+    public Report scan(List<Series> series, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        if (series.isEmpty()) {
+            return new Report(0, 0, 0, List.of());
+        }
+        Partial result = pool.invoke(new ScanTask(series, limit, 0, series.size()));
+        return new Report(series.size(), result.points(), result.anomalies(), result.findings());
+    }
+
+    private record Partial(long points, int anomalies, List<Finding> findings) {}
+
+    private static final class ScanTask extends RecursiveTask<Partial> {
+
+        private final List<Series> series;
+        private final int limit;
+        private final int from;
+        private final int to;
+
+        ScanTask(List<Series> series, int limit, int from, int to) {
+            this.series = series;
+            this.limit = limit;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from == 1) {
+                return scanSeries(series.get(from), limit);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(series, limit, from, middle);
+            left.fork();
+            Partial right = new ScanTask(series, limit, middle, to).compute();
+            return combine(left.join(), right, limit);
+        }
+    }
+
+    static Partial scanSeries(Series series, int limit) {
+        double[] values = series.values();
+        int n = values.length;
+        if (n < 2) {
+            return new Partial(n, 0, List.of());
+        }
+
+        // One pass for the mean, variance, quartiles and change points
+        double mean = 0;
+        double m2 = 0;
+        QuantileSketch sketch = new QuantileSketch();
+        ChangePointDetector changePoints = new ChangePointDetector(CHANGE_POINT_WINDOW);
+        boolean[] isChangePoint = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            double value = values[i];
+            double delta = value - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (value - mean);
+            sketch.update(value);
+            // As in detectChangePoints, the last value is not fed
+            if (i < n - 1) {
+                long changePoint = changePoints.add(value);
+                if (changePoint >= 0) {
+                    isChangePoint[(int) changePoint] = true;
+                }
+            }
+        }
+        double standardDeviation = Math.sqrt(m2 / (n - 1));
+        double q1 = sketch.quantile(0.25);
+        double q3 = sketch.quantile(0.75);
+        double iqr = q3 - q1;
+        double lowerBound = q1 - AnomalyDetectionService.IQR_MULTIPLIER * iqr;
+        double upperBound = q3 + AnomalyDetectionService.IQR_MULTIPLIER * iqr;
+
+        List<Finding> findings = new ArrayList<>();
+        int anomalies = 0;
+        for (int i = 0; i < n; i++) {
+            double value = values[i];
+            double zScore = standardDeviation > 0 ? (value - mean) / standardDeviation : 0;
+            boolean iqrOutlier = value < lowerBound || value > upperBound;
+            if (Math.abs(zScore) > AnomalyDetectionService.Z_SCORE_THRESHOLD || iqrOutlier || isChangePoint[i]) {
+                anomalies++;
+                findings.add(new Finding(series.entity(), series.metric(), series.firstDate().plusDays(i),
+                        value, zScore, iqrOutlier, isChangePoint[i]));
+            }
+        }
+        findings.sort(BY_SEVERITY);
+        return new Partial(n, anomalies, findings.size() > limit ? List.copyOf(findings.subList(0, limit)) : findings);
+    }
+
+    private static Partial combine(Partial left, Partial right, int limit) {
+        List<Finding> findings = new ArrayList<>(Math.min(limit, left.findings().size() + right.findings().size()));
+        int i = 0;
+        int j = 0;
+        while (findings.size() < limit && (i < left.findings().size() || j < right.findings().size())) {
+            if (j >= right.findings().size()
+                    || (i < left.findings().size() && BY_SEVERITY.compare(left.findings().get(i), right.findings().get(j)) <= 0)) {
+                findings.add(left.findings().get(i++));
+            } else {
+                findings.add(right.findings().get(j++));
+            }
+        }
+        return new Partial(left.points() + right.points(), left.anomalies() + right.anomalies(), findings);
+    }
+}
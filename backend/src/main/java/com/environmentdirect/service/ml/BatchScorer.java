@@ -0,0 +1,119 @@
+package com.environmentdirect.service.ml;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batch scoring for the linear prediction models.
+ * Scores a whole feature matrix in one pass, using the JDK Vector API when the
+ * jdk.incubator.vector module is available at runtime and a scalar loop otherwise.
+ */
+public final class BatchScorer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchScorer.class);
+
+    private static final double MIN_LEVEL = 0;
+    private static final double MAX_LEVEL = 4;
+
+    private static final boolean VECTOR_API_AVAILABLE = detectVectorApi();
+
+    private BatchScorer() {
+    }
+
+    /**
+     * @return Whether batch scoring runs on the JDK Vector API
+     */
+    public static boolean isVectorApiAvailable() {
+        return VECTOR_API_AVAILABLE;
+    }
+
+    /**
+     * Score a flood risk feature matrix.
+     *
+     * @param model The compiled flood risk model
+     * @param features One row per prediction, each in the model's feature order
+     * @return Risk levels (0-4), one per row
+     */
+    public static int[] scoreFloodRisk(CompiledFloodRiskModel model, double[][] features) {
+        int width = CompiledFloodRiskModel.FEATURE_COUNT;
+        double[] rowMajor = new double[features.length * width];
+        for (int row = 0; row < features.length; row++) {
+            if (features[row].length != width) {
+                throw new IllegalArgumentException("Row " + row + " must have " + width + " features");
+            }
+            System.arraycopy(features[row], 0, rowMajor, row * width, width);
+        }
+        return scoreFloodRisk(model, rowMajor);
+    }
+
+    /**
+     * Score a flood risk feature matrix stored as a flat row-major array.
+     *
+     * @param model The compiled flood risk model
+     * @param rowMajorFeatures Feature values, {@link CompiledFloodRiskModel#FEATURE_COUNT} per row
+     * @return Risk levels (0-4), one per row
+     */
+    public static int[] scoreFloodRisk(CompiledFloodRiskModel model, double[] rowMajorFeatures) {
+        int width = CompiledFloodRiskModel.FEATURE_COUNT;
+        if (rowMajorFeatures.length % width != 0) {
+            throw new IllegalArgumentException("Feature array length must be a multiple of " + width);
+        }
+        int rows = rowMajorFeatures.length / width;
+        double[] raw = new double[rows];
+
+        if (VECTOR_API_AVAILABLE) {
+            VectorScoringKernels.linearRows(model.getIntercept(), model.getCoefficients(),
+                    rowMajorFeatures, rows, MIN_LEVEL, MAX_LEVEL, raw);
+        } else {
+            for (int row = 0; row < rows; row++) {
+                raw[row] = model.score(rowMajorFeatures, row * width);
+            }
+        }
+        return toLevels(raw);
+    }
+
+    /**
+     * Score a single-feature linear model (intercept + slope * x) for every input.
+     *
+     * @param intercept The model intercept
+     * @param slope The model slope
+     * @param inputs Feature values
+     * @return Levels (0-4), one per input
+     */
+    public static int[] scoreLinear(double intercept, double slope, double[] inputs) {
+        double[] raw = new double[inputs.length];
+        if (VECTOR_API_AVAILABLE) {
+            VectorScoringKernels.linear(intercept, slope, inputs, MIN_LEVEL, MAX_LEVEL, raw);
+        } else {
+            for (int i = 0; i < inputs.length; i++) {
+                raw[i] = intercept + slope * inputs[i];
+            }
+        }
+        return toLevels(raw);
+    }
+
+    private static int[] toLevels(double[] raw) {
+        int[] levels = new int[raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            levels[i] = CompiledFloodRiskModel.toRiskLevel(raw[i]);
+        }
+        return levels;
+    }
+
+    private static boolean detectVectorApi() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            logger.info("JDK Vector API not available, batch scoring uses scalar loops "
+                    + "(start the JVM with --add-modules jdk.incubator.vector to enable it)");
+            return false;
+        }
+        try {
+            // Exercise the kernel once so a broken setup falls back instead of failing requests
+            VectorScoringKernels.linear(0, 1, new double[] {1}, MIN_LEVEL, MAX_LEVEL, new double[1]);
+            logger.info("JDK Vector API available, batch scoring is vectorized");
+            return true;
+        } catch (LinkageError e) {
+            logger.warn("JDK Vector API could not be loaded, batch scoring uses scalar loops", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.environmentdirect.service.ml;
+
+/**
+ * Streaming change-point detector for one series.
+ * A point is a change point when the mean of the window of values starting at it differs from
+ * the mean of the window just before it by more than a relative threshold. Both window sums are
+ * kept as running sums over a ring buffer of the last two windows, so each value is processed in
+ * constant time without allocating, and the detector can be fed from a live feed one value at a
+ * time. After a change point, the next half window of candidates is skipped.
+ * Instances are not thread-safe; use one detector per series.
+ */
+public final class ChangePointDetector {
+
+    public static final double DEFAULT_THRESHOLD = 0.2;
+
+    // Running sums are recomputed from the ring buffer at this interval to stop rounding drift
+    private static final int MIN_RESUM_INTERVAL = 4096;
+
+    private final int windowSize;
+    private final double threshold;
+    private final double[] ring;
+    private final long resumInterval;
+
+    private long count;
+    private double sumBefore;
+    private double sumAfter;
+    private long nextCandidate;
+
+    /**
+     * @param windowSize Number of values in each of the two compared windows
+     */
+    public ChangePointDetector(int windowSize) {
+        this(windowSize, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param windowSize Number of values in each of the two compared windows
+     * @param threshold Relative change in mean above which a point is a change point
+     */
+    public ChangePointDetector(int windowSize, double threshold) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        this.windowSize = windowSize;
+        this.threshold = threshold;
+        this.ring = new double[2 * windowSize];
+        this.resumInterval = Math.max(MIN_RESUM_INTERVAL, ring.length);
+        this.nextCandidate = windowSize;
+    }
+
+    /**
+     * Add the next value of the series.
+     * The value completes the window after the point {@code windowSize - 1} values earlier,
+     * so change points are reported with that delay.
+     *
+     * @param value The next value
+     * @return Index of the change point confirmed by this value, or -1 if there is none
+     */
+    public long add(double value) {
+        long index = count++;
+        int slot = (int) (index % ring.length);
+
+        // The value leaving the later window moves into the earlier one
+        if (index >= windowSize) {
+            double moved = ring[(int) ((index + windowSize) % ring.length)];
+            sumAfter -= moved;
+            sumBefore += moved;
+        }
+        if (index >= ring.length) {
+            sumBefore -= ring[slot];
+        }
+        ring[slot] = value;
+        sumAfter += value;
+
+        if (index % resumInterval == resumInterval - 1) {
+            resum(index);
+        }
+
+        long candidate = index - windowSize + 1;
+        if (candidate < nextCandidate) {
+            return -1;
+        }
+
+        double meanBefore = sumBefore / windowSize;
+        double meanAfter = sumAfter / windowSize;
+        double relativeChange = Math.abs((meanAfter - meanBefore) / meanBefore);
+        if (relativeChange > threshold) {
+            nextCandidate = candidate + windowSize / 2 + 1;
+            return candidate;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of values added so far
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    private void resum(long index) {
+        double before = 0;
+        double after = 0;
+        for (int i = 0; i < windowSize && i <= index; i++) {
+            after += ring[(int) ((index - i) % ring.length)];
+        }
+        for (int i = windowSize; i < ring.length && i <= index; i++) {
+            before += ring[(int) ((index - i) % ring.length)];
+        }
+        sumBefore = before;
+        sumAfter = after;
+    }
+}
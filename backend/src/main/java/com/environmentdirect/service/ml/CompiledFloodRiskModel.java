@@ -0,0 +1,111 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, compiled snapshot of the flood risk regression model.
+ * The regression parameters are solved once when the snapshot is compiled, so scoring
+ * is a plain dot product over primitive coefficients with no allocation.
+ * Feature order: [rainfall, temperature, elevation, soil_saturation, historical_risk].
+ */
+public final class CompiledFloodRiskModel {
+
+    public static final int FEATURE_COUNT = 5;
+
+    public static final List<String> FEATURE_NAMES = List.of(
+            "rainfall", "temperature", "elevation", "soil_saturation", "historical_risk");
+
+    public static final int MIN_RISK_LEVEL = 0;
+    public static final int MAX_RISK_LEVEL = 4;
+
+    private final double intercept;
+    private final double[] coefficients;
+    private final Instant compiledAt;
+
+    /**
+     * Create a compiled model from already solved parameters.
+     *
+     * @param intercept The regression intercept
+     * @param coefficients One coefficient per feature, in feature order
+     * @param compiledAt When the parameters were solved
+     */
+    public CompiledFloodRiskModel(double intercept, double[] coefficients, Instant compiledAt) {
+        if (coefficients == null || coefficients.length != FEATURE_COUNT) {
+            throw new IllegalArgumentException("Flood risk model requires " + FEATURE_COUNT + " coefficients");
+        }
+        this.intercept = intercept;
+        this.coefficients = coefficients.clone();
+        this.compiledAt = compiledAt;
+    }
+
+    /**
+     * Compile a trained OLS model by solving its regression parameters once.
+     *
+     * @param model A model that already holds its sample data
+     * @return The compiled snapshot
+     */
+    public static CompiledFloodRiskModel compile(OLSMultipleLinearRegression model) {
+        double[] params = model.estimateRegressionParameters();
+        return new CompiledFloodRiskModel(params[0], Arrays.copyOfRange(params, 1, params.length), Instant.now());
+    }
+
+    /**
+     * Compute the raw (unrounded) regression output.
+     */
+    public double score(double rainfall, double temperature, double elevation,
+                        double soilSaturation, double historicalRisk) {
+        final double[] c = coefficients;
+        return intercept
+                + rainfall * c[0]
+                + temperature * c[1]
+                + elevation * c[2]
+                + soilSaturation * c[3]
+                + historicalRisk * c[4];
+    }
+
+    /**
+     * Compute the raw regression output for one row of a row-major feature array.
+     *
+     * @param features Row-major feature values
+     * @param offset Index of the first feature of the row
+     */
+    public double score(double[] features, int offset) {
+        return score(features[offset], features[offset + 1], features[offset + 2],
+                features[offset + 3], features[offset + 4]);
+    }
+
+    /**
+     * Predict the flood risk level, rounded and clamped to the 0-4 range.
+     */
+    public int predictRiskLevel(double rainfall, double temperature, double elevation,
+                                double soilSaturation, double historicalRisk) {
+        return toRiskLevel(score(rainfall, temperature, elevation, soilSaturation, historicalRisk));
+    }
+
+    /**
+     * Round a raw regression output to the nearest risk level in the 0-4 range.
+     */
+    public static int toRiskLevel(double rawScore) {
+        int riskLevel = (int) Math.round(rawScore);
+        return Math.max(MIN_RISK_LEVEL, Math.min(MAX_RISK_LEVEL, riskLevel));
+    }
+
+    public double getIntercept() {
+        return intercept;
+    }
+
+    /**
+     * @return A copy of the per-feature coefficients
+     */
+    public double[] getCoefficients() {
+        return coefficients.clone();
+    }
+
+    public Instant getCompiledAt() {
+        return compiledAt;
+    }
+}
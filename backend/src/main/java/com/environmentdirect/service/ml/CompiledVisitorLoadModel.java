@@ -0,0 +1,42 @@
+package com.environmentdirect.service.ml;
+
+/**
+ * Immutable, compiled snapshot of one eco-tourism site's visitor load regression.
+ * The single feature is the season factor multiplied by the day factor (1.5 on weekends).
+ * The sufficient statistics are kept alongside the fitted line so new observations can
+ * be folded in without retraining from scratch.
+ *
+ * @param intercept The regression intercept
+ * @param slope The regression slope
+ * @param statistics The sufficient statistics the line was fitted from
+ */
+public record CompiledVisitorLoadModel(double intercept, double slope, VisitorLoadStatistics statistics) {
+
+    /**
+     * Fit the regression line for a set of sufficient statistics.
+     */
+    public static CompiledVisitorLoadModel fit(VisitorLoadStatistics statistics) {
+        return new CompiledVisitorLoadModel(statistics.intercept(), statistics.slope(), statistics);
+    }
+
+    /**
+     * Combine a season factor with the day factor (1 for weekday, 1.5 for weekend).
+     */
+    public static double combinedFactor(double seasonFactor, boolean isWeekend) {
+        return seasonFactor * (isWeekend ? 1.5 : 1.0);
+    }
+
+    /**
+     * @return Number of observations the regression was fitted on
+     */
+    public long sampleCount() {
+        return statistics.count();
+    }
+
+    /**
+     * Predict the visitor load level, rounded and clamped to the 0-4 range.
+     */
+    public int predictLoadLevel(double seasonFactor, boolean isWeekend) {
+        return CompiledFloodRiskModel.toRiskLevel(intercept + slope * combinedFactor(seasonFactor, isWeekend));
+    }
+}
@@ -0,0 +1,230 @@
+package com.environmentdirect.service.ml;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo ensemble for the flood risk model.
+ * Rainfall, temperature and soil saturation are perturbed around a scenario's point estimate
+ * and every draw is scored against a compiled model snapshot. Draws are split into fixed-size
+ * chunks that run as fork-join tasks; each chunk gets its own {@link SplittableRandom} split
+ * from the seed in chunk order, so a given seed gives the same result however the chunks are
+ * scheduled. The scoring loop only touches primitives and preallocated arrays.
+ */
+public final class FloodRiskEnsemble {
+
+    /** Quantiles of the raw model score reported for every run. */
+    public static final double[] QUANTILES = {0.05, 0.25, 0.5, 0.75, 0.95};
+
+    public static final int MAX_DRAWS = 1_000_000;
+
+    // Draws per fork-join task; large enough to amortise task overhead
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final int LEVELS = CompiledFloodRiskModel.MAX_RISK_LEVEL + 1;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Create an ensemble that runs on the common fork-join pool.
+     */
+    public FloodRiskEnsemble() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public FloodRiskEnsemble(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Spread of the perturbations applied to each draw.
+     *
+     * @param rainfall Standard deviation of the relative rainfall error (0.25 = 25%)
+     * @param temperature Standard deviation of the temperature error in degrees Celsius
+     * @param soilSaturation Standard deviation of the relative soil saturation error
+     */
+    public record Perturbation(double rainfall, double temperature, double soilSaturation) {
+
+        public static final Perturbation DEFAULT = new Perturbation(0.25, 1.0, 0.1);
+
+        public Perturbation {
+            if (rainfall < 0 || temperature < 0 || soilSaturation < 0) {
+                throw new IllegalArgumentException("Perturbation spreads must not be negative");
+            }
+        }
+    }
+
+    /**
+     * Outcome of an ensemble run.
+     *
+     * @param draws Number of draws
+     * @param seed Seed the draws were generated from
+     * @param levelCounts Number of draws per risk level (0-4)
+     * @param meanScore Mean raw model score
+     * @param scoreQuantiles Raw model score at each of {@link #QUANTILES}
+     */
+    public record Result(int draws, long seed, long[] levelCounts, double meanScore, double[] scoreQuantiles) {
+
+        /**
+         * @return Fraction of draws at each risk level
+         */
+        public double[] levelProbabilities() {
+            double[] probabilities = new double[levelCounts.length];
+            for (int level = 0; level < levelCounts.length; level++) {
+                probabilities[level] = (double) levelCounts[level] / draws;
+            }
+            return probabilities;
+        }
+
+        /**
+         * @return Probability that the risk level is at least {@code level}
+         */
+        public double exceedanceProbability(int level) {
+            long count = 0;
+            for (int l = Math.max(level, 0); l < levelCounts.length; l++) {
+                count += levelCounts[l];
+            }
+            return (double) count / draws;
+        }
+
+        /**
+         * @return The risk level with the most draws (the lower level on ties)
+         */
+        public int modalLevel() {
+            int modal = 0;
+            for (int level = 1; level < levelCounts.length; level++) {
+                if (levelCounts[level] > levelCounts[modal]) {
+                    modal = level;
+                }
+            }
+            return modal;
+        }
+    }
+
+    /**
+     * Run an ensemble around one set of features.
+     *
+     * @param model The compiled flood risk model to score against
+     * @param features Point estimate [rainfall, temperature, elevation, soil_saturation, historical_risk]
+     * @param perturbation Spread of the perturbations
+     * @param draws Number of draws
+     * @param seed Seed for the random perturbations
+     * @return The distribution of outcomes
+     */
+    public Result run(CompiledFloodRiskModel model, double[] features, Perturbation perturbation, int draws, long seed) {
+        if (features.length != CompiledFloodRiskModel.FEATURE_COUNT) {
+            throw new IllegalArgumentException("Expected " + CompiledFloodRiskModel.FEATURE_COUNT + " features");
+        }
+        if (draws < 1 || draws > MAX_DRAWS) {
+            throw new IllegalArgumentException("draws must be between 1 and " + MAX_DRAWS);
+        }
+
+        int chunks = (draws + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            randoms[chunk] = root.split();
+        }
+
+        double[] scores = new double[draws];
+        long[][] levelCounts = new long[chunks][LEVELS];
+        double[] scoreSums = new double[chunks];
+        pool.invoke(new ChunkTask(model, features, perturbation, randoms, scores, levelCounts, scoreSums, 0, chunks));
+
+        long[] totals = new long[LEVELS];
+        double scoreSum = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            for (int level = 0; level < LEVELS; level++) {
+                totals[level] += levelCounts[chunk][level];
+            }
+            scoreSum += scoreSums[chunk];
+        }
+
+        Arrays.parallelSort(scores);
+        double[] quantiles = new double[QUANTILES.length];
+        for (int i = 0; i < QUANTILES.length; i++) {
+            quantiles[i] = quantile(scores, QUANTILES[i]);
+        }
+
+        return new Result(draws, seed, totals, scoreSum / draws, quantiles);
+    }
+
+    // Linear interpolation between the closest ranks of a sorted array
+    static double quantile(double[] sorted, double q) {
+        double position = q * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = Math.min(lower + 1, sorted.length - 1);
+        return sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+
+        private final CompiledFloodRiskModel model;
+        private final double[] features;
+        private final Perturbation perturbation;
+        private final SplittableRandom[] randoms;
+        private final double[] scores;
+        private final long[][] levelCounts;
+        private final double[] scoreSums;
+        private final int fromChunk;
+        private final int toChunk;
+
+        ChunkTask(CompiledFloodRiskModel model, double[] features, Perturbation perturbation,
+                  SplittableRandom[] randoms, double[] scores, long[][] levelCounts, double[] scoreSums,
+                  int fromChunk, int toChunk) {
+            this.model = model;
+            this.features = features;
+            this.perturbation = perturbation;
+            this.randoms = randoms;
+            this.scores = scores;
+            this.levelCounts = levelCounts;
+            this.scoreSums = scoreSums;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(
+                        new ChunkTask(model, features, perturbation, randoms, scores, levelCounts, scoreSums, fromChunk, middle),
+                        new ChunkTask(model, features, perturbation, randoms, scores, levelCounts, scoreSums, middle, toChunk));
+                return;
+            }
+            scoreChunk(fromChunk);
+        }
+
+        private void scoreChunk(int chunk) {
+            SplittableRandom random = randoms[chunk];
+            long[] counts = levelCounts[chunk];
+            int from = chunk * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, scores.length);
+
+            double rainfall = features[0];
+            double temperature = features[1];
+            double elevation = features[2];
+            double soilSaturation = features[3];
+            double historicalRisk = features[4];
+            double rainfallSpread = perturbation.rainfall();
+            double temperatureSpread = perturbation.temperature();
+            double soilSpread = perturbation.soilSaturation();
+
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                double drawnRainfall = rainfall * Math.max(0.0, 1.0 + rainfallSpread * random.nextGaussian());
+                double drawnTemperature = temperature + temperatureSpread * random.nextGaussian();
+                // Not capped at 1: the point estimate is not either, and draws must surround it
+                double drawnSoil = soilSaturation * Math.max(0.0, 1.0 + soilSpread * random.nextGaussian());
+
+                double score = model.score(drawnRainfall, drawnTemperature, elevation, drawnSoil, historicalRisk);
+                scores[i] = score;
+                counts[CompiledFloodRiskModel.toRiskLevel(score)]++;
+                sum += score;
+            }
+            scoreSums[chunk] = sum;
+        }
+    }
+}
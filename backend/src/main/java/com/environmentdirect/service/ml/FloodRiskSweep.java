@@ -0,0 +1,120 @@
+package com.environmentdirect.service.ml;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Parameter sweep over a rainfall x temperature x soil saturation grid of flood risk scenarios.
+ * The grid is evaluated in blocks; the cells of a block are scored in parallel and the block is
+ * then handed to the caller in grid order, so results can be streamed while later blocks are
+ * still being computed. Adjustments are quantized and every evaluation is memoized per region
+ * and model version, so overlapping or repeated sweeps only score new cells.
+ */
+public final class FloodRiskSweep {
+
+    public static final int MAX_CELLS = 250_000;
+
+    // Adjustments closer than this are treated as the same scenario
+    static final double QUANTUM = 1e-4;
+
+    // Cells per parallel block, and so per chunk of streamed output
+    private static final int BLOCK_SIZE = 2048;
+
+    private static final int MAX_MEMOIZED_CELLS = 500_000;
+
+    private final Cache<Key, Outcome> memo = Caffeine.newBuilder()
+            .maximumSize(MAX_MEMOIZED_CELLS)
+            .recordStats()
+            .build();
+
+    private record Key(String region, String modelVersion, long rainfall, long temperature, long soilSaturation) {}
+
+    private record Outcome(double score, int riskLevel) {}
+
+    /**
+     * One evaluated grid cell.
+     *
+     * @param index Position of the cell in the grid, rainfall-major then temperature then soil saturation
+     * @param rainfallAdjustment Rainfall adjustment factor, quantized
+     * @param temperatureAdjustment Temperature adjustment in degrees Celsius, quantized
+     * @param soilSaturationAdjustment Soil saturation adjustment factor, quantized
+     * @param score Raw model score
+     * @param riskLevel Risk level (0-4)
+     */
+    public record Cell(int index, double rainfallAdjustment, double temperatureAdjustment,
+                       double soilSaturationAdjustment, double score, int riskLevel) {}
+
+    /**
+     * Evaluate every cell of a grid.
+     *
+     * @param region Region the base features belong to (part of the memo key)
+     * @param baseFeatures Unadjusted features [rainfall, temperature, elevation, soil_saturation, historical_risk]
+     * @param model Compiled model used for the whole sweep
+     * @param modelVersion Version of the model (part of the memo key)
+     * @param rainfall Rainfall adjustment factors
+     * @param temperature Temperature adjustments in degrees Celsius
+     * @param soilSaturation Soil saturation adjustment factors
+     * @param sink Receives each block of cells, in grid order, on the calling thread
+     * @return Number of cells evaluated
+     */
+    public int sweep(String region, double[] baseFeatures, CompiledFloodRiskModel model, String modelVersion,
+                     ParameterRange rainfall, ParameterRange temperature, ParameterRange soilSaturation,
+                     Consumer<List<Cell>> sink) {
+        long cellCount = (long) rainfall.steps() * temperature.steps() * soilSaturation.steps();
+        if (cellCount > MAX_CELLS) {
+            throw new IllegalArgumentException("Sweep grid must not exceed " + MAX_CELLS + " cells");
+        }
+        int cells = (int) cellCount;
+        int innerSteps = temperature.steps() * soilSaturation.steps();
+
+        for (int from = 0; from < cells; from += BLOCK_SIZE) {
+            int blockStart = from;
+            Cell[] block = new Cell[Math.min(BLOCK_SIZE, cells - from)];
+            IntStream.range(0, block.length).parallel().forEach(offset -> {
+                int index = blockStart + offset;
+                int rainfallStep = index / innerSteps;
+                int temperatureStep = index % innerSteps / soilSaturation.steps();
+                int soilStep = index % soilSaturation.steps();
+                block[offset] = evaluate(region, baseFeatures, model, modelVersion, index,
+                        rainfall.value(rainfallStep), temperature.value(temperatureStep), soilSaturation.value(soilStep));
+            });
+            sink.accept(Arrays.asList(block));
+        }
+        return cells;
+    }
+
+    /**
+     * @return Fraction of cell evaluations served from the memo since startup
+     */
+    public double getMemoHitRate() {
+        return memo.stats().hitRate();
+    }
+
+    private Cell evaluate(String region, double[] baseFeatures, CompiledFloodRiskModel model, String modelVersion,
+                          int index, double rainfallAdjustment, double temperatureAdjustment, double soilAdjustment) {
+        long rainfallKey = quantize(rainfallAdjustment);
+        long temperatureKey = quantize(temperatureAdjustment);
+        long soilKey = quantize(soilAdjustment);
+
+        // Score the quantized values so a memoized outcome is exact for every scenario that maps to its key
+        double rainfall = rainfallKey * QUANTUM;
+        double temperature = temperatureKey * QUANTUM;
+        double soil = soilKey * QUANTUM;
+
+        Outcome outcome = memo.get(new Key(region, modelVersion, rainfallKey, temperatureKey, soilKey), key -> {
+            double score = model.score(baseFeatures[0] * rainfall, baseFeatures[1] + temperature, baseFeatures[2],
+                    baseFeatures[3] * soil, baseFeatures[4]);
+            return new Outcome(score, CompiledFloodRiskModel.toRiskLevel(score));
+        });
+        return new Cell(index, rainfall, temperature, soil, outcome.score(), outcome.riskLevel());
+    }
+
+    static long quantize(double value) {
+        return Math.round(value / QUANTUM);
+    }
+}
@@ -0,0 +1,178 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import java.util.stream.IntStream;
+
+/**
+ * Mean and covariance of a multivariate series, for scoring rows by Mahalanobis distance.
+ * The covariance is factorised once into its lower Cholesky factor L, kept as a flat
+ * row-major array. A row's squared distance is |z|^2 where L z = x - mean, found by forward
+ * substitution, so scoring never inverts the covariance. Large batches are scored in parallel
+ * chunks with one scratch vector per chunk, so no memory is allocated per row.
+ * Instances are immutable and can be shared between requests.
+ */
+public final class MahalanobisModel {
+
+    // Rows per parallel chunk; smaller batches are scored on the calling thread
+    static final int CHUNK_SIZE = 4096;
+
+    // Added to the diagonal, relative to its mean, when the covariance is singular
+    private static final double RIDGE = 1e-9;
+
+    private final int dimensions;
+    private final long sampleCount;
+    private final double[] mean;
+    private final double[] choleskyFactor;
+
+    private MahalanobisModel(long sampleCount, double[] mean, double[] choleskyFactor) {
+        this.dimensions = mean.length;
+        this.sampleCount = sampleCount;
+        this.mean = mean;
+        this.choleskyFactor = choleskyFactor;
+    }
+
+    /**
+     * Fit the mean and sample covariance of a series. Singular covariances, e.g. from a
+     * constant column, are regularised with a small ridge.
+     *
+     * @param rows Data points, all with the same number of dimensions
+     * @return The fitted model
+     * @throws IllegalArgumentException if there are fewer than two rows or the rows differ in length
+     */
+    public static MahalanobisModel fit(double[][] rows) {
+        if (rows.length < 2) {
+            throw new IllegalArgumentException("At least two rows are required to fit a covariance");
+        }
+        int dimensions = rows[0].length;
+        if (dimensions == 0) {
+            throw new IllegalArgumentException("Rows must have at least one dimension");
+        }
+
+        double[] mean = new double[dimensions];
+        for (double[] row : rows) {
+            if (row.length != dimensions) {
+                throw new IllegalArgumentException("All rows must have " + dimensions + " dimensions");
+            }
+            for (int j = 0; j < dimensions; j++) {
+                mean[j] += row[j];
+            }
+        }
+        for (int j = 0; j < dimensions; j++) {
+            mean[j] /= rows.length;
+        }
+
+        double[][] covariance = new double[dimensions][dimensions];
+        double[] deviation = new double[dimensions];
+        for (double[] row : rows) {
+            for (int j = 0; j < dimensions; j++) {
+                deviation[j] = row[j] - mean[j];
+            }
+            for (int a = 0; a < dimensions; a++) {
+                for (int b = 0; b <= a; b++) {
+                    covariance[a][b] += deviation[a] * deviation[b];
+                }
+            }
+        }
+        double trace = 0;
+        for (int a = 0; a < dimensions; a++) {
+            for (int b = 0; b <= a; b++) {
+                covariance[a][b] /= rows.length - 1;
+                covariance[b][a] = covariance[a][b];
+            }
+            trace += covariance[a][a];
+        }
+
+        return new MahalanobisModel(rows.length, mean, factorise(covariance, trace / dimensions));
+    }
+
+    private static double[] factorise(double[][] covariance, double meanVariance) {
+        RealMatrix matrix = MatrixUtils.createRealMatrix(covariance);
+        RealMatrix lower;
+        try {
+            lower = new CholeskyDecomposition(matrix).getL();
+        } catch (NonPositiveDefiniteMatrixException e) {
+            double ridge = RIDGE * (meanVariance > 0 ? meanVariance : 1.0);
+            for (int j = 0; j < covariance.length; j++) {
+                matrix.addToEntry(j, j, ridge);
+            }
+            lower = new CholeskyDecomposition(matrix, 1e-9, 0).getL();
+        }
+
+        int dimensions = covariance.length;
+        double[] factor = new double[dimensions * dimensions];
+        for (int a = 0; a < dimensions; a++) {
+            for (int b = 0; b <= a; b++) {
+                factor[a * dimensions + b] = lower.getEntry(a, b);
+            }
+        }
+        return factor;
+    }
+
+    /**
+     * Mahalanobis distance of one row.
+     *
+     * @param row The data point
+     * @param scratch Work vector of at least {@link #getDimensions()} elements
+     * @return The distance of the row from the mean
+     */
+    public double distance(double[] row, double[] scratch) {
+        double squared = 0;
+        for (int a = 0; a < dimensions; a++) {
+            double value = row[a] - mean[a];
+            int offset = a * dimensions;
+            for (int b = 0; b < a; b++) {
+                value -= choleskyFactor[offset + b] * scratch[b];
+            }
+            value /= choleskyFactor[offset + a];
+            scratch[a] = value;
+            squared += value * value;
+        }
+        return Math.sqrt(squared);
+    }
+
+    /**
+     * Mahalanobis distances of many rows, scored in parallel chunks.
+     *
+     * @param rows Data points with {@link #getDimensions()} dimensions
+     * @return The distance of each row
+     * @throws IllegalArgumentException if a row has the wrong number of dimensions
+     */
+    public double[] distances(double[][] rows) {
+        for (double[] row : rows) {
+            if (row.length != dimensions) {
+                throw new IllegalArgumentException("All rows must have " + dimensions + " dimensions");
+            }
+        }
+
+        double[] distances = new double[rows.length];
+        int chunks = (rows.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream chunkIndexes = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            chunkIndexes = chunkIndexes.parallel();
+        }
+        chunkIndexes.forEach(chunk -> {
+            double[] scratch = new double[dimensions];
+            int end = Math.min(rows.length, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                distances[i] = distance(rows[i], scratch);
+            }
+        });
+        return distances;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public double[] getMean() {
+        return mean.clone();
+    }
+}
@@ -0,0 +1,32 @@
+package com.environmentdirect.service.ml;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trained set of prediction models together with their feature schema and training metadata.
+ * This is the unit persisted by {@link ModelArtifactStore}.
+ *
+ * @param formatVersion Binary format version the artifact was read from or will be written with
+ * @param trainedAt When the models were trained
+ * @param floodFeatureNames Feature schema of the flood risk model, in coefficient order
+ * @param floodSampleCount Number of samples the flood risk model was trained on
+ * @param floodRSquared Coefficient of determination of the flood risk model on its training data
+ * @param floodRiskModel The compiled flood risk model
+ * @param visitorLoadModels Compiled visitor load model for each eco-tourism site
+ */
+public record ModelArtifact(
+    int formatVersion,
+    Instant trainedAt,
+    List<String> floodFeatureNames,
+    int floodSampleCount,
+    double floodRSquared,
+    CompiledFloodRiskModel floodRiskModel,
+    Map<String, CompiledVisitorLoadModel> visitorLoadModels
+) {
+    public ModelArtifact {
+        floodFeatureNames = List.copyOf(floodFeatureNames);
+        visitorLoadModels = Map.copyOf(visitorLoadModels);
+    }
+}
@@ -0,0 +1,229 @@
+package com.environmentdirect.service.ml;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes trained models as a compact, versioned binary artifact.
+ *
+ * Artifacts are read through a read-only memory-mapped {@link FileChannel}, so several JVMs
+ * on one host share the same page-cache pages. Writes go to a temporary file that is then
+ * atomically moved into place, so a reader never maps a partially written artifact.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int     magic ("EDML")
+ *   short   format version
+ *   long    trained-at epoch millis
+ *   int     flood sample count
+ *   double  flood R-squared
+ *   short   feature count, then per feature: short length + UTF-8 name
+ *   double  flood intercept, then one double coefficient per feature
+ *   int     site count, then per site: short length + UTF-8 id, long count, double mean x, double mean y,
+ *           double x sum of squares, double sum of cross products
+ *   int     CRC32 of every preceding byte
+ * </pre>
+ */
+@Component
+public class ModelArtifactStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelArtifactStore.class);
+
+    static final int MAGIC = 0x45444D4C; // "EDML"
+    // Version 2 stores per-site sufficient statistics instead of a fitted intercept and slope
+    static final int FORMAT_VERSION = 2;
+
+    private final Path artifactPath;
+
+    public ModelArtifactStore(@Value("${ml.model.artifact-path:models/model-artifact.bin}") String artifactPath) {
+        this.artifactPath = Paths.get(artifactPath);
+    }
+
+    public Path getArtifactPath() {
+        return artifactPath;
+    }
+
+    /**
+     * Load the persisted artifact, if there is a readable one.
+     *
+     * @return The artifact, or empty if none exists or it cannot be read
+     */
+    public Optional<ModelArtifact> load() {
+        if (!Files.isRegularFile(artifactPath)) {
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(artifactPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Optional.of(decode(buffer));
+        } catch (IOException | IllegalArgumentException | BufferUnderflowException e) {
+            logger.warn("Could not read model artifact {}: {}", artifactPath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Persist an artifact, replacing any existing one atomically.
+     *
+     * @param artifact The artifact to write
+     * @throws IOException if the artifact cannot be written
+     */
+    public void save(ModelArtifact artifact) throws IOException {
+        Path directory = artifactPath.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        Path tempFile = Files.createTempFile(directory, artifactPath.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = encode(artifact);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(tempFile, artifactPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, artifactPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        logger.info("Model artifact written to {}", artifactPath);
+    }
+
+    static ByteBuffer encode(ModelArtifact artifact) {
+        List<byte[]> featureNames = new ArrayList<>();
+        int size = 4 + 2 + 8 + 4 + 8 + 2;
+        for (String name : artifact.floodFeatureNames()) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            featureNames.add(bytes);
+            size += 2 + bytes.length;
+        }
+        size += 8 + 8 * CompiledFloodRiskModel.FEATURE_COUNT;
+
+        // Sort sites so the same models always produce the same bytes
+        Map<String, CompiledVisitorLoadModel> sites = new TreeMap<>(artifact.visitorLoadModels());
+        size += 4;
+        for (String siteId : sites.keySet()) {
+            size += 2 + siteId.getBytes(StandardCharsets.UTF_8).length + 8 + 4 * 8;
+        }
+        size += 4;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) FORMAT_VERSION);
+        buffer.putLong(artifact.trainedAt().toEpochMilli());
+        buffer.putInt(artifact.floodSampleCount());
+        buffer.putDouble(artifact.floodRSquared());
+
+        buffer.putShort((short) featureNames.size());
+        for (byte[] name : featureNames) {
+            putBytes(buffer, name);
+        }
+        CompiledFloodRiskModel floodModel = artifact.floodRiskModel();
+        buffer.putDouble(floodModel.getIntercept());
+        for (double coefficient : floodModel.getCoefficients()) {
+            buffer.putDouble(coefficient);
+        }
+
+        buffer.putInt(sites.size());
+        for (Map.Entry<String, CompiledVisitorLoadModel> site : sites.entrySet()) {
+            VisitorLoadStatistics statistics = site.getValue().statistics();
+            putBytes(buffer, site.getKey().getBytes(StandardCharsets.UTF_8));
+            buffer.putLong(statistics.count());
+            buffer.putDouble(statistics.meanX());
+            buffer.putDouble(statistics.meanY());
+            buffer.putDouble(statistics.sumSquaresX());
+            buffer.putDouble(statistics.sumCrossProducts());
+        }
+
+        buffer.putInt(checksum(buffer, 0, buffer.position()));
+        return buffer.flip();
+    }
+
+    static ModelArtifact decode(ByteBuffer buffer) {
+        int payloadLength = buffer.limit() - 4;
+        if (payloadLength < 0 || buffer.getInt(payloadLength) != checksum(buffer, 0, payloadLength)) {
+            throw new IllegalArgumentException("checksum mismatch");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a model artifact");
+        }
+        int formatVersion = buffer.getShort();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unsupported format version " + formatVersion);
+        }
+
+        Instant trainedAt = Instant.ofEpochMilli(buffer.getLong());
+        int floodSampleCount = buffer.getInt();
+        double floodRSquared = buffer.getDouble();
+
+        int featureCount = buffer.getShort();
+        List<String> featureNames = new ArrayList<>(featureCount);
+        for (int i = 0; i < featureCount; i++) {
+            featureNames.add(getString(buffer));
+        }
+        if (!CompiledFloodRiskModel.FEATURE_NAMES.equals(featureNames)) {
+            throw new IllegalArgumentException("feature schema " + featureNames + " does not match "
+                    + CompiledFloodRiskModel.FEATURE_NAMES);
+        }
+        double intercept = buffer.getDouble();
+        double[] coefficients = new double[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            coefficients[i] = buffer.getDouble();
+        }
+
+        int siteCount = buffer.getInt();
+        Map<String, CompiledVisitorLoadModel> sites = new HashMap<>();
+        for (int i = 0; i < siteCount; i++) {
+            String siteId = getString(buffer);
+            VisitorLoadStatistics statistics = new VisitorLoadStatistics(buffer.getLong(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+            sites.put(siteId, CompiledVisitorLoadModel.fit(statistics));
+        }
+
+        return new ModelArtifact(formatVersion, trainedAt, featureNames, floodSampleCount, floodRSquared,
+                new CompiledFloodRiskModel(intercept, coefficients, trainedAt), sites);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
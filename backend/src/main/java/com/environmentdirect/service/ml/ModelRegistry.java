@@ -0,0 +1,363 @@
+package com.environmentdirect.service.ml;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe registry of the versions of one model.
+ * Predictions are served by the active version. Optionally one other version runs in shadow
+ * mode: it scores the same requests on a separate executor after the active result has been
+ * returned, and every disagreement with the active version is counted, so a candidate can be
+ * evaluated on live traffic before it is promoted without adding latency to the request path.
+ * The registry state is an immutable snapshot swapped atomically, so scoring never takes a lock.
+ *
+ * @param <M> The compiled model type
+ */
+public final class ModelRegistry<M> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRegistry.class);
+
+    // Inactive versions beyond this many are dropped, oldest first
+    static final int MAX_RETAINED_VERSIONS = 10;
+
+    private final String modelName;
+    private final MeterRegistry meterRegistry;
+    private final Executor shadowExecutor;
+    private final Counter droppedShadowScores;
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicReference<State<M>> state = new AtomicReference<>(new State<>(Map.of(), null, null));
+
+    private record State<M>(Map<String, ModelVersion<M>> versions, String active, String shadow) {
+
+        ModelVersion<M> activeVersion() {
+            return active != null ? versions.get(active) : null;
+        }
+
+        ModelVersion<M> shadowVersion() {
+            return shadow != null ? versions.get(shadow) : null;
+        }
+    }
+
+    /**
+     * @param modelName Name used in meter tags and log messages
+     * @param meterRegistry Registry for per-version latency and disagreement meters
+     * @param shadowExecutor Executor that runs shadow scoring; tasks it rejects are dropped and counted
+     */
+    public ModelRegistry(String modelName, MeterRegistry meterRegistry, Executor shadowExecutor) {
+        this.modelName = modelName;
+        this.meterRegistry = meterRegistry;
+        this.shadowExecutor = shadowExecutor;
+        this.droppedShadowScores = Counter.builder("ml.model.shadow.dropped")
+                .description("Shadow scoring tasks dropped because the shadow executor was saturated")
+                .tag("model", modelName)
+                .register(meterRegistry);
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    /**
+     * Register a new version without serving it.
+     *
+     * @param model The compiled model
+     * @return The registered version
+     */
+    public ModelVersion<M> register(M model) {
+        return register(model, false);
+    }
+
+    /**
+     * Register a new version and serve it immediately.
+     *
+     * @param model The compiled model
+     * @return The registered version
+     */
+    public ModelVersion<M> registerAndActivate(M model) {
+        return register(model, true);
+    }
+
+    // Registers and, optionally, activates in one state swap, so no reader sees one without the other
+    private ModelVersion<M> register(M model, boolean activate) {
+        ModelVersion<M> registered = newVersion(model);
+        List<ModelVersion<M>> evicted = new ArrayList<>();
+        state.updateAndGet(current -> {
+            evicted.clear();
+            Map<String, ModelVersion<M>> versions = new LinkedHashMap<>(current.versions());
+            versions.put(registered.getVersion(), registered);
+            String active = activate ? registered.getVersion() : current.active();
+
+            // Drop the oldest versions that are neither active nor in shadow mode
+            var iterator = versions.values().iterator();
+            while (versions.size() > MAX_RETAINED_VERSIONS && iterator.hasNext()) {
+                ModelVersion<M> candidate = iterator.next();
+                String version = candidate.getVersion();
+                if (!version.equals(active) && !version.equals(current.shadow())
+                        && candidate != registered) {
+                    iterator.remove();
+                    evicted.add(candidate);
+                }
+            }
+            return new State<>(versions, active, current.shadow());
+        });
+        evicted.forEach(this::removeMeters);
+
+        logger.info(activate ? "Registered and activated {} model version {}" : "Registered {} model version {}",
+                modelName, registered.getVersion());
+        return registered;
+    }
+
+    /**
+     * Serve predictions from another registered version.
+     * If the version was running in shadow mode, shadow mode is stopped.
+     *
+     * @param version The version to promote
+     * @throws IllegalArgumentException if the version is not registered
+     */
+    public void activate(String version) {
+        state.updateAndGet(current -> {
+            requireVersion(current, version);
+            String shadow = version.equals(current.shadow()) ? null : current.shadow();
+            return new State<>(current.versions(), version, shadow);
+        });
+        logger.info("Activated {} model version {}", modelName, version);
+    }
+
+    /**
+     * Score a registered version in shadow mode alongside the active version.
+     *
+     * @param version The candidate version
+     * @throws IllegalArgumentException if the version is not registered or is the active version
+     */
+    public void startShadow(String version) {
+        state.updateAndGet(current -> {
+            requireVersion(current, version);
+            if (version.equals(current.active())) {
+                throw new IllegalArgumentException(modelName + " model version " + version + " is already active");
+            }
+            return new State<>(current.versions(), current.active(), version);
+        });
+        logger.info("Started shadow scoring of {} model version {}", modelName, version);
+    }
+
+    /**
+     * Stop shadow scoring, if any version is in shadow mode.
+     */
+    public void stopShadow() {
+        state.updateAndGet(current -> new State<>(current.versions(), current.active(), null));
+    }
+
+    /**
+     * @return The model of the active version, or null if no version is active
+     */
+    public M getActiveModel() {
+        ModelVersion<M> active = state.get().activeVersion();
+        return active != null ? active.getModel() : null;
+    }
+
+    public Optional<ModelVersion<M>> getActiveVersion() {
+        return Optional.ofNullable(state.get().activeVersion());
+    }
+
+    public Optional<ModelVersion<M>> getShadowVersion() {
+        return Optional.ofNullable(state.get().shadowVersion());
+    }
+
+    /**
+     * @return All retained versions, oldest first
+     */
+    public List<ModelVersion<M>> getVersions() {
+        return List.copyOf(state.get().versions().values());
+    }
+
+    /**
+     * Replace the model of every registered version, keeping version ids and meters.
+     * Used for online updates that apply to the active model and any candidate alike.
+     *
+     * @param update Function from the current model to the updated one; may be called more than once
+     * @return The updated model of the active version, or null if no version is active
+     */
+    public M updateModels(UnaryOperator<M> update) {
+        State<M> updated = state.updateAndGet(current -> {
+            Map<String, ModelVersion<M>> versions = new LinkedHashMap<>();
+            current.versions().forEach((version, registered) ->
+                    versions.put(version, registered.withModel(update.apply(registered.getModel()))));
+            return new State<>(versions, current.active(), current.shadow());
+        });
+        ModelVersion<M> active = updated.activeVersion();
+        return active != null ? active.getModel() : null;
+    }
+
+    /**
+     * Score one prediction with the active version and, if a version is in shadow mode,
+     * schedule the same prediction against it.
+     *
+     * @param scorer Function from a model to its prediction
+     * @return The prediction of the active version
+     * @throws IllegalStateException if no version is active
+     */
+    public int score(ToIntFunction<M> scorer) {
+        State<M> current = state.get();
+        ModelVersion<M> active = requireActive(current);
+
+        long start = System.nanoTime();
+        int result = scorer.applyAsInt(active.getModel());
+        active.activeLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        ModelVersion<M> shadow = current.shadowVersion();
+        if (shadow != null) {
+            submitShadow(shadow, () -> {
+                long shadowStart = System.nanoTime();
+                int shadowResult = scorer.applyAsInt(shadow.getModel());
+                shadow.shadowLatency.record(System.nanoTime() - shadowStart, TimeUnit.NANOSECONDS);
+
+                shadow.shadowComparisons.increment();
+                if (shadowResult != result) {
+                    shadow.shadowDisagreements.increment();
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Score a batch of predictions with the active version and, if a version is in shadow
+     * mode, schedule the same batch against it. Disagreements are counted per prediction.
+     *
+     * @param scorer Function from a model to its predictions; may return null if the model cannot score the batch
+     * @return The predictions of the active version
+     * @throws IllegalStateException if no version is active
+     */
+    public int[] scoreBatch(Function<M, int[]> scorer) {
+        State<M> current = state.get();
+        ModelVersion<M> active = requireActive(current);
+
+        long start = System.nanoTime();
+        int[] result = scorer.apply(active.getModel());
+        active.activeLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        ModelVersion<M> shadow = current.shadowVersion();
+        if (shadow != null && result != null) {
+            submitShadow(shadow, () -> {
+                long shadowStart = System.nanoTime();
+                int[] shadowResult = scorer.apply(shadow.getModel());
+                shadow.shadowLatency.record(System.nanoTime() - shadowStart, TimeUnit.NANOSECONDS);
+
+                shadow.shadowComparisons.increment(result.length);
+                int disagreements = 0;
+                for (int i = 0; i < result.length; i++) {
+                    if (shadowResult == null || shadowResult[i] != result[i]) {
+                        disagreements++;
+                    }
+                }
+                shadow.shadowDisagreements.increment(disagreements);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Summarise the registry for monitoring and administration.
+     *
+     * @return The model name, active and shadow versions, and per-version shadow statistics
+     */
+    public Map<String, Object> describe() {
+        State<M> current = state.get();
+
+        List<Map<String, Object>> versions = new ArrayList<>();
+        for (ModelVersion<M> registered : current.versions().values()) {
+            Map<String, Object> version = new HashMap<>();
+            version.put("version", registered.getVersion());
+            version.put("registeredAt", registered.getRegisteredAt().toString());
+            version.put("active", registered.getVersion().equals(current.active()));
+            version.put("shadow", registered.getVersion().equals(current.shadow()));
+            version.put("shadowComparisons", registered.getShadowComparisons());
+            version.put("shadowDisagreements", registered.getShadowDisagreements());
+            versions.add(version);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("model", modelName);
+        result.put("activeVersion", current.active());
+        result.put("shadowVersion", current.shadow());
+        result.put("versions", versions);
+        return result;
+    }
+
+    private void submitShadow(ModelVersion<M> shadow, Runnable task) {
+        try {
+            shadowExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Shadow scoring failed for {} model version {}", modelName, shadow.getVersion(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedShadowScores.increment();
+        }
+    }
+
+    private ModelVersion<M> newVersion(M model) {
+        String version = "v" + versionSequence.incrementAndGet();
+        return new ModelVersion<>(modelName, version, model, Instant.now(), 0,
+                latencyTimer(version, "active"),
+                latencyTimer(version, "shadow"),
+                Counter.builder("ml.model.shadow.comparisons")
+                        .description("Predictions scored by a shadow model version")
+                        .tags("model", modelName, "version", version)
+                        .register(meterRegistry),
+                Counter.builder("ml.model.shadow.disagreements")
+                        .description("Shadow predictions that differed from the active model version")
+                        .tags("model", modelName, "version", version)
+                        .register(meterRegistry));
+    }
+
+    private Timer latencyTimer(String version, String role) {
+        return Timer.builder("ml.model.scoring")
+                .description("Model scoring latency per model version")
+                .tags("model", modelName, "version", version, "role", role)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void removeMeters(ModelVersion<M> evicted) {
+        meterRegistry.remove(evicted.activeLatency);
+        meterRegistry.remove(evicted.shadowLatency);
+        meterRegistry.remove(evicted.shadowComparisons);
+        meterRegistry.remove(evicted.shadowDisagreements);
+    }
+
+    private void requireVersion(State<M> current, String version) {
+        if (!current.versions().containsKey(version)) {
+            throw new IllegalArgumentException("Unknown " + modelName + " model version: " + version);
+        }
+    }
+
+    private ModelVersion<M> requireActive(State<M> current) {
+        ModelVersion<M> active = current.activeVersion();
+        if (active == null) {
+            throw new IllegalStateException("No active " + modelName + " model version");
+        }
+        return active;
+    }
+}
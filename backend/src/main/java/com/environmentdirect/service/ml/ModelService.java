@@ -1,16 +1,24 @@
 package com.environmentdirect.service.ml;
 
-import org.apache.commons.math3.stat.regression.SimpleRegression;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.List;
-import java.util.ArrayList;
-import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for managing and using machine learning models.
@@ -21,95 +29,358 @@ public class ModelService {
     
     private static final Logger logger = LoggerFactory.getLogger(ModelService.class);
     
-    // Store trained models in memory
-    private final Map<String, Object> trainedModels = new HashMap<>();
+    // Flood risk training data
+    // Format: [rainfall, temperature, elevation, soil_saturation, historical_risk]
+    static final double[][] FLOOD_TRAINING_FEATURES = new double[][] {
+        {120, 28, 50, 0.8, 3},   // High risk
+        {100, 27, 60, 0.7, 3},   // High risk
+        {80, 26, 100, 0.6, 2},   // Moderate risk
+        {60, 25, 150, 0.5, 2},   // Moderate risk
+        {40, 24, 200, 0.4, 1},   // Low risk
+        {20, 23, 250, 0.3, 1},   // Low risk
+        {10, 22, 300, 0.2, 1},   // Low risk
+        {150, 30, 30, 0.9, 4},   // Very high risk
+        {5, 20, 350, 0.1, 0}     // Very low risk
+    };
+
+    // Target values (risk level: 0-4)
+    static final double[] FLOOD_TRAINING_TARGETS = new double[] {3, 3, 2, 2, 1, 1, 1, 4, 0};
+
+    // Persists trained models between restarts (null when running without persistence)
+    private final ModelArtifactStore artifactStore;
+
+    // Artifact the current models were trained or loaded from
+    private volatile ModelArtifact trainedArtifact;
+
+    // Set by online updates and cleared by the periodic save that persists them
+    private final AtomicBoolean unsavedUpdates = new AtomicBoolean();
+
+    // Keeps online updates from landing between retraining reading the visitor statistics and registering the result
+    private final Object visitorModelLock = new Object();
+
+    // Model names used in the registries and in prediction confidence lookups
+    public static final String FLOOD_RISK_MODEL = "floodRisk";
+    public static final String ECO_TOURISM_MODEL = "ecoTourism";
+
+    // Shadow scoring runs off the request path; when its queue is full, shadow predictions are dropped
+    private static final int SHADOW_QUEUE_CAPACITY = 10_000;
+
+    private final ThreadPoolExecutor shadowExecutor;
+
+    // Versioned compiled models; each registry swaps its state atomically so readers never see a partial update
+    private final ModelRegistry<CompiledFloodRiskModel> floodRiskModels;
+    private final ModelRegistry<Map<String, CompiledVisitorLoadModel>> visitorLoadModels;
     
     /**
-     * Initialize the service and load pre-trained models.
+     * Initialize the service with freshly trained, non-persisted models.
      */
     public ModelService() {
+        this(null);
+    }
+
+    /**
+     * Initialize the service and load pre-trained models from the artifact store.
+     *
+     * @param artifactStore Store for persisted model artifacts, or null to always train in memory
+     */
+    public ModelService(ModelArtifactStore artifactStore) {
+        this(artifactStore, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Initialize the service, load pre-trained models and report per-version scoring metrics.
+     *
+     * @param artifactStore Store for persisted model artifacts, or null to always train in memory
+     * @param meterRegistry Registry for model latency and shadow disagreement meters
+     */
+    @Autowired
+    public ModelService(ModelArtifactStore artifactStore, MeterRegistry meterRegistry) {
+        this.artifactStore = artifactStore;
+        this.shadowExecutor = newShadowExecutor();
+        this.floodRiskModels = new ModelRegistry<>(FLOOD_RISK_MODEL, meterRegistry, shadowExecutor);
+        this.visitorLoadModels = new ModelRegistry<>(ECO_TOURISM_MODEL, meterRegistry, shadowExecutor);
         initializeModels();
     }
+
+    private static ThreadPoolExecutor newShadowExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(SHADOW_QUEUE_CAPACITY),
+            Thread.ofPlatform().name("ml-shadow-scoring-", 0).daemon().factory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Save any unsaved online updates and stop shadow scoring threads; pending shadow predictions are discarded.
+     */
+    @PreDestroy
+    public void shutdown() {
+        saveUpdatedModels();
+        shadowExecutor.shutdownNow();
+    }
     
     /**
-     * Initialize and train models.
-     * In a production environment, these would be loaded from saved model files.
+     * Load the persisted model artifact, training and persisting new models only if none exists.
      */
     private void initializeModels() {
         try {
-            // Train flood risk prediction model
-            trainFloodRiskModel();
-            
-            // Train eco-tourism prediction model
-            trainEcoTourismModel();
+            Optional<ModelArtifact> artifact = artifactStore != null ? artifactStore.load() : Optional.empty();
+
+            if (artifact.isPresent()) {
+                publishArtifact(artifact.get());
+                logger.info("ML models loaded from artifact {} (trained at {})",
+                        artifactStore.getArtifactPath(), artifact.get().trainedAt());
+            } else {
+                retrainModels();
+            }
             
             logger.info("ML models initialized successfully");
         } catch (Exception e) {
             logger.error("Error initializing ML models", e);
         }
     }
+
+    /**
+     * Train all models, publish them for predictions and persist them as a new artifact.
+     *
+     * @return The newly trained artifact
+     */
+    public ModelArtifact retrainModels() {
+        return retrainModels(true);
+    }
+
+    /**
+     * Train all models and register them as new versions.
+     * Visitor load models start from the statistics of the active models, so observations
+     * folded in online are kept; only sites without a model are seeded from sample data.
+     * Activated models are published for predictions and persisted; otherwise they are only
+     * registered, so they can be evaluated in shadow mode before being promoted.
+     *
+     * @param activate Whether the new versions should serve predictions immediately
+     * @return The newly trained artifact
+     */
+    public synchronized ModelArtifact retrainModels(boolean activate) {
+        OLSMultipleLinearRegression floodModel = trainFloodRiskModel();
+
+        ModelArtifact artifact;
+        synchronized (visitorModelLock) {
+            artifact = new ModelArtifact(
+                ModelArtifactStore.FORMAT_VERSION,
+                Instant.now(),
+                CompiledFloodRiskModel.FEATURE_NAMES,
+                FLOOD_TRAINING_TARGETS.length,
+                floodModel.calculateRSquared(),
+                CompiledFloodRiskModel.compile(floodModel),
+                trainEcoTourismModel()
+            );
+            if (!activate) {
+                floodRiskModels.register(artifact.floodRiskModel());
+                visitorLoadModels.register(artifact.visitorLoadModels());
+                return artifact;
+            }
+            publishArtifact(artifact);
+        }
+
+        if (artifactStore != null) {
+            try {
+                artifactStore.save(artifact);
+            } catch (IOException e) {
+                logger.warn("Could not persist model artifact, models will be retrained on next startup", e);
+            }
+        }
+        return artifact;
+    }
+
+    private void publishArtifact(ModelArtifact artifact) {
+        trainedArtifact = artifact;
+        publishFloodRiskModel(artifact.floodRiskModel());
+        visitorLoadModels.registerAndActivate(artifact.visitorLoadModels());
+    }
     
     /**
      * Train a model for flood risk prediction.
      */
-    private void trainFloodRiskModel() {
+    private OLSMultipleLinearRegression trainFloodRiskModel() {
         // Create a multiple linear regression model for flood risk
         OLSMultipleLinearRegression model = new OLSMultipleLinearRegression();
-        
-        // Sample training data (in a real app, this would come from a database)
-        // Format: [rainfall, temperature, elevation, soil_saturation, historical_risk]
-        double[][] features = new double[][] {
-            {120, 28, 50, 0.8, 3},   // High risk
-            {100, 27, 60, 0.7, 3},   // High risk
-            {80, 26, 100, 0.6, 2},   // Moderate risk
-            {60, 25, 150, 0.5, 2},   // Moderate risk
-            {40, 24, 200, 0.4, 1},   // Low risk
-            {20, 23, 250, 0.3, 1},   // Low risk
-            {10, 22, 300, 0.2, 1},   // Low risk
-            {150, 30, 30, 0.9, 4},   // Very high risk
-            {5, 20, 350, 0.1, 0}     // Very low risk
-        };
-        
-        // Target values (risk level: 0-4)
-        double[] targets = new double[] {3, 3, 2, 2, 1, 1, 1, 4, 0};
-        
-        // Train the model
-        model.newSampleData(targets, features);
-        
-        // Store the trained model
-        trainedModels.put("floodRiskModel", model);
+
+        // Train the model (in a real app, the sample data would come from a database)
+        model.newSampleData(FLOOD_TRAINING_TARGETS, FLOOD_TRAINING_FEATURES);
+
         logger.info("Flood risk prediction model trained successfully");
+        return model;
     }
-    
+
+    /**
+     * Register a flood risk model as a new version and use it for predictions.
+     * In-flight predictions finish on the snapshot they started with.
+     *
+     * @param model The compiled model to publish
+     */
+    public void publishFloodRiskModel(CompiledFloodRiskModel model) {
+        floodRiskModels.registerAndActivate(model);
+    }
+
+    /**
+     * Get the currently published flood risk model.
+     *
+     * @return The compiled model, or null if no model has been trained yet
+     */
+    public CompiledFloodRiskModel getFloodRiskModel() {
+        return floodRiskModels.getActiveModel();
+    }
+
+    public ModelRegistry<CompiledFloodRiskModel> getFloodRiskModels() {
+        return floodRiskModels;
+    }
+
+    public ModelRegistry<Map<String, CompiledVisitorLoadModel>> getVisitorLoadModels() {
+        return visitorLoadModels;
+    }
+
+    /**
+     * Look up a model registry by model name.
+     *
+     * @param modelName {@link #FLOOD_RISK_MODEL} or {@link #ECO_TOURISM_MODEL}
+     * @return The registry
+     * @throws IllegalArgumentException if the model name is unknown
+     */
+    public ModelRegistry<?> getModelRegistry(String modelName) {
+        if (FLOOD_RISK_MODEL.equals(modelName)) {
+            return floodRiskModels;
+        } else if (ECO_TOURISM_MODEL.equals(modelName)) {
+            return visitorLoadModels;
+        }
+        throw new IllegalArgumentException("Unknown model: " + modelName);
+    }
+
     /**
      * Train a model for eco-tourism visitor load prediction.
      */
-    private void trainEcoTourismModel() {
-        // Create a simple regression model for each site
-        Map<String, SimpleRegression> siteModels = new HashMap<>();
+    private Map<String, CompiledVisitorLoadModel> trainEcoTourismModel() {
+        // Accumulate regression statistics for each site
+        Map<String, VisitorLoadStatistics> siteStatistics = new HashMap<>();
         
         // Sample training data for Boiling Lake
-        SimpleRegression boilingLakeModel = new SimpleRegression();
-        // Format: [season_factor, day_of_week_factor] -> visitor_load
-        boilingLakeModel.addData(1.5, 3); // High season, weekend -> high load
-        boilingLakeModel.addData(1.3, 2); // High season, weekday -> moderate load
-        boilingLakeModel.addData(1.0, 2); // Regular season, weekend -> moderate load
-        boilingLakeModel.addData(0.8, 1); // Regular season, weekday -> low load
-        siteModels.put("boiling-lake", boilingLakeModel);
+        // Format: [season_factor * day_of_week_factor] -> visitor_load
+        siteStatistics.put("boiling-lake", VisitorLoadStatistics.EMPTY
+            .add(1.5, 3)  // High season, weekend -> high load
+            .add(1.3, 2)  // High season, weekday -> moderate load
+            .add(1.0, 2)  // Regular season, weekend -> moderate load
+            .add(0.8, 1)); // Regular season, weekday -> low load
         
         // Sample training data for Trafalgar Falls
-        SimpleRegression trafalgarFallsModel = new SimpleRegression();
-        trafalgarFallsModel.addData(1.5, 4); // High season, weekend -> very high load
-        trafalgarFallsModel.addData(1.3, 3); // High season, weekday -> high load
-        trafalgarFallsModel.addData(1.0, 3); // Regular season, weekend -> high load
-        trafalgarFallsModel.addData(0.8, 2); // Regular season, weekday -> moderate load
-        siteModels.put("trafalgar-falls", trafalgarFallsModel);
+        siteStatistics.put("trafalgar-falls", VisitorLoadStatistics.EMPTY
+            .add(1.5, 4)  // High season, weekend -> very high load
+            .add(1.3, 3)  // High season, weekday -> high load
+            .add(1.0, 3)  // Regular season, weekend -> high load
+            .add(0.8, 2)); // Regular season, weekday -> moderate load
         
-        // Add more site models as needed
+        // Other sites start learning from observations (see recordVisitorObservations)
+
+        // Sites already served keep everything they learned: their statistics include their seed data
+        Map<String, CompiledVisitorLoadModel> current = visitorLoadModels.getActiveModel();
+        if (current != null) {
+            current.forEach((siteId, model) -> siteStatistics.put(siteId, model.statistics()));
+        }
         
-        // Store the trained models
-        trainedModels.put("ecoTourismModels", siteModels);
+        // Fit the trained models
+        Map<String, CompiledVisitorLoadModel> compiledModels = new HashMap<>();
+        siteStatistics.forEach((siteId, statistics) -> compiledModels.put(siteId, CompiledVisitorLoadModel.fit(statistics)));
         logger.info("Eco-tourism prediction models trained successfully");
+        return compiledModels;
+    }
+
+    /**
+     * Fold observed visitor loads into the per-site visitor load models.
+     * The whole batch is applied as one copy-on-write update of the model snapshot, so
+     * scoring threads keep reading the previous snapshot and never block. Every registered
+     * version learns from the observations, so a shadow candidate stays comparable with the
+     * active version. Sites without a model yet start a new one. The updated models are
+     * persisted by the next {@link #saveUpdatedModels periodic save}.
+     *
+     * @param siteIds Site of each observation
+     * @param seasonFactors Season factor of each observation
+     * @param isWeekend Whether each observation was on a weekend
+     * @param visitorLoads Observed visitor load level (0-4) of each observation
+     * @return Number of observations per site after the update, for the sites in the batch
+     */
+    public Map<String, Long> recordVisitorObservations(String[] siteIds, double[] seasonFactors,
+                                                       boolean[] isWeekend, double[] visitorLoads) {
+        int size = siteIds.length;
+        if (seasonFactors.length != size || isWeekend.length != size || visitorLoads.length != size) {
+            throw new IllegalArgumentException("Observation arrays must have the same length");
+        }
+
+        // Summarise the batch per site outside the update loop, so a retry only merges
+        Map<String, VisitorLoadStatistics> batchStatistics = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            double combinedFactor = CompiledVisitorLoadModel.combinedFactor(seasonFactors[i], isWeekend[i]);
+            batchStatistics.merge(siteIds[i], VisitorLoadStatistics.EMPTY.add(combinedFactor, visitorLoads[i]),
+                VisitorLoadStatistics::merge);
+        }
+
+        Map<String, CompiledVisitorLoadModel> updated;
+        synchronized (visitorModelLock) {
+            updated = visitorLoadModels.updateModels(current -> {
+                Map<String, CompiledVisitorLoadModel> next = new HashMap<>(current);
+                batchStatistics.forEach((siteId, statistics) -> {
+                    CompiledVisitorLoadModel existing = current.get(siteId);
+                    VisitorLoadStatistics base = existing != null ? existing.statistics() : VisitorLoadStatistics.EMPTY;
+                    next.put(siteId, CompiledVisitorLoadModel.fit(base.merge(statistics)));
+                });
+                return Map.copyOf(next);
+            });
+        }
+
+        unsavedUpdates.set(true);
+
+        Map<String, Long> sampleCounts = new HashMap<>();
+        batchStatistics.keySet().forEach(siteId -> sampleCounts.put(siteId, updated.get(siteId).sampleCount()));
+        return sampleCounts;
+    }
+
+    /**
+     * Persist the models if online updates were made since the last save. However many batches
+     * of observations arrive, the artifact is written at most once per interval, from the
+     * latest models.
+     */
+    @Scheduled(fixedDelayString = "${ml.model.save-interval-ms:60000}",
+            initialDelayString = "${ml.model.save-interval-ms:60000}")
+    public void saveUpdatedModels() {
+        if (unsavedUpdates.compareAndSet(true, false) && !saveModels()) {
+            // Try again at the next save
+            unsavedUpdates.set(true);
+        }
+    }
+
+    /**
+     * Persist the models currently used for predictions, including online updates.
+     * Saves and retraining are serialized, so an older snapshot never overwrites a newer one.
+     *
+     * @return Whether the models were written
+     */
+    public synchronized boolean saveModels() {
+        ModelArtifact trained = trainedArtifact;
+        if (artifactStore == null || trained == null) {
+            return false;
+        }
+        try {
+            artifactStore.save(new ModelArtifact(
+                ModelArtifactStore.FORMAT_VERSION,
+                trained.trainedAt(),
+                trained.floodFeatureNames(),
+                trained.floodSampleCount(),
+                trained.floodRSquared(),
+                floodRiskModels.getActiveModel(),
+                visitorLoadModels.getActiveModel()
+            ));
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not persist model artifact", e);
+            return false;
+        }
     }
     
     /**
@@ -124,34 +395,14 @@ public class ModelService {
      */
     public int predictFloodRisk(double rainfall, double temperature, double elevation, 
                                double soilSaturation, double historicalRisk) {
-        try {
-            OLSMultipleLinearRegression model = (OLSMultipleLinearRegression) trainedModels.get("floodRiskModel");
-            
-            if (model == null) {
-                logger.error("Flood risk model not found");
-                return -1;
-            }
-            
-            // Create feature vector
-            double[] features = new double[] {rainfall, temperature, elevation, soilSaturation, historicalRisk};
-            
-            // Get model parameters
-            double[] params = model.estimateRegressionParameters();
-            
-            // Calculate prediction (intercept + sum of feature*coefficient)
-            double prediction = params[0]; // Intercept
-            for (int i = 0; i < features.length; i++) {
-                prediction += features[i] * params[i + 1];
-            }
-            
-            // Round to nearest integer and ensure it's in the range 0-4
-            int riskLevel = (int) Math.round(prediction);
-            return Math.max(0, Math.min(4, riskLevel));
-            
-        } catch (Exception e) {
-            logger.error("Error predicting flood risk", e);
+        if (floodRiskModels.getActiveModel() == null) {
+            logger.error("Flood risk model not found");
             return -1;
         }
+
+        // Intercept + sum of feature*coefficient, rounded into the range 0-4
+        return floodRiskModels.score(model ->
+            model.predictRiskLevel(rainfall, temperature, elevation, soilSaturation, historicalRisk));
     }
     
     /**
@@ -163,35 +414,79 @@ public class ModelService {
      * @return Predicted visitor load level (0-4)
      */
     public int predictVisitorLoad(String siteId, double seasonFactor, boolean isWeekend) {
-        try {
-            @SuppressWarnings("unchecked")
-            Map<String, SimpleRegression> siteModels = 
-                (Map<String, SimpleRegression>) trainedModels.get("ecoTourismModels");
-            
-            if (siteModels == null || !siteModels.containsKey(siteId)) {
-                logger.error("Eco-tourism model not found for site: {}", siteId);
-                return -1;
-            }
-            
-            SimpleRegression model = siteModels.get(siteId);
-            
-            // Use season factor and weekend factor (1 for weekday, 1.5 for weekend)
-            double dayFactor = isWeekend ? 1.5 : 1.0;
-            double combinedFactor = seasonFactor * dayFactor;
-            
-            // Predict visitor load
-            double prediction = model.predict(combinedFactor);
-            
-            // Round to nearest integer and ensure it's in the range 0-4
-            int loadLevel = (int) Math.round(prediction);
-            return Math.max(0, Math.min(4, loadLevel));
-            
-        } catch (Exception e) {
-            logger.error("Error predicting visitor load for site: {}", siteId, e);
+        Map<String, CompiledVisitorLoadModel> models = visitorLoadModels.getActiveModel();
+
+        if (models == null || !models.containsKey(siteId)) {
+            logger.error("Eco-tourism model not found for site: {}", siteId);
             return -1;
         }
+
+        // Uses season factor and weekend factor (1 for weekday, 1.5 for weekend)
+        return visitorLoadModels.score(siteModels -> {
+            CompiledVisitorLoadModel model = siteModels.get(siteId);
+            return model != null ? model.predictLoadLevel(seasonFactor, isWeekend) : -1;
+        });
     }
     
+    /**
+     * Predict flood risk levels for a whole feature matrix in one pass.
+     *
+     * @param features One row per prediction: [rainfall, temperature, elevation, soil_saturation, historical_risk]
+     * @return Predicted risk levels (0-4), one per row, or null if the model is not available
+     */
+    public int[] predictFloodRiskBatch(double[][] features) {
+        if (floodRiskModels.getActiveModel() == null) {
+            logger.error("Flood risk model not found");
+            return null;
+        }
+        return floodRiskModels.scoreBatch(model -> BatchScorer.scoreFloodRisk(model, features));
+    }
+
+    /**
+     * Predict flood risk levels for a flat row-major feature matrix in one pass.
+     *
+     * @param rowMajorFeatures Feature values, five per row, in the same order as {@link #predictFloodRisk}
+     * @return Predicted risk levels (0-4), one per row, or null if the model is not available
+     */
+    public int[] predictFloodRiskBatch(double[] rowMajorFeatures) {
+        if (floodRiskModels.getActiveModel() == null) {
+            logger.error("Flood risk model not found");
+            return null;
+        }
+        return floodRiskModels.scoreBatch(model -> BatchScorer.scoreFloodRisk(model, rowMajorFeatures));
+    }
+
+    /**
+     * Predict visitor loads for one eco-tourism site across many days in one pass.
+     *
+     * @param siteId The identifier for the tourism site
+     * @param seasonFactors Season factor for each prediction
+     * @param isWeekend Whether each prediction is for a weekend
+     * @return Predicted visitor load levels (0-4), one per input, or null if the site has no model
+     */
+    public int[] predictVisitorLoadBatch(String siteId, double[] seasonFactors, boolean[] isWeekend) {
+        if (seasonFactors.length != isWeekend.length) {
+            throw new IllegalArgumentException("seasonFactors and isWeekend must have the same length");
+        }
+
+        Map<String, CompiledVisitorLoadModel> models = visitorLoadModels.getActiveModel();
+
+        if (models == null || !models.containsKey(siteId)) {
+            logger.error("Eco-tourism model not found for site: {}", siteId);
+            return null;
+        }
+
+        double[] combinedFactors = new double[seasonFactors.length];
+        for (int i = 0; i < seasonFactors.length; i++) {
+            combinedFactors[i] = CompiledVisitorLoadModel.combinedFactor(seasonFactors[i], isWeekend[i]);
+        }
+
+        return visitorLoadModels.scoreBatch(siteModels -> {
+            CompiledVisitorLoadModel model = siteModels.get(siteId);
+            return model != null ? BatchScorer.scoreLinear(model.intercept(), model.slope(), combinedFactors) : null;
+        });
+    }
+
     /**
      * Get the confidence score for a prediction.
      * 
@@ -202,9 +497,9 @@ public class ModelService {
     public double getPredictionConfidence(String modelType, String id) {
         // In a real application, this would be based on model metrics
         // For this example, we'll return a fixed confidence score
-        if ("floodRisk".equals(modelType)) {
+        if (FLOOD_RISK_MODEL.equals(modelType)) {
             return 0.85; // 85% confidence for flood risk predictions
-        } else if ("ecoTourism".equals(modelType)) {
+        } else if (ECO_TOURISM_MODEL.equals(modelType)) {
             return 0.80; // 80% confidence for eco-tourism predictions
         } else {
             return 0.70; // Default confidence
@@ -0,0 +1,92 @@
+package com.environmentdirect.service.ml;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Instant;
+
+/**
+ * One registered version of a model in a {@link ModelRegistry}, together with the meters
+ * that record its scoring latency and its agreement with the active version while it runs
+ * in shadow mode.
+ *
+ * @param <M> The compiled model type
+ */
+public final class ModelVersion<M> {
+
+    private final String modelName;
+    private final String version;
+    private final M model;
+    private final Instant registeredAt;
+
+    // Incremented by every online update of the model, which keeps the version id
+    private final int revision;
+
+    // Meters are created once per version so the scoring path never looks them up
+    final Timer activeLatency;
+    final Timer shadowLatency;
+    final Counter shadowComparisons;
+    final Counter shadowDisagreements;
+
+    ModelVersion(String modelName, String version, M model, Instant registeredAt, int revision,
+                 Timer activeLatency, Timer shadowLatency, Counter shadowComparisons, Counter shadowDisagreements) {
+        this.modelName = modelName;
+        this.version = version;
+        this.model = model;
+        this.registeredAt = registeredAt;
+        this.revision = revision;
+        this.activeLatency = activeLatency;
+        this.shadowLatency = shadowLatency;
+        this.shadowComparisons = shadowComparisons;
+        this.shadowDisagreements = shadowDisagreements;
+    }
+
+    /**
+     * @return The same version holding an updated model, sharing this version's meters
+     */
+    ModelVersion<M> withModel(M updatedModel) {
+        return new ModelVersion<>(modelName, version, updatedModel, registeredAt, revision + 1,
+                activeLatency, shadowLatency, shadowComparisons, shadowDisagreements);
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public M getModel() {
+        return model;
+    }
+
+    public Instant getRegisteredAt() {
+        return registeredAt;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return An id that changes whenever the model's predictions can change, e.g. "v3.0"
+     */
+    public String getRevisionTag() {
+        return version + "." + revision;
+    }
+
+    /**
+     * @return Number of predictions this version has scored in shadow mode
+     */
+    public long getShadowComparisons() {
+        return (long) shadowComparisons.count();
+    }
+
+    /**
+     * @return Number of shadow predictions that differed from the active version
+     */
+    public long getShadowDisagreements() {
+        return (long) shadowDisagreements.count();
+    }
+}
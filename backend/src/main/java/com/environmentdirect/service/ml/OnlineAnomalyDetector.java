@@ -0,0 +1,124 @@
+package com.environmentdirect.service.ml;
+
+/**
+ * Online anomaly detector for one unbounded series of readings.
+ * Each reading is scored against the running statistics of the readings before it, then folded
+ * into them: a Welford mean and variance over the whole series, and an exponentially weighted
+ * mean and variance that follow recent behaviour. Both updates are O(1) and the memory footprint
+ * is fixed, so the detector never needs the series in memory. Its {@link State} can be saved and
+ * restored, so a restarted detector scores new readings without a warm-up period.
+ */
+public final class OnlineAnomalyDetector {
+
+    // Same threshold as the batch z-score detection in AnomalyDetectionService
+    public static final double DEFAULT_THRESHOLD = 2.5;
+
+    // Readings scored before this many have been seen are never reported as anomalies
+    static final int MIN_READINGS = 10;
+
+    private final double alpha;
+    private final double threshold;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double ewmaMean;
+    private double ewmaVariance;
+
+    /**
+     * Running statistics of a detector.
+     *
+     * @param count Number of readings seen
+     * @param mean Mean of all readings
+     * @param m2 Sum of squared deviations from the mean
+     * @param ewmaMean Exponentially weighted mean
+     * @param ewmaVariance Exponentially weighted variance
+     */
+    public record State(long count, double mean, double m2, double ewmaMean, double ewmaVariance) {
+
+        public static final State EMPTY = new State(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Score of one reading against the readings before it.
+     *
+     * @param zScore Deviation from the overall mean in overall standard deviations
+     * @param ewmaZScore Deviation from the weighted mean in weighted standard deviations
+     * @param anomaly Whether either score exceeds the threshold
+     */
+    public record Score(double zScore, double ewmaZScore, boolean anomaly) {}
+
+    /**
+     * @param alpha Weight of each new reading in the exponentially weighted statistics (0-1]
+     * @param threshold Absolute score above which a reading is an anomaly
+     */
+    public OnlineAnomalyDetector(double alpha, double threshold) {
+        this(alpha, threshold, State.EMPTY);
+    }
+
+    /**
+     * @param alpha Weight of each new reading in the exponentially weighted statistics (0-1]
+     * @param threshold Absolute score above which a reading is an anomaly
+     * @param state Statistics to resume from
+     */
+    public OnlineAnomalyDetector(double alpha, double threshold, State state) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]");
+        }
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.count = state.count();
+        this.mean = state.mean();
+        this.m2 = state.m2();
+        this.ewmaMean = state.ewmaMean();
+        this.ewmaVariance = state.ewmaVariance();
+    }
+
+    /**
+     * Score a reading against the statistics so far, then add it to them.
+     *
+     * @param value The reading
+     * @return The score of the reading
+     */
+    public synchronized Score score(double value) {
+        double zScore = 0;
+        double ewmaZScore = 0;
+        if (count > 1) {
+            zScore = deviation(value - mean, m2 / (count - 1));
+            ewmaZScore = deviation(value - ewmaMean, ewmaVariance);
+        }
+        boolean anomaly = count >= MIN_READINGS
+                && (Math.abs(zScore) > threshold || Math.abs(ewmaZScore) > threshold);
+
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+
+        if (count == 1) {
+            ewmaMean = value;
+        } else {
+            double ewmaDelta = value - ewmaMean;
+            double increment = alpha * ewmaDelta;
+            ewmaMean += increment;
+            ewmaVariance = (1 - alpha) * (ewmaVariance + ewmaDelta * increment);
+        }
+
+        return new Score(zScore, ewmaZScore, anomaly);
+    }
+
+    /**
+     * @return A copy of the running statistics
+     */
+    public synchronized State getState() {
+        return new State(count, mean, m2, ewmaMean, ewmaVariance);
+    }
+
+    private static double deviation(double difference, double variance) {
+        if (variance > 0) {
+            return difference / Math.sqrt(variance);
+        }
+        // A constant series so far: any change is infinitely unusual
+        return difference == 0 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, difference);
+    }
+}
@@ -0,0 +1,236 @@
+package com.environmentdirect.service.ml;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * The live {@link OnlineAnomalyDetector}s, one per (region, metric) series.
+ * Detector statistics are saved periodically and at shutdown, and restored at startup, so
+ * scoring continues where it stopped instead of warming up again.
+ *
+ * State file layout (big-endian):
+ * <pre>
+ *   int     magic ("EDAD")
+ *   short   format version
+ *   int     series count, then per series: short length + UTF-8 region, short length + UTF-8 metric,
+ *           long count, double mean, double m2, double EWMA mean, double EWMA variance
+ *   int     CRC32 of every preceding byte
+ * </pre>
+ */
+@Component
+public class OnlineAnomalyDetectors {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnlineAnomalyDetectors.class);
+
+    static final int MAGIC = 0x45444144; // "EDAD"
+    static final int FORMAT_VERSION = 1;
+
+    // Bounds the memory used by series created from incoming readings
+    static final int MAX_SERIES = 10_000;
+
+    private final Path statePath;
+    private final double alpha;
+    private final double threshold;
+    private final ConcurrentMap<Key, OnlineAnomalyDetector> detectors = new ConcurrentHashMap<>();
+
+    record Key(String region, String metric) {}
+
+    @Autowired
+    public OnlineAnomalyDetectors(@Value("${ml.anomaly.state-path:models/anomaly-detectors.bin}") String statePath,
+                                  @Value("${ml.anomaly.ewma-alpha:0.05}") double alpha) {
+        this(Paths.get(statePath), alpha, OnlineAnomalyDetector.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param statePath File the detector statistics are saved to, or null to keep them in memory only
+     * @param alpha Weight of each new reading in the exponentially weighted statistics
+     * @param threshold Absolute score above which a reading is an anomaly
+     */
+    public OnlineAnomalyDetectors(Path statePath, double alpha, double threshold) {
+        this.statePath = statePath;
+        this.alpha = alpha;
+        this.threshold = threshold;
+        load();
+    }
+
+    /**
+     * Score a reading with the detector of its series, creating the detector on the first reading.
+     *
+     * @param region The region the reading belongs to
+     * @param metric The measured quantity, e.g. "rainfall"
+     * @param value The reading
+     * @return The score of the reading against the earlier readings of the series
+     * @throws IllegalArgumentException if the reading starts a new series and the series limit is reached
+     */
+    public OnlineAnomalyDetector.Score score(String region, String metric, double value) {
+        Key key = new Key(region, metric);
+        OnlineAnomalyDetector detector = detectors.get(key);
+        if (detector == null) {
+            if (detectors.size() >= MAX_SERIES) {
+                throw new IllegalArgumentException("Too many anomaly detection series; limit is " + MAX_SERIES);
+            }
+            detector = detectors.computeIfAbsent(key, k -> new OnlineAnomalyDetector(alpha, threshold));
+        }
+        return detector.score(value);
+    }
+
+    /**
+     * @return The statistics of a series, or null if it has no readings yet
+     */
+    public OnlineAnomalyDetector.State getState(String region, String metric) {
+        OnlineAnomalyDetector detector = detectors.get(new Key(region, metric));
+        return detector != null ? detector.getState() : null;
+    }
+
+    public int size() {
+        return detectors.size();
+    }
+
+    /**
+     * Save the statistics of every series, replacing the previous state file atomically.
+     */
+    @Scheduled(fixedDelayString = "${ml.anomaly.save-interval-ms:60000}",
+            initialDelayString = "${ml.anomaly.save-interval-ms:60000}")
+    @PreDestroy
+    public void save() {
+        if (statePath == null || detectors.isEmpty()) {
+            return;
+        }
+        Map<Key, OnlineAnomalyDetector.State> states = new HashMap<>();
+        detectors.forEach((key, detector) -> states.put(key, detector.getState()));
+
+        try {
+            Path directory = statePath.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, statePath.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tempFile, toByteArray(encode(states)));
+                try {
+                    Files.move(tempFile, statePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, statePath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            logger.debug("Saved {} anomaly detector states to {}", states.size(), statePath);
+        } catch (IOException e) {
+            logger.warn("Could not save anomaly detector states to {}: {}", statePath, e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (statePath == null || !Files.isRegularFile(statePath)) {
+            return;
+        }
+        try {
+            decode(ByteBuffer.wrap(Files.readAllBytes(statePath))).forEach((key, state) ->
+                    detectors.put(key, new OnlineAnomalyDetector(alpha, threshold, state)));
+            logger.info("Restored {} anomaly detector states from {}", detectors.size(), statePath);
+        } catch (IOException | IllegalArgumentException | BufferUnderflowException e) {
+            logger.warn("Could not read anomaly detector states {}: {}", statePath, e.getMessage());
+        }
+    }
+
+    static ByteBuffer encode(Map<Key, OnlineAnomalyDetector.State> states) {
+        // Sort series so the same states always produce the same bytes
+        List<Map.Entry<Key, OnlineAnomalyDetector.State>> entries = states.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparing(Key::region).thenComparing(Key::metric)))
+                .toList();
+
+        int size = 4 + 2 + 4 + 4;
+        for (Map.Entry<Key, OnlineAnomalyDetector.State> entry : entries) {
+            size += 2 + utf8(entry.getKey().region()).length + 2 + utf8(entry.getKey().metric()).length + 8 + 4 * 8;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) FORMAT_VERSION);
+        buffer.putInt(entries.size());
+        for (Map.Entry<Key, OnlineAnomalyDetector.State> entry : entries) {
+            OnlineAnomalyDetector.State state = entry.getValue();
+            putBytes(buffer, utf8(entry.getKey().region()));
+            putBytes(buffer, utf8(entry.getKey().metric()));
+            buffer.putLong(state.count());
+            buffer.putDouble(state.mean());
+            buffer.putDouble(state.m2());
+            buffer.putDouble(state.ewmaMean());
+            buffer.putDouble(state.ewmaVariance());
+        }
+
+        buffer.putInt(checksum(buffer, 0, buffer.position()));
+        return buffer.flip();
+    }
+
+    static Map<Key, OnlineAnomalyDetector.State> decode(ByteBuffer buffer) {
+        int payloadLength = buffer.limit() - 4;
+        if (payloadLength < 0 || buffer.getInt(payloadLength) != checksum(buffer, 0, payloadLength)) {
+            throw new IllegalArgumentException("checksum mismatch");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not an anomaly detector state file");
+        }
+        int formatVersion = buffer.getShort();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unsupported format version " + formatVersion);
+        }
+
+        int seriesCount = buffer.getInt();
+        Map<Key, OnlineAnomalyDetector.State> states = new HashMap<>();
+        for (int i = 0; i < seriesCount; i++) {
+            Key key = new Key(getString(buffer), getString(buffer));
+            states.put(key, new OnlineAnomalyDetector.State(buffer.getLong(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+        }
+        return states;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,34 @@
+package com.environmentdirect.service.ml;
+
+/**
+ * An evenly spaced range of values for one scenario parameter in a sweep.
+ *
+ * @param min First value
+ * @param max Last value (equal to min for a single value)
+ * @param steps Number of values, including both ends
+ */
+public record ParameterRange(double min, double max, int steps) {
+
+    public ParameterRange {
+        if (steps < 1) {
+            throw new IllegalArgumentException("steps must be at least 1");
+        }
+        if (!(max >= min)) {
+            throw new IllegalArgumentException("max must not be less than min");
+        }
+    }
+
+    /**
+     * @return A range holding a single value
+     */
+    public static ParameterRange of(double value) {
+        return new ParameterRange(value, value, 1);
+    }
+
+    /**
+     * @return The value at a step index
+     */
+    public double value(int step) {
+        return steps == 1 ? min : min + step * (max - min) / (steps - 1);
+    }
+}
@@ -0,0 +1,170 @@
+package com.environmentdirect.service.ml;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Append-only daily history of the predictions made for one region or site.
+ * Levels and confidence scores are stored in primitive columns indexed by day, together
+ * with prefix sums of the levels and of the absolute day-to-day changes, so the average
+ * level and mean change of any window are computed in constant time. Readers work on an
+ * immutable snapshot and never block the daily append.
+ */
+public final class PredictionHistory {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private volatile Snapshot snapshot = new Snapshot(0, 0, new byte[0], new double[0], new long[1], new long[1]);
+
+    // Slots beyond size are only written by the appending thread and never read through a published snapshot
+    private record Snapshot(long firstEpochDay, int size, byte[] levels, double[] confidences,
+                            long[] levelPrefix, long[] absChangePrefix) {}
+
+    /**
+     * Append the prediction for the day after the last stored day.
+     *
+     * @param date The day predicted; days already stored are ignored
+     * @param level The predicted level (0-4)
+     * @param confidence The confidence score of the prediction
+     * @return Whether the prediction was appended
+     * @throws IllegalArgumentException if the date would leave a gap in the history
+     */
+    public synchronized boolean append(LocalDate date, int level, double confidence) {
+        Snapshot current = snapshot;
+        long epochDay = date.toEpochDay();
+        long firstEpochDay = current.size() == 0 ? epochDay : current.firstEpochDay();
+        long nextEpochDay = firstEpochDay + current.size();
+
+        if (epochDay < nextEpochDay) {
+            return false;
+        }
+        if (epochDay > nextEpochDay) {
+            throw new IllegalArgumentException("Prediction history has no entry for " + LocalDate.ofEpochDay(nextEpochDay));
+        }
+
+        int size = current.size();
+        byte[] levels = current.levels();
+        double[] confidences = current.confidences();
+        long[] levelPrefix = current.levelPrefix();
+        long[] absChangePrefix = current.absChangePrefix();
+        if (size == levels.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            levels = Arrays.copyOf(levels, capacity);
+            confidences = Arrays.copyOf(confidences, capacity);
+            levelPrefix = Arrays.copyOf(levelPrefix, capacity + 1);
+            absChangePrefix = Arrays.copyOf(absChangePrefix, capacity + 1);
+        }
+
+        levels[size] = (byte) level;
+        confidences[size] = confidence;
+        levelPrefix[size + 1] = levelPrefix[size] + level;
+        absChangePrefix[size + 1] = absChangePrefix[size] + (size > 0 ? Math.abs(level - levels[size - 1]) : 0);
+
+        snapshot = new Snapshot(firstEpochDay, size + 1, levels, confidences, levelPrefix, absChangePrefix);
+        return true;
+    }
+
+    /**
+     * @return The first stored day, or null if the history is empty
+     */
+    public LocalDate getFirstDate() {
+        Snapshot current = snapshot;
+        return current.size() == 0 ? null : LocalDate.ofEpochDay(current.firstEpochDay());
+    }
+
+    /**
+     * @return The last stored day, or null if the history is empty
+     */
+    public LocalDate getLastDate() {
+        Snapshot current = snapshot;
+        return current.size() == 0 ? null : LocalDate.ofEpochDay(current.firstEpochDay() + current.size() - 1);
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Read the stored predictions for a range of days.
+     *
+     * @param from First day (inclusive)
+     * @param to Last day (inclusive)
+     * @return The stored part of the range, which is empty if no day of the range is stored
+     */
+    public Window window(LocalDate from, LocalDate to) {
+        Snapshot current = snapshot;
+        long start = Math.max(from.toEpochDay() - current.firstEpochDay(), 0);
+        long end = Math.min(to.toEpochDay() - current.firstEpochDay() + 1, current.size());
+        if (current.size() == 0 || end <= start) {
+            return new Window(current, 0, 0);
+        }
+        return new Window(current, (int) start, (int) end);
+    }
+
+    /**
+     * A contiguous range of stored days. Aggregates are computed from prefix sums in constant time.
+     */
+    public static final class Window {
+
+        private final Snapshot snapshot;
+        private final int start;
+        private final int end;
+
+        private Window(Snapshot snapshot, int start, int end) {
+            this.snapshot = snapshot;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int size() {
+            return end - start;
+        }
+
+        public LocalDate date(int i) {
+            return LocalDate.ofEpochDay(snapshot.firstEpochDay() + start + i);
+        }
+
+        public int level(int i) {
+            return snapshot.levels()[start + i];
+        }
+
+        public double confidence(int i) {
+            return snapshot.confidences()[start + i];
+        }
+
+        /**
+         * @return The part of this window from index {@code from} (inclusive) to {@code to} (exclusive)
+         */
+        public Window subWindow(int from, int to) {
+            if (from < 0 || to > size() || from > to) {
+                throw new IndexOutOfBoundsException("Invalid sub-window [" + from + ", " + to + ") of " + size());
+            }
+            return new Window(snapshot, start + from, start + to);
+        }
+
+        /**
+         * @return Whether the window holds every day from {@code from} to {@code to}
+         */
+        public boolean covers(LocalDate from, LocalDate to) {
+            return size() > 0 && !date(0).isAfter(from) && !date(size() - 1).isBefore(to);
+        }
+
+        /**
+         * @return Mean level over the window, or 0 if it is empty
+         */
+        public double averageLevel() {
+            return size() > 0 ? (double) (snapshot.levelPrefix()[end] - snapshot.levelPrefix()[start]) / size() : 0.0;
+        }
+
+        /**
+         * @return Mean absolute change between consecutive days, or 0 with fewer than two days
+         */
+        public double meanAbsoluteChange() {
+            if (size() < 2) {
+                return 0.0;
+            }
+            long[] prefix = snapshot.absChangePrefix();
+            return (double) (prefix[end] - prefix[start + 1]) / (size() - 1);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.environmentdirect.service.ml;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Materialized daily prediction history for every tracked region and eco-tourism site.
+ * Histories are appended by the daily prediction job and read by historical comparisons.
+ */
+@Component
+public class PredictionHistoryStore {
+
+    private final ConcurrentMap<String, PredictionHistory> histories = new ConcurrentHashMap<>();
+
+    /**
+     * @param type The prediction type ("eco-tourism" or "flood-risk")
+     * @param id The site or region identifier
+     * @return The history, created empty if the entity is not tracked yet
+     */
+    public PredictionHistory getOrCreate(String type, String id) {
+        return histories.computeIfAbsent(key(type, id), k -> new PredictionHistory());
+    }
+
+    /**
+     * @param type The prediction type ("eco-tourism" or "flood-risk")
+     * @param id The site or region identifier
+     * @return The history, if the entity is tracked
+     */
+    public Optional<PredictionHistory> find(String type, String id) {
+        return Optional.ofNullable(histories.get(key(type, id)));
+    }
+
+    /**
+     * @return The keys ("type:id") of all tracked entities
+     */
+    public Set<String> getTrackedKeys() {
+        return Set.copyOf(histories.keySet());
+    }
+
+    private static String key(String type, String id) {
+        return type + ":" + id;
+    }
+}
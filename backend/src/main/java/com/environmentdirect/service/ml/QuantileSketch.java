@@ -0,0 +1,325 @@
+package com.environmentdirect.service.ml;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Mergeable KLL quantile sketch of a stream of values.
+ * Values are kept in a stack of compactors: when a level is full it is sorted and every other
+ * value is promoted to the next level with twice the weight. The sketch retains O(k) values
+ * however many it has seen, answers rank queries with an error of about 1.7/k of the count
+ * (about 1% for the default k), and two sketches with the same k merge into a sketch of the
+ * combined stream, so summaries of time buckets or of other nodes can be combined without the
+ * raw data. Until the first compaction, after about k values, quantiles are exact.
+ * Instances are not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int FORMAT_VERSION = 1;
+
+    private final int k;
+    private final SplittableRandom random;
+
+    private double[][] levels = new double[0][];
+    private int[] levelSizes = new int[0];
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    // Values of all levels sorted with their cumulative weights; rebuilt after a change
+    private double[] sortedValues;
+    private long[] cumulativeWeights;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        this(k, new SplittableRandom());
+    }
+
+    /**
+     * @param k Accuracy parameter: the largest level holds about k values
+     * @param seed Seed of the choices made during compaction, for reproducible sketches
+     */
+    public QuantileSketch(int k, long seed) {
+        this(k, new SplittableRandom(seed));
+    }
+
+    private QuantileSketch(int k, SplittableRandom random) {
+        if (k < 8 || k > 65_535) {
+            throw new IllegalArgumentException("k must be between 8 and 65535");
+        }
+        this.k = k;
+        this.random = random;
+        grow();
+    }
+
+    /**
+     * Build a sketch of a whole series.
+     */
+    public static QuantileSketch of(double[] values) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) {
+            sketch.update(value);
+        }
+        return sketch;
+    }
+
+    /**
+     * Add a value to the sketch.
+     *
+     * @throws IllegalArgumentException if the value is NaN
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Cannot add NaN to a quantile sketch");
+        }
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sortedValues = null;
+        if (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Fold another sketch into this one. The other sketch is not modified.
+     *
+     * @throws IllegalArgumentException if the sketches have different k
+     */
+    public void merge(QuantileSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge sketches with k " + k + " and " + other.k);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.levelSizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sortedValues = null;
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Approximate quantile: the value whose rank is {@code floor(fraction * count)} among all
+     * values seen, counting from 0.
+     *
+     * @param fraction Quantile between 0 and 1
+     * @return The quantile, or NaN if the sketch is empty
+     */
+    public double quantile(double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.min((long) (fraction * count), count - 1);
+        if (rank == 0) {
+            return min;
+        }
+        if (rank == count - 1) {
+            return max;
+        }
+
+        sortIfNeeded();
+        int index = Arrays.binarySearch(cumulativeWeights, rank + 1);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return sortedValues[Math.min(index, sortedValues.length - 1)];
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * @return Number of values the sketch currently retains
+     */
+    public int getRetained() {
+        return retained;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Serialize the sketch, e.g. to combine sketches built on other nodes.
+     *
+     * Layout (big-endian): short format version, int k, long count, double min, double max,
+     * short level count, then per level: int size followed by its values.
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 4 + 8 + 8 + 8 + 2 + 4 * levels.length + 8 * retained);
+        buffer.putShort((short) FORMAT_VERSION);
+        buffer.putInt(k);
+        buffer.putLong(count);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putShort((short) levels.length);
+        for (int h = 0; h < levels.length; h++) {
+            buffer.putInt(levelSizes[h]);
+            for (int i = 0; i < levelSizes[h]; i++) {
+                buffer.putDouble(levels[h][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a serialized sketch
+     */
+    public static QuantileSketch fromByteArray(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int formatVersion = buffer.getShort();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalArgumentException("unsupported format version " + formatVersion);
+            }
+            QuantileSketch sketch = new QuantileSketch(buffer.getInt());
+            sketch.count = buffer.getLong();
+            sketch.min = buffer.getDouble();
+            sketch.max = buffer.getDouble();
+            int levelCount = buffer.getShort();
+            while (sketch.levels.length < levelCount) {
+                sketch.grow();
+            }
+            for (int h = 0; h < levelCount; h++) {
+                int size = buffer.getInt();
+                for (int i = 0; i < size; i++) {
+                    sketch.append(h, buffer.getDouble());
+                }
+            }
+            return sketch;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated quantile sketch", e);
+        }
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - level - 1;
+        return (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)) + 1;
+    }
+
+    private void grow() {
+        int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        levelSizes = Arrays.copyOf(levelSizes, height);
+        levels[height - 1] = new double[0];
+
+        maxRetained = 0;
+        for (int h = 0; h < height; h++) {
+            maxRetained += capacity(h);
+        }
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels[level];
+        if (levelSizes[level] == items.length) {
+            items = Arrays.copyOf(items, Math.max(16, items.length * 2));
+            levels[level] = items;
+        }
+        items[levelSizes[level]++] = value;
+        retained++;
+    }
+
+    /**
+     * Compact full levels from the bottom until the sketch is within its size budget.
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (levelSizes[h] >= capacity(h)) {
+                if (h + 1 == levels.length) {
+                    grow();
+                }
+                compact(h);
+                if (retained < maxRetained) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort a level and promote every other value to the next level. With an odd number of
+     * values the smallest stays behind, so the total weight is preserved exactly.
+     */
+    private void compact(int level) {
+        double[] items = levels[level];
+        int size = levelSizes[level];
+        Arrays.sort(items, 0, size);
+
+        int kept = size % 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = kept + offset; i < size; i += 2) {
+            append(level + 1, items[i]);
+        }
+        retained -= size - kept;
+        levelSizes[level] = kept;
+    }
+
+    private void sortIfNeeded() {
+        if (sortedValues != null) {
+            return;
+        }
+        int[] levelOf = new int[retained];
+        double[] values = new double[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < levelSizes[h]; i++) {
+                values[n] = levels[h][i];
+                levelOf[n] = h;
+                n++;
+            }
+        }
+
+        // Sort indexes by value, so each value keeps the weight of its level
+        Integer[] indexes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, (a, b) -> Double.compare(values[a], values[b]));
+
+        double[] sorted = new double[n];
+        long[] cumulative = new long[n];
+        long weight = 0;
+        for (int i = 0; i < n; i++) {
+            sorted[i] = values[indexes[i]];
+            weight += 1L << levelOf[indexes[i]];
+            cumulative[i] = weight;
+        }
+        sortedValues = sorted;
+        cumulativeWeights = cumulative;
+    }
+}
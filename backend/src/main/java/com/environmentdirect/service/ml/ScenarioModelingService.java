@@ -7,7 +7,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.ArrayList;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -23,6 +25,10 @@ public class ScenarioModelingService {
 
     private final ModelService modelService;
 
+    private final FloodRiskEnsemble floodRiskEnsemble = new FloodRiskEnsemble();
+
+    private final FloodRiskSweep floodRiskSweep = new FloodRiskSweep();
+
     @Autowired
     public ScenarioModelingService(ModelService modelService) {
         this.modelService = modelService;
@@ -100,6 +106,93 @@ public class ScenarioModelingService {
         return scenario;
     }
 
+    /**
+     * Generate a flood risk scenario as a Monte Carlo ensemble.
+     * Rainfall, temperature and soil saturation are perturbed around the adjusted point
+     * estimate of {@link #generateFloodRiskScenario}, and every draw is scored against the
+     * active flood risk model in parallel.
+     * 
+     * @param region The region to model
+     * @param rainfallAdjustment Adjustment factor for rainfall (1.0 = no change)
+     * @param temperatureAdjustment Adjustment in degrees Celsius (0 = no change)
+     * @param soilSaturationAdjustment Adjustment factor for soil saturation (1.0 = no change)
+     * @param perturbation Spread of the random perturbations
+     * @param draws Number of ensemble members
+     * @param seed Seed for the random perturbations; the same seed gives the same result
+     * @return Map containing the risk level distribution, score quantiles and exceedance probabilities
+     */
+    public Map<String, Object> generateFloodRiskEnsemble(String region, double rainfallAdjustment,
+                                                        double temperatureAdjustment,
+                                                        double soilSaturationAdjustment,
+                                                        FloodRiskEnsemble.Perturbation perturbation,
+                                                        int draws, long seed) {
+        CompiledFloodRiskModel model = modelService.getFloodRiskModel();
+        if (model == null) {
+            throw new IllegalStateException("Flood risk model not found");
+        }
+
+        double[] features = new double[CompiledFloodRiskModel.FEATURE_COUNT];
+        fillFloodRiskFeatures(region, new double[] {rainfallAdjustment}, new double[] {temperatureAdjustment},
+            new double[] {soilSaturationAdjustment}, features, 0);
+
+        long start = System.nanoTime();
+        FloodRiskEnsemble.Result result = floodRiskEnsemble.run(model, features, perturbation, draws, seed);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("rainfall", features[0]);
+        parameters.put("rainfallAdjustment", rainfallAdjustment);
+        parameters.put("temperature", features[1]);
+        parameters.put("temperatureAdjustment", temperatureAdjustment);
+        parameters.put("elevation", features[2]);
+        parameters.put("soilSaturation", features[3]);
+        parameters.put("soilSaturationAdjustment", soilSaturationAdjustment);
+        parameters.put("historicalRisk", features[4]);
+        parameters.put("rainfallSpread", perturbation.rainfall());
+        parameters.put("temperatureSpread", perturbation.temperature());
+        parameters.put("soilSaturationSpread", perturbation.soilSaturation());
+
+        // Probability of each risk level, and of reaching at least each level
+        Map<String, Double> distribution = new LinkedHashMap<>();
+        Map<String, Double> exceedance = new LinkedHashMap<>();
+        double[] probabilities = result.levelProbabilities();
+        for (int level = 0; level < probabilities.length; level++) {
+            distribution.put(convertNumericToRiskLevel(level), probabilities[level]);
+            if (level > 0) {
+                exceedance.put(convertNumericToRiskLevel(level), result.exceedanceProbability(level));
+            }
+        }
+
+        Map<String, Object> quantiles = new LinkedHashMap<>();
+        for (int i = 0; i < FloodRiskEnsemble.QUANTILES.length; i++) {
+            double score = result.scoreQuantiles()[i];
+            Map<String, Object> quantile = new HashMap<>();
+            quantile.put("score", score);
+            quantile.put("floodRiskLevel", convertNumericToRiskLevel(CompiledFloodRiskModel.toRiskLevel(score)));
+            quantiles.put(String.format("p%02d", Math.round(FloodRiskEnsemble.QUANTILES[i] * 100)), quantile);
+        }
+
+        int modalLevel = result.modalLevel();
+        Map<String, Object> ensemble = new HashMap<>();
+        ensemble.put("draws", result.draws());
+        ensemble.put("seed", result.seed());
+        ensemble.put("meanScore", result.meanScore());
+        ensemble.put("mostLikelyRiskLevel", convertNumericToRiskLevel(modalLevel));
+        ensemble.put("distribution", distribution);
+        ensemble.put("exceedanceProbabilities", exceedance);
+        ensemble.put("quantiles", quantiles);
+        ensemble.put("elapsedMillis", elapsedMillis);
+
+        Map<String, Object> scenario = new HashMap<>();
+        scenario.put("region", region);
+        scenario.put("scenarioType", "floodRiskEnsemble");
+        scenario.put("generatedAt", LocalDate.now().format(DateTimeFormatter.ISO_DATE));
+        scenario.put("parameters", parameters);
+        scenario.put("ensemble", ensemble);
+        scenario.put("recommendations", generateRecommendations(region, modalLevel));
+        return scenario;
+    }
+
     /**
      * Generate an eco-tourism scenario by adjusting parameters.
      * 
@@ -317,6 +410,128 @@ public class ScenarioModelingService {
         return comparison;
     }
 
+    /**
+     * Evaluate a grid of flood risk scenarios for a region.
+     * Every combination of the three adjustment ranges is scored against the active flood risk
+     * model, in parallel blocks that are passed to the sink in grid order as soon as each block
+     * is done. Evaluations are memoized per region, model version and quantized adjustments.
+     * 
+     * @param region The region to model
+     * @param rainfallAdjustment Rainfall adjustment factors (1.0 = no change)
+     * @param temperatureAdjustment Temperature adjustments in degrees Celsius (0 = no change)
+     * @param soilSaturationAdjustment Soil saturation adjustment factors (1.0 = no change)
+     * @param sink Receives each block of result cells
+     * @return Number of cells evaluated
+     */
+    public int sweepFloodRiskScenarios(String region, ParameterRange rainfallAdjustment,
+                                       ParameterRange temperatureAdjustment,
+                                       ParameterRange soilSaturationAdjustment,
+                                       Consumer<List<Map<String, Object>>> sink) {
+        ModelVersion<CompiledFloodRiskModel> modelVersion = modelService.getFloodRiskModels().getActiveVersion()
+            .orElseThrow(() -> new IllegalStateException("Flood risk model not found"));
+
+        double[] baseFeatures = new double[CompiledFloodRiskModel.FEATURE_COUNT];
+        fillFloodRiskFeatures(region, new double[] {1.0}, new double[] {0.0}, new double[] {1.0}, baseFeatures, 0);
+
+        // Level names and severity scores are derived once per sweep rather than once per cell
+        String[] levelNames = new String[CompiledFloodRiskModel.MAX_RISK_LEVEL + 1];
+        Object[] severityScores = new Object[levelNames.length];
+        for (int level = 0; level < levelNames.length; level++) {
+            levelNames[level] = convertNumericToRiskLevel(level);
+            severityScores[level] = generateImpactAssessment(region, level).get("severityScore");
+        }
+
+        return floodRiskSweep.sweep(region, baseFeatures, modelVersion.getModel(), modelVersion.getVersion(),
+            rainfallAdjustment, temperatureAdjustment, soilSaturationAdjustment, block -> {
+                List<Map<String, Object>> cells = new ArrayList<>(block.size());
+                for (FloodRiskSweep.Cell cell : block) {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("index", cell.index());
+                    result.put("rainfallAdjustment", cell.rainfallAdjustment());
+                    result.put("temperatureAdjustment", cell.temperatureAdjustment());
+                    result.put("soilSaturationAdjustment", cell.soilSaturationAdjustment());
+                    result.put("score", cell.score());
+                    result.put("numericRiskLevel", cell.riskLevel());
+                    result.put("floodRiskLevel", levelNames[cell.riskLevel()]);
+                    result.put("severityScore", severityScores[cell.riskLevel()]);
+                    cells.add(result);
+                }
+                sink.accept(cells);
+            });
+    }
+
+    /**
+     * Build flood risk model features for a region under several sets of adjustments.
+     * Applies the same adjustments as {@link #generateFloodRiskScenario}, writing one
+     * row per adjustment set into a row-major feature array.
+     *
+     * @param region The region to model
+     * @param rainfallAdjustments Rainfall adjustment factor for each row
+     * @param temperatureAdjustments Temperature adjustment in degrees Celsius for each row
+     * @param soilSaturationAdjustments Soil saturation adjustment factor for each row
+     * @param dest Row-major feature array to fill
+     * @param offset Index in dest of the first feature of the first row
+     */
+    public void fillFloodRiskFeatures(String region, double[] rainfallAdjustments,
+                                      double[] temperatureAdjustments, double[] soilSaturationAdjustments,
+                                      double[] dest, int offset) {
+        Map<String, Double> baseParams = getBaseFloodRiskParams(region);
+        double rainfall = baseParams.get("rainfall");
+        double temperature = baseParams.get("temperature");
+        double soilSaturation = baseParams.get("soilSaturation");
+        double elevation = baseParams.get("elevation");
+        double historicalRisk = baseParams.get("historicalRisk");
+
+        int index = offset;
+        for (int i = 0; i < rainfallAdjustments.length; i++) {
+            dest[index++] = rainfall * rainfallAdjustments[i];
+            dest[index++] = temperature + temperatureAdjustments[i];
+            dest[index++] = elevation;
+            dest[index++] = soilSaturation * soilSaturationAdjustments[i];
+            dest[index++] = historicalRisk;
+        }
+    }
+
+    /**
+     * Get the season factor used by the visitor load model for a site.
+     *
+     * @param siteId The site to model
+     * @param seasonalAdjustment Adjustment factor for seasonal effects (1.0 = no change)
+     * @param marketingFactor Additional factor for marketing campaigns (1.0 = no change)
+     * @return The adjusted season factor
+     */
+    public double getAdjustedSeasonFactor(String siteId, double seasonalAdjustment, double marketingFactor) {
+        double seasonFactor = ((Number) getBaseEcoTourismParams(siteId).get("seasonFactor")).doubleValue();
+        return seasonFactor * seasonalAdjustment * marketingFactor;
+    }
+
+    /**
+     * Estimate the visitor load level (0-4) for an observed number of visitors at a site.
+     * This inverts the capacity analysis, interpolating between the expected utilization of
+     * each load level, so the result can fall between whole levels.
+     *
+     * @param siteId The site the visitors were counted at
+     * @param visitorCount Number of visitors observed
+     * @return The estimated visitor load level
+     */
+    public double estimateVisitorLoadLevel(String siteId, int visitorCount) {
+        int capacity = (int) getBaseEcoTourismParams(siteId).get("capacity");
+        double utilization = (double) visitorCount / capacity;
+
+        // Expected utilization for load levels 0-4, as used in generateCapacityAnalysis
+        double[] levelUtilization = {0.3, 0.5, 0.8, 1.2, 1.5};
+        if (utilization <= levelUtilization[0]) {
+            return 0.0;
+        }
+        for (int level = 1; level < levelUtilization.length; level++) {
+            if (utilization <= levelUtilization[level]) {
+                double lower = levelUtilization[level - 1];
+                return level - 1 + (utilization - lower) / (levelUtilization[level] - lower);
+            }
+        }
+        return 4.0;
+    }
+
     // Helper methods
 
     private Map<String, Double> getBaseFloodRiskParams(String region) {
@@ -0,0 +1,154 @@
+package com.environmentdirect.service.ml;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Expected value and spread of a daily metric for every day of the year.
+ * Built from a long history by a seasonal-trend decomposition: the trend is a centred one-year
+ * moving average, the seasonal component is the mean detrended value per day of year smoothed
+ * over neighbouring days, and the spread is the root mean square of what remains, pooled over a
+ * window of days around each day of year. The expected value of a day is the trend level of the
+ * last year plus its seasonal component. Both are precomputed per day of year, so scoring a point is a
+ * constant-time lookup. Instances are immutable.
+ */
+public final class SeasonalBaseline {
+
+    static final int DAYS_PER_YEAR = 366;
+
+    private static final int TREND_HALF_WINDOW = 182;
+
+    // Minimum history: one full trend window
+    public static final int MIN_HISTORY_DAYS = 2 * TREND_HALF_WINDOW + 1;
+    private static final int SEASONAL_HALF_WINDOW = 7;
+    private static final int SPREAD_HALF_WINDOW = 15;
+
+    private final double[] expected;
+    private final double[] spread;
+    private final int historyDays;
+    private final LocalDate lastDate;
+    private final Instant builtAt;
+
+    private SeasonalBaseline(double[] expected, double[] spread, int historyDays, LocalDate lastDate) {
+        this.expected = expected;
+        this.spread = spread;
+        this.historyDays = historyDays;
+        this.lastDate = lastDate;
+        this.builtAt = Instant.now();
+    }
+
+    /**
+     * Decompose a daily history into trend, seasonal and remainder components.
+     *
+     * @param firstDate Date of the first value
+     * @param values One value per consecutive day
+     * @return The baseline of the history
+     * @throws IllegalArgumentException if the history is shorter than {@link #MIN_HISTORY_DAYS}
+     */
+    public static SeasonalBaseline decompose(LocalDate firstDate, double[] values) {
+        int n = values.length;
+        if (n < MIN_HISTORY_DAYS) {
+            throw new IllegalArgumentException("A seasonal baseline needs at least " + MIN_HISTORY_DAYS + " days of history");
+        }
+
+        // Trend: centred one-year moving average from prefix sums. A shorter window would take in
+        // part of a season, so within half a year of either end the nearest full window is used.
+        double[] prefix = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            prefix[i + 1] = prefix[i] + values[i];
+        }
+        int trendWindow = 2 * TREND_HALF_WINDOW + 1;
+        double[] detrended = new double[n];
+        int[] dayOfYear = new int[n];
+        for (int i = 0; i < n; i++) {
+            int from = Math.min(Math.max(0, i - TREND_HALF_WINDOW), n - trendWindow);
+            detrended[i] = values[i] - (prefix[from + trendWindow] - prefix[from]) / trendWindow;
+            dayOfYear[i] = firstDate.plusDays(i).getDayOfYear() - 1;
+        }
+        double level = (prefix[n] - prefix[n - trendWindow]) / trendWindow;
+
+        // Seasonal: mean detrended value per day of year, smoothed and centred on zero
+        double[] sums = new double[DAYS_PER_YEAR];
+        double[] counts = new double[DAYS_PER_YEAR];
+        for (int i = 0; i < n; i++) {
+            sums[dayOfYear[i]] += detrended[i];
+            counts[dayOfYear[i]]++;
+        }
+        double[] seasonal = new double[DAYS_PER_YEAR];
+        double[] windowSums = circularWindowSums(sums, SEASONAL_HALF_WINDOW);
+        double[] windowCounts = circularWindowSums(counts, SEASONAL_HALF_WINDOW);
+        double seasonalMean = 0;
+        for (int d = 0; d < DAYS_PER_YEAR; d++) {
+            seasonal[d] = windowCounts[d] > 0 ? windowSums[d] / windowCounts[d] : 0;
+            seasonalMean += seasonal[d];
+        }
+        seasonalMean /= DAYS_PER_YEAR;
+
+        // Spread: root mean square remainder, pooled over neighbouring days of year
+        double[] squares = new double[DAYS_PER_YEAR];
+        for (int i = 0; i < n; i++) {
+            double remainder = detrended[i] - (seasonal[dayOfYear[i]] - seasonalMean);
+            squares[dayOfYear[i]] += remainder * remainder;
+        }
+        double[] squareSums = circularWindowSums(squares, SPREAD_HALF_WINDOW);
+        double[] squareCounts = circularWindowSums(counts, SPREAD_HALF_WINDOW);
+        double minimumSpread = 1e-6 * (Math.abs(level) + 1);
+
+        double[] expected = new double[DAYS_PER_YEAR];
+        double[] spread = new double[DAYS_PER_YEAR];
+        for (int d = 0; d < DAYS_PER_YEAR; d++) {
+            expected[d] = level + seasonal[d] - seasonalMean;
+            double rms = squareCounts[d] > 1 ? Math.sqrt(squareSums[d] / (squareCounts[d] - 1)) : 0;
+            spread[d] = Math.max(rms, minimumSpread);
+        }
+        return new SeasonalBaseline(expected, spread, n, firstDate.plusDays(n - 1L));
+    }
+
+    private static double[] circularWindowSums(double[] values, int halfWindow) {
+        int size = values.length;
+        double[] sums = new double[size];
+        double sum = 0;
+        for (int offset = -halfWindow; offset <= halfWindow; offset++) {
+            sum += values[Math.floorMod(offset, size)];
+        }
+        for (int d = 0; d < size; d++) {
+            sums[d] = sum;
+            sum += values[Math.floorMod(d + halfWindow + 1, size)] - values[Math.floorMod(d - halfWindow, size)];
+        }
+        return sums;
+    }
+
+    /**
+     * @return The expected value on a date
+     */
+    public double expected(LocalDate date) {
+        return expected[date.getDayOfYear() - 1];
+    }
+
+    /**
+     * @return The typical deviation from the expected value on a date
+     */
+    public double spread(LocalDate date) {
+        return spread[date.getDayOfYear() - 1];
+    }
+
+    /**
+     * @return Deviation of a value from the expected value of its date, in spreads
+     */
+    public double zScore(LocalDate date, double value) {
+        int day = date.getDayOfYear() - 1;
+        return (value - expected[day]) / spread[day];
+    }
+
+    public int getHistoryDays() {
+        return historyDays;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+}
@@ -0,0 +1,80 @@
+package com.environmentdirect.service.ml;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementations of the batch scoring loops, built on the JDK Vector API.
+ * This class must only be loaded when the jdk.incubator.vector module is present;
+ * {@link BatchScorer} guards every call.
+ */
+final class VectorScoringKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorScoringKernels() {
+    }
+
+    /**
+     * Score row-major feature rows against a linear model, clamping the raw output to [min, max].
+     * Rows are processed one vector of lanes at a time by gathering each feature column,
+     * using the same multiply/add order as the scalar path so results are bit-identical.
+     */
+    static void linearRows(double intercept, double[] coefficients, double[] features, int rows,
+                           double min, double max, double[] out) {
+        int stride = coefficients.length;
+        int lanes = SPECIES.length();
+
+        int[] indexMap = new int[lanes];
+        for (int k = 0; k < lanes; k++) {
+            indexMap[k] = k * stride;
+        }
+
+        DoubleVector interceptVector = DoubleVector.broadcast(SPECIES, intercept);
+        DoubleVector[] coefficientVectors = new DoubleVector[stride];
+        for (int j = 0; j < stride; j++) {
+            coefficientVectors[j] = DoubleVector.broadcast(SPECIES, coefficients[j]);
+        }
+
+        int upperBound = SPECIES.loopBound(rows);
+        int row = 0;
+        for (; row < upperBound; row += lanes) {
+            int base = row * stride;
+            DoubleVector acc = interceptVector;
+            for (int j = 0; j < stride; j++) {
+                DoubleVector column = DoubleVector.fromArray(SPECIES, features, base + j, indexMap, 0);
+                acc = acc.add(column.mul(coefficientVectors[j]));
+            }
+            acc.max(min).min(max).intoArray(out, row);
+        }
+
+        // Scalar tail for the rows that do not fill a whole vector
+        for (; row < rows; row++) {
+            int base = row * stride;
+            double acc = intercept;
+            for (int j = 0; j < stride; j++) {
+                acc += features[base + j] * coefficients[j];
+            }
+            out[row] = Math.max(min, Math.min(max, acc));
+        }
+    }
+
+    /**
+     * Evaluate intercept + slope * x for every input, clamping the output to [min, max].
+     */
+    static void linear(double intercept, double slope, double[] x, double min, double max, double[] out) {
+        int upperBound = SPECIES.loopBound(x.length);
+        int i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i)
+                    .mul(slope)
+                    .add(intercept)
+                    .max(min)
+                    .min(max)
+                    .intoArray(out, i);
+        }
+        for (; i < x.length; i++) {
+            out[i] = Math.max(min, Math.min(max, intercept + x[i] * slope));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.environmentdirect.service.ml;
+
+/**
+ * Immutable sufficient statistics of a simple linear regression of visitor load on the
+ * combined season/day factor. Observations are folded in with the same running-mean updates
+ * that {@link org.apache.commons.math3.stat.regression.SimpleRegression} uses, so the fitted
+ * line matches it exactly while the model can keep learning from new observations.
+ *
+ * @param count Number of observations
+ * @param meanX Mean of the combined factor
+ * @param meanY Mean of the visitor load level
+ * @param sumSquaresX Sum of squared deviations of the combined factor from its mean
+ * @param sumCrossProducts Sum of cross products of the deviations of both variables
+ */
+public record VisitorLoadStatistics(long count, double meanX, double meanY,
+                                    double sumSquaresX, double sumCrossProducts) {
+
+    public static final VisitorLoadStatistics EMPTY = new VisitorLoadStatistics(0, 0, 0, 0, 0);
+
+    /**
+     * @return New statistics that also include one observation
+     */
+    public VisitorLoadStatistics add(double x, double y) {
+        if (count == 0) {
+            return new VisitorLoadStatistics(1, x, y, 0, 0);
+        }
+        double fact1 = 1.0 + count;
+        double fact2 = count / (1.0 + count);
+        double dx = x - meanX;
+        double dy = y - meanY;
+        return new VisitorLoadStatistics(count + 1, meanX + dx / fact1, meanY + dy / fact1,
+                sumSquaresX + dx * dx * fact2, sumCrossProducts + dx * dy * fact2);
+    }
+
+    /**
+     * Combine two sets of statistics, as if every observation of both had been added to one.
+     *
+     * @return The merged statistics
+     */
+    public VisitorLoadStatistics merge(VisitorLoadStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        double total = count + other.count;
+        double dx = other.meanX - meanX;
+        double dy = other.meanY - meanY;
+        double weight = count * (double) other.count / total;
+        return new VisitorLoadStatistics(count + other.count,
+                meanX + dx * other.count / total,
+                meanY + dy * other.count / total,
+                sumSquaresX + other.sumSquaresX + dx * dx * weight,
+                sumCrossProducts + other.sumCrossProducts + dx * dy * weight);
+    }
+
+    /**
+     * @return The fitted slope, or 0 while the combined factor has no spread yet
+     */
+    public double slope() {
+        return sumSquaresX > 0 ? sumCrossProducts / sumSquaresX : 0.0;
+    }
+
+    /**
+     * @return The fitted intercept
+     */
+    public double intercept() {
+        return meanY - slope() * meanX;
+    }
+}
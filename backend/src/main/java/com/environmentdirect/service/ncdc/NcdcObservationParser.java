@@ -0,0 +1,217 @@
+package com.environmentdirect.service.ncdc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Streaming parser for NCDC data responses ({@code {"metadata":{...},"results":[...]}}).
+ * Observations are read token by token straight into a {@link NcdcObservations.Builder}: dates
+ * are converted to epoch days from the parser's character buffer, values are read as doubles,
+ * and attributes and unknown fields are skipped, so no tree or per-observation object is built.
+ * Observations without a station, datatype, date or numeric value are skipped.
+ */
+public final class NcdcObservationParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private NcdcObservationParser() {
+    }
+
+    /**
+     * Parse one response and add its observations to a builder.
+     *
+     * @param body The response body, UTF-8 JSON
+     * @param builder Receives the observations
+     * @return Number of observations added
+     * @throws IOException if the body is not valid JSON
+     */
+    public static int parse(byte[] body, NcdcObservations.Builder builder) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "NCDC response is not a JSON object");
+            }
+            int added = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        if (readObservation(parser, builder)) {
+                            added++;
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return added;
+        }
+    }
+
+    /**
+     * Read the total result count of a paged response, {@code metadata.resultset.count}, without
+     * parsing its results. NCDC answers a query without results with an empty object.
+     *
+     * @param body The response body, UTF-8 JSON
+     * @return The total count, or the number of results on the page if the response has no count
+     * @throws IOException if the body is not valid JSON
+     */
+    public static long readCount(byte[] body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "NCDC response is not a JSON object");
+            }
+            long results = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("metadata".equals(field) && value == JsonToken.START_OBJECT) {
+                    long count = readResultsetCount(parser);
+                    if (count >= 0) {
+                        return count;
+                    }
+                } else if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        parser.skipChildren();
+                        results++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Find the elements of the results array of a response, so they can be copied into a
+     * merged response without being parsed.
+     *
+     * @param body The response body, UTF-8 JSON
+     * @return The start and end byte offsets of the elements, without the brackets and
+     *         surrounding whitespace, or null if the response has no results
+     * @throws IOException if the body is not valid JSON
+     */
+    public static int[] resultsRange(byte[] body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "NCDC response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                    int start = (int) parser.currentTokenLocation().getByteOffset() + 1;
+                    parser.skipChildren();
+                    int end = (int) parser.currentTokenLocation().getByteOffset();
+                    while (start < end && isWhitespace(body[start])) {
+                        start++;
+                    }
+                    while (end > start && isWhitespace(body[end - 1])) {
+                        end--;
+                    }
+                    return start < end ? new int[] {start, end} : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static long readResultsetCount(JsonParser parser) throws IOException {
+        long count = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("resultset".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String resultsetField = parser.currentName();
+                    JsonToken resultsetValue = parser.nextToken();
+                    if ("count".equals(resultsetField) && resultsetValue == JsonToken.VALUE_NUMBER_INT) {
+                        count = parser.getLongValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return count;
+    }
+
+    private static boolean readObservation(JsonParser parser, NcdcObservations.Builder builder) throws IOException {
+        String station = null;
+        String datatype = null;
+        int epochDay = Integer.MIN_VALUE;
+        double value = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "station" -> station = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                case "datatype" -> datatype = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                case "date" -> epochDay = token == JsonToken.VALUE_STRING
+                        ? epochDay(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())
+                        : Integer.MIN_VALUE;
+                case "value" -> value = token.isNumeric() ? parser.getDoubleValue() : Double.NaN;
+                default -> parser.skipChildren();
+            }
+        }
+        if (station == null || datatype == null || epochDay == Integer.MIN_VALUE || Double.isNaN(value)) {
+            return false;
+        }
+        builder.add(station, datatype, epochDay, value);
+        return true;
+    }
+
+    /**
+     * Convert the date part of an ISO date or date-time, e.g. "2024-03-01T00:00:00", to an epoch day.
+     *
+     * @return The epoch day, or {@link Integer#MIN_VALUE} if the text does not start with a date
+     */
+    static int epochDay(char[] text, int offset, int length) {
+        if (length < 10 || text[offset + 4] != '-' || text[offset + 7] != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) daysFromCivil(year, month, day);
+    }
+
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, without allocating a LocalDate.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * 146097 + dayOfEra - 719468;
+    }
+}
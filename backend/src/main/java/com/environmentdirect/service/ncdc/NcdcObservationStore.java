@@ -0,0 +1,424 @@
+package com.environmentdirect.service.ncdc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Local copy of the daily NCDC observations of each synced location, keyed by station,
+ * datatype and date, so climate endpoints can be served without calling NOAA.
+ *
+ * Each sync appends one batch covering a date range to an append-only log; a later value for
+ * the same station, datatype and date replaces the earlier one, so a sync can re-fetch a few
+ * recent days to pick up late reports. The log is replayed at startup, a batch torn by a crash
+ * is cut off, and the log is rewritten as one batch per location once re-fetched days make up
+ * more than half of it. Reads use an immutable snapshot per location and never block on a sync.
+ *
+ * Log layout (big-endian):
+ * <pre>
+ *   int     magic ("EDNO")
+ *   short   format version
+ *   then per batch:
+ *     int   payload length
+ *     payload: short length + UTF-8 location, int first epoch day, int last epoch day,
+ *              int series count, then per series: short length + UTF-8 station,
+ *              short length + UTF-8 datatype, int count, then per observation: int epoch day, double value
+ *     int   CRC32 of the payload
+ * </pre>
+ */
+@Component
+public class NcdcObservationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(NcdcObservationStore.class);
+
+    static final int MAGIC = 0x45444E4F; // "EDNO"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_LENGTH = 4 + 2;
+    private static final int OBSERVATION_LENGTH = 4 + 8;
+
+    private final Path logPath;
+    private final ConcurrentMap<String, Coverage> locations = new ConcurrentHashMap<>();
+    private long logLength;
+
+    /**
+     * The stored observations of a location and the date range they cover.
+     *
+     * @param firstDate First day synced
+     * @param lastDate Last day synced, the watermark of the next sync
+     * @param observations The observations, each series sorted by date
+     */
+    public record Coverage(LocalDate firstDate, LocalDate lastDate, NcdcObservations observations) {
+
+        public boolean covers(LocalDate from, LocalDate to) {
+            return !from.isBefore(firstDate) && !to.isAfter(lastDate);
+        }
+    }
+
+    @Autowired
+    public NcdcObservationStore(@Value("${ncdc.store.path:data/ncdc-observations.log}") String logPath) {
+        this(Paths.get(logPath));
+    }
+
+    /**
+     * @param logPath File the observations are appended to, or null to keep them in memory only
+     */
+    public NcdcObservationStore(Path logPath) {
+        this.logPath = logPath;
+        load();
+    }
+
+    /**
+     * @return The stored range and observations of a location, if it has been synced
+     */
+    public Optional<Coverage> getCoverage(String location) {
+        return Optional.ofNullable(locations.get(location));
+    }
+
+    /**
+     * @return The last day synced for a location, if it has been synced
+     */
+    public Optional<LocalDate> getWatermark(String location) {
+        return getCoverage(location).map(Coverage::lastDate);
+    }
+
+    public Set<String> getLocations() {
+        return Set.copyOf(locations.keySet());
+    }
+
+    /**
+     * Read the stored observations of a location within a date range.
+     *
+     * @param datatypes Datatypes to include, or null for all
+     * @return The observations, empty if the location has not been synced
+     */
+    public NcdcObservations query(String location, LocalDate from, LocalDate to, Collection<String> datatypes) {
+        Coverage coverage = locations.get(location);
+        if (coverage == null) {
+            return NcdcObservations.empty();
+        }
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        NcdcObservations stored = coverage.observations();
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        for (NcdcObservations.Key key : stored.keys()) {
+            if (datatypes != null && !datatypes.contains(key.datatype())) {
+                continue;
+            }
+            NcdcObservations.Series series = stored.get(key.station(), key.datatype());
+            for (int i = firstIndexOnOrAfter(series, fromDay); i < series.size() && series.epochDay(i) <= toDay; i++) {
+                builder.add(key.station(), key.datatype(), series.epochDay(i), series.value(i));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Store the observations fetched for a date range of a location, persisting them before they
+     * become visible to readers.
+     *
+     * @param location The NCDC location, e.g. "FIPS:VI"
+     * @param from First day of the fetched range
+     * @param to Last day of the fetched range
+     * @param delta The observations of the range
+     * @throws IOException if the batch cannot be appended; the store is then unchanged
+     */
+    public synchronized void append(String location, LocalDate from, LocalDate to, NcdcObservations delta) throws IOException {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        Coverage batch = new Coverage(from, to, sorted(delta));
+        if (logPath != null) {
+            ByteBuffer encoded = encodeBatch(location, batch);
+            Files.createDirectories(logPath.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long before = channel.size();
+                try {
+                    if (before == 0) {
+                        channel.write(header());
+                    }
+                    while (encoded.hasRemaining()) {
+                        channel.write(encoded);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    // Never leave a torn batch that later batches would be appended after
+                    channel.truncate(before);
+                    throw e;
+                }
+                logLength = channel.size();
+            }
+        }
+        locations.merge(location, batch, NcdcObservationStore::merge);
+
+        if (logPath != null && logLength > 2 * liveLength()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The batch is stored; the log is compacted again after a later sync
+                logger.warn("Could not compact NCDC observation log {}: {}", logPath, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewrite the log as one batch per location, replacing it atomically.
+     */
+    synchronized void compact() throws IOException {
+        Path directory = logPath.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, logPath.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.write(header());
+                for (Map.Entry<String, Coverage> entry : locations.entrySet()) {
+                    ByteBuffer encoded = encodeBatch(entry.getKey(), entry.getValue());
+                    while (encoded.hasRemaining()) {
+                        channel.write(encoded);
+                    }
+                }
+                channel.force(false);
+                logLength = channel.size();
+            }
+            try {
+                Files.move(tempFile, logPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, logPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.info("Compacted NCDC observation log {} to {} bytes", logPath, logLength);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    long getLogLength() {
+        return logLength;
+    }
+
+    private long liveLength() {
+        long length = HEADER_LENGTH;
+        for (Map.Entry<String, Coverage> entry : locations.entrySet()) {
+            length += encodedLength(entry.getKey(), entry.getValue().observations());
+        }
+        return length;
+    }
+
+    private synchronized void load() {
+        if (logPath == null || !Files.isRegularFile(logPath)) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(logPath));
+            if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+                throw new IOException("not an NCDC observation log");
+            }
+            int formatVersion = buffer.getShort();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("unsupported format version " + formatVersion);
+            }
+
+            int batches = 0;
+            while (buffer.remaining() >= 4) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining() - 4
+                        || buffer.getInt(start + 4 + length) != checksum(buffer, start + 4, length)) {
+                    buffer.position(start);
+                    break;
+                }
+                ByteBuffer payload = buffer.slice(start + 4, length);
+                String location = getString(payload);
+                locations.merge(location, decodeBatch(payload), NcdcObservationStore::merge);
+                buffer.position(start + 4 + length + 4);
+                batches++;
+            }
+
+            logLength = buffer.position();
+            if (buffer.hasRemaining()) {
+                logger.warn("Discarding {} bytes of an incomplete batch at the end of {}", buffer.remaining(), logPath);
+                try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(logLength);
+                }
+            }
+            logger.info("Restored {} NCDC observation batches for {} locations from {}", batches, locations.size(), logPath);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read NCDC observation log {}, starting a new one: {}", logPath, e.getMessage());
+            locations.clear();
+            logLength = 0;
+            try {
+                Files.move(logPath, logPath.resolveSibling(logPath.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveError) {
+                logger.warn("Could not move aside {}: {}", logPath, moveError.getMessage());
+            }
+        }
+    }
+
+    private static Coverage merge(Coverage existing, Coverage batch) {
+        LocalDate first = batch.firstDate().isBefore(existing.firstDate()) ? batch.firstDate() : existing.firstDate();
+        LocalDate last = batch.lastDate().isAfter(existing.lastDate()) ? batch.lastDate() : existing.lastDate();
+
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        NcdcObservations older = existing.observations();
+        NcdcObservations newer = batch.observations();
+        Set<NcdcObservations.Key> keys = new LinkedHashSet<>(older.keys());
+        keys.addAll(newer.keys());
+        for (NcdcObservations.Key key : keys) {
+            NcdcObservations.Series a = older.get(key.station(), key.datatype());
+            NcdcObservations.Series b = newer.get(key.station(), key.datatype());
+            int i = 0;
+            int j = 0;
+            int aSize = a != null ? a.size() : 0;
+            int bSize = b != null ? b.size() : 0;
+            while (i < aSize || j < bSize) {
+                if (j >= bSize || (i < aSize && a.epochDay(i) < b.epochDay(j))) {
+                    builder.add(key.station(), key.datatype(), a.epochDay(i), a.value(i));
+                    i++;
+                } else {
+                    // The newer value of a day replaces the older one
+                    if (i < aSize && a.epochDay(i) == b.epochDay(j)) {
+                        i++;
+                    }
+                    builder.add(key.station(), key.datatype(), b.epochDay(j), b.value(j));
+                    j++;
+                }
+            }
+        }
+        return new Coverage(first, last, builder.build());
+    }
+
+    /**
+     * Sort each series by date, keeping the last value received for a day.
+     */
+    private static NcdcObservations sorted(NcdcObservations observations) {
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        for (NcdcObservations.Key key : observations.keys()) {
+            NcdcObservations.Series series = observations.get(key.station(), key.datatype());
+            Integer[] order = new Integer[series.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            // Stable, so equal days stay in the order received
+            Arrays.sort(order, Comparator.comparingInt(series::epochDay));
+            for (int k = 0; k < order.length; k++) {
+                if (k + 1 < order.length && series.epochDay(order[k]) == series.epochDay(order[k + 1])) {
+                    continue;
+                }
+                builder.add(key.station(), key.datatype(), series.epochDay(order[k]), series.value(order[k]));
+            }
+        }
+        return builder.build();
+    }
+
+    private static int firstIndexOnOrAfter(NcdcObservations.Series series, int epochDay) {
+        int low = 0;
+        int high = series.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (series.epochDay(middle) < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putShort((short) FORMAT_VERSION).flip();
+    }
+
+    private static int encodedLength(String location, NcdcObservations observations) {
+        int length = 2 + utf8(location).length + 4 + 4 + 4;
+        for (NcdcObservations.Key key : observations.keys()) {
+            length += 2 + utf8(key.station()).length + 2 + utf8(key.datatype()).length + 4
+                    + observations.get(key.station(), key.datatype()).size() * OBSERVATION_LENGTH;
+        }
+        return 4 + length + 4;
+    }
+
+    static ByteBuffer encodeBatch(String location, Coverage batch) {
+        NcdcObservations observations = batch.observations();
+        ByteBuffer buffer = ByteBuffer.allocate(encodedLength(location, observations));
+        buffer.putInt(buffer.capacity() - 8);
+        putBytes(buffer, utf8(location));
+        buffer.putInt((int) batch.firstDate().toEpochDay());
+        buffer.putInt((int) batch.lastDate().toEpochDay());
+        List<NcdcObservations.Key> keys = new ArrayList<>(observations.keys());
+        buffer.putInt(keys.size());
+        for (NcdcObservations.Key key : keys) {
+            NcdcObservations.Series series = observations.get(key.station(), key.datatype());
+            putBytes(buffer, utf8(key.station()));
+            putBytes(buffer, utf8(key.datatype()));
+            buffer.putInt(series.size());
+            for (int i = 0; i < series.size(); i++) {
+                buffer.putInt(series.epochDay(i));
+                buffer.putDouble(series.value(i));
+            }
+        }
+        buffer.putInt(checksum(buffer, 4, buffer.position() - 4));
+        return buffer.flip();
+    }
+
+    private static Coverage decodeBatch(ByteBuffer payload) {
+        LocalDate first = LocalDate.ofEpochDay(payload.getInt());
+        LocalDate last = LocalDate.ofEpochDay(payload.getInt());
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        int seriesCount = payload.getInt();
+        for (int s = 0; s < seriesCount; s++) {
+            String station = getString(payload);
+            String datatype = getString(payload);
+            int count = payload.getInt();
+            for (int i = 0; i < count; i++) {
+                builder.add(station, datatype, payload.getInt(), payload.getDouble());
+            }
+        }
+        return new Coverage(first, last, builder.build());
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,216 @@
+package com.environmentdirect.service.ncdc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Daily NCDC observations in columnar form: one series per (station, datatype), each holding
+ * its dates as epoch days and its values as doubles in primitive arrays, in the order they were
+ * received. Built in one pass by {@link NcdcObservationParser}, so aggregations and detectors can
+ * work on the arrays without keeping or re-parsing the JSON. Instances are immutable.
+ */
+public final class NcdcObservations {
+
+    private static final NcdcObservations EMPTY = new NcdcObservations(Map.of());
+
+    private final Map<Key, Series> series;
+    private final long observationCount;
+
+    /**
+     * @param station NCDC station id, e.g. "GHCND:VQW00011640"
+     * @param datatype NCDC datatype id, e.g. "PRCP"
+     */
+    public record Key(String station, String datatype) {}
+
+    /**
+     * Aggregates of one series.
+     */
+    public record Summary(String station, String datatype, int count, LocalDate firstDate, LocalDate lastDate,
+                          double min, double max, double mean) {}
+
+    /**
+     * The observations of one station and datatype.
+     */
+    public static final class Series {
+
+        private final int[] epochDays;
+        private final double[] values;
+
+        private Series(int[] epochDays, double[] values) {
+            this.epochDays = epochDays;
+            this.values = values;
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public int epochDay(int i) {
+            return epochDays[i];
+        }
+
+        public LocalDate date(int i) {
+            return LocalDate.ofEpochDay(epochDays[i]);
+        }
+
+        public double value(int i) {
+            return values[i];
+        }
+
+        /**
+         * @return A copy of the values, e.g. for an anomaly detector
+         */
+        public double[] getValues() {
+            return values.clone();
+        }
+
+        public double min() {
+            double min = Double.POSITIVE_INFINITY;
+            for (double value : values) {
+                min = Math.min(min, value);
+            }
+            return min;
+        }
+
+        public double max() {
+            double max = Double.NEGATIVE_INFINITY;
+            for (double value : values) {
+                max = Math.max(max, value);
+            }
+            return max;
+        }
+
+        public double mean() {
+            double sum = 0;
+            for (double value : values) {
+                sum += value;
+            }
+            return sum / values.length;
+        }
+
+        private int firstEpochDay() {
+            int first = Integer.MAX_VALUE;
+            for (int day : epochDays) {
+                first = Math.min(first, day);
+            }
+            return first;
+        }
+
+        private int lastEpochDay() {
+            int last = Integer.MIN_VALUE;
+            for (int day : epochDays) {
+                last = Math.max(last, day);
+            }
+            return last;
+        }
+    }
+
+    private NcdcObservations(Map<Key, Series> series) {
+        this.series = series;
+        long count = 0;
+        for (Series s : series.values()) {
+            count += s.size();
+        }
+        this.observationCount = count;
+    }
+
+    public static NcdcObservations empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return The series of a station and datatype, or null if there are no such observations
+     */
+    public Series get(String station, String datatype) {
+        return series.get(new Key(station, datatype));
+    }
+
+    /**
+     * @return The (station, datatype) keys of all series, in the order they were first seen
+     */
+    public List<Key> keys() {
+        return List.copyOf(series.keySet());
+    }
+
+    /**
+     * @return The series of one datatype across all stations, keyed by station
+     */
+    public Map<String, Series> byDatatype(String datatype) {
+        Map<String, Series> stations = new LinkedHashMap<>();
+        series.forEach((key, s) -> {
+            if (key.datatype().equals(datatype)) {
+                stations.put(key.station(), s);
+            }
+        });
+        return Collections.unmodifiableMap(stations);
+    }
+
+    /**
+     * @return Aggregates of every series
+     */
+    public List<Summary> summaries() {
+        List<Summary> summaries = new ArrayList<>(series.size());
+        series.forEach((key, s) -> summaries.add(new Summary(key.station(), key.datatype(), s.size(),
+                LocalDate.ofEpochDay(s.firstEpochDay()), LocalDate.ofEpochDay(s.lastEpochDay()),
+                s.min(), s.max(), s.mean())));
+        return summaries;
+    }
+
+    public int seriesCount() {
+        return series.size();
+    }
+
+    public long getObservationCount() {
+        return observationCount;
+    }
+
+    /**
+     * Accumulates observations into growable primitive columns. Not thread-safe.
+     */
+    public static final class Builder {
+
+        // Station, then datatype, so adding an observation does not allocate a key
+        private final Map<String, Map<String, Column>> columns = new HashMap<>();
+        private final List<Key> order = new ArrayList<>();
+
+        private static final class Column {
+            int size;
+            int[] epochDays = new int[64];
+            double[] values = new double[64];
+        }
+
+        public Builder add(String station, String datatype, int epochDay, double value) {
+            Map<String, Column> datatypes = columns.computeIfAbsent(station, s -> new HashMap<>());
+            Column column = datatypes.get(datatype);
+            if (column == null) {
+                column = new Column();
+                datatypes.put(datatype, column);
+                order.add(new Key(station, datatype));
+            }
+            if (column.size == column.values.length) {
+                column.epochDays = Arrays.copyOf(column.epochDays, column.size * 2);
+                column.values = Arrays.copyOf(column.values, column.size * 2);
+            }
+            column.epochDays[column.size] = epochDay;
+            column.values[column.size] = value;
+            column.size++;
+            return this;
+        }
+
+        public NcdcObservations build() {
+            Map<Key, Series> series = new LinkedHashMap<>();
+            for (Key key : order) {
+                Column column = columns.get(key.station()).get(key.datatype());
+                series.put(key, new Series(Arrays.copyOf(column.epochDays, column.size),
+                        Arrays.copyOf(column.values, column.size)));
+            }
+            return new NcdcObservations(Collections.unmodifiableMap(series));
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.environmentdirect.service.ncdc;
+
+import com.environmentdirect.service.http.HedgingHttpClient;
+import com.environmentdirect.service.json.JsonBytes;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fetches every page of an NCDC list endpoint, e.g. {@code data?datasetid=GHCND&...}.
+ * NCDC returns at most 1000 results per request, with the total in
+ * {@code metadata.resultset.count}. The first page is fetched to learn the total, then the
+ * following pages are prefetched concurrently on virtual threads, a bounded number ahead of
+ * the page being consumed, and their results are streamed to the caller in order. Several
+ * queries, e.g. the one-year date ranges NCDC accepts, can be merged into one result, whose
+ * results are spliced in as the UTF-8 bytes NCDC sent, without being parsed or decoded. Data
+ * responses can also be parsed straight into columnar {@link NcdcObservations}. Every request
+ * goes through a {@link NcdcRateLimiter} and the shared HTTP client, and rate-limited
+ * responses are retried. Slow pages may be hedged by the {@link HedgingHttpClient}; a hedge
+ * is only sent if the rate limiter has a permit for it right away.
+ */
+@Component
+public class NcdcPageFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NcdcPageFetcher.class);
+
+    // Largest page NCDC serves
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final HedgingHttpClient httpClient;
+    private final String baseUrl;
+    private final String token;
+    private final NcdcRateLimiter rateLimiter;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final Duration requestTimeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ncdc-fetch-", 0).factory());
+
+    /**
+     * Receives the results of a paged fetch, in order.
+     */
+    public interface ResultSink {
+
+        /**
+         * Called once, before any result, with the total number of results.
+         */
+        void start(long totalCount);
+
+        void result(JsonNode result);
+    }
+
+    @Autowired
+    public NcdcPageFetcher(HedgingHttpClient httpClient,
+                           @Value("${ncdc.base-url:https://www.ncdc.noaa.gov/cdo-web/api/v2/}") String baseUrl,
+                           @Value("${ncdc.token:FjyPFiDCxGCZHRpweDqhaeQWCSkmQAad}") String token,
+                           @Value("${ncdc.rate-limit.requests-per-second:5}") double requestsPerSecond,
+                           @Value("${ncdc.rate-limit.requests-per-day:10000}") int requestsPerDay,
+                           @Value("${ncdc.page-size:1000}") int pageSize,
+                           @Value("${ncdc.prefetch-pages:4}") int prefetchPages) {
+        this(httpClient, baseUrl, token, new NcdcRateLimiter(requestsPerSecond, requestsPerDay), pageSize, prefetchPages,
+                Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param baseUrl URL the endpoint paths are relative to, ending with "/"
+     * @param pageSize Results per request, at most {@link #MAX_PAGE_SIZE}
+     * @param prefetchPages Maximum number of pages fetched ahead of the page being consumed
+     * @param requestTimeout Timeout of each page request
+     */
+    public NcdcPageFetcher(HedgingHttpClient httpClient, String baseUrl, String token, NcdcRateLimiter rateLimiter,
+                           int pageSize, int prefetchPages, Duration requestTimeout) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException("prefetchPages must be positive");
+        }
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.token = token;
+        this.rateLimiter = rateLimiter;
+        this.pageSize = pageSize;
+        this.prefetchPages = prefetchPages;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Fetch all pages of an endpoint and merge them into one response with the same layout as
+     * a single NCDC page: {@code {"metadata":{"resultset":{...}},"results":[...]}}.
+     *
+     * @param path Endpoint path and query, relative to the base URL, without limit and offset
+     * @return The merged response, UTF-8 JSON
+     */
+    public CompletableFuture<byte[]> fetchAll(String path) {
+        return fetchAll(List.of(path));
+    }
+
+    /**
+     * Fetch all pages of several queries of one endpoint, e.g. consecutive date ranges, and
+     * merge them in order into one response.
+     *
+     * @param paths Endpoint paths and queries, relative to the base URL, without limit and offset
+     * @return The merged response, UTF-8 JSON
+     */
+    public CompletableFuture<byte[]> fetchAll(List<String> paths) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator generator;
+        try {
+            generator = JsonBytes.createGenerator(out);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return fetchPageBodies(paths, new PageHandler() {
+            private boolean empty = true;
+
+            @Override
+            public void start(long totalCount) {
+                try {
+                    generator.writeStartObject();
+                    generator.writeObjectFieldStart("metadata");
+                    generator.writeObjectFieldStart("resultset");
+                    generator.writeNumberField("offset", 1);
+                    generator.writeNumberField("count", totalCount);
+                    generator.writeNumberField("limit", totalCount);
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                    generator.writeArrayFieldStart("results");
+                    generator.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void page(byte[] body) throws IOException {
+                // The generator has nothing buffered between pages, so the results can be
+                // copied straight to the output; it still closes the array as an empty one
+                int[] range = NcdcObservationParser.resultsRange(body);
+                if (range != null) {
+                    if (!empty) {
+                        out.write(',');
+                    }
+                    out.write(body, range[0], range[1] - range[0]);
+                    empty = false;
+                }
+            }
+        }).thenApply(count -> {
+            try {
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        });
+    }
+
+    /**
+     * Fetch all pages of several queries, streaming their results to a sink in order. The first
+     * pages of all queries are fetched together to learn the total count. Cancelling the returned
+     * future stops the fetch.
+     *
+     * @param paths Endpoint paths and queries, relative to the base URL, without limit and offset
+     * @param sink Receives the total count and then every result; called from one thread at a time
+     * @return The total number of results
+     */
+    public CompletableFuture<Long> fetchPages(List<String> paths, ResultSink sink) {
+        return fetchPageBodies(paths, new PageHandler() {
+            @Override
+            public void start(long totalCount) {
+                sink.start(totalCount);
+            }
+
+            @Override
+            public void page(byte[] body) throws IOException {
+                objectMapper.readTree(body).path("results").forEach(sink::result);
+            }
+        });
+    }
+
+    /**
+     * Fetch all pages of several data queries and parse them in one streaming pass into columnar
+     * observations, without building a JSON tree or a merged response.
+     *
+     * @param paths Data endpoint paths and queries, relative to the base URL, without limit and offset
+     * @return The observations of all queries
+     */
+    public CompletableFuture<NcdcObservations> fetchObservations(List<String> paths) {
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        return fetchPageBodies(paths, new PageHandler() {
+            @Override
+            public void start(long totalCount) {
+            }
+
+            @Override
+            public void page(byte[] body) throws IOException {
+                NcdcObservationParser.parse(body, builder);
+            }
+        }).thenApply(count -> builder.build());
+    }
+
+    /**
+     * Receives the raw pages of a paged fetch, in order.
+     */
+    private interface PageHandler {
+
+        void start(long totalCount);
+
+        void page(byte[] body) throws IOException;
+    }
+
+    private CompletableFuture<Long> fetchPageBodies(List<String> paths, PageHandler handler) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(fetchPagesInOrder(paths, handler));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.cancel(false);
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((count, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private long fetchPagesInOrder(List<String> paths, PageHandler handler) throws Exception {
+        List<Future<byte[]>> firstPages = new ArrayList<>(paths.size());
+        try {
+            for (String path : paths) {
+                firstPages.add(submitPage(path, 1));
+            }
+            long[] counts = new long[paths.size()];
+            long totalCount = 0;
+            for (int i = 0; i < paths.size(); i++) {
+                counts[i] = NcdcObservationParser.readCount(firstPages.get(i).get());
+                totalCount += counts[i];
+            }
+            logger.debug("Fetching {} NCDC results from {} queries", totalCount, paths.size());
+
+            handler.start(totalCount);
+            for (int i = 0; i < paths.size(); i++) {
+                handler.page(firstPages.get(i).get());
+                fetchRemainingPages(paths.get(i), counts[i], handler);
+            }
+            return totalCount;
+        } finally {
+            firstPages.forEach(pending -> pending.cancel(true));
+        }
+    }
+
+    private void fetchRemainingPages(String path, long count, PageHandler handler) throws Exception {
+        long pages = (count + pageSize - 1) / pageSize;
+        Deque<Future<byte[]>> window = new ArrayDeque<>();
+        long nextPage = 2;
+        try {
+            while (nextPage <= pages && window.size() < prefetchPages) {
+                window.add(submitPage(path, nextPage++));
+            }
+            while (!window.isEmpty()) {
+                byte[] page = window.poll().get();
+                if (nextPage <= pages) {
+                    window.add(submitPage(path, nextPage++));
+                }
+                handler.page(page);
+            }
+        } finally {
+            window.forEach(pending -> pending.cancel(true));
+        }
+    }
+
+    private Future<byte[]> submitPage(String path, long page) {
+        return executor.submit(() -> fetchPage(path, page));
+    }
+
+    private byte[] fetchPage(String path, long page) throws IOException, InterruptedException {
+        long offset = (page - 1) * pageSize + 1;
+        URI uri = URI.create(baseUrl + path + (path.contains("?") ? "&" : "?") + "limit=" + pageSize + "&offset=" + offset);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("token", token)
+                .header("Accept", "application/json")
+                .GET()
+                .timeout(requestTimeout)
+                .build();
+
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray(),
+                    rateLimiter::tryAcquireNow);
+            int status = response.statusCode();
+            if (status == 200) {
+                return response.body();
+            }
+            if ((status == 429 || status == 503) && attempt < MAX_ATTEMPTS) {
+                logger.debug("NCDC returned HTTP {} for {}, retrying", status, uri);
+                Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                continue;
+            }
+            throw new IOException("NCDC returned HTTP " + status + " for " + uri);
+        }
+    }
+
+    /**
+     * @return Requests still allowed today under the daily quota
+     */
+    public int getRemainingRequestsToday() {
+        return rateLimiter.getRemainingToday();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
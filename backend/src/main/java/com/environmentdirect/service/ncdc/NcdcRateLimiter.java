@@ -0,0 +1,120 @@
+package com.environmentdirect.service.ncdc;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter for the NCDC web services, which allow a few requests per second and
+ * a fixed number of requests per day. The per-second limit is a token bucket that refills
+ * continuously and holds at most one second of requests, so short bursts are allowed but the
+ * long-run rate never exceeds the quota. The daily quota is counted per UTC day; once it is
+ * used up, requests fail fast instead of waiting for the next day. Thread-safe.
+ */
+public class NcdcRateLimiter {
+
+    private final double requestsPerSecond;
+    private final int requestsPerDay;
+    private final double capacity;
+    private final LongSupplier nanoClock;
+    private final Clock clock;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private LocalDate quotaDay;
+    private int requestsToday;
+
+    /**
+     * @param requestsPerSecond Sustained request rate
+     * @param requestsPerDay Requests allowed per UTC day
+     */
+    public NcdcRateLimiter(double requestsPerSecond, int requestsPerDay) {
+        this(requestsPerSecond, requestsPerDay, System::nanoTime, Clock.system(ZoneOffset.UTC));
+    }
+
+    NcdcRateLimiter(double requestsPerSecond, int requestsPerDay, LongSupplier nanoClock, Clock clock) {
+        if (requestsPerSecond <= 0 || requestsPerDay <= 0) {
+            throw new IllegalArgumentException("NCDC request rates must be positive");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.requestsPerDay = requestsPerDay;
+        this.capacity = Math.max(1.0, requestsPerSecond);
+        this.nanoClock = nanoClock;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Wait until a request may be sent, and count it against the quotas.
+     *
+     * @throws DailyQuotaExceededException if the daily quota is used up
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Take a permit only if one is available right away, for requests that may be skipped,
+     * such as duplicates of a slow request.
+     *
+     * @return Whether a permit was taken; false as well once the daily quota is used up
+     */
+    public boolean tryAcquireNow() {
+        try {
+            return tryAcquire() == 0;
+        } catch (DailyQuotaExceededException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Take a permit if one is available.
+     *
+     * @return 0 if a permit was taken, otherwise the time in nanoseconds until one is available
+     * @throws DailyQuotaExceededException if the daily quota is used up
+     */
+    synchronized long tryAcquire() {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(quotaDay)) {
+            quotaDay = today;
+            requestsToday = 0;
+        }
+        if (requestsToday >= requestsPerDay) {
+            throw new DailyQuotaExceededException(requestsPerDay);
+        }
+
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * requestsPerSecond / 1e9);
+        lastRefillNanos = now;
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            requestsToday++;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1.0 - tokens) / requestsPerSecond * 1e9));
+    }
+
+    /**
+     * @return Requests still allowed today
+     */
+    public synchronized int getRemainingToday() {
+        return LocalDate.now(clock).equals(quotaDay) ? requestsPerDay - requestsToday : requestsPerDay;
+    }
+
+    /**
+     * Thrown when the daily NCDC request quota is used up.
+     */
+    public static class DailyQuotaExceededException extends IllegalStateException {
+
+        public DailyQuotaExceededException(int requestsPerDay) {
+            super("NCDC daily request quota of " + requestsPerDay + " is used up");
+        }
+    }
+}
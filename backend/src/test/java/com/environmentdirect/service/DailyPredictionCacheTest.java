@@ -0,0 +1,85 @@
+package com.environmentdirect.service;
+
+import com.environmentdirect.service.ml.AnomalyDetectionService;
+import com.environmentdirect.service.ml.ModelService;
+import com.environmentdirect.service.ml.ScenarioModelingService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the precomputed daily prediction cache.
+ */
+public class DailyPredictionCacheTest {
+
+    private final ModelService modelService = new ModelService();
+    private final MachineLearningService mlService = new MachineLearningService(
+            modelService, new AnomalyDetectionService(), new ScenarioModelingService(modelService));
+    private final DailyPredictionCache cache = new DailyPredictionCache(mlService, modelService, 2, Runnable::run);
+
+    @Test
+    public void testPrecomputedPredictionsAreServedFromMemory() {
+        LocalDate today = LocalDate.of(2024, 6, 1);
+        int entities = PredictionService.REGIONS.size() + PredictionService.SITE_IDS.size();
+
+        assertEquals(3 * entities, cache.precompute(today));
+        assertEquals(3 * entities, cache.size());
+
+        Map<String, Object> floodRisk = cache.getFloodRisk("Portsmouth", today.plusDays(2));
+        assertSame(floodRisk, cache.getFloodRisk("Portsmouth", today.plusDays(2)));
+        assertEquals(mlService.predictFloodRisk("Portsmouth", today.plusDays(2)).get("prediction"),
+                floodRisk.get("prediction"));
+        assertEquals(3 * entities, cache.size());
+
+        // Rolling over drops the previous day and adds the new last day of the horizon
+        cache.precompute(today.plusDays(1));
+        assertEquals(3 * entities, cache.size());
+        assertSame(floodRisk, cache.getFloodRisk("Portsmouth", today.plusDays(2)));
+    }
+
+    @Test
+    public void testModelChangesInvalidateCachedPredictions() {
+        LocalDate today = LocalDate.of(2024, 6, 1);
+        cache.precompute(today);
+        Map<String, Object> floodRisk = cache.getFloodRisk("LayouValley", today);
+        Map<String, Object> visitorLoad = cache.getEcoTourismPressure("boiling-lake", today);
+
+        modelService.publishFloodRiskModel(modelService.getFloodRiskModel());
+        assertNotSame(floodRisk, cache.getFloodRisk("LayouValley", today));
+        assertSame(visitorLoad, cache.getEcoTourismPressure("boiling-lake", today));
+
+        // An online update keeps the model version but bumps its revision
+        modelService.recordVisitorObservations(new String[] {"boiling-lake"}, new double[] {1.0},
+                new boolean[] {false}, new double[] {2.0});
+        assertNotSame(visitorLoad, cache.getEcoTourismPressure("boiling-lake", today));
+
+        // Entries of superseded revisions are purged by the next precompute
+        int entities = PredictionService.REGIONS.size() + PredictionService.SITE_IDS.size();
+        cache.precompute(today);
+        assertEquals(3 * entities, cache.size());
+    }
+
+    @Test
+    public void testRevisionChangeDropsOldEntriesAndPrecomputesTheNewRevision() {
+        LocalDate today = LocalDate.of(2024, 6, 1);
+        int entities = PredictionService.REGIONS.size() + PredictionService.SITE_IDS.size();
+        cache.precompute(today);
+
+        // Every batch of observations bumps the revision, but the cache never grows past one revision
+        for (int i = 0; i < 5; i++) {
+            modelService.recordVisitorObservations(new String[] {"boiling-lake"}, new double[] {1.0},
+                    new boolean[] {false}, new double[] {2.0});
+            Map<String, Object> visitorLoad = cache.getEcoTourismPressure("boiling-lake", today);
+            assertEquals(3 * entities, cache.size());
+
+            // The rest of the horizon was recomputed for the new revision, not on the request path
+            assertSame(visitorLoad, cache.getEcoTourismPressure("boiling-lake", today));
+            assertEquals(mlService.predictEcoTourismPressure("boiling-lake", today.plusDays(2)).get("prediction"),
+                    cache.getEcoTourismPressure("boiling-lake", today.plusDays(2)).get("prediction"));
+            assertEquals(3 * entities, cache.size());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.environmentdirect.service;
+
+import com.environmentdirect.service.cache.AsyncRefreshingCache;
+import com.environmentdirect.service.cache.CacheSpec;
+import com.environmentdirect.service.cache.UpstreamCaches;
+import com.environmentdirect.service.http.HedgingHttpClient;
+import com.environmentdirect.service.http.HedgingPolicy;
+import com.environmentdirect.service.http.UpstreamHttpClient;
+import com.environmentdirect.service.ncdc.NcdcObservationStore;
+import com.environmentdirect.service.ncdc.NcdcPageFetcher;
+import com.environmentdirect.service.ncdc.NcdcRateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Caribbean summary, which combines several NCDC responses, against a local stub
+ * of the NCDC endpoints.
+ */
+public class NCDCClimateServiceTest {
+
+    private static final String STATIONS = "{\"metadata\":{\"resultset\":{\"offset\":1,\"count\":1,\"limit\":1000}},"
+            + "\"results\":[{\"id\":\"GHCND:STUB\"}]}";
+
+    private final AtomicBoolean stationsDown = new AtomicBoolean();
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private UpstreamHttpClient httpClient;
+    private NcdcPageFetcher fetcher;
+    private UpstreamCaches caches;
+    private NCDCClimateService service;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stations", exchange -> {
+            if (stationsDown.get()) {
+                respond(exchange, 500, "{}");
+            } else {
+                respond(exchange, 200, STATIONS);
+            }
+        });
+        server.createContext("/data", exchange -> respond(exchange, 200, "{}"));
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        httpClient = new UpstreamHttpClient(BulkheadConfig.ofDefaults(), new SimpleMeterRegistry(), Duration.ofSeconds(5));
+        HedgingHttpClient hedgingClient = new HedgingHttpClient(httpClient, HedgingPolicy.disabled(), new SimpleMeterRegistry());
+        fetcher = new NcdcPageFetcher(hedgingClient, "http://127.0.0.1:" + server.getAddress().getPort() + "/", "token",
+                new NcdcRateLimiter(1000, 10_000), NcdcPageFetcher.MAX_PAGE_SIZE, 2, Duration.ofSeconds(10));
+
+        // Stations expire, and are forgotten, at once, so every summary load fetches them again
+        Map<String, CacheSpec> specs = new HashMap<>();
+        for (String name : new String[] {"ncdcDatasets", "ncdcClimateData", "ncdcHistoricalData", "ncdcExtremes", "ncdcCaribbeanSummary"}) {
+            specs.put(name, CacheSpec.parse("maximumWeight=8MB,expireAfterWrite=1h"));
+        }
+        specs.put("ncdcStations", CacheSpec.parse("maximumWeight=8MB,expireAfterWrite=1ms"));
+        caches = new UpstreamCaches(specs);
+
+        service = new NCDCClimateService(fetcher, new NcdcObservationStore(tempDir.resolve("observations.log")), caches, 5, 7, 3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fetcher.shutdown();
+        httpClient.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testSummaryWithAFailedPartDoesNotReplaceTheCachedSummary() throws Exception {
+        byte[] good = service.getCaribbeanClimateSummary().join();
+        assertTrue(utf8(good).contains("GHCND:STUB"));
+
+        stationsDown.set(true);
+        Thread.sleep(5);
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> service.refresh(NCDCClimateService.HotKey.CARIBBEAN_SUMMARY).join());
+
+        assertInstanceOf(DegradedResponseException.class, e.getCause());
+        assertArrayEquals(good, summaryCache().getLastGood(NCDCClimateService.CARIBBEAN_REGION).orElseThrow());
+        assertArrayEquals(good, service.getCaribbeanClimateSummary().join());
+    }
+
+    @Test
+    public void testSummaryWithAFailedPartIsServedButNotCached() {
+        stationsDown.set(true);
+
+        String degraded = utf8(service.getCaribbeanClimateSummary().join());
+
+        assertTrue(degraded.contains("NCDC stations data temporarily unavailable"), degraded);
+        assertTrue(summaryCache().getLastGood(NCDCClimateService.CARIBBEAN_REGION).isEmpty());
+    }
+
+    private AsyncRefreshingCache<String, byte[]> summaryCache() {
+        return caches.get("ncdcCaribbeanSummary");
+    }
+
+    private static String utf8(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
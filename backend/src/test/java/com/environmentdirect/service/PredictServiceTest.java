@@ -0,0 +1,74 @@
+package com.environmentdirect.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the deadline-bound prediction fan-out.
+ */
+public class PredictServiceTest {
+
+    /**
+     * Prediction service whose flood risk predictions take a fixed time per region.
+     */
+    private static PredictionService withDelays(Map<String, Long> delayMillis) {
+        return new PredictionService(null, null, null) {
+            @Override
+            public Map<String, Object> getFloodRisk(String region) {
+                try {
+                    Thread.sleep(delayMillis.getOrDefault(region, 0L));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("Cancelled", e);
+                }
+                if (region.equals("MarigotArea")) {
+                    throw new IllegalStateException("No data for " + region);
+                }
+                return Map.of("region", region, "floodRiskLevel", "Low");
+            }
+        };
+    }
+
+    @Test
+    public void testListCompletesInSlowestItemTime() {
+        PredictService predictService = new PredictService(withDelays(Map.of(
+                "Portsmouth", 300L, "RoseauSouth", 300L, "LayouValley", 300L)), 5000);
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> results = predictService.getAllFloodRiskData();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        predictService.shutdown();
+
+        assertEquals(PredictionService.REGIONS.size(), results.size());
+        assertTrue(elapsedMillis < 800, "Fan-out took " + elapsedMillis + " ms");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(PredictionService.REGIONS.get(i), results.get(i).get("region"));
+            assertEquals(PredictService.STATUS_OK, results.get(i).get("status"));
+            assertEquals("Low", results.get(i).get("floodRiskLevel"));
+        }
+        assertEquals(PredictService.STATUS_ERROR, results.get(3).get("status"));
+        assertEquals("No data for MarigotArea", results.get(3).get("error"));
+    }
+
+    @Test
+    public void testDeadlineReturnsPartialResults() {
+        PredictService predictService = new PredictService(withDelays(Map.of("RoseauSouth", 30_000L)), 300);
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> results = predictService.getAllFloodRiskData();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        predictService.shutdown();
+
+        assertTrue(elapsedMillis < 2000, "Deadline exceeded: " + elapsedMillis + " ms");
+        assertEquals(PredictService.STATUS_OK, results.get(0).get("status"));
+        assertEquals(Map.of("region", "RoseauSouth", "status", PredictService.STATUS_TIMEOUT), results.get(1));
+        assertEquals(PredictService.STATUS_OK, results.get(2).get("status"));
+
+        assertEquals(PredictService.STATUS_TIMEOUT,
+                new PredictService(withDelays(Map.of("RoseauSouth", 30_000L)), 100)
+                        .getFloodRiskPrediction("RoseauSouth").get("status"));
+    }
+}
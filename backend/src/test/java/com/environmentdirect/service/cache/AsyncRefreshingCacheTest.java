@@ -0,0 +1,107 @@
+package com.environmentdirect.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for coalescing and stale-while-revalidate behaviour of the upstream response cache.
+ */
+public class AsyncRefreshingCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AsyncRefreshingCache<String, String> cache = new AsyncRefreshingCache<>("test",
+            CacheSpec.parse("maximumSize=100,refreshAfterWrite=10m,expireAfterWrite=1h,retainFor=24h"), nanos::get);
+
+    @Test
+    public void testCoalescesConcurrentLoadsOfAKey() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = cache.get("a", () -> load(upstream));
+        CompletableFuture<String> second = cache.get("a", () -> load(upstream));
+        assertFalse(first.isDone());
+        upstream.complete("value");
+
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+        assertEquals(1, loads.get());
+        assertEquals("value", cache.get("a", () -> load(CompletableFuture.completedFuture("other"))).join());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testServesStaleValueWhileRefreshingInTheBackground() {
+        cache.get("a", () -> load(CompletableFuture.completedFuture("old"))).join();
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        CompletableFuture<String> refresh = new CompletableFuture<>();
+        assertEquals("old", cache.get("a", () -> load(refresh)).join());
+        assertEquals("old", cache.get("a", () -> load(refresh)).join());
+        assertEquals(2, loads.get());
+
+        refresh.complete("new");
+        assertEquals("new", cache.get("a", () -> load(CompletableFuture.completedFuture("other"))).join());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsTheLastGoodValue() {
+        cache.get("a", () -> load(CompletableFuture.completedFuture("good"))).join();
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        assertEquals("good", cache.get("a", () -> load(CompletableFuture.failedFuture(new IOException("down")))).join());
+
+        // Once expired, callers wait for upstream, and its failure reaches them
+        nanos.addAndGet(Duration.ofHours(1).toNanos());
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> cache.get("a", () -> load(CompletableFuture.failedFuture(new IOException("down")))).join());
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals("good", cache.getLastGood("a").orElseThrow());
+
+        nanos.addAndGet(Duration.ofHours(24).toNanos());
+        assertTrue(cache.getLastGood("a").isEmpty());
+    }
+
+    @Test
+    public void testRefreshReloadsAFreshValueAndJoinsAnInFlightLoad() {
+        cache.get("a", () -> load(CompletableFuture.completedFuture("old"))).join();
+
+        CompletableFuture<String> reload = new CompletableFuture<>();
+        CompletableFuture<String> refreshed = cache.refresh("a", () -> load(reload));
+        CompletableFuture<String> joined = cache.refresh("a", () -> load(reload));
+        assertEquals("old", cache.get("a", () -> load(reload)).join());
+        reload.complete("new");
+
+        assertEquals("new", refreshed.join());
+        assertEquals("new", joined.join());
+        assertEquals("new", cache.get("a", () -> load(reload)).join());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCancellingACallerDoesNotCancelTheSharedLoad() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> timedOut = cache.get("a", () -> load(upstream));
+        CompletableFuture<String> waiting = cache.get("a", () -> load(upstream));
+
+        timedOut.cancel(true);
+        upstream.complete("value");
+
+        assertFalse(upstream.isCancelled());
+        assertEquals("value", waiting.join());
+        assertEquals("value", cache.getLastGood("a").orElseThrow());
+    }
+
+    private CompletableFuture<String> load(CompletableFuture<String> result) {
+        loads.incrementAndGet();
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package com.environmentdirect.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for parsing cache specs and bounding caches by the estimated bytes of their values.
+ */
+public class CacheSpecTest {
+
+    @Test
+    public void testSpecOverridesItsDefaults() {
+        CacheSpec defaults = CacheSpec.parse("maximumWeight=32MB, refreshAfterWrite=10m, expireAfterWrite=1h, recordStats");
+
+        CacheSpec spec = CacheSpec.parse("maximumSize=500,expireAfterWrite=2h,retainFor=7d,softValues", defaults);
+
+        assertEquals(500, spec.maximumSize());
+        assertEquals(-1, spec.maximumWeight());
+        assertEquals(Duration.ofHours(2), spec.expireAfterWrite());
+        assertEquals(Duration.ofMinutes(10), spec.refreshAfterWrite());
+        assertEquals(Duration.ofDays(7), spec.retainFor());
+        assertTrue(spec.softValues());
+        assertTrue(spec.recordStats());
+        assertEquals(32L * 1024 * 1024, defaults.maximumWeight());
+    }
+
+    @Test
+    public void testRejectsInvalidSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> CacheSpec.parse("maximumEntries=10"));
+        assertThrows(IllegalArgumentException.class, () -> CacheSpec.parse("maximumSize=many"));
+        assertThrows(IllegalArgumentException.class, () -> CacheSpec.parse("expireAfterWrite"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AsyncRefreshingCache<String, String>("test", CacheSpec.parse("refreshAfterWrite=2h,expireAfterWrite=1h")));
+    }
+
+    @Test
+    public void testMaximumWeightBoundsTheBytesOfValues() {
+        CacheSpec spec = CacheSpec.parse("maximumWeight=10KB");
+        Cache<Integer, String> cache = spec.<Integer, String>toCaffeine(null, (key, value) -> ByteSizeWeigher.weigh(value))
+                .executor(Runnable::run)
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, "x".repeat(1000));
+        }
+        cache.cleanUp();
+
+        long bytes = cache.asMap().values().stream().mapToLong(ByteSizeWeigher::weigh).sum();
+        assertTrue(bytes <= 10 * 1024, "cache holds " + bytes + " bytes");
+        assertTrue(cache.estimatedSize() >= 5);
+        assertEquals(1040, ByteSizeWeigher.weigh("x".repeat(1000)));
+    }
+}
@@ -0,0 +1,227 @@
+package com.environmentdirect.service.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for hedging slow requests against a local stub server that delays its responses.
+ */
+public class HedgingHttpClientTest {
+
+    private static final byte[] BODY = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+    private static final long STALL_MILLIS = 5000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong delayMillis = new AtomicLong(10);
+    private final AtomicLong stallMillis = new AtomicLong(STALL_MILLIS);
+    private final AtomicBoolean stallNext = new AtomicBoolean();
+    private final AtomicBoolean unavailableNext = new AtomicBoolean();
+    private final AtomicInteger received = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private UpstreamHttpClient upstream;
+    private HedgingHttpClient client;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/data", this::handle);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        upstream = new UpstreamHttpClient(BulkheadConfig.ofDefaults(), meterRegistry, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        client.shutdown();
+        upstream.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testStalledRequestIsHedgedAndTheLoserCancelled() throws Exception {
+        client = client(new HedgingPolicy(true, 0.9, 10, Duration.ZERO, 1.0, 5));
+        warmUp(10);
+
+        stallNext.set(true);
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(request(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertArrayEquals(BODY, response.body());
+        assertEquals(12, received.get());
+        assertEquals(1.0, counter("http.upstream.hedges.sent"));
+        assertEquals(1.0, counter("http.upstream.hedges.won"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS),
+                "the hedge should answer before the stalled request");
+
+        // The stalled request was cancelled and gave its bulkhead permit back
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (meterRegistry.get("http.upstream.in.flight").tag("host", host()).gauge().value() > 0) {
+            assertTrue(System.nanoTime() < deadline, "the losing request was not cancelled");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testErrorStatusFromTheHedgeDoesNotCancelTheRequest() throws Exception {
+        client = client(new HedgingPolicy(true, 0.5, 10, Duration.ZERO, 1.0, 5));
+        warmUp(10);
+
+        // The request is slow but healthy, and its hedge is turned away at once
+        stallMillis.set(800);
+        stallNext.set(true);
+        unavailableNext.set(true);
+        HttpResponse<byte[]> response = client.send(request(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(BODY, response.body());
+        assertEquals(12, received.get());
+        assertEquals(1.0, counter("http.upstream.hedges.sent"));
+        assertEquals(0.0, counter("http.upstream.hedges.won"));
+        // The 503 is not a latency sample; the request's own sample is recorded just after it answers
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (latencySamples() < 11) {
+            assertTrue(System.nanoTime() < deadline, "the request's latency was not recorded");
+            Thread.sleep(10);
+        }
+        assertEquals(11, latencySamples());
+    }
+
+    @Test
+    public void testErrorStatusIsReturnedWhenNoCopySucceeds() throws Exception {
+        client = client(new HedgingPolicy(true, 0.5, 10, Duration.ZERO, 1.0, 5));
+        warmUp(10);
+
+        unavailableNext.set(true);
+        HttpResponse<byte[]> response = client.send(request(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(503, response.statusCode());
+        assertEquals(11, received.get());
+    }
+
+    @Test
+    public void testBudgetCapsTheHedges() throws Exception {
+        // A quarter of a hedge per request, at most one saved up
+        client = client(new HedgingPolicy(true, 0.5, 8, Duration.ZERO, 0.25, 1));
+        warmUp(8);
+
+        // Far slower than the warm-up, so every request outlives the hedge delay
+        delayMillis.set(800);
+        for (int i = 0; i < 4; i++) {
+            client.send(request(), HttpResponse.BodyHandlers.ofByteArray());
+        }
+
+        assertEquals(1.0, counter("http.upstream.hedges.sent"));
+        assertEquals(3.0, counter("http.upstream.hedges.over.budget"));
+        assertEquals(8 + 4 + 1, received.get());
+    }
+
+    @Test
+    public void testDisabledPolicyNeverHedges() throws Exception {
+        client = client(HedgingPolicy.disabled());
+        warmUp(10);
+
+        delayMillis.set(300);
+        client.send(request(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(11, received.get());
+        assertEquals(0.0, counter("http.upstream.hedges.sent"));
+    }
+
+    @Test
+    public void testHedgeSkippedWithoutPermit() throws Exception {
+        client = client(new HedgingPolicy(true, 0.9, 10, Duration.ZERO, 1.0, 5));
+        warmUp(10);
+
+        delayMillis.set(300);
+        client.send(request(), HttpResponse.BodyHandlers.ofByteArray(), () -> false);
+
+        assertEquals(11, received.get());
+        assertEquals(0.0, counter("http.upstream.hedges.sent"));
+    }
+
+    private HedgingHttpClient client(HedgingPolicy policy) {
+        return new HedgingHttpClient(upstream, policy, meterRegistry);
+    }
+
+    private void warmUp(int requests) throws Exception {
+        for (int i = 0; i < requests; i++) {
+            assertEquals(200, client.send(request(), HttpResponse.BodyHandlers.ofByteArray()).statusCode());
+        }
+        // The last sample may be recorded just after its response is returned
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (latencySamples() < requests) {
+            assertTrue(System.nanoTime() < deadline, "the warm-up latencies were not recorded");
+            Thread.sleep(10);
+        }
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).tag("host", host()).counter().count();
+    }
+
+    private long latencySamples() {
+        return meterRegistry.get("http.upstream.hedging.latency").tag("host", host()).timer().count();
+    }
+
+    private String host() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private HttpRequest request() {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://" + host() + "/data"))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+    }
+
+    /**
+     * Answers after the current delay, or stalls once, or answers 503 at once, if asked to.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        received.incrementAndGet();
+        boolean stall = stallNext.compareAndSet(true, false);
+        if (!stall && unavailableNext.compareAndSet(true, false)) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        try {
+            Thread.sleep(stall ? stallMillis.get() : delayMillis.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, BODY.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(BODY);
+        }
+    }
+}
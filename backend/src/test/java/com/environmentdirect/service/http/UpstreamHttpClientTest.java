@@ -0,0 +1,186 @@
+package com.environmentdirect.service.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-host bulkheads and meters of the shared HTTP client, against local stub
+ * servers that answer after a requested delay.
+ */
+public class UpstreamHttpClientTest {
+
+    private static final byte[] BODY = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger slowInFlight = new AtomicInteger();
+    private final AtomicInteger slowMaxInFlight = new AtomicInteger();
+
+    private HttpServer slowServer;
+    private HttpServer fastServer;
+    private ExecutorService serverExecutor;
+    private UpstreamHttpClient client;
+
+    @BeforeEach
+    public void startServers() throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        slowServer = server(exchange -> {
+            slowMaxInFlight.accumulateAndGet(slowInFlight.incrementAndGet(), Math::max);
+            try {
+                respondAfterDelay(exchange);
+            } finally {
+                slowInFlight.decrementAndGet();
+            }
+        });
+        fastServer = server(UpstreamHttpClientTest::respondAfterDelay);
+    }
+
+    @AfterEach
+    public void stopServers() {
+        if (client != null) {
+            client.shutdown();
+        }
+        slowServer.stop(0);
+        fastServer.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testBurstAgainstSlowHostDoesNotDelayOtherHosts() {
+        client = client(2, Duration.ofSeconds(10));
+
+        List<CompletableFuture<HttpResponse<byte[]>>> slow = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            slow.add(client.sendAsync(request(slowServer, 300), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        HttpResponse<byte[]> fast = client.sendAsync(request(fastServer, 0), HttpResponse.BodyHandlers.ofByteArray()).join();
+        CompletableFuture<Void> allSlow = CompletableFuture.allOf(slow.toArray(CompletableFuture[]::new));
+
+        assertEquals(200, fast.statusCode());
+        assertFalse(allSlow.isDone(), "the fast host should not wait for the slow host's burst");
+        allSlow.join();
+
+        assertEquals(2, slowMaxInFlight.get(), "at most the bulkhead's limit should reach the slow host");
+        String slowHost = host(slowServer);
+        assertEquals(6, meterRegistry.get("http.upstream.queue").tag("host", slowHost).timer().count());
+        assertTrue(meterRegistry.get("http.upstream.queue").tag("host", slowHost).timer().max(TimeUnit.MILLISECONDS) >= 250,
+                "the last requests should have queued for the first ones");
+    }
+
+    @Test
+    public void testRejectsWhenNoPermitFreesUpInTime() {
+        client = client(1, Duration.ofMillis(50));
+
+        CompletableFuture<HttpResponse<byte[]>> first = client.sendAsync(request(slowServer, 500), HttpResponse.BodyHandlers.ofByteArray());
+        waitUntil(() -> slowInFlight.get() == 1);
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> client.sendAsync(request(slowServer, 0), HttpResponse.BodyHandlers.ofByteArray()).join());
+
+        assertInstanceOf(BulkheadFullException.class, e.getCause());
+        assertEquals(1.0, meterRegistry.get("http.upstream.rejected").tag("host", host(slowServer)).counter().count());
+        assertEquals(200, first.join().statusCode());
+    }
+
+    @Test
+    public void testRecordsLatencyResponseSizeAndInFlight() throws Exception {
+        client = client(2, Duration.ofSeconds(1));
+
+        HttpResponse<byte[]> response = client.send(request(fastServer, 0), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertArrayEquals(BODY, response.body());
+        String fastHost = host(fastServer);
+        assertEquals(1, meterRegistry.get("http.upstream.requests").tags("host", fastHost, "outcome", "SUCCESS").timer().count());
+        assertEquals(BODY.length, meterRegistry.get("http.upstream.response.size").tag("host", fastHost).summary().totalAmount());
+        assertEquals(0.0, meterRegistry.get("http.upstream.in.flight").tag("host", fastHost).gauge().value());
+    }
+
+    @Test
+    public void testCancellingInterruptsTheRequest() {
+        client = client(1, Duration.ofSeconds(10));
+
+        CompletableFuture<HttpResponse<byte[]>> pending = client.sendAsync(request(slowServer, 5000), HttpResponse.BodyHandlers.ofByteArray());
+        waitUntil(() -> slowInFlight.get() == 1);
+        pending.cancel(true);
+
+        // The permit is released, so the next request does not wait for the cancelled one
+        long start = System.nanoTime();
+        assertEquals(200, client.sendAsync(request(slowServer, 0), HttpResponse.BodyHandlers.ofByteArray()).join().statusCode());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    private UpstreamHttpClient client(int maxConcurrentCalls, Duration maxWait) {
+        BulkheadConfig config = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build();
+        return new UpstreamHttpClient(config, meterRegistry, Duration.ofSeconds(5));
+    }
+
+    private HttpServer server(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/delay", handler);
+        server.setExecutor(serverExecutor);
+        server.start();
+        return server;
+    }
+
+    private static HttpRequest request(HttpServer server, long delayMillis) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/delay?ms=" + delayMillis))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+    }
+
+    private static String host(HttpServer server) {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void respondAfterDelay(HttpExchange exchange) throws IOException {
+        try {
+            Thread.sleep(Long.parseLong(exchange.getRequestURI().getQuery().substring("ms=".length())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, BODY.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(BODY);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.environmentdirect.service.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for splicing UTF-8 JSON into generated documents.
+ */
+public class JsonBytesTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testSplicesRawDocumentsVerbatim() throws IOException {
+        byte[] small = JsonBytes.utf8("{\"unit\":\"°C\",\"values\":[1,2]}");
+        // Larger than the generator's buffer, so it is written around it
+        byte[] large = JsonBytes.utf8("[" + "\"x\",".repeat(10_000) + "\"y\"]");
+
+        byte[] combined = JsonBytes.toBytes(0, generator -> {
+            generator.writeStartObject();
+            JsonBytes.writeRawField(generator, "small", small);
+            JsonBytes.writeRawField(generator, "large", large);
+            generator.writeStringField("source", "NOAA NCDC");
+            generator.writeEndObject();
+        });
+
+        JsonNode tree = objectMapper.readTree(combined);
+        assertEquals("°C", tree.path("small").path("unit").asText());
+        assertEquals(10_001, tree.path("large").size());
+        assertEquals("NOAA NCDC", tree.path("source").asText());
+        String text = new String(combined, StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("{\"small\":{\"unit\":\"°C\",\"values\":[1,2]},\"large\":[\"x\""), text.substring(0, 60));
+    }
+
+    @Test
+    public void testLeavesTheTargetStreamOpen() throws IOException {
+        boolean[] closed = {false};
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        JsonBytes.write(out, generator -> generator.writeRawValue(JsonBytes.raw(JsonBytes.utf8("[true]"), 0, 6)));
+
+        assertFalse(closed[0]);
+        assertEquals("[true]", out.toString());
+    }
+}
@@ -0,0 +1,104 @@
+package com.environmentdirect.service.ml;
+
+import com.environmentdirect.service.MachineLearningService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the parallel batch anomaly scan.
+ */
+public class AnomalyScanTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Test
+    public void testRanksPlantedSpikesAcrossSeries() {
+        List<AnomalyScan.Series> series = nationalSeries(40, 365);
+        AnomalyScan.Report report = new AnomalyScan().scan(series, 10);
+
+        assertEquals(40, report.seriesScanned());
+        assertEquals(40L * 365, report.pointsScanned());
+        assertEquals(10, report.findings().size());
+        assertTrue(report.anomalyCount() >= 40);
+
+        // The largest spike, planted in series 39, comes first
+        AnomalyScan.Finding top = report.findings().get(0);
+        assertEquals("region-39", top.entity());
+        assertEquals(START.plusDays(39 * 7 % 365), top.date());
+        assertTrue(top.iqrOutlier());
+        for (int i = 1; i < report.findings().size(); i++) {
+            assertTrue(report.findings().get(i - 1).severity() >= report.findings().get(i).severity());
+        }
+    }
+
+    @Test
+    public void testFindingsMatchPerSeriesDetectors() {
+        List<AnomalyScan.Series> series = nationalSeries(12, 200);
+        AnomalyDetectionService service = new AnomalyDetectionService();
+        AnomalyScan.Report report = new AnomalyScan(new ForkJoinPool(3)).scan(series, Integer.MAX_VALUE);
+
+        int expectedCount = 0;
+        for (AnomalyScan.Series s : series) {
+            List<Integer> zScore = service.detectAnomaliesZScore(s.values());
+            List<Integer> iqr = service.detectAnomaliesIQR(s.values());
+            List<Integer> changePoints = service.detectChangePoints(s.values(), AnomalyScan.CHANGE_POINT_WINDOW);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < s.values().length; i++) {
+                if (zScore.contains(i) || iqr.contains(i) || changePoints.contains(i)) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> actual = report.findings().stream()
+                    .filter(finding -> finding.entity().equals(s.entity()))
+                    .map(finding -> (int) (finding.date().toEpochDay() - START.toEpochDay()))
+                    .sorted()
+                    .toList();
+            assertEquals(expected, actual, s.entity());
+            expectedCount += expected.size();
+        }
+        assertEquals(expectedCount, report.anomalyCount());
+        assertEquals(expectedCount, report.findings().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testScansMaterializedPredictionHistory() {
+        ModelService modelService = new ModelService();
+        MachineLearningService mlService = new MachineLearningService(modelService, new AnomalyDetectionService(),
+                new ScenarioModelingService(modelService), new PredictionHistoryStore());
+        LocalDate today = LocalDate.now();
+        mlService.materializePredictionHistory("flood-risk", "Portsmouth", today, 120);
+        mlService.materializePredictionHistory("eco-tourism", "boiling-lake", today, 120);
+
+        Map<String, Object> result = mlService.scanPredictionAnomalies(90, 5);
+        assertEquals(2, result.get("seriesScanned"));
+        assertEquals(180L, result.get("pointsScanned"));
+        assertTrue(((List<Map<String, Object>>) result.get("anomalies")).size() <= 5);
+    }
+
+    /**
+     * Noisy series per region with one spike each, growing with the region number.
+     */
+    private static List<AnomalyScan.Series> nationalSeries(int regions, int days) {
+        SplittableRandom random = new SplittableRandom(17);
+        List<AnomalyScan.Series> series = new ArrayList<>();
+        for (int r = 0; r < regions; r++) {
+            double[] values = new double[days];
+            for (int d = 0; d < days; d++) {
+                values[d] = 50 + random.nextGaussian() * 3;
+            }
+            values[r * 7 % days] += 20 + r;
+            series.add(new AnomalyScan.Series("region-" + r, "rainfall", START, values));
+        }
+        return series;
+    }
+}
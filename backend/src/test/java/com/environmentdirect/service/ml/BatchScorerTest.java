@@ -0,0 +1,88 @@
+package com.environmentdirect.service.ml;
+
+import com.environmentdirect.service.MachineLearningService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that batch scoring produces the same levels as scoring one prediction at a time.
+ */
+public class BatchScorerTest {
+
+    @Test
+    public void testFloodRiskBatchMatchesSingleRowScoring() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        Random random = new Random(42);
+
+        // Odd row count so the scalar tail after the last full vector is exercised
+        int rows = 1003;
+        double[][] matrix = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            matrix[i] = new double[] {
+                random.nextDouble() * 160, 20 + random.nextDouble() * 12, random.nextDouble() * 400,
+                random.nextDouble(), random.nextInt(5)
+            };
+        }
+
+        int[] levels = BatchScorer.scoreFloodRisk(model, matrix);
+
+        assertEquals(rows, levels.length);
+        for (int i = 0; i < rows; i++) {
+            double[] row = matrix[i];
+            assertEquals(model.predictRiskLevel(row[0], row[1], row[2], row[3], row[4]), levels[i], "row " + i);
+        }
+    }
+
+    @Test
+    public void testLinearBatchMatchesScalarScoring() {
+        double[] inputs = new double[37];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = -1 + i * 0.1;
+        }
+
+        int[] levels = BatchScorer.scoreLinear(0.5, 2.0, inputs);
+
+        for (int i = 0; i < inputs.length; i++) {
+            assertEquals(CompiledFloodRiskModel.toRiskLevel(0.5 + 2.0 * inputs[i]), levels[i], "input " + i);
+        }
+    }
+
+    @Test
+    public void testRejectsPartialRows() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        assertThrows(IllegalArgumentException.class, () -> BatchScorer.scoreFloodRisk(model, new double[7]));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBulkPredictionsMatchPerDatePredictions() {
+        ModelService modelService = new ModelService();
+        ScenarioModelingService scenarioModelingService = new ScenarioModelingService(modelService);
+        MachineLearningService mlService = new MachineLearningService(
+                modelService, new AnomalyDetectionService(), scenarioModelingService);
+
+        LocalDate start = LocalDate.of(2024, 3, 25);
+        LocalDate end = LocalDate.of(2024, 5, 10);
+        Map<String, Object> bulk = mlService.predictBulk(
+                List.of("LayouValley", "MarigotArea"), List.of("boiling-lake", "trafalgar-falls"), start, end);
+
+        Map<String, List<String>> floodRisk = (Map<String, List<String>>) bulk.get("floodRisk");
+        Map<String, List<String>> ecoTourism = (Map<String, List<String>>) bulk.get("ecoTourism");
+
+        for (int i = 0; !start.plusDays(i).isAfter(end); i++) {
+            LocalDate date = start.plusDays(i);
+
+            Map<String, Object> flood = (Map<String, Object>) mlService.predictFloodRisk("LayouValley", date).get("prediction");
+            assertEquals(flood.get("floodRiskLevel"), floodRisk.get("LayouValley").get(i), date.toString());
+
+            Map<String, Object> eco = (Map<String, Object>) mlService.predictEcoTourismPressure("trafalgar-falls", date).get("prediction");
+            assertEquals(eco.get("expectedVisitorLoad"), ecoTourism.get("trafalgar-falls").get(i), date.toString());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.environmentdirect.service.ml;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.environmentdirect.service.ml.ChangePointDetectorTest.legacyDetectChangePoints;
+import static com.environmentdirect.service.ml.ChangePointDetectorTest.levelShifts;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark of streaming change-point detection against the window-copying scan it replaced.
+ * Only runs with {@code -Pbenchmark}, and logs its timings rather than asserting them.
+ */
+@Tag("benchmark")
+public class ChangePointDetectorBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangePointDetectorBenchmarkTest.class);
+
+    @Test
+    public void benchmarkMillionPointSeries() {
+        int windowSize = 30;
+        double[] series = levelShifts(1_000_000, windowSize);
+        AnomalyDetectionService service = new AnomalyDetectionService();
+
+        service.detectChangePoints(series, windowSize);
+        long streamingStart = System.nanoTime();
+        List<Integer> streaming = service.detectChangePoints(series, windowSize);
+        double streamingMillis = (System.nanoTime() - streamingStart) / 1e6;
+
+        // The window-copying scan is far slower, so it runs on a tenth of the series
+        double[] prefix = Arrays.copyOf(series, series.length / 10);
+        long legacyStart = System.nanoTime();
+        List<Integer> legacy = legacyDetectChangePoints(prefix, windowSize);
+        double legacyMillis = (System.nanoTime() - legacyStart) / 1e6 * 10;
+
+        logger.info("Change point detection on 1M points: window-copying scan ~{} ms, streaming {} ms ({}x)",
+                String.format("%.0f", legacyMillis), String.format("%.1f", streamingMillis),
+                String.format("%.0f", legacyMillis / streamingMillis));
+
+        assertEquals(legacy, streaming.subList(0, legacy.size()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for streaming change-point detection.
+ */
+public class ChangePointDetectorTest {
+
+    @Test
+    public void testMatchesWindowCopyingScan() {
+        AnomalyDetectionService service = new AnomalyDetectionService();
+        for (int windowSize : new int[] {1, 2, 3, 7, 25}) {
+            double[] series = levelShifts(5_000, windowSize);
+            assertEquals(legacyDetectChangePoints(series, windowSize), service.detectChangePoints(series, windowSize),
+                    "windowSize " + windowSize);
+        }
+        assertEquals(List.of(), service.detectChangePoints(new double[] {1, 2, 3}, 2));
+    }
+
+    @Test
+    public void testIncrementalFeedReportsChangePointsAfterOneWindow() {
+        ChangePointDetector detector = new ChangePointDetector(4);
+        List<Long> reported = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            long changePoint = detector.add(i < 20 ? 10.0 : 20.0);
+            if (changePoint >= 0) {
+                reported.add(changePoint);
+                assertEquals(i - 3, changePoint);
+            }
+        }
+        assertEquals(40, detector.getCount());
+        // The later window of point 17 already holds one shifted value (a 25% change); half a window
+        // later the shift is detected again at the point itself
+        assertEquals(List.of(17L, 20L), reported);
+    }
+
+    /**
+     * Noisy series with a level shift every few hundred points.
+     */
+    static double[] levelShifts(int size, int windowSize) {
+        SplittableRandom random = new SplittableRandom(7);
+        double[] series = new double[size];
+        double level = 10;
+        for (int i = 0; i < size; i++) {
+            if (i % (windowSize * 20 + 97) == 0) {
+                level = 5 + random.nextDouble() * 20;
+            }
+            series[i] = level + random.nextDouble(-1, 1);
+        }
+        return series;
+    }
+
+    /**
+     * The previous implementation, which copied both windows at every index.
+     */
+    static List<Integer> legacyDetectChangePoints(double[] timeSeries, int windowSize) {
+        List<Integer> changePoints = new ArrayList<>();
+        if (timeSeries.length < windowSize * 2) {
+            return changePoints;
+        }
+        for (int i = windowSize; i < timeSeries.length - windowSize; i++) {
+            double meanBefore = new DescriptiveStatistics(Arrays.copyOfRange(timeSeries, i - windowSize, i)).getMean();
+            double meanAfter = new DescriptiveStatistics(Arrays.copyOfRange(timeSeries, i, i + windowSize)).getMean();
+            if (Math.abs((meanAfter - meanBefore) / meanBefore) > 0.2) {
+                changePoints.add(i);
+                i += windowSize / 2;
+            }
+        }
+        return changePoints;
+    }
+}
@@ -0,0 +1,62 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.environmentdirect.service.ml.CompiledFloodRiskModelTest.legacyPredict;
+import static com.environmentdirect.service.ml.CompiledFloodRiskModelTest.trainedOls;
+
+/**
+ * Micro-benchmark comparing the per-call latency of re-solving the OLS regression
+ * (the previous prediction path) with scoring against the compiled model snapshot.
+ * Only runs with {@code -Pbenchmark}, and logs its timings rather than asserting them.
+ */
+@Tag("benchmark")
+public class CompiledFloodRiskModelBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledFloodRiskModelBenchmarkTest.class);
+
+    private static final int WARMUP_CALLS = 20_000;
+    private static final int MEASURED_CALLS = 200_000;
+
+    @Test
+    public void benchmarkPerCallLatency() {
+        OLSMultipleLinearRegression ols = trainedOls();
+        CompiledFloodRiskModel compiled = CompiledFloodRiskModel.compile(ols);
+
+        // The legacy path is orders of magnitude slower, so it gets fewer iterations
+        int legacyCalls = MEASURED_CALLS / 100;
+        runLegacy(ols, WARMUP_CALLS / 100);
+        long legacyStart = System.nanoTime();
+        long legacySink = runLegacy(ols, legacyCalls);
+        double legacyNanosPerCall = (System.nanoTime() - legacyStart) / (double) legacyCalls;
+
+        runCompiled(compiled, WARMUP_CALLS);
+        long compiledStart = System.nanoTime();
+        long compiledSink = runCompiled(compiled, MEASURED_CALLS);
+        double compiledNanosPerCall = (System.nanoTime() - compiledStart) / (double) MEASURED_CALLS;
+
+        logger.info("Flood risk prediction latency: OLS re-solve {} ns/call, compiled {} ns/call ({}x) [sinks {}, {}]",
+                String.format("%.1f", legacyNanosPerCall), String.format("%.1f", compiledNanosPerCall),
+                String.format("%.0f", legacyNanosPerCall / compiledNanosPerCall), legacySink, compiledSink);
+    }
+
+    private static long runLegacy(OLSMultipleLinearRegression ols, int calls) {
+        long sink = 0;
+        for (int i = 0; i < calls; i++) {
+            sink += legacyPredict(ols, 40 + (i & 63), 26, 100, 0.6, 2);
+        }
+        return sink;
+    }
+
+    private static long runCompiled(CompiledFloodRiskModel compiled, int calls) {
+        long sink = 0;
+        for (int i = 0; i < calls; i++) {
+            sink += compiled.predictRiskLevel(40 + (i & 63), 26, 100, 0.6, 2);
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,54 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the compiled flood risk model snapshot, checked against re-solving the OLS regression
+ * (the previous prediction path).
+ */
+public class CompiledFloodRiskModelTest {
+
+    @Test
+    public void testCompiledModelMatchesOlsPredictions() {
+        OLSMultipleLinearRegression ols = trainedOls();
+        CompiledFloodRiskModel compiled = CompiledFloodRiskModel.compile(ols);
+
+        for (double[] row : ModelService.FLOOD_TRAINING_FEATURES) {
+            assertEquals(legacyPredict(ols, row[0], row[1], row[2], row[3], row[4]),
+                    compiled.predictRiskLevel(row[0], row[1], row[2], row[3], row[4]));
+        }
+    }
+
+    @Test
+    public void testModelServicePublishesCompiledModel() {
+        ModelService modelService = new ModelService();
+        assertNotNull(modelService.getFloodRiskModel());
+
+        // Hot-swap to a model that always predicts the maximum risk level
+        modelService.publishFloodRiskModel(
+                new CompiledFloodRiskModel(10.0, new double[CompiledFloodRiskModel.FEATURE_COUNT], null));
+        assertEquals(4, modelService.predictFloodRisk(0, 0, 0, 0, 0));
+    }
+
+    static OLSMultipleLinearRegression trainedOls() {
+        OLSMultipleLinearRegression ols = new OLSMultipleLinearRegression();
+        ols.newSampleData(ModelService.FLOOD_TRAINING_TARGETS, ModelService.FLOOD_TRAINING_FEATURES);
+        return ols;
+    }
+
+    // The prediction path used before the compiled snapshot was introduced
+    static int legacyPredict(OLSMultipleLinearRegression model, double rainfall, double temperature,
+                             double elevation, double soilSaturation, double historicalRisk) {
+        double[] features = new double[] {rainfall, temperature, elevation, soilSaturation, historicalRisk};
+        double[] params = model.estimateRegressionParameters();
+        double prediction = params[0];
+        for (int i = 0; i < features.length; i++) {
+            prediction += features[i] * params[i + 1];
+        }
+        int riskLevel = (int) Math.round(prediction);
+        return Math.max(0, Math.min(4, riskLevel));
+    }
+}
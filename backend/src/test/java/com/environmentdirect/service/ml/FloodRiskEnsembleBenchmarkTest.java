@@ -0,0 +1,37 @@
+package com.environmentdirect.service.ml;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.environmentdirect.service.ml.FloodRiskEnsembleTest.FEATURES;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Timing of the parallel Monte Carlo flood risk ensemble.
+ * Only runs with {@code -Pbenchmark}, and logs its timings rather than asserting them.
+ */
+@Tag("benchmark")
+public class FloodRiskEnsembleBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(FloodRiskEnsembleBenchmarkTest.class);
+
+    @Test
+    public void benchmarkHundredThousandDraws() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        FloodRiskEnsemble ensemble = new FloodRiskEnsemble();
+        for (int i = 0; i < 5; i++) {
+            ensemble.run(model, FEATURES, FloodRiskEnsemble.Perturbation.DEFAULT, 100_000, i);
+        }
+
+        long start = System.nanoTime();
+        FloodRiskEnsemble.Result result = ensemble.run(model, FEATURES, FloodRiskEnsemble.Perturbation.DEFAULT, 100_000, 99);
+        double elapsedMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        logger.info("Flood risk ensemble latency: 100000 draws in {} ms on {} cores",
+                String.format("%.1f", elapsedMillis), Runtime.getRuntime().availableProcessors());
+
+        assertEquals(100_000, result.draws());
+    }
+}
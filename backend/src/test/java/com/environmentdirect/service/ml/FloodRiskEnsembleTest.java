@@ -0,0 +1,92 @@
+package com.environmentdirect.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the parallel Monte Carlo flood risk ensemble.
+ */
+public class FloodRiskEnsembleTest {
+
+    static final double[] FEATURES = {80, 26, 100, 0.6, 2};
+
+    @Test
+    public void testSameSeedGivesSameResultOnAnyPool() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            FloodRiskEnsemble.Result parallel = new FloodRiskEnsemble()
+                    .run(model, FEATURES, FloodRiskEnsemble.Perturbation.DEFAULT, 50_001, 7);
+            FloodRiskEnsemble.Result sequential = new FloodRiskEnsemble(single)
+                    .run(model, FEATURES, FloodRiskEnsemble.Perturbation.DEFAULT, 50_001, 7);
+
+            assertArrayEquals(parallel.levelCounts(), sequential.levelCounts());
+            assertArrayEquals(parallel.scoreQuantiles(), sequential.scoreQuantiles());
+            assertEquals(parallel.meanScore(), sequential.meanScore());
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testWithoutPerturbationEveryDrawMatchesPointEstimate() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        int expectedLevel = model.predictRiskLevel(FEATURES[0], FEATURES[1], FEATURES[2], FEATURES[3], FEATURES[4]);
+
+        FloodRiskEnsemble.Result result = new FloodRiskEnsemble()
+                .run(model, FEATURES, new FloodRiskEnsemble.Perturbation(0, 0, 0), 1000, 1);
+
+        assertEquals(1000, result.levelCounts()[expectedLevel]);
+        assertEquals(expectedLevel, result.modalLevel());
+        assertEquals(1.0, result.exceedanceProbability(expectedLevel));
+        assertEquals(model.score(FEATURES, 0), result.scoreQuantiles()[2], 1e-9);
+    }
+
+    @Test
+    public void testDistributionIsConsistent() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        FloodRiskEnsemble.Result result = new FloodRiskEnsemble()
+                .run(model, FEATURES, new FloodRiskEnsemble.Perturbation(0.5, 2.0, 0.3), 20_000, 3);
+
+        double total = 0;
+        for (double probability : result.levelProbabilities()) {
+            total += probability;
+        }
+        assertEquals(1.0, total, 1e-9);
+
+        assertEquals(1.0, result.exceedanceProbability(0));
+        for (int level = 1; level <= CompiledFloodRiskModel.MAX_RISK_LEVEL; level++) {
+            assertTrue(result.exceedanceProbability(level) <= result.exceedanceProbability(level - 1));
+        }
+        for (int i = 1; i < FloodRiskEnsemble.QUANTILES.length; i++) {
+            assertTrue(result.scoreQuantiles()[i] >= result.scoreQuantiles()[i - 1]);
+        }
+    }
+
+    @Test
+    public void testDrawsSurroundAnOversaturatedPointEstimate() {
+        // Rainy-month scenarios push soil saturation above 1
+        double[] features = {120, 26, 100, 1.2, 2};
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        double pointScore = model.score(features, 0);
+
+        FloodRiskEnsemble.Result result = new FloodRiskEnsemble()
+                .run(model, features, new FloodRiskEnsemble.Perturbation(0, 0, 0.2), 20_001, 5);
+
+        double[] quantiles = result.scoreQuantiles();
+        assertTrue(quantiles[0] < pointScore && pointScore < quantiles[4]);
+        assertEquals(pointScore, quantiles[2], 0.05 * (quantiles[4] - quantiles[0]));
+    }
+
+    @Test
+    public void testQuantileInterpolatesBetweenRanks() {
+        double[] sorted = {1, 2, 3, 4};
+        assertEquals(1.0, FloodRiskEnsemble.quantile(sorted, 0));
+        assertEquals(2.5, FloodRiskEnsemble.quantile(sorted, 0.5));
+        assertEquals(4.0, FloodRiskEnsemble.quantile(sorted, 1));
+    }
+}
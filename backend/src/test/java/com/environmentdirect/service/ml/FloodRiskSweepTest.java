@@ -0,0 +1,76 @@
+package com.environmentdirect.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the parallel, memoized flood risk parameter sweep.
+ */
+public class FloodRiskSweepTest {
+
+    private static final double[] BASE_FEATURES = {80, 26, 100, 0.6, 2};
+
+    @Test
+    public void testCellsArriveInGridOrderAndMatchDirectScoring() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        ParameterRange rainfall = new ParameterRange(0.5, 2.0, 31);
+        ParameterRange temperature = new ParameterRange(-2, 2, 5);
+        ParameterRange soil = new ParameterRange(0.8, 1.2, 17);
+
+        List<FloodRiskSweep.Cell> cells = new ArrayList<>();
+        int count = new FloodRiskSweep().sweep("Portsmouth", BASE_FEATURES, model, "v1",
+                rainfall, temperature, soil, cells::addAll);
+
+        assertEquals(31 * 5 * 17, count);
+        assertEquals(count, cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            FloodRiskSweep.Cell cell = cells.get(i);
+            assertEquals(i, cell.index());
+
+            int rainfallStep = i / (5 * 17);
+            int temperatureStep = i / 17 % 5;
+            int soilStep = i % 17;
+            assertEquals(rainfall.value(rainfallStep), cell.rainfallAdjustment(), FloodRiskSweep.QUANTUM);
+            assertEquals(temperature.value(temperatureStep), cell.temperatureAdjustment(), FloodRiskSweep.QUANTUM);
+            assertEquals(soil.value(soilStep), cell.soilSaturationAdjustment(), FloodRiskSweep.QUANTUM);
+
+            double expected = model.score(BASE_FEATURES[0] * cell.rainfallAdjustment(),
+                    BASE_FEATURES[1] + cell.temperatureAdjustment(), BASE_FEATURES[2],
+                    BASE_FEATURES[3] * cell.soilSaturationAdjustment(), BASE_FEATURES[4]);
+            assertEquals(expected, cell.score(), 1e-12);
+            assertEquals(CompiledFloodRiskModel.toRiskLevel(expected), cell.riskLevel());
+        }
+    }
+
+    @Test
+    public void testRepeatedSweepIsServedFromMemo() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        FloodRiskSweep sweep = new FloodRiskSweep();
+        ParameterRange range = new ParameterRange(0.5, 1.5, 50);
+
+        sweep.sweep("Portsmouth", BASE_FEATURES, model, "v1", range, ParameterRange.of(0), range, block -> { });
+        assertEquals(0.0, sweep.getMemoHitRate());
+
+        sweep.sweep("Portsmouth", BASE_FEATURES, model, "v1", range, ParameterRange.of(0), range, block -> { });
+        assertEquals(0.5, sweep.getMemoHitRate(), 1e-9);
+
+        // A new model version must not reuse outcomes of the previous one
+        sweep.sweep("Portsmouth", BASE_FEATURES, model, "v2", range, ParameterRange.of(0), range, block -> { });
+        assertEquals(1.0 / 3, sweep.getMemoHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testRejectsInvalidGrids() {
+        CompiledFloodRiskModel model = new ModelService().getFloodRiskModel();
+        ParameterRange large = new ParameterRange(0, 1, 1000);
+
+        assertThrows(IllegalArgumentException.class, () -> new FloodRiskSweep().sweep(
+                "Portsmouth", BASE_FEATURES, model, "v1", large, large, ParameterRange.of(1), block -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new ParameterRange(2, 1, 3));
+        assertThrows(IllegalArgumentException.class, () -> new ParameterRange(0, 1, 0));
+    }
+}
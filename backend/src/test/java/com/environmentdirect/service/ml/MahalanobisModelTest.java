@@ -0,0 +1,141 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.stat.correlation.Covariance;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Mahalanobis distance scoring with a cached Cholesky factor.
+ */
+public class MahalanobisModelTest {
+
+    @Test
+    public void testDistancesMatchInverseCovarianceAcrossChunks() {
+        double[][] rows = floodFeatures(3 * MahalanobisModel.CHUNK_SIZE + 17, 9);
+        MahalanobisModel model = MahalanobisModel.fit(rows);
+
+        RealMatrix inverse = new LUDecomposition(new Covariance(rows).getCovarianceMatrix()).getSolver().getInverse();
+        RealVector mean = MatrixUtils.createRealVector(model.getMean());
+
+        double[] distances = model.distances(rows);
+        for (int i = 0; i < rows.length; i += 97) {
+            RealVector deviation = MatrixUtils.createRealVector(rows[i]).subtract(mean);
+            assertEquals(Math.sqrt(deviation.dotProduct(inverse.operate(deviation))), distances[i], 1e-9);
+            assertEquals(distances[i], model.distance(rows[i], new double[3]), 0.0);
+        }
+    }
+
+    @Test
+    public void testCorrelationBreaksAreAnomalies() {
+        double[][] rows = floodFeatures(1_000, 4);
+        AnomalyDetectionService service = new AnomalyDetectionService();
+        MahalanobisModel model = MahalanobisModel.fit(rows);
+
+        // Heavy rain on dry soil is close to the mean in each variable but breaks their correlation
+        double[][] probes = {
+                {120, 27, 0.75},
+                {120, 27, 0.25},
+        };
+        assertEquals(List.of(1), service.detectMultivariateAnomalies(model, probes, 4.0));
+        assertTrue(model.distances(probes)[1] > 3 * model.distances(probes)[0]);
+    }
+
+    @Test
+    public void testModelIsReusedUntilDataChanges() {
+        AnomalyDetectionService service = new AnomalyDetectionService();
+        double[][] rows = floodFeatures(500, 1);
+        int[] fits = new int[1];
+
+        MahalanobisModel first = service.getMahalanobisModel("Portsmouth", 1, () -> { fits[0]++; return rows; });
+        assertSame(first, service.getMahalanobisModel("Portsmouth", 1, () -> { fits[0]++; return rows; }));
+        assertEquals(1, fits[0]);
+
+        assertNotSame(first, service.getMahalanobisModel("Portsmouth", 2, () -> { fits[0]++; return rows; }));
+        assertEquals(2, fits[0]);
+    }
+
+    @Test
+    public void testDetectionFitsEachDatasetVersionOnce() throws Exception {
+        AnomalyDetectionService service = new AnomalyDetectionService();
+        double[][] rows = floodFeatures(1_000, 5);
+        rows[10] = new double[] {120, 27, 0.25};
+
+        // Concurrent first requests share one fit, which runs outside the map's lock
+        int[] fits = new int[1];
+        CountDownLatch fitting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MahalanobisModel> first = executor.submit(() -> service.getMahalanobisModel("Roseau", 1, () -> {
+                fits[0]++;
+                fitting.countDown();
+                await(release);
+                return rows;
+            }));
+            assertTrue(fitting.await(5, TimeUnit.SECONDS));
+            // Another dataset is not blocked by the fit in progress
+            assertNotNull(service.getMahalanobisModel("Portsmouth", 1, () -> rows));
+            Future<MahalanobisModel> second = executor.submit(() -> service.getMahalanobisModel("Roseau", 1, () -> {
+                fits[0]++;
+                return rows;
+            }));
+            release.countDown();
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, fits[0]);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(service.detectMultivariateAnomalies("Roseau", 1, rows, 4.0).contains(10));
+        assertSame(service.getMahalanobisModel("Roseau", 1, () -> { throw new AssertionError(); }),
+                service.getMahalanobisModel("Roseau", 1, () -> rows));
+    }
+
+    @Test
+    public void testSingularCovarianceIsRegularised() {
+        double[][] rows = floodFeatures(200, 2);
+        for (double[] row : rows) {
+            row[1] = 27;
+        }
+        MahalanobisModel model = MahalanobisModel.fit(rows);
+        assertTrue(Double.isFinite(model.distance(rows[0], new double[3])));
+        assertTrue(model.distance(new double[] {rows[0][0], 28, rows[0][2]}, new double[3]) > 100);
+        assertThrows(IllegalArgumentException.class, () -> MahalanobisModel.fit(new double[][] {{1, 2}}));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Rainfall, temperature and soil saturation, with saturation rising with rainfall.
+     */
+    private static double[][] floodFeatures(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[][] rows = new double[size][];
+        for (int i = 0; i < size; i++) {
+            double rainfall = 40 + random.nextDouble() * 100;
+            double temperature = 26 + random.nextGaussian();
+            double saturation = 0.2 + rainfall / 250 + random.nextGaussian() * 0.03;
+            rows[i] = new double[] {rainfall, temperature, saturation};
+        }
+        return rows;
+    }
+}
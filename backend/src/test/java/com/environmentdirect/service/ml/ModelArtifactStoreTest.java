@@ -0,0 +1,105 @@
+package com.environmentdirect.service.ml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for writing and memory-mapped loading of binary model artifacts.
+ */
+public class ModelArtifactStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSaveAndLoadRoundTrip() throws IOException {
+        ModelArtifactStore store = new ModelArtifactStore(tempDir.resolve("models/artifact.bin").toString());
+        ModelArtifact artifact = sampleArtifact(1.25);
+
+        store.save(artifact);
+        Optional<ModelArtifact> loaded = store.load();
+
+        assertTrue(loaded.isPresent());
+        assertEquals(artifact.trainedAt(), loaded.get().trainedAt());
+        assertEquals(CompiledFloodRiskModel.FEATURE_NAMES, loaded.get().floodFeatureNames());
+        assertEquals(9, loaded.get().floodSampleCount());
+        assertEquals(0.9, loaded.get().floodRSquared());
+        assertEquals(1.25, loaded.get().floodRiskModel().getIntercept());
+        assertArrayEquals(new double[] {0.1, 0.2, 0.3, 0.4, 0.5}, loaded.get().floodRiskModel().getCoefficients());
+        assertEquals(sampleVisitorModel(), loaded.get().visitorLoadModels().get("boiling-lake"));
+    }
+
+    @Test
+    public void testMissingOrCorruptArtifactIsIgnored() throws IOException {
+        Path path = tempDir.resolve("artifact.bin");
+        ModelArtifactStore store = new ModelArtifactStore(path.toString());
+        assertTrue(store.load().isEmpty());
+
+        store.save(sampleArtifact(1.0));
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 0x7F;
+        Files.write(path, bytes);
+
+        assertTrue(store.load().isEmpty());
+    }
+
+    @Test
+    public void testModelServicePersistsThenLoadsWithoutRetraining() throws IOException {
+        ModelArtifactStore store = new ModelArtifactStore(tempDir.resolve("artifact.bin").toString());
+
+        // First start trains and writes the artifact
+        ModelService first = new ModelService(store);
+        assertTrue(Files.exists(store.getArtifactPath()));
+        assertNotNull(first.getFloodRiskModel());
+
+        // A later start uses whatever artifact is on disk instead of training
+        store.save(sampleArtifact(10.0));
+        ModelService second = new ModelService(store);
+        assertEquals(4, second.predictFloodRisk(0, 0, 0, 0, 0));
+        assertEquals(CompiledFloodRiskModel.toRiskLevel(-0.5 + 2.0 * 1.2),
+                second.predictVisitorLoad("boiling-lake", 1.2, false));
+    }
+
+    @Test
+    public void testOnlineUpdatesAreSavedOnceByThePeriodicSave() throws IOException {
+        ModelArtifactStore store = new ModelArtifactStore(tempDir.resolve("artifact.bin").toString());
+        ModelService modelService = new ModelService(store);
+        long trainedSamples = store.load().orElseThrow().visitorLoadModels().get("boiling-lake").sampleCount();
+
+        for (int i = 0; i < 3; i++) {
+            modelService.recordVisitorObservations(new String[] {"boiling-lake"}, new double[] {1.0},
+                    new boolean[] {false}, new double[] {2.0});
+        }
+        // Observations alone do not write the artifact
+        assertEquals(trainedSamples, store.load().orElseThrow().visitorLoadModels().get("boiling-lake").sampleCount());
+
+        modelService.saveUpdatedModels();
+        assertEquals(trainedSamples + 3, store.load().orElseThrow().visitorLoadModels().get("boiling-lake").sampleCount());
+
+        // Nothing changed since, so the next save writes nothing
+        Files.delete(store.getArtifactPath());
+        modelService.saveUpdatedModels();
+        assertFalse(Files.exists(store.getArtifactPath()));
+    }
+
+    private static ModelArtifact sampleArtifact(double intercept) {
+        Instant trainedAt = Instant.ofEpochMilli(1_700_000_000_000L);
+        return new ModelArtifact(ModelArtifactStore.FORMAT_VERSION, trainedAt, CompiledFloodRiskModel.FEATURE_NAMES,
+                9, 0.9, new CompiledFloodRiskModel(intercept, new double[] {0.1, 0.2, 0.3, 0.4, 0.5}, trainedAt),
+                Map.of("boiling-lake", sampleVisitorModel()));
+    }
+
+    // Two observations on the line y = -0.5 + 2x
+    private static CompiledVisitorLoadModel sampleVisitorModel() {
+        return CompiledVisitorLoadModel.fit(VisitorLoadStatistics.EMPTY.add(1.0, 1.5).add(2.0, 3.5));
+    }
+}
@@ -0,0 +1,114 @@
+package com.environmentdirect.service.ml;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for model versioning, promotion and shadow scoring in the model registry.
+ */
+public class ModelRegistryTest {
+
+    // Runs shadow scoring on the calling thread so the tests are deterministic
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    @Test
+    public void testShadowVersionScoresSameTrafficAndCountsDisagreements() {
+        MeterRegistry meters = new SimpleMeterRegistry();
+        ModelRegistry<Integer> registry = new ModelRegistry<>("test", meters, SAME_THREAD);
+        ModelVersion<Integer> active = registry.registerAndActivate(0);
+        ModelVersion<Integer> candidate = registry.register(1);
+        registry.startShadow(candidate.getVersion());
+
+        // The candidate adds its offset only to odd inputs, so it disagrees half of the time
+        for (int input = 0; input < 10; input++) {
+            int value = input;
+            assertEquals(value, registry.score(offset -> value % 2 == 1 ? value + offset : value));
+        }
+
+        assertEquals(10, candidate.getShadowComparisons());
+        assertEquals(5, candidate.getShadowDisagreements());
+        assertEquals(10, meters.get("ml.model.scoring")
+                .tags("model", "test", "version", active.getVersion(), "role", "active").timer().count());
+        assertEquals(10, meters.get("ml.model.scoring")
+                .tags("model", "test", "version", candidate.getVersion(), "role", "shadow").timer().count());
+    }
+
+    @Test
+    public void testBatchDisagreementsAreCountedPerPrediction() {
+        ModelRegistry<Integer> registry = new ModelRegistry<>("test", new SimpleMeterRegistry(), SAME_THREAD);
+        registry.registerAndActivate(0);
+        ModelVersion<Integer> candidate = registry.register(1);
+        registry.startShadow(candidate.getVersion());
+
+        int[] result = registry.scoreBatch(offset -> new int[] {0, offset, 2, offset * 3});
+
+        assertArrayEquals(new int[] {0, 0, 2, 0}, result);
+        assertEquals(4, candidate.getShadowComparisons());
+        assertEquals(2, candidate.getShadowDisagreements());
+    }
+
+    @Test
+    public void testPromotingShadowVersionStopsShadowing() {
+        ModelRegistry<String> registry = new ModelRegistry<>("test", new SimpleMeterRegistry(), SAME_THREAD);
+        registry.registerAndActivate("old");
+        ModelVersion<String> candidate = registry.register("new");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.activate("v99"));
+        assertThrows(IllegalArgumentException.class, () -> registry.startShadow(registry.getActiveVersion().get().getVersion()));
+
+        registry.startShadow(candidate.getVersion());
+        registry.activate(candidate.getVersion());
+
+        assertEquals("new", registry.getActiveModel());
+        assertTrue(registry.getShadowVersion().isEmpty());
+    }
+
+    @Test
+    public void testSaturatedShadowExecutorNeverBlocksScoring() {
+        MeterRegistry meters = new SimpleMeterRegistry();
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException("full");
+        };
+        ModelRegistry<Integer> registry = new ModelRegistry<>("test", meters, rejecting);
+        registry.registerAndActivate(0);
+        registry.startShadow(registry.register(1).getVersion());
+
+        assertEquals(7, registry.score(offset -> 7 + offset));
+        assertEquals(1, meters.get("ml.model.shadow.dropped").counter().count());
+    }
+
+    @Test
+    public void testOldInactiveVersionsAreEvicted() {
+        MeterRegistry meters = new SimpleMeterRegistry();
+        ModelRegistry<Integer> registry = new ModelRegistry<>("test", meters, SAME_THREAD);
+        ModelVersion<Integer> active = registry.registerAndActivate(0);
+        for (int i = 1; i <= ModelRegistry.MAX_RETAINED_VERSIONS + 5; i++) {
+            registry.register(i);
+        }
+
+        assertEquals(ModelRegistry.MAX_RETAINED_VERSIONS, registry.getVersions().size());
+        assertEquals(active.getVersion(), registry.getVersions().get(0).getVersion());
+        assertEquals(0, registry.getActiveModel());
+        assertNull(meters.find("ml.model.scoring").tags("version", "v2").timer());
+    }
+
+    @Test
+    public void testRegisterAndActivateEvictsSupersededActiveVersions() {
+        ModelRegistry<Integer> registry = new ModelRegistry<>("test", new SimpleMeterRegistry(), SAME_THREAD);
+        ModelVersion<Integer> latest = null;
+        for (int i = 0; i <= ModelRegistry.MAX_RETAINED_VERSIONS + 5; i++) {
+            latest = registry.registerAndActivate(i);
+            assertEquals(latest.getVersion(), registry.getActiveVersion().orElseThrow().getVersion());
+        }
+
+        assertEquals(ModelRegistry.MAX_RETAINED_VERSIONS, registry.getVersions().size());
+        assertEquals(ModelRegistry.MAX_RETAINED_VERSIONS + 5, registry.getActiveModel());
+        assertEquals("v7", registry.getVersions().get(0).getVersion());
+    }
+}
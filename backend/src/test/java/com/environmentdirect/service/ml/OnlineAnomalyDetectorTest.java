@@ -0,0 +1,70 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the online z-score and EWMA anomaly detectors.
+ */
+public class OnlineAnomalyDetectorTest {
+
+    @Test
+    public void testScoresMatchBatchStatisticsOfEarlierReadings() {
+        SplittableRandom random = new SplittableRandom(3);
+        OnlineAnomalyDetector detector = new OnlineAnomalyDetector(0.1, OnlineAnomalyDetector.DEFAULT_THRESHOLD);
+        DescriptiveStatistics earlier = new DescriptiveStatistics();
+
+        for (int i = 0; i < 2_000; i++) {
+            double value = 50 + random.nextGaussian() * 5;
+            OnlineAnomalyDetector.Score score = detector.score(value);
+            if (i > 1) {
+                double expected = (value - earlier.getMean()) / earlier.getStandardDeviation();
+                assertEquals(expected, score.zScore(), 1e-9);
+            }
+            earlier.addValue(value);
+        }
+        assertEquals(2_000, detector.getState().count());
+        assertEquals(earlier.getMean(), detector.getState().mean(), 1e-9);
+
+        // A spike is an anomaly, an ordinary reading is not
+        assertTrue(detector.score(100).anomaly());
+        assertFalse(detector.score(51).anomaly());
+    }
+
+    @Test
+    public void testNoAnomaliesBeforeMinimumReadings() {
+        OnlineAnomalyDetector detector = new OnlineAnomalyDetector(0.1, OnlineAnomalyDetector.DEFAULT_THRESHOLD);
+        for (int i = 0; i < OnlineAnomalyDetector.MIN_READINGS; i++) {
+            assertFalse(detector.score(i % 2 == 0 ? 1 : 1000).anomaly());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new OnlineAnomalyDetector(0, 2.5));
+    }
+
+    @Test
+    public void testRestoredDetectorsContinueWithoutWarmUp(@TempDir Path directory) {
+        Path statePath = directory.resolve("detectors.bin");
+        OnlineAnomalyDetectors detectors = new OnlineAnomalyDetectors(statePath, 0.05, 2.5);
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 500; i++) {
+            detectors.score("Portsmouth", "rainfall", 80 + random.nextGaussian() * 10);
+            detectors.score("RoseauSouth", "river-level", 2 + random.nextGaussian() * 0.2);
+        }
+        detectors.save();
+
+        OnlineAnomalyDetectors restored = new OnlineAnomalyDetectors(statePath, 0.05, 2.5);
+        assertEquals(2, restored.size());
+        assertEquals(detectors.getState("Portsmouth", "rainfall"), restored.getState("Portsmouth", "rainfall"));
+        assertEquals(detectors.getState("RoseauSouth", "river-level"), restored.getState("RoseauSouth", "river-level"));
+
+        // The first reading after a restart is scored against the restored history
+        assertEquals(detectors.score("Portsmouth", "rainfall", 200), restored.score("Portsmouth", "rainfall", 200));
+        assertTrue(restored.score("RoseauSouth", "river-level", 5).anomaly());
+        assertNull(restored.getState("Portsmouth", "temperature"));
+    }
+}
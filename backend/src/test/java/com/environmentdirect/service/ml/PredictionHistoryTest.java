@@ -0,0 +1,95 @@
+package com.environmentdirect.service.ml;
+
+import com.environmentdirect.service.MachineLearningService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the materialized prediction history and the historical comparison read from it.
+ */
+public class PredictionHistoryTest {
+
+    @Test
+    public void testWindowAggregatesMatchDirectComputation() {
+        PredictionHistory history = new PredictionHistory();
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        int[] levels = new int[1000];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = (i * 7 + i / 3) % 5;
+            assertTrue(history.append(start.plusDays(i), levels[i], 0.8));
+        }
+
+        // Days already stored are ignored; gaps are rejected
+        assertFalse(history.append(start.plusDays(10), 4, 0.8));
+        assertThrows(IllegalArgumentException.class, () -> history.append(start.plusDays(1001), 1, 0.8));
+
+        PredictionHistory.Window window = history.window(start.plusDays(100), start.plusDays(464));
+        assertEquals(365, window.size());
+        assertTrue(window.covers(start.plusDays(100), start.plusDays(464)));
+        assertEquals(start.plusDays(100), window.date(0));
+
+        double levelSum = 0;
+        double changeSum = 0;
+        for (int i = 100; i <= 464; i++) {
+            levelSum += levels[i];
+            if (i > 100) {
+                changeSum += Math.abs(levels[i] - levels[i - 1]);
+            }
+        }
+        assertEquals(levelSum / 365, window.averageLevel(), 1e-12);
+        assertEquals(changeSum / 364, window.meanAbsoluteChange(), 1e-12);
+
+        // Ranges outside the stored days are clipped
+        assertFalse(history.window(start.minusDays(5), start.plusDays(5)).covers(start.minusDays(5), start.plusDays(5)));
+        assertEquals(0, history.window(start.plusDays(2000), start.plusDays(2010)).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMaterializedComparisonMatchesOnDemandComparison() {
+        ModelService modelService = new ModelService();
+        ScenarioModelingService scenarioModelingService = new ScenarioModelingService(modelService);
+        MachineLearningService onDemand = new MachineLearningService(
+                modelService, new AnomalyDetectionService(), scenarioModelingService);
+        MachineLearningService materialized = new MachineLearningService(
+                modelService, new AnomalyDetectionService(), scenarioModelingService, new PredictionHistoryStore());
+
+        LocalDate today = LocalDate.now();
+        assertEquals(366, materialized.materializePredictionHistory("flood-risk", "LayouValley", today, 366));
+        assertEquals(0, materialized.materializePredictionHistory("flood-risk", "LayouValley", today, 366));
+
+        Map<String, Object> expected = onDemand.getHistoricalComparison("LayouValley", "flood-risk", 365);
+        Map<String, Object> actual = materialized.getHistoricalComparison("LayouValley", "flood-risk", 365);
+
+        assertEquals(365, ((List<Map<String, Object>>) actual.get("historicalData")).size());
+        assertEquals(expected.get("historicalData"), actual.get("historicalData"));
+        assertEquals(expected.get("trendInfo"), actual.get("trendInfo"));
+
+        // The current prediction is today's full scenario prediction
+        Map<String, Object> current = (Map<String, Object>) actual.get("currentPrediction");
+        Map<String, Object> direct = onDemand.predictFloodRisk("LayouValley", today);
+        assertEquals(direct.keySet(), current.keySet());
+        assertEquals(direct.get("prediction"), current.get("prediction"));
+        assertTrue(current.containsKey("predictionDate"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testComparisonForAnEntityWithoutModelKeepsItsHistory() {
+        ModelService modelService = new ModelService();
+        MachineLearningService mlService = new MachineLearningService(
+                modelService, new AnomalyDetectionService(), new ScenarioModelingService(modelService));
+
+        Map<String, Object> comparison = mlService.getHistoricalComparison("no-such-site", "eco-tourism", 30);
+
+        List<Map<String, Object>> historicalData = (List<Map<String, Object>>) comparison.get("historicalData");
+        assertEquals(30, historicalData.size());
+        assertEquals("Unknown", historicalData.get(0).get("expectedVisitorLoad"));
+        assertTrue(((Map<String, Object>) comparison.get("currentPrediction")).containsKey("recommendation"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.environmentdirect.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the KLL quantile sketch and sketch-based IQR detection.
+ */
+public class QuantileSketchTest {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    @Test
+    public void testIqrDetectionMatchesSortedQuartilesOnShortSeries() {
+        AnomalyDetectionService service = new AnomalyDetectionService();
+        SplittableRandom random = new SplittableRandom(5);
+        for (int size = 1; size <= QuantileSketch.DEFAULT_K; size += 7) {
+            double[] series = new double[size];
+            for (int i = 0; i < size; i++) {
+                series[i] = random.nextInt(5) == 0 ? random.nextDouble(-50, 150) : random.nextDouble(40, 60);
+            }
+            assertEquals(legacyDetectAnomaliesIQR(series), service.detectAnomaliesIQR(series), "size " + size);
+        }
+        assertEquals(List.of(), service.detectAnomaliesIQR(new double[0]));
+    }
+
+    @Test
+    public void testYearOfMinutelyReadingsFromMergedDailySketches() {
+        // Each day is summarised on its own, as a node or time bucket would, then merged
+        QuantileSketch year = new QuantileSketch(QuantileSketch.DEFAULT_K, 1);
+        double[] exact = new double[365 * MINUTES_PER_DAY];
+        for (int day = 0; day < 365; day++) {
+            QuantileSketch daily = new QuantileSketch(QuantileSketch.DEFAULT_K, day);
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                double value = reading(day, minute);
+                daily.update(value);
+                exact[day * MINUTES_PER_DAY + minute] = value;
+            }
+            year.merge(QuantileSketch.fromByteArray(daily.toByteArray()));
+        }
+
+        assertEquals(exact.length, year.getCount());
+        assertTrue(year.getRetained() < 10 * QuantileSketch.DEFAULT_K, "retained " + year.getRetained());
+
+        Arrays.sort(exact);
+        for (double fraction : new double[] {0.01, 0.25, 0.5, 0.75, 0.99}) {
+            double estimate = year.quantile(fraction);
+            double rankError = Math.abs(rank(exact, estimate) - fraction * exact.length) / exact.length;
+            assertTrue(rankError < 0.02, "rank error " + rankError + " at " + fraction);
+        }
+        assertEquals(exact[0], year.getMin());
+        assertEquals(exact[exact.length - 1], year.getMax());
+
+        AnomalyDetectionService.IqrBounds bounds = new AnomalyDetectionService().getIqrBounds(year);
+        assertTrue(bounds.isOutlier(1_000));
+        assertFalse(bounds.isOutlier(exact[exact.length / 2]));
+    }
+
+    @Test
+    public void testRejectsIncompatibleInput() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> sketch.update(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(100)));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromByteArray(new byte[] {0, 1, 0}));
+        assertThrows(IllegalArgumentException.class, () -> new AnomalyDetectionService().getIqrBounds(sketch));
+    }
+
+    /**
+     * Temperature-like reading with a seasonal and a daily cycle, noise and occasional spikes.
+     */
+    private static double reading(int day, int minute) {
+        long hash = (day * 1_000_003L + minute) * 0x9E3779B97F4A7C15L;
+        double noise = ((hash >>> 11) * 0x1.0p-53 - 0.5) * 2;
+        double spike = (hash & 0xFFF) == 0 ? 40 : 0;
+        return 27 + 3 * Math.sin(2 * Math.PI * day / 365) + 4 * Math.sin(2 * Math.PI * minute / MINUTES_PER_DAY)
+                + noise + spike;
+    }
+
+    private static int rank(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * The previous implementation, which sorted a copy of the series.
+     */
+    private static List<Integer> legacyDetectAnomaliesIQR(double[] timeSeries) {
+        double[] sortedData = Arrays.copyOf(timeSeries, timeSeries.length);
+        Arrays.sort(sortedData);
+        double q1 = sortedData[(int) (sortedData.length * 0.25)];
+        double q3 = sortedData[(int) (sortedData.length * 0.75)];
+        double iqr = q3 - q1;
+        List<Integer> anomalies = new ArrayList<>();
+        for (int i = 0; i < timeSeries.length; i++) {
+            if (timeSeries[i] < q1 - 1.5 * iqr || timeSeries[i] > q3 + 1.5 * iqr) {
+                anomalies.add(i);
+            }
+        }
+        return anomalies;
+    }
+}
@@ -0,0 +1,124 @@
+package com.environmentdirect.service.ml;
+
+import com.environmentdirect.service.MachineLearningService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for seasonal baselines decomposed from long daily histories.
+ */
+public class SeasonalBaselineTest {
+
+    private static final LocalDate START = LocalDate.of(2021, 1, 1);
+    private static final double LEVEL = 20;
+
+    @Test
+    public void testRecoversSeasonalCycleAndNoise() {
+        double[] history = rainfall(4 * 365, 0.0, 2);
+        SeasonalBaseline baseline = SeasonalBaseline.decompose(START, history);
+
+        assertEquals(history.length, baseline.getHistoryDays());
+        assertEquals(START.plusDays(history.length - 1L), baseline.getLastDate());
+        for (LocalDate date = LocalDate.of(2025, 1, 1); date.getYear() == 2025; date = date.plusDays(5)) {
+            assertEquals(normal(date), baseline.expected(date), 1.0, date.toString());
+            assertEquals(1.0, baseline.spread(date), 0.25, date.toString());
+        }
+    }
+
+    @Test
+    public void testExpectedValueFollowsLatestTrendLevel() {
+        // Rainfall rising by 2 a year
+        double[] history = rainfall(3 * 365, 2.0 / 365, 3);
+        SeasonalBaseline baseline = SeasonalBaseline.decompose(START, history);
+
+        // The level of the last year is about 2 * 2.5 above the start
+        LocalDate date = LocalDate.of(2024, 4, 1);
+        assertEquals(normal(date) + 5.0, baseline.expected(date), 1.0);
+    }
+
+    @Test
+    public void testFlagsDeviationsFromTheSeasonNotFromTheMean() {
+        AnomalyDetectionService service = new AnomalyDetectionService();
+        assertTrue(service.getSeasonalBaseline("flood-risk:Portsmouth", "rainfall").isEmpty());
+        service.updateSeasonalBaseline("flood-risk:Portsmouth", "rainfall", START, rainfall(3 * 365, 0.0, 4));
+
+        // A wet-season day is far above the yearly mean but normal for its season;
+        // the same value in the dry season is an anomaly
+        LocalDate wet = LocalDate.of(2024, 4, 1);
+        LocalDate dry = LocalDate.of(2024, 10, 1);
+        double[] current = {normal(wet), normal(wet) + 0.5, normal(wet)};
+        assertEquals(List.of(), service.detectSeasonalAnomalies("flood-risk:Portsmouth", "rainfall", wet, current, 0.5));
+        assertEquals(List.of(0, 2), service.detectSeasonalAnomalies("flood-risk:Portsmouth", "rainfall", dry,
+                new double[]{normal(wet), normal(dry), normal(wet)}, 0.5));
+
+        // The global-statistics version sees nothing wrong with the dry-season value
+        double[] history = rainfall(3 * 365, 0.0, 4);
+        assertEquals(List.of(), service.detectSeasonalAnomalies(new double[]{normal(wet)}, history, 0.5));
+
+        assertEquals(List.of(), service.detectSeasonalAnomalies("flood-risk:Unknown", "rainfall", dry, current, 0.5));
+    }
+
+    @Test
+    public void testChecksMaterializedHistoryAgainstRebuiltBaselines() {
+        ModelService modelService = new ModelService();
+        MachineLearningService mlService = new MachineLearningService(modelService, new AnomalyDetectionService(),
+                new ScenarioModelingService(modelService), new PredictionHistoryStore());
+        mlService.materializePredictionHistory("flood-risk", "Portsmouth", LocalDate.now(), 400);
+
+        Map<String, Object> before = mlService.detectSeasonalAnomalies("flood-risk", "Portsmouth", 90, 0.5);
+        assertEquals(false, before.get("baselineAvailable"));
+        assertEquals(0, before.get("anomalyCount"));
+
+        assertEquals(1, mlService.rebuildSeasonalBaselines());
+        Map<String, Object> after = mlService.detectSeasonalAnomalies("flood-risk", "Portsmouth", 90, 0.5);
+        assertEquals(true, after.get("baselineAvailable"));
+        assertEquals(90, after.get("pointsChecked"));
+        assertEquals("floodRiskLevel", after.get("metric"));
+        assertEquals(((List<?>) after.get("anomalies")).size(), after.get("anomalyCount"));
+    }
+
+    @Test
+    public void testRejectsShortHistory() {
+        assertThrows(IllegalArgumentException.class, () -> SeasonalBaseline.decompose(START, new double[100]));
+    }
+
+    @Test
+    public void testConstantHistoryHasPositiveSpread() {
+        double[] history = new double[400];
+        Arrays.fill(history, 3.0);
+        SeasonalBaseline baseline = SeasonalBaseline.decompose(START, history);
+
+        assertEquals(3.0, baseline.expected(START), 1e-9);
+        assertTrue(baseline.spread(START) > 0);
+        assertEquals(0.0, baseline.zScore(START, 3.0), 1e-9);
+    }
+
+    private static double normal(LocalDate date) {
+        return LEVEL + season(date);
+    }
+
+    private static double season(LocalDate date) {
+        return 10 * Math.sin(2 * Math.PI * (date.getDayOfYear() - 1) / 365.25);
+    }
+
+    private static double[] rainfall(int days, double trendPerDay, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] values = new double[days];
+        for (int i = 0; i < days; i++) {
+            // Sum of uniforms: approximately normal noise with a standard deviation of 1
+            double noise = 0;
+            for (int j = 0; j < 12; j++) {
+                noise += random.nextDouble();
+            }
+            values[i] = normal(START.plusDays(i)) + trendPerDay * i + noise - 6;
+        }
+        return values;
+    }
+}
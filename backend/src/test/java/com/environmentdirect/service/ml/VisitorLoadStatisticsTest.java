@@ -0,0 +1,86 @@
+package com.environmentdirect.service.ml;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that incrementally updated visitor load statistics fit the same line as a batch regression.
+ */
+public class VisitorLoadStatisticsTest {
+
+    @Test
+    public void testIncrementalAndMergedFitsMatchSimpleRegression() {
+        Random random = new Random(7);
+        SimpleRegression regression = new SimpleRegression();
+        VisitorLoadStatistics incremental = VisitorLoadStatistics.EMPTY;
+        VisitorLoadStatistics firstHalf = VisitorLoadStatistics.EMPTY;
+        VisitorLoadStatistics secondHalf = VisitorLoadStatistics.EMPTY;
+
+        for (int i = 0; i < 500; i++) {
+            double x = 0.5 + random.nextDouble() * 1.5;
+            double y = random.nextInt(5);
+            regression.addData(x, y);
+            incremental = incremental.add(x, y);
+            if (i < 200) {
+                firstHalf = firstHalf.add(x, y);
+            } else {
+                secondHalf = secondHalf.add(x, y);
+            }
+        }
+
+        assertEquals(regression.getSlope(), incremental.slope(), 0.0);
+        assertEquals(regression.getIntercept(), incremental.intercept(), 1e-12);
+
+        VisitorLoadStatistics merged = firstHalf.merge(secondHalf);
+        assertEquals(500, merged.count());
+        assertEquals(regression.getSlope(), merged.slope(), 1e-9);
+        assertEquals(regression.getIntercept(), merged.intercept(), 1e-9);
+    }
+
+    @Test
+    public void testRecordedObservationsUpdateAndCreateSiteModels() {
+        ModelService modelService = new ModelService();
+        var counts = modelService.recordVisitorObservations(
+                new String[] {"boiling-lake", "new-site", "new-site"},
+                new double[] {1.2, 0.8, 1.6},
+                new boolean[] {false, false, false},
+                new double[] {3, 1, 3});
+
+        assertEquals(5, counts.get("boiling-lake"));
+        assertEquals(2, counts.get("new-site"));
+        assertEquals(CompiledFloodRiskModel.toRiskLevel(1 + (1.2 - 0.8) * 2.5),
+                modelService.predictVisitorLoad("new-site", 1.2, false));
+    }
+
+    @Test
+    public void testRetrainingKeepsObservationsAndCandidatesLearnToo() {
+        ModelService modelService = new ModelService();
+        modelService.recordVisitorObservations(new String[] {"boiling-lake", "new-site"}, new double[] {1.2, 0.8},
+                new boolean[] {false, false}, new double[] {3, 1});
+
+        modelService.retrainModels(true);
+        assertEquals(5, activeModel(modelService, "boiling-lake").sampleCount());
+        assertEquals(1, activeModel(modelService, "new-site").sampleCount());
+
+        // A candidate registered without activation learns from the same observations as the active version
+        modelService.retrainModels(false);
+        ModelRegistry<Map<String, CompiledVisitorLoadModel>> registry = modelService.getVisitorLoadModels();
+        List<ModelVersion<Map<String, CompiledVisitorLoadModel>>> versions = registry.getVersions();
+        String candidate = versions.get(versions.size() - 1).getVersion();
+        modelService.recordVisitorObservations(new String[] {"boiling-lake"}, new double[] {1.0},
+                new boolean[] {true}, new double[] {2});
+
+        registry.activate(candidate);
+        assertEquals(6, activeModel(modelService, "boiling-lake").sampleCount());
+    }
+
+    private static CompiledVisitorLoadModel activeModel(ModelService modelService, String siteId) {
+        return modelService.getVisitorLoadModels().getActiveModel().get(siteId);
+    }
+}
@@ -0,0 +1,114 @@
+package com.environmentdirect.service.ncdc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for streaming NCDC data responses into columnar observations.
+ */
+public class NcdcObservationParserTest {
+
+    private static final String PAGE = """
+            {"metadata":{"resultset":{"offset":1,"count":2417,"limit":1000}},
+             "results":[
+              {"date":"2024-01-01T00:00:00","datatype":"PRCP","station":"GHCND:VQW00011640","attributes":",,W,2400","value":0.5},
+              {"date":"2024-01-01T00:00:00","datatype":"TMAX","station":"GHCND:VQW00011640","attributes":",,W,","value":29.4},
+              {"attributes":",,W,","station":"GHCND:DM000078905","value":12,"datatype":"PRCP","date":"2024-01-02T00:00:00"},
+              {"date":"2024-01-02T00:00:00","datatype":"PRCP","station":"GHCND:VQW00011640","value":1.25,"extra":{"nested":[1,2]}},
+              {"date":"2024-01-03T00:00:00","datatype":"PRCP","station":"GHCND:VQW00011640","value":null},
+              {"date":"not a date","datatype":"PRCP","station":"GHCND:VQW00011640","value":3}
+             ]}
+            """;
+
+    @Test
+    public void testParsesObservationsIntoSeriesPerStationAndDatatype() throws IOException {
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        assertEquals(4, NcdcObservationParser.parse(bytes(PAGE), builder));
+        NcdcObservations observations = builder.build();
+
+        assertEquals(4, observations.getObservationCount());
+        assertEquals(List.of(
+                new NcdcObservations.Key("GHCND:VQW00011640", "PRCP"),
+                new NcdcObservations.Key("GHCND:VQW00011640", "TMAX"),
+                new NcdcObservations.Key("GHCND:DM000078905", "PRCP")), observations.keys());
+
+        NcdcObservations.Series rainfall = observations.get("GHCND:VQW00011640", "PRCP");
+        assertEquals(2, rainfall.size());
+        assertEquals(LocalDate.of(2024, 1, 1), rainfall.date(0));
+        assertEquals((int) LocalDate.of(2024, 1, 2).toEpochDay(), rainfall.epochDay(1));
+        assertArrayEquals(new double[]{0.5, 1.25}, rainfall.getValues());
+        assertEquals(0.875, rainfall.mean(), 1e-12);
+
+        assertEquals(2, observations.byDatatype("PRCP").size());
+        assertEquals(12.0, observations.byDatatype("PRCP").get("GHCND:DM000078905").max());
+    }
+
+    @Test
+    public void testAppendsPagesToTheSameSeries() throws IOException {
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        for (int page = 0; page < 3; page++) {
+            StringBuilder json = new StringBuilder("{\"results\":[");
+            for (int i = 0; i < 100; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"date\":\"").append(LocalDate.of(2020, 1, 1).plusDays(page * 100L + i))
+                        .append("T00:00:00\",\"datatype\":\"TMIN\",\"station\":\"S\",\"value\":").append(page * 100 + i).append('}');
+            }
+            NcdcObservationParser.parse(bytes(json.append("]}").toString()), builder);
+        }
+        NcdcObservations.Series series = builder.build().get("S", "TMIN");
+
+        assertEquals(300, series.size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(LocalDate.of(2020, 1, 1).plusDays(i), series.date(i));
+            assertEquals(i, series.value(i));
+        }
+        NcdcObservations.Summary summary = new NcdcObservations.Builder()
+                .add("S", "TMIN", 10, 1.0).add("S", "TMIN", 5, 3.0).build().summaries().get(0);
+        assertEquals(LocalDate.ofEpochDay(5), summary.firstDate());
+        assertEquals(LocalDate.ofEpochDay(10), summary.lastDate());
+    }
+
+    @Test
+    public void testEpochDayMatchesLocalDate() {
+        for (LocalDate date = LocalDate.of(1899, 12, 25); date.isBefore(LocalDate.of(2101, 1, 5)); date = date.plusDays(1)) {
+            char[] text = (date + "T00:00:00").toCharArray();
+            assertEquals(date.toEpochDay(), NcdcObservationParser.epochDay(text, 0, text.length), date.toString());
+        }
+        char[] dateOnly = "x2024-02-29".toCharArray();
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), NcdcObservationParser.epochDay(dateOnly, 1, 10));
+        char[] invalid = "2024-13-01".toCharArray();
+        assertEquals(Integer.MIN_VALUE, NcdcObservationParser.epochDay(invalid, 0, invalid.length));
+    }
+
+    @Test
+    public void testReadsTotalCount() throws IOException {
+        assertEquals(2417, NcdcObservationParser.readCount(bytes(PAGE)));
+        assertEquals(0, NcdcObservationParser.readCount(bytes("{}")));
+        assertEquals(2, NcdcObservationParser.readCount(bytes("{\"results\":[{\"id\":1},{\"id\":2}]}")));
+        assertThrows(IOException.class, () -> NcdcObservationParser.readCount(bytes("[1,2]")));
+    }
+
+    @Test
+    public void testFindsTheBytesOfTheResults() throws IOException {
+        byte[] body = bytes("{\"results\": [ {\"station\":\"GHCND:É\",\"value\":[1]}, {\"value\":2} ]\n,\"metadata\":{}}");
+
+        int[] range = NcdcObservationParser.resultsRange(body);
+
+        assertEquals("{\"station\":\"GHCND:É\",\"value\":[1]}, {\"value\":2}",
+                new String(body, range[0], range[1] - range[0], StandardCharsets.UTF_8));
+        assertNull(NcdcObservationParser.resultsRange(bytes("{\"results\":[ ]}")));
+        assertNull(NcdcObservationParser.resultsRange(bytes("{}")));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,138 @@
+package com.environmentdirect.service.ncdc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the local NCDC observation store and its append-only log.
+ */
+public class NcdcObservationStoreTest {
+
+    private static final String LOCATION = "FIPS:VI";
+    private static final String STATION = "GHCND:VQW00011640";
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testQueriesARangeOfStoredDays() throws IOException {
+        NcdcObservationStore store = new NcdcObservationStore(directory.resolve("observations.log"));
+        store.append(LOCATION, START, START.plusDays(9), days(0, 10, 1.0));
+
+        NcdcObservations result = store.query(LOCATION, START.plusDays(3), START.plusDays(5), List.of("TMAX"));
+
+        NcdcObservations.Series series = result.get(STATION, "TMAX");
+        assertEquals(3, series.size());
+        assertEquals(START.plusDays(3), series.date(0));
+        assertEquals(START.plusDays(5), series.date(2));
+        assertNull(result.get(STATION, "PRCP"));
+        assertEquals(START.plusDays(9), store.getWatermark(LOCATION).orElseThrow());
+        assertTrue(store.getWatermark("FIPS:DO").isEmpty());
+    }
+
+    @Test
+    public void testLaterValuesReplaceEarlierOnesOfTheSameDay() throws IOException {
+        NcdcObservationStore store = new NcdcObservationStore(directory.resolve("observations.log"));
+        store.append(LOCATION, START, START.plusDays(9), days(0, 10, 1.0));
+        // A sync that re-fetches the last days of the previous one, with revised values
+        store.append(LOCATION, START.plusDays(7), START.plusDays(14), days(7, 15, 2.0));
+
+        NcdcObservations.Series series = store.query(LOCATION, START, START.plusDays(14), null).get(STATION, "TMAX");
+        assertEquals(15, series.size());
+        assertEquals(1.0, series.value(6));
+        assertEquals(2.0, series.value(7));
+        NcdcObservationStore.Coverage coverage = store.getCoverage(LOCATION).orElseThrow();
+        assertEquals(START, coverage.firstDate());
+        assertEquals(START.plusDays(14), coverage.lastDate());
+        assertTrue(coverage.covers(START.plusDays(2), START.plusDays(14)));
+        assertFalse(coverage.covers(START.minusDays(1), START.plusDays(2)));
+    }
+
+    @Test
+    public void testRestoresObservationsFromTheLog() throws IOException {
+        Path log = directory.resolve("observations.log");
+        NcdcObservationStore store = new NcdcObservationStore(log);
+        store.append(LOCATION, START, START.plusDays(9), days(0, 10, 1.0));
+        store.append(LOCATION, START.plusDays(8), START.plusDays(12), days(8, 13, 3.0));
+
+        NcdcObservationStore restored = new NcdcObservationStore(log);
+
+        assertEquals(START.plusDays(12), restored.getWatermark(LOCATION).orElseThrow());
+        NcdcObservations.Series series = restored.query(LOCATION, START, START.plusDays(12), null).get(STATION, "TMAX");
+        assertEquals(13, series.size());
+        assertEquals(3.0, series.value(8));
+    }
+
+    @Test
+    public void testDiscardsABatchTornByACrash() throws IOException {
+        Path log = directory.resolve("observations.log");
+        NcdcObservationStore store = new NcdcObservationStore(log);
+        store.append(LOCATION, START, START.plusDays(9), days(0, 10, 1.0));
+        long intact = Files.size(log);
+        store.append(LOCATION, START.plusDays(10), START.plusDays(19), days(10, 20, 1.0));
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(log) - 5);
+        }
+
+        NcdcObservationStore restored = new NcdcObservationStore(log);
+
+        assertEquals(START.plusDays(9), restored.getWatermark(LOCATION).orElseThrow());
+        assertEquals(intact, Files.size(log));
+        // Later batches are appended after the last intact one
+        restored.append(LOCATION, START.plusDays(10), START.plusDays(11), days(10, 12, 1.0));
+        assertEquals(START.plusDays(11), new NcdcObservationStore(log).getWatermark(LOCATION).orElseThrow());
+    }
+
+    @Test
+    public void testMovesAsideAnUnreadableLog() throws IOException {
+        Path log = directory.resolve("observations.log");
+        Files.writeString(log, "not a log");
+
+        NcdcObservationStore store = new NcdcObservationStore(log);
+
+        assertTrue(store.getLocations().isEmpty());
+        assertTrue(Files.exists(directory.resolve("observations.log.corrupt")));
+        store.append(LOCATION, START, START, days(0, 1, 1.0));
+        assertEquals(START, new NcdcObservationStore(log).getWatermark(LOCATION).orElseThrow());
+    }
+
+    @Test
+    public void testCompactsTheLogWhenReFetchedDaysDominate() throws IOException {
+        Path log = directory.resolve("observations.log");
+        NcdcObservationStore store = new NcdcObservationStore(log);
+        for (int i = 0; i < 10; i++) {
+            store.append(LOCATION, START, START.plusDays(29), days(0, 30, i));
+        }
+
+        // Ten batches of the same days, but never more than twice the live data
+        int batchLength = NcdcObservationStore.encodeBatch(LOCATION, store.getCoverage(LOCATION).orElseThrow()).remaining();
+        assertTrue(Files.size(log) < 3 * batchLength);
+        assertEquals(Files.size(log), store.getLogLength());
+        NcdcObservations.Series series = new NcdcObservationStore(log)
+                .query(LOCATION, START, START.plusDays(29), null).get(STATION, "TMAX");
+        assertEquals(30, series.size());
+        assertEquals(9.0, series.value(29));
+    }
+
+    /**
+     * TMAX observations of one station on days first..last-1 after the start, with one value.
+     */
+    private static NcdcObservations days(int first, int last, double value) {
+        NcdcObservations.Builder builder = new NcdcObservations.Builder();
+        for (int day = first; day < last; day++) {
+            builder.add(STATION, "TMAX", (int) START.plusDays(day).toEpochDay(), value);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,283 @@
+package com.environmentdirect.service.ncdc;
+
+import com.environmentdirect.service.http.HedgingHttpClient;
+import com.environmentdirect.service.http.HedgingPolicy;
+import com.environmentdirect.service.http.UpstreamHttpClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for paged NCDC fetching against a local stub of the NCDC data endpoint.
+ */
+public class NcdcPageFetcherTest {
+
+    private static final String TOKEN = "test-token";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentLinkedQueue<String> queries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger rateLimitedResponses = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private UpstreamHttpClient httpClient;
+    private NcdcPageFetcher fetcher;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/data", this::handleData);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        httpClient = new UpstreamHttpClient(BulkheadConfig.ofDefaults(), new SimpleMeterRegistry(), Duration.ofSeconds(10));
+        fetcher = fetcher(4);
+    }
+
+    @AfterEach
+    public void stopServer() {
+        fetcher.shutdown();
+        httpClient.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testMergesAllPagesInOrder() throws Exception {
+        JsonNode merged = objectMapper.readTree(fetcher.fetchAll("data?datasetid=GHCND&count=4500").join());
+
+        assertEquals(4500, merged.path("metadata").path("resultset").path("count").asLong());
+        JsonNode results = merged.path("results");
+        assertEquals(4500, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i + 1, results.get(i).path("id").asInt());
+        }
+
+        // One request per page of 1000, each with the token and its own offset
+        assertEquals(5, queries.size());
+        for (int offset = 1; offset <= 4001; offset += 1000) {
+            assertTrue(queries.contains("datasetid=GHCND&count=4500&limit=1000&offset=" + offset), queries.toString());
+        }
+    }
+
+    @Test
+    public void testPrefetchesPagesConcurrentlyWithinTheWindow() {
+        assertEquals(12_000L, fetcher.fetchPages(List.of("data?count=12000&delay=50"), ignoringSink()).join());
+
+        assertTrue(maxInFlight.get() > 1, "pages should be fetched concurrently");
+        assertTrue(maxInFlight.get() <= 4, "at most the prefetch window should be in flight, was " + maxInFlight.get());
+    }
+
+    @Test
+    public void testMergesSeveralQueries() throws Exception {
+        JsonNode merged = objectMapper.readTree(
+                fetcher.fetchAll(List.of("data?count=1500&first=1", "data?count=10&first=5001")).join());
+
+        assertEquals(1510, merged.path("metadata").path("resultset").path("count").asLong());
+        JsonNode results = merged.path("results");
+        assertEquals(1510, results.size());
+        assertEquals(1500, results.get(1499).path("id").asInt());
+        assertEquals(5001, results.get(1500).path("id").asInt());
+    }
+
+    @Test
+    public void testParsesPagesIntoColumnarObservations() {
+        NcdcObservations observations = fetcher.fetchObservations(List.of("data?count=2500", "data?count=10&first=3001")).join();
+
+        assertEquals(2510, observations.getObservationCount());
+        NcdcObservations.Series series = observations.get("GHCND:STUB", "PRCP");
+        assertEquals(2510, series.size());
+        assertEquals(LocalDate.of(2024, 1, 1).plusDays(2499), series.date(2499));
+        assertEquals(LocalDate.of(2024, 1, 1).plusDays(3000), series.date(2500));
+    }
+
+    @Test
+    public void testEmptyResponseHasNoResults() throws Exception {
+        JsonNode merged = objectMapper.readTree(fetcher.fetchAll("data?count=0").join());
+
+        assertEquals(0, merged.path("metadata").path("resultset").path("count").asLong());
+        assertEquals(0, merged.path("results").size());
+    }
+
+    @Test
+    public void testRetriesRateLimitedPages() throws Exception {
+        JsonNode merged = objectMapper.readTree(fetcher.fetchAll("data?count=1500&rateLimitOffset=1001").join());
+
+        assertEquals(1500, merged.path("results").size());
+        assertEquals(1, rateLimitedResponses.get());
+    }
+
+    @Test
+    public void testFailsWhenAPageFails() {
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> fetcher.fetchAll("data?count=3500&failOffset=2001").join());
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    public void testTokenBucketLimitsTheRate() {
+        AtomicLong nanos = new AtomicLong();
+        Clock clock = Clock.fixed(Instant.parse("2025-06-01T12:00:00Z"), ZoneOffset.UTC);
+        NcdcRateLimiter limiter = new NcdcRateLimiter(5, 1000, nanos::get, clock);
+
+        // A full second of requests may burst, then one request per 200 ms
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire());
+        }
+        assertEquals(200_000_000L, limiter.tryAcquire(), 1);
+        nanos.addAndGet(100_000_000L);
+        assertEquals(100_000_000L, limiter.tryAcquire(), 1);
+        nanos.addAndGet(100_000_000L);
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(994, limiter.getRemainingToday());
+    }
+
+    @Test
+    public void testDailyQuotaFailsFastAndResetsNextDay() {
+        AtomicLong nanos = new AtomicLong();
+        Instant[] now = {Instant.parse("2025-06-01T23:59:00Z")};
+        Clock clock = new Clock() {
+            @Override
+            public ZoneOffset getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now[0];
+            }
+        };
+        NcdcRateLimiter limiter = new NcdcRateLimiter(100, 3, nanos::get, clock);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire());
+        }
+        assertThrows(NcdcRateLimiter.DailyQuotaExceededException.class, limiter::tryAcquire);
+
+        now[0] = Instant.parse("2025-06-02T00:00:01Z");
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(2, limiter.getRemainingToday());
+    }
+
+    private NcdcPageFetcher fetcher(int prefetchPages) {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        HedgingHttpClient hedgingClient = new HedgingHttpClient(httpClient, HedgingPolicy.disabled(), new SimpleMeterRegistry());
+        return new NcdcPageFetcher(hedgingClient, baseUrl, TOKEN, new NcdcRateLimiter(1000, 10_000),
+                NcdcPageFetcher.MAX_PAGE_SIZE, prefetchPages, Duration.ofSeconds(10));
+    }
+
+    private static NcdcPageFetcher.ResultSink ignoringSink() {
+        return new NcdcPageFetcher.ResultSink() {
+            @Override
+            public void start(long totalCount) {
+            }
+
+            @Override
+            public void result(JsonNode result) {
+            }
+        };
+    }
+
+    /**
+     * Serves ids first..first+count-1 in NCDC's paged layout. Query parameters of the stub:
+     * count, first, delay (ms), rateLimitOffset (answered once with 429) and failOffset (500).
+     */
+    private void handleData(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            String query = exchange.getRequestURI().getRawQuery();
+            queries.add(query);
+            Map<String, Long> params = new HashMap<>();
+            for (String pair : query.split("&")) {
+                String[] parts = pair.split("=", 2);
+                if (parts.length == 2 && parts[1].matches("\\d+")) {
+                    params.put(parts[0], Long.parseLong(parts[1]));
+                }
+            }
+            if (!TOKEN.equals(exchange.getRequestHeaders().getFirst("token"))) {
+                respond(exchange, 400, "{\"message\":\"missing token\"}");
+                return;
+            }
+            long offset = params.get("offset");
+            if (params.containsKey("delay")) {
+                Thread.sleep(params.get("delay"));
+            }
+            if (params.getOrDefault("failOffset", -1L) == offset) {
+                respond(exchange, 500, "{}");
+                return;
+            }
+            if (params.getOrDefault("rateLimitOffset", -1L) == offset && rateLimitedResponses.compareAndSet(0, 1)) {
+                respond(exchange, 429, "{}");
+                return;
+            }
+
+            long count = params.get("count");
+            if (count == 0) {
+                respond(exchange, 200, "{}");
+                return;
+            }
+            long first = params.getOrDefault("first", 1L);
+            long limit = params.get("limit");
+            StringBuilder body = new StringBuilder("{\"metadata\":{\"resultset\":{\"offset\":" + offset
+                    + ",\"count\":" + count + ",\"limit\":" + limit + "}},\"results\":[");
+            for (long i = offset; i < offset + limit && i <= count; i++) {
+                if (i > offset) {
+                    body.append(',');
+                }
+                long id = first + i - 1;
+                body.append("{\"id\":").append(id).append(",\"date\":\"").append(LocalDate.of(2024, 1, 1).plusDays(id - 1))
+                        .append("T00:00:00\",\"datatype\":\"PRCP\",\"station\":\"GHCND:STUB\",\"value\":1.5}");
+            }
+            respond(exchange, 200, body.append("]}").toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}